@@ -35,7 +35,7 @@ import java.util.*;
 import java.io.*;
 import ogdf.basic.*;
 import org.BioLayoutExpress3D.Utils.ref;
-import org.BioLayoutExpress3D.CoreUI.Dialogs.LayoutProgressBarDialog;
+import org.BioLayoutExpress3D.CoreUI.Dialogs.LayoutProgressBar;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 
@@ -532,7 +532,7 @@ public class FMMMLayout
     /**
      * This option defines how to calculate repulsive forces. Possible values: - \a rfcExact: exact calculation (slow) -
      * \a rfcGridApproximation: grid approxiamtion (inaccurate) - \a rfcNMM: like in NMM (= New Multipole Method; fast
-     * and accurate)
+     * and accurate; in 3D a bucket octree with monopole approximations is used, see OctreeNM)
      */
     public RepulsiveForcesMethod repulsiveForcesCalculation()
     {
@@ -815,7 +815,7 @@ public class FMMMLayout
     }
 
     //! Sets the option nmParticlesInLeaves to \a n.
-    void nmParticlesInLeaves(int n)
+    public void nmParticlesInLeaves(int n)
     {
         m_NMParticlesInLeaves = ((n >= 1) ? n : 1);
     }
@@ -827,7 +827,7 @@ public class FMMMLayout
     }
 
     //! Sets the precision for the multipole expansions to \ p.
-    void nmPrecision(int p)
+    public void nmPrecision(int p)
     {
         m_NMPrecision = ((p >= 1) ? p : 1);
     }
@@ -896,7 +896,7 @@ public class FMMMLayout
     NodeArray<Double> radius; //!< Holds the radius of the surrounding circle for each node.
     double time_total; //!< The runtime (=CPU-time) of the algorithm in seconds.
     FruchtermanReingold FR; //!< Class for repulsive force calculation (Fruchterman, Reingold).
-    //NMM NM; //!< Class for repulsive force calculation.
+    NMM NM; //!< Class for repulsive force calculation.
     Random random;
 
     public FMMMLayout()
@@ -904,22 +904,22 @@ public class FMMMLayout
         initialize_all_options();
     }
 
-    private LayoutProgressBarDialog progressDialog;
+    private LayoutProgressBar progressDialog;
 
 //--------------------------- most important functions --------------------------------
-    public void call(GraphAttributes GA, LayoutProgressBarDialog progressDialog)
+    public void call(GraphAttributes GA, LayoutProgressBar progressDialog)
     {
         Graph G = GA.constGraph();
         EdgeArray<Double> edgelength = new EdgeArray<Double>(G, 1.0, Factory.DOUBLE);
         call(GA, edgelength, progressDialog);
     }
 
-    public void call(GraphAttributes GA, EdgeArray<Double> edgeLength, LayoutProgressBarDialog progressDialog)
+    public void call(GraphAttributes GA, EdgeArray<Double> edgeLength, LayoutProgressBar progressDialog)
     {
         random = new Random(37112);
         numexcept.random = random;
         FR = new FruchtermanReingold();
-        //NM = new NMM(random);
+        NM = new NMM(random, FR);
         this.progressDialog = progressDialog;
 
         progressDialog.prepareProgressBar(100, "FMMM layout", true);
@@ -962,8 +962,6 @@ public class FMMMLayout
             }
         }
 
-        FR.shutdown();
-
         progressDialog.endProgressBar();
         progressDialog.stopProgressBar();
     }
@@ -1082,11 +1080,8 @@ public class FMMMLayout
                 max_mult_iter = ITERBOUND;
             }
 
-            NodeArray<DPoint> F_rep = new NodeArray<DPoint>(G, Factory.DPOINT); //stores rep. forces
-            NodeArray<DPoint> F_attr = new NodeArray<DPoint>(G, Factory.DPOINT); //stores attr. forces
-            NodeArray<DPoint> F = new NodeArray<DPoint>(G, Factory.DPOINT); //stores resulting forces
-            NodeArray<DPoint> last_node_movement = new NodeArray<DPoint>(G, Factory.DPOINT);//stores the force vectors F of the last
-            //iterations (needed to avoid oscillations)
+            FlatGraph L = new FlatGraph(G, A, E); //positions, forces (F_rep, F_attr, F, last_node_movement)
+            //and edges of G as flat arrays; the positions are exported to A after the iterations
 
             set_average_ideal_edgelength(G, E);//needed for easy scaling of the forces
             make_initialisations_for_rep_calc_classes(G);
@@ -1102,15 +1097,15 @@ public class FMMMLayout
                     ((stopCriterion() == StopCriterion.scFixedIterationsOrThreshold) && (iter <= max_mult_iter) &&
                     (actforcevectorlength >= threshold())))
             {//while
-                calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, iter, 0);
+                calculate_forces(G, A, L, iter, 0);
                 if (stopCriterion() != StopCriterion.scFixedIterations)
                 {
-                    actforcevectorlength = get_average_forcevector_length(G, F);
+                    actforcevectorlength = get_average_forcevector_length(L);
                 }
 
                 if (progressDialog.userHasCancelled())
                 {
-                    return;
+                    break;
                 }
 
                 progressDialog.incrementProgress(iter);
@@ -1119,9 +1114,11 @@ public class FMMMLayout
 
             if (!progressDialog.userHasCancelled() && act_level == 0)
             {
-                call_POSTPROCESSING_step(G, A, E, F, F_attr, F_rep, last_node_movement, comp_index, num_components);
+                call_POSTPROCESSING_step(G, A, L, comp_index, num_components);
             }
 
+            L.export_positions(A);
+
             //deallocate_memory_for_rep_calc_classes();
         }
     }
@@ -1129,11 +1126,7 @@ public class FMMMLayout
     void call_POSTPROCESSING_step(
             Graph G,
             NodeArray<NodeAttributes> A,
-            EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> last_node_movement,
+            FlatGraph L,
             int comp_index,
             int num_components)
     {
@@ -1150,13 +1143,13 @@ public class FMMMLayout
             }
 
             progressDialog.incrementProgress(i);
-            calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, i, 1);
+            calculate_forces(G, A, L, i, 1);
         }
 
         if ((resizeDrawing() == true))
         {
-            adapt_drawing_to_ideal_average_edgelength(G, A, E);
-            update_boxlength_and_cornercoordinate(G, A);
+            adapt_drawing_to_ideal_average_edgelength(L);
+            update_boxlength_and_cornercoordinate(L);
         }
 
         progressDialog.prepareProgressBar(fineTuningIterations(),
@@ -1172,12 +1165,12 @@ public class FMMMLayout
             }
 
             progressDialog.incrementProgress(i);
-            calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, i, 2);
+            calculate_forces(G, A, L, i, 2);
         }
 
         if ((resizeDrawing() == true))
         {
-            adapt_drawing_to_ideal_average_edgelength(G, A, E);
+            adapt_drawing_to_ideal_average_edgelength(L);
         }
     }
 
@@ -1989,23 +1982,20 @@ public class FMMMLayout
     }
 
 //-------------------------- functions for force calculation ---------------------------
+    //One iteration on the flat copy L of G; G and A are only needed by the planar NMM.
     void calculate_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
-            EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> last_node_movement,
+            FlatGraph L,
             int iter,
             int fine_tuning_step)
     {
-        calculate_attractive_forces(G, A, E, F_attr);
-        calculate_repulsive_forces(G, A, F_rep);
-        add_attr_rep_forces(G, F_attr, F_rep, F, iter, fine_tuning_step);
-        prevent_oscilations(G, F, last_node_movement, iter);
-        move_nodes(G, A, F);
-        update_boxlength_and_cornercoordinate(G, A);
+        calculate_attractive_forces(L);
+        calculate_repulsive_forces(G, A, L);
+        add_attr_rep_forces(L, iter, fine_tuning_step);
+        prevent_oscilations(L, iter);
+        move_nodes(L);
+        update_boxlength_and_cornercoordinate(L);
     }
 
     void init_boxlength_and_cornercoordinate(
@@ -2103,15 +2093,6 @@ public class FMMMLayout
         update_boxlength_and_cornercoordinate(G, A);
     }
 
-    void init_F(Graph G, NodeArray<DPoint> F)
-    {
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
-        {
-            node v = iter.next();
-            F.set(v, PointFactory.INSTANCE.newDPoint());
-        }
-    }
-
     void make_initialisations_for_rep_calc_classes(Graph G)
     {
         if (repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcExact)
@@ -2124,9 +2105,9 @@ public class FMMMLayout
         }
         else //(repulsiveForcesCalculation() == RepulsiveForcesCalculation.rfcNMM
         {
-            /*NM.make_initialisations(G, boxlength, down_left_corner,
+            NM.make_initialisations(G, boxlength, down_left_corner,
                     nmParticlesInLeaves(), nmPrecision(),
-                    nmTreeConstruction(), nmSmallCell());*/
+                    nmTreeConstruction(), nmSmallCell());
         }
     }
 
@@ -2134,60 +2115,65 @@ public class FMMMLayout
     void calculate_repulsive_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+            FlatGraph L)
     {
         final int EXACT_FORCES_THRESHOLD = 50;
 
-        if (G.numberOfNodes() < EXACT_FORCES_THRESHOLD || repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcExact)
+        if (L.number_of_nodes < EXACT_FORCES_THRESHOLD || repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcExact)
         {
-            FR.calculate_exact_repulsive_forces(G, A, F_rep);
+            FR.calculate_exact_repulsive_forces(L.position, L.number_of_nodes, L.F_rep);
         }
         else if (repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcGridApproximation)
         {
-            FR.calculate_approx_repulsive_forces(G, A, F_rep);
+            FR.calculate_approx_repulsive_forces(L.position, L.number_of_nodes, L.F_rep);
         }
         else //repulsiveForcesCalculation() == rfcNMM
         {
-            //NM.calculate_repulsive_forces(G, A, F_rep);
+            NM.calculate_repulsive_forces(G, A, L);
         }
     }
 
-    void calculate_attractive_forces(
-            Graph G,
-            NodeArray<NodeAttributes> A,
-            EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F_attr)
+    //The attractive force on v is the sum of the spring forces of its incident edges; each
+    //edge is stored at both of its end nodes, so the nodes can be handled independently.
+    void calculate_attractive_forces(FlatGraph L)
     {
-        edge e;
-        node u, v;
+        double[] position = L.position;
+        double[] F_attr = L.F_attr;
+        double[] f_u = new double[3];
         double norm_v_minus_u, scalar;
-        DPoint vector_v_minus_u, f_u = PointFactory.INSTANCE.newDPoint();
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
 
-        //initialisation
-        init_F(G, F_attr);
-
-        //calculation
-        for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
+        for (int v = 0; v < L.number_of_nodes; v++)
         {//for
-            e = i.next();
+            double x_v = position[3 * v], y_v = position[3 * v + 1], z_v = position[3 * v + 2];
+            double f_x = 0.0, f_y = 0.0, f_z = 0.0;
 
-            u = e.source();
-            v = e.target();
-            vector_v_minus_u = A.get(v).get_position().minus(A.get(u).get_position());
-            norm_v_minus_u = vector_v_minus_u.length();
-            if (vector_v_minus_u.equals(nullpoint))
+            for (int i = L.adjacency_begin[v]; i < L.adjacency_begin[v + 1]; i++)
             {
-                f_u = nullpoint;
-            }
-            else if (!numexcept.f_near_machine_precision(norm_v_minus_u, f_u))
-            {
-                scalar = f_attr_scalar(norm_v_minus_u, E.get(e).get_length()) / norm_v_minus_u;
-                f_u = vector_v_minus_u.scaled(scalar);
+                int u = L.adjacency_node[i];
+                double d_x = position[3 * u] - x_v;
+                double d_y = position[3 * u + 1] - y_v;
+                double d_z = position[3 * u + 2] - z_v;
+                if ((d_x == 0.0) && (d_y == 0.0) && (d_z == 0.0))
+                {
+                    continue;
+                }
+
+                norm_v_minus_u = Math.sqrt(d_x * d_x + d_y * d_y + d_z * d_z);
+                if (!numexcept.f_near_machine_precision(norm_v_minus_u, f_u, L.three_dimensional))
+                {
+                    scalar = f_attr_scalar(norm_v_minus_u, L.adjacency_length[i]) / norm_v_minus_u;
+                    f_u[0] = scalar * d_x;
+                    f_u[1] = scalar * d_y;
+                    f_u[2] = scalar * d_z;
+                }
+                f_x += f_u[0];
+                f_y += f_u[1];
+                f_z += f_u[2];
             }
 
-            F_attr.set(v, F_attr.get(v).minus(f_u));
-            F_attr.set(u, F_attr.get(u).plus(f_u));
+            F_attr[3 * v] = f_x;
+            F_attr[3 * v + 1] = f_y;
+            F_attr[3 * v + 2] = f_z;
         }//for
     }
 
@@ -2233,16 +2219,14 @@ public class FMMMLayout
     }
 
     void add_attr_rep_forces(
-            Graph G,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> F,
+            FlatGraph L,
             int iter,
             int fine_tuning_step)
     {
-        node v;
-        DPoint f, force = PointFactory.INSTANCE.newDPoint();
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
+        double[] F_attr = L.F_attr;
+        double[] F_rep = L.F_rep;
+        double[] F = L.F;
+        double[] force = new double[3];
         double norm_f, scalar;
         double act_spring_strength, act_rep_force_strength;
 
@@ -2293,45 +2277,44 @@ public class FMMMLayout
         else //adjustPostRepStrengthDynamically())
         {
             act_spring_strength = postSpringStrength();
-            act_rep_force_strength = get_post_rep_force_strength(G.numberOfNodes());
+            act_rep_force_strength = get_post_rep_force_strength(L.number_of_nodes);
         }
 
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        double edgelength_square = average_ideal_edgelength * average_ideal_edgelength;
+        for (int v = 0; v < L.number_of_nodes; v++)
         {
-            v = i.next();
-            f = F_attr.get(v).scaled(act_spring_strength).plus(F_rep.get(v).scaled(act_rep_force_strength));
-            f = f.scaled(average_ideal_edgelength * average_ideal_edgelength);
+            double f_x = (act_spring_strength * F_attr[3 * v] + act_rep_force_strength * F_rep[3 * v]) * edgelength_square;
+            double f_y = (act_spring_strength * F_attr[3 * v + 1] + act_rep_force_strength * F_rep[3 * v + 1]) * edgelength_square;
+            double f_z = (act_spring_strength * F_attr[3 * v + 2] + act_rep_force_strength * F_rep[3 * v + 2]) * edgelength_square;
 
-            norm_f = f.length();
-            if (f == nullpoint)
+            norm_f = Math.sqrt(f_x * f_x + f_y * f_y + f_z * f_z);
+            if ((f_x == 0.0) && (f_y == 0.0) && (f_z == 0.0))
             {
-                force = nullpoint;
+                force[0] = force[1] = force[2] = 0.0;
             }
-            else if (numexcept.f_near_machine_precision(norm_f, force))
+            else if (numexcept.f_near_machine_precision(norm_f, force, L.three_dimensional))
             {
-                restrict_force_to_comp_box(force);
+                restrict_force_to_comp_box(force, L.three_dimensional);
             }
             else
             {
                 scalar = Math.min(norm_f * cool_factor * forceScalingFactor(),
                         max_radius(iter)) / norm_f;
-                force = f.scaled(scalar);
+                force[0] = scalar * f_x;
+                force[1] = scalar * f_y;
+                force[2] = scalar * f_z;
             }
-            F.set(v, PointFactory.INSTANCE.newDPoint(force));
+            F[3 * v] = force[0];
+            F[3 * v + 1] = force[1];
+            F[3 * v + 2] = force[2];
         }
     }
 
-    void move_nodes(
-            Graph G,
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F)
+    void move_nodes(FlatGraph L)
     {
-        node v;
-
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        for (int i = 0; i < 3 * L.number_of_nodes; i++)
         {
-            v = i.next();
-            A.get(v).set_position(A.get(v).get_position().plus(F.get(v)));
+            L.position[i] += L.F[i];
         }
     }
 
@@ -2379,6 +2362,37 @@ public class FMMMLayout
             }
         }
 
+        set_boxlength_and_cornercoordinate(xmin, xmax, ymin, ymax, zmin, zmax, G.numberOfNodes());
+    }
+
+    void update_boxlength_and_cornercoordinate(FlatGraph L)
+    {
+        double[] position = L.position;
+        double xmin, xmax, ymin, ymax, zmin, zmax;
+
+        xmin = xmax = position[0];
+        ymin = ymax = position[1];
+        zmin = zmax = position[2];
+
+        for (int v = 1; v < L.number_of_nodes; v++)
+        {
+            xmin = Math.min(xmin, position[3 * v]);
+            xmax = Math.max(xmax, position[3 * v]);
+            ymin = Math.min(ymin, position[3 * v + 1]);
+            ymax = Math.max(ymax, position[3 * v + 1]);
+            zmin = Math.min(zmin, position[3 * v + 2]);
+            zmax = Math.max(zmax, position[3 * v + 2]);
+        }
+
+        set_boxlength_and_cornercoordinate(xmin, xmax, ymin, ymax, zmin, zmax, L.number_of_nodes);
+    }
+
+    void set_boxlength_and_cornercoordinate(
+            double xmin, double xmax,
+            double ymin, double ymax,
+            double zmin, double zmax,
+            int number_of_nodes)
+    {
         //set down_left_corner and boxlength
 
         down_left_corner.setX(Math.floor(xmin - 1));
@@ -2389,7 +2403,7 @@ public class FMMMLayout
         //exception handling: all nodes have same x and y coordinate
         if (boxlength <= 2)
         {
-            boxlength = G.numberOfNodes() * 20;
+            boxlength = number_of_nodes * 20;
             down_left_corner.setX(Math.floor(xmin) - (boxlength / 2));
             down_left_corner.setY(Math.floor(ymin) - (boxlength / 2));
             down_left_corner.setZ(Math.floor(zmin) - (boxlength / 2));
@@ -2404,7 +2418,7 @@ public class FMMMLayout
         }
         else //repulsiveForcesCalculation() == rfcNMM
         {
-            //NM.update_boxlength_and_cornercoordinate(boxlength, down_left_corner);
+            NM.update_boxlength_and_cornercoordinate(boxlength, down_left_corner);
         }
     }
 
@@ -2436,24 +2450,19 @@ public class FMMMLayout
         }
     }
 
-    double get_average_forcevector_length(Graph G, NodeArray<DPoint> F)
+    double get_average_forcevector_length(FlatGraph L)
     {
         double lengthsum = 0;
-        node v;
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        double[] F = L.F;
+        for (int v = 0; v < L.number_of_nodes; v++)
         {
-            v = i.next();
-            lengthsum += F.get(v).length();
+            lengthsum += Math.sqrt(F[3 * v] * F[3 * v] + F[3 * v + 1] * F[3 * v + 1] + F[3 * v + 2] * F[3 * v + 2]);
         }
-        lengthsum /= G.numberOfNodes();
+        lengthsum /= L.number_of_nodes;
         return lengthsum;
     }
 
-    void prevent_oscilations(
-            Graph G,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> last_node_movement,
-            int iter)
+    void prevent_oscilations(FlatGraph L, int iter)
     {
 
         double pi_times_1_over_6 = 0.52359878;
@@ -2467,116 +2476,107 @@ public class FMMMLayout
         double pi_times_10_over_6 = 10 * pi_times_1_over_6;
         double pi_times_11_over_6 = 11 * pi_times_1_over_6;
 
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
         double fi; //angle in [0,2pi) measured counterclockwise
-        double norm_old, norm_new, quot_old_new;
+        double norm_old, norm_new, quot_old_new, scaling;
+        double[] F = L.F;
+        double[] last_node_movement = L.last_node_movement;
 
         if (iter > 1) //usual case
         {//if1
-            node v;
-            for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+            for (int v = 0; v < L.number_of_nodes; v++)
             {
-                v = i.next();
-                DPoint force_new = PointFactory.INSTANCE.newDPoint(F.get(v));
-                DPoint force_old = PointFactory.INSTANCE.newDPoint(last_node_movement.get(v));
-                norm_new = F.get(v).length();
-                norm_old = last_node_movement.get(v).length();
+                double f_x = F[3 * v], f_y = F[3 * v + 1], f_z = F[3 * v + 2];
+                double o_x = last_node_movement[3 * v], o_y = last_node_movement[3 * v + 1], o_z = last_node_movement[3 * v + 2];
+                norm_new = Math.sqrt(f_x * f_x + f_y * f_y + f_z * f_z);
+                norm_old = Math.sqrt(o_x * o_x + o_y * o_y + o_z * o_z);
                 if ((norm_new > 0) && (norm_old > 0))
                 {//if2
                     quot_old_new = norm_old / norm_new;
+                    scaling = 1.0;
 
                     //prevent oszilations
-                    fi = force_old.angle(force_new);
+                    fi = Math.acos((f_x * o_x + f_y * o_y + f_z * o_z) / (norm_new * norm_old));
                     if (((fi <= pi_times_1_over_6) || (fi >= pi_times_11_over_6)) &&
                             ((norm_new > (norm_old * 2.0))))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 2.0));
+                        scaling = quot_old_new * 2.0;
                     }
                     else if ((fi >= pi_times_1_over_6) && (fi <= pi_times_2_over_6) &&
                             (norm_new > (norm_old * 1.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 1.5));
+                        scaling = quot_old_new * 1.5;
                     }
                     else if ((fi >= pi_times_2_over_6) && (fi <= pi_times_3_over_6) &&
                             (norm_new > (norm_old)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new));
+                        scaling = quot_old_new;
                     }
                     else if ((fi >= pi_times_3_over_6) && (fi <= pi_times_4_over_6) &&
                             (norm_new > (norm_old * 0.66666666)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.66666666));
+                        scaling = quot_old_new * 0.66666666;
                     }
                     else if ((fi >= pi_times_4_over_6) && (fi <= pi_times_5_over_6) &&
                             (norm_new > (norm_old * 0.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.5));
+                        scaling = quot_old_new * 0.5;
                     }
                     else if ((fi >= pi_times_5_over_6) && (fi <= pi_times_7_over_6) &&
                             (norm_new > (norm_old * 0.33333333)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.33333333));
+                        scaling = quot_old_new * 0.33333333;
                     }
                     else if ((fi >= pi_times_7_over_6) && (fi <= pi_times_8_over_6) &&
                             (norm_new > (norm_old * 0.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.5));
+                        scaling = quot_old_new * 0.5;
                     }
                     else if ((fi >= pi_times_8_over_6) && (fi <= pi_times_9_over_6) &&
                             (norm_new > (norm_old * 0.66666666)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.66666666));
+                        scaling = quot_old_new * 0.66666666;
                     }
                     else if ((fi >= pi_times_9_over_6) && (fi <= pi_times_10_over_6) &&
                             (norm_new > (norm_old)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new));
+                        scaling = quot_old_new;
                     }
                     else if ((fi >= pi_times_10_over_6) && (fi <= pi_times_11_over_6) &&
                             (norm_new > (norm_old * 1.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 1.5));
+                        scaling = quot_old_new * 1.5;
                     }
+
+                    F[3 * v] = scaling * f_x;
+                    F[3 * v + 1] = scaling * f_y;
+                    F[3 * v + 2] = scaling * f_z;
                 }//if2
-                last_node_movement.set(v, F.get(v));
             }
         }//if1
-        else if (iter == 1)
-        {
-            init_last_node_movement(G, F, last_node_movement);
-        }
-    }
 
-    void init_last_node_movement(
-            Graph G,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> last_node_movement)
-    {
-        node v;
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
-        {
-            v = i.next();
-            last_node_movement.set(v, PointFactory.INSTANCE.newDPoint(F.get(v)));
-        }
+        //store the force vectors F of this iteration (for iter == 1 this initializes last_node_movement)
+        System.arraycopy(F, 0, last_node_movement, 0, 3 * L.number_of_nodes);
     }
 
-    void adapt_drawing_to_ideal_average_edgelength(
-            Graph G,
-            NodeArray<NodeAttributes> A,
-            EdgeArray<EdgeAttributes> E)
+    void adapt_drawing_to_ideal_average_edgelength(FlatGraph L)
     {
-        edge e;
-        node v;
+        double[] position = L.position;
         double sum_real_edgelength = 0;
         double sum_ideal_edgelength = 0;
         double area_scaling_factor;
-        DPoint new_pos;
 
-        for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
+        //every edge is stored at both of its end nodes, which doubles both sums
+        for (int v = 0; v < L.number_of_nodes; v++)
         {
-            e = i.next();
-            sum_ideal_edgelength += E.get(e).get_length();
-            sum_real_edgelength += (A.get(e.source()).get_position().minus(A.get(e.target()).get_position())).length();
+            for (int i = L.adjacency_begin[v]; i < L.adjacency_begin[v + 1]; i++)
+            {
+                int u = L.adjacency_node[i];
+                double d_x = position[3 * v] - position[3 * u];
+                double d_y = position[3 * v + 1] - position[3 * u + 1];
+                double d_z = position[3 * v + 2] - position[3 * u + 2];
+                sum_ideal_edgelength += L.adjacency_length[i];
+                sum_real_edgelength += Math.sqrt(d_x * d_x + d_y * d_y + d_z * d_z);
+            }
         }
 
         if (sum_real_edgelength == 0) //very very unlike case
@@ -2588,15 +2588,14 @@ public class FMMMLayout
             area_scaling_factor = sum_ideal_edgelength / sum_real_edgelength;
         }
 
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        double scalar = resizingScalar() * area_scaling_factor;
+        for (int i = 0; i < 3 * L.number_of_nodes; i++)
         {
-            v = i.next();
-            new_pos = A.get(v).get_position().scaled(resizingScalar() * area_scaling_factor);
-            A.get(v).set_position(new_pos);
+            position[i] *= scalar;
         }
     }
 
-    void restrict_force_to_comp_box(DPoint force)
+    void restrict_force_to_comp_box(double[] force, boolean three_dimensional)
     {
         double x_min = down_left_corner.getX();
         double x_max = down_left_corner.getX() + boxlength;
@@ -2605,31 +2604,11 @@ public class FMMMLayout
         double z_min = down_left_corner.getZ();
         double z_max = down_left_corner.getZ() + boxlength;
 
-        if (force.getX() < x_min)
-        {
-            force.setX(x_min);
-        }
-        else if (force.getX() > x_max)
-        {
-            force.setX(x_max);
-        }
-
-        if (force.getY() < y_min)
-        {
-            force.setY(y_min);
-        }
-        else if (force.getY() > y_max)
-        {
-            force.setY(y_max);
-        }
-
-        if (force.getZ() < z_min)
-        {
-            force.setZ(z_min);
-        }
-        else if (force.getZ() > z_max)
+        force[0] = Math.max(x_min, Math.min(force[0], x_max));
+        force[1] = Math.max(y_min, Math.min(force[1], y_max));
+        if (three_dimensional)
         {
-            force.setZ(z_max);
+            force[2] = Math.max(z_min, Math.min(force[2], z_max));
         }
     }
 }
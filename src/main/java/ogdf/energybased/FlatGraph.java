@@ -0,0 +1,118 @@
+package ogdf.energybased;
+
+/**
+ * \file \brief Declaration of class FlatGraph.
+ *
+ * A struct-of-arrays copy of the graph (of one level of the multilevel hierarchy) that the force calculation of FMMM
+ * iterates on. The nodes are numbered 0 ... number_of_nodes - 1 in the order of G.nodesIterator(); coordinates and
+ * force vectors are stored as three consecutive doubles per node (z is always 0 in 2D), and the edges as a CSR
+ * adjacency structure holding the ideal length of each edge for both of its end nodes.
+ *
+ * The positions are read from the NodeAttributes once before the iterations and written back once afterwards, so no
+ * DPoint or boxed value is created per node and iteration.
+ */
+import java.util.*;
+import ogdf.basic.*;
+
+public class FlatGraph
+{
+    int number_of_nodes;
+    int number_of_edges;
+    boolean three_dimensional;
+    node[] nodes; //the node of G with the respective index
+    double[] position;
+    double[] F_attr; //attractive forces
+    double[] F_rep; //repulsive forces
+    double[] F; //resulting forces
+    double[] last_node_movement; //needed to avoid oscillations
+    int[] adjacency_begin; //the neighbours of v are adjacency_node[adjacency_begin[v] ... adjacency_begin[v + 1] - 1]
+    int[] adjacency_node;
+    double[] adjacency_length; //ideal edge length of the respective edge
+
+    public FlatGraph(Graph G, NodeArray<NodeAttributes> A, EdgeArray<EdgeAttributes> E)
+    {
+        number_of_nodes = G.numberOfNodes();
+        number_of_edges = G.numberOfEdges();
+        three_dimensional = (PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._3);
+        nodes = new node[number_of_nodes];
+        position = new double[3 * number_of_nodes];
+        F_attr = new double[3 * number_of_nodes];
+        F_rep = new double[3 * number_of_nodes];
+        F = new double[3 * number_of_nodes];
+        last_node_movement = new double[3 * number_of_nodes];
+
+        //node.index() is not necessarily dense, so map it to the position in the node list first
+        int max_node_index = -1;
+        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        {
+            max_node_index = Math.max(max_node_index, i.next().index());
+        }
+        int[] flat_index = new int[max_node_index + 1];
+        int index = 0;
+        for (Iterator<node> i = G.nodesIterator(); i.hasNext(); index++)
+        {
+            node v = i.next();
+            nodes[index] = v;
+            flat_index[v.index()] = index;
+        }
+        import_positions(A);
+
+        //CSR adjacency: count the degrees, then fill both directions of every edge
+        adjacency_begin = new int[number_of_nodes + 1];
+        adjacency_node = new int[2 * number_of_edges];
+        adjacency_length = new double[2 * number_of_edges];
+        for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
+        {
+            edge e = i.next();
+            adjacency_begin[flat_index[e.source().index()] + 1]++;
+            adjacency_begin[flat_index[e.target().index()] + 1]++;
+        }
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            adjacency_begin[v + 1] += adjacency_begin[v];
+        }
+        int[] next = Arrays.copyOf(adjacency_begin, number_of_nodes);
+        for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
+        {
+            edge e = i.next();
+            int u = flat_index[e.source().index()];
+            int v = flat_index[e.target().index()];
+            double length = E.get(e).get_length();
+            adjacency_node[next[u]] = v;
+            adjacency_length[next[u]++] = length;
+            adjacency_node[next[v]] = u;
+            adjacency_length[next[v]++] = length;
+        }
+    }
+
+    public void import_positions(NodeArray<NodeAttributes> A)
+    {
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            NodeAttributes v_attr = A.get(nodes[v]);
+            position[3 * v] = v_attr.get_x();
+            position[3 * v + 1] = v_attr.get_y();
+            position[3 * v + 2] = v_attr.get_z();
+        }
+    }
+
+    public void export_positions(NodeArray<NodeAttributes> A)
+    {
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            A.get(nodes[v]).set_position(position[3 * v], position[3 * v + 1], position[3 * v + 2]);
+        }
+    }
+
+    //Copies the force vectors of a node array into one of the flat force arrays (needed for the planar NMM).
+    public void import_forces(NodeArray<DPoint> F_node_array, double[] forces)
+    {
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            DPoint f = F_node_array.get(nodes[v]);
+            forces[3 * v] = f.getX();
+            forces[3 * v + 1] = f.getY();
+            forces[3 * v + 2] = f.getZ();
+        }
+    }
+}
@@ -32,17 +32,22 @@ package ogdf.energybased;
  */
 
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import ogdf.basic.*;
+import org.BioLayoutExpress3D.CPUParallelism.LayoutComputeService;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 
 class FruchtermanReingold
 {
     final int MULTITHREAD_NODE_COUNT_THRESHOLD = 256;
-    final int NUMBER_OF_THREADS = RUNTIME.availableProcessors();
+    final int BLOCKS_PER_THREAD = 16; //work blocks per thread, so that threads that finish early can help the others
+    final int MAX_ACCUMULATOR_DOUBLES = 1 << 25; //bound for the memory of all per-thread force accumulators
     final boolean PERFORMANCE_METRICS = false;
-    ExecutorService executor;
+
+    //Every thread adds the forces of the pairs it handles to its own accumulator (3 doubles per
+    //node), which are summed into F_rep afterwards; they are kept between iterations.
+    private double[][] thread_F_rep = new double[0][];
 
     //Import updated information of the drawing area.
     public void update_boxlength_and_cornercoordinate(double b_l, DPoint d_l_c)
@@ -70,153 +75,172 @@ class FruchtermanReingold
     public FruchtermanReingold()
     {
         grid_quotient(2);
-        executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
-    }
-
-    public void shutdown()
-    {
-        executor.shutdown();
     }
 
-    private void calculate_repulsive_force_on_node(node n, List<node> others,
-            NodeArray<NodeAttributes> A, NodeArray<DPoint> F_rep)
+    //Adds the repulsive forces between node u and the nodes others[others_begin ... others_end - 1]
+    //to F_rep; positions and forces are stored as x, y, z per node.
+    private void calculate_repulsive_force_on_node(int u, int[] others, int others_begin, int others_end,
+            double[] position, double[] F_rep, boolean three_dimensional, double[] f_rep_u_on_v)
     {
-        DPoint f_rep_u_on_v = PointFactory.INSTANCE.newDPoint();
+        double x_u = position[3 * u], y_u = position[3 * u + 1], z_u = position[3 * u + 2];
 
-        for (node v : others)
+        for (int i = others_begin; i < others_end; i++)
         {
-            DPoint pos_u = A.get(n).get_position();
-            DPoint pos_v = A.get(v).get_position();
-            if (pos_u.equals(pos_v))
+            int v = others[i];
+            double d_x = position[3 * v] - x_u;
+            double d_y = position[3 * v + 1] - y_u;
+            double d_z = position[3 * v + 2] - z_u;
+            if ((d_x == 0.0) && (d_y == 0.0) && (d_z == 0.0))
             {//if2  (Exception handling if two nodes have the same position)
-                pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
+                numexcept.choose_distinct_random_offset_in_radius_epsilon(f_rep_u_on_v, three_dimensional);
+                d_x = -f_rep_u_on_v[0];
+                d_y = -f_rep_u_on_v[1];
+                d_z = -f_rep_u_on_v[2];
             }//if2
-            DPoint vector_v_minus_u = pos_v.minus(pos_u);
-            double norm_v_minus_u = vector_v_minus_u.length();
-            if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
+            double norm_v_minus_u = Math.sqrt(d_x * d_x + d_y * d_y + d_z * d_z);
+            if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v, three_dimensional))
             {
                 double scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
+                f_rep_u_on_v[0] = scalar * d_x;
+                f_rep_u_on_v[1] = scalar * d_y;
+                f_rep_u_on_v[2] = scalar * d_z;
             }
-            F_rep.set(v, F_rep.get(v).plus(f_rep_u_on_v));
-            F_rep.set(n, F_rep.get(n).minus(f_rep_u_on_v));
+            F_rep[3 * v] += f_rep_u_on_v[0];
+            F_rep[3 * v + 1] += f_rep_u_on_v[1];
+            F_rep[3 * v + 2] += f_rep_u_on_v[2];
+            F_rep[3 * u] -= f_rep_u_on_v[0];
+            F_rep[3 * u + 1] -= f_rep_u_on_v[1];
+            F_rep[3 * u + 2] -= f_rep_u_on_v[2];
         }
     }
 
-    public void calculate_exact_repulsive_forces_multithreaded(
-            final Graph G,
-            final List<node> nodes,
-            final List<node> others,
-            final NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+    //The work of one parallel force calculation: the blocks 0 ... number_of_blocks - 1 are
+    //claimed dynamically, and the forces are added to the accumulator of the claiming thread.
+    private interface BlockKernel
     {
-        ArrayList<FutureTask<NodeArray<DPoint>>> futures = new ArrayList<FutureTask<NodeArray<DPoint>>>();
+        public void process(int block, double[] F_rep_thread, double[] f_rep_u_on_v);
+    }
 
-        int total_interactions = ((nodes.size() - 1) * nodes.size()) / 2;
-        int interactions_per_thread = (int) Math.ceil((double) total_interactions / NUMBER_OF_THREADS);
-        int last_node_index = 0;
+    //Runs kernel for all blocks on the threads of the LayoutComputeService and stores the sum of
+    //their forces in F_rep.
+    private void calculate_forces_in_parallel(
+            final int number_of_nodes,
+            final int number_of_blocks,
+            final BlockKernel kernel,
+            final double[] F_rep)
+    {
+        LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
+        final int number_of_accumulators = Math.max(1, Math.min(layoutComputeService.getNumberOfWorkers(),
+                MAX_ACCUMULATOR_DOUBLES / Math.max(1, 3 * number_of_nodes)));
+        final int length = 3 * number_of_nodes;
+        final AtomicInteger next_block = new AtomicInteger();
 
-        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++)
+        if ((thread_F_rep.length < number_of_accumulators) || (thread_F_rep[0].length < length))
         {
-            final int first_node_index = last_node_index;
-
-            int interactions = 0;
-            while (interactions < interactions_per_thread)
-            {
-                interactions += (nodes.size() - (last_node_index + 1));
-                last_node_index++;
-            }
-
-            final int number_of_nodes;
-
-            if ((last_node_index - first_node_index) > nodes.size())
-            {
-                number_of_nodes = nodes.size() - first_node_index;
-            }
-            else
-            {
-                number_of_nodes = last_node_index - first_node_index;
-            }
-
-            futures.add(thread, new FutureTask<NodeArray<DPoint>>(
-                    new Callable<NodeArray<DPoint>>()
-                    {
-                        @Override
-                        public NodeArray<DPoint> call()
-                        {
-                            NodeArray<DPoint> F_rep_thread = new NodeArray<DPoint>(G, Factory.DPOINT);
-
-                            for (int i = first_node_index; i < first_node_index + number_of_nodes; i++)
-                            {
-                                calculate_repulsive_force_on_node(
-                                        nodes.get(i),
-                                        others != null ? others : nodes.subList(i + 1, nodes.size()),
-                                        A, F_rep_thread);
-                            }
-
-                            return F_rep_thread;
-                        }
-                    }));
-            executor.submit(futures.get(thread));
+            thread_F_rep = new double[number_of_accumulators][length];
         }
 
-        // Recombine results from threads
-        try
+        //every accumulator is owned by exactly one index of the range, so no two threads share one
+        layoutComputeService.execute(new LayoutComputeService.RangeKernel()
         {
-            for (node v : nodes)
+            @Override
+            public void process(int startIndex, int endIndex)
             {
-                for (FutureTask<NodeArray<DPoint>> future : futures)
+                double[] f_rep_u_on_v = new double[3];
+                for (int accumulator = startIndex; accumulator < endIndex; accumulator++)
                 {
-                    F_rep.set(v, F_rep.get(v).plus(future.get().get(v)));
+                    double[] F_rep_thread = thread_F_rep[accumulator];
+                    Arrays.fill(F_rep_thread, 0, length, 0.0);
+
+                    int block;
+                    while ((block = next_block.getAndIncrement()) < number_of_blocks)
+                    {
+                        kernel.process(block, F_rep_thread, f_rep_u_on_v);
+                    }
                 }
             }
-        }
-        catch (InterruptedException e)
+        }, number_of_accumulators, 1, null);
+
+        // Recombine results from threads (parallel reduction over the coordinates)
+        int chunk_size = Math.max(3 * MULTITHREAD_NODE_COUNT_THRESHOLD,
+                length / (BLOCKS_PER_THREAD * layoutComputeService.getNumberOfWorkers()));
+        layoutComputeService.execute(new LayoutComputeService.RangeKernel()
         {
-            if (DEBUG_BUILD)
+            @Override
+            public void process(int startIndex, int endIndex)
             {
-                println("calculate_exact_repulsive_forces_multithreaded, InterruptedException " + e.getMessage());
+                System.arraycopy(thread_F_rep[0], startIndex, F_rep, startIndex, endIndex - startIndex);
+                for (int accumulator = 1; accumulator < number_of_accumulators; accumulator++)
+                {
+                    double[] F_rep_thread = thread_F_rep[accumulator];
+                    for (int i = startIndex; i < endIndex; i++)
+                    {
+                        F_rep[i] += F_rep_thread[i];
+                    }
+                }
             }
-        }
-        catch (ExecutionException e)
+        }, length, chunk_size, null);
+    }
+
+    public void calculate_exact_repulsive_forces_multithreaded(
+            final int number_of_nodes,
+            final int[] nodes,
+            final double[] position,
+            double[] F_rep,
+            final boolean three_dimensional)
+    {
+        //node i interacts with the nodes i + 1 ... number_of_nodes - 1, so the blocks at the
+        //beginning are the most expensive ones and are handed out first
+        final int nodes_per_block = Math.max(1, number_of_nodes /
+                (BLOCKS_PER_THREAD * LayoutComputeService.getInstance().getNumberOfWorkers()));
+        int number_of_blocks = (number_of_nodes + nodes_per_block - 1) / nodes_per_block;
+
+        calculate_forces_in_parallel(number_of_nodes, number_of_blocks, new BlockKernel()
         {
-            if (DEBUG_BUILD)
+            @Override
+            public void process(int block, double[] F_rep_thread, double[] f_rep_u_on_v)
             {
-                println("calculate_exact_repulsive_forces_multithreaded, ExecutionException " + e.getMessage());
+                int end = Math.min(number_of_nodes, (block + 1) * nodes_per_block);
+                for (int i = block * nodes_per_block; i < end; i++)
+                {
+                    calculate_repulsive_force_on_node(nodes[i], nodes, i + 1, number_of_nodes,
+                            position, F_rep_thread, three_dimensional, f_rep_u_on_v);
+                }
             }
-        }
+        }, F_rep);
     }
 
+    //Calculates the repulsive forces between all pairs of the number_of_nodes nodes whose
+    //coordinates are stored at position[3 * v ... 3 * v + 2] and stores them in F_rep.
     public void calculate_exact_repulsive_forces(
-            Graph G,
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+            double[] position,
+            int number_of_nodes,
+            double[] F_rep)
     {
-        List<node> array_of_the_nodes = new ArrayList<node>();
+        boolean three_dimensional = (PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._3);
+        int[] nodes = new int[number_of_nodes];
 
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        for (int v = 0; v < number_of_nodes; v++)
         {
-            node v = iter.next();
-            F_rep.set(v, PointFactory.INSTANCE.newDPoint());
-            array_of_the_nodes.add(v);
+            nodes[v] = v;
         }
+        Arrays.fill(F_rep, 0, 3 * number_of_nodes, 0.0);
 
-        int number_of_nodes = array_of_the_nodes.size();
         long startTime = System.nanoTime();
 
-        if (number_of_nodes < MULTITHREAD_NODE_COUNT_THRESHOLD || NUMBER_OF_THREADS == 1)
+        if (number_of_nodes < MULTITHREAD_NODE_COUNT_THRESHOLD ||
+                LayoutComputeService.getInstance().getNumberOfWorkers() == 1)
         {
+            double[] f_rep_u_on_v = new double[3];
             for (int i = 0; i < number_of_nodes; i++)
             {
-                calculate_repulsive_force_on_node(
-                        array_of_the_nodes.get(i),
-                        array_of_the_nodes.subList(i + 1, number_of_nodes),
-                        A, F_rep);
+                calculate_repulsive_force_on_node(nodes[i], nodes, i + 1, number_of_nodes,
+                        position, F_rep, three_dimensional, f_rep_u_on_v);
             }
         }
         else
         {
-            calculate_exact_repulsive_forces_multithreaded(G, array_of_the_nodes, null, A, F_rep);
+            calculate_exact_repulsive_forces_multithreaded(number_of_nodes, nodes, position, F_rep, three_dimensional);
         }
 
         if (DEBUG_BUILD && PERFORMANCE_METRICS)
@@ -226,229 +250,178 @@ class FruchtermanReingold
         }
     }
 
+    //The nodes of grid cell c are cell_nodes[cell_begin[c] ... cell_begin[c + 1] - 1], where the
+    //cell (i, j, k) has the index (i * j_num_grid_cells + j) * k_num_grid_cells + k.
     public void calculate_approx_repulsive_forces_for_cell(
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep,
-            List<node>[][][] contained_nodes, int i, int j, int k)
+            double[] position,
+            double[] F_rep,
+            int[] cell_begin,
+            int[] cell_nodes,
+            int i_num_grid_cells, int j_num_grid_cells, int k_num_grid_cells,
+            int i, int j, int k,
+            boolean three_dimensional,
+            double[] f_rep_u_on_v)
     {
-        int length = contained_nodes[i][j][k].size();
-        if (contained_nodes[i][j][k] == null || length == 0)
+        int cell = (i * j_num_grid_cells + j) * k_num_grid_cells + k;
+        int begin = cell_begin[cell];
+        int end = cell_begin[cell + 1];
+        if (begin == end)
         {
             // Should never happen
             return;
         }
 
-        int i_num_grid_cells = contained_nodes.length;
-        int j_num_grid_cells = contained_nodes[0].length;
-        int k_num_grid_cells = contained_nodes[0][0].length;
-
         //step1: calculate forces inside contained_nodes(i,j,k)
-        List<node> nodearray_i_j_k = new ArrayList<node>();
-        for (node n : contained_nodes[i][j][k])
+        for (int u = begin; u < end; u++)
         {
-            nodearray_i_j_k.add(n);
+            calculate_repulsive_force_on_node(cell_nodes[u], cell_nodes, u + 1, end,
+                    position, F_rep, three_dimensional, f_rep_u_on_v);
         }
 
-        for (int uIndex = 0; uIndex < length; uIndex++)
+        //step 2: calculated forces to nodes in neighbour boxes, forgetting
+        //the neighbour boxes that already had access to this box
+        for (int act_i = i - 1; act_i <= i + 1; act_i++)
         {
-            calculate_repulsive_force_on_node(
-                    nodearray_i_j_k.get(uIndex),
-                    nodearray_i_j_k.subList(uIndex + 1, length),
-                    A, F_rep);
-        }
-
-        //step 2: calculated forces to nodes in neighbour boxes
-
-        //find_neighbour_boxes
-
-        List<IPoint> neighbour_boxes = new ArrayList<IPoint>();
-        for (int i_n = i - 1; i_n <= i + 1; i_n++)
-        {
-            for (int j_n = j - 1; j_n <= j + 1; j_n++)
+            for (int act_j = j - 1; act_j <= j + 1; act_j++)
             {
-                for (int k_n = k - 1; k_n <= k + 1; k_n++)
+                for (int act_k = k - 1; act_k <= k + 1; act_k++)
                 {
-                    if ((i_n >= 0) && (j_n >= 0) && (k_n >= 0) &&
-                            (i_n < i_num_grid_cells) && (j_n < j_num_grid_cells) && (k_n < k_num_grid_cells))
+                    if ((act_i < 0) || (act_j < 0) || (act_k < 0) ||
+                            (act_i >= i_num_grid_cells) || (act_j >= j_num_grid_cells) ||
+                            (act_k >= k_num_grid_cells) || ((act_i == i) && (act_j == j) && (act_k == k)))
                     {
-                        IPoint neighbour = PointFactory.INSTANCE.newIPoint();
-                        neighbour.setX(i_n);
-                        neighbour.setY(j_n);
-                        neighbour.setZ(k_n);
+                        continue;
+                    }
 
-                        if ((i_n != i) || (j_n != j) || (k_n != k))
+                    boolean top = (act_k == k - 1 && !(act_i == i - 1 && act_j == j - 1));
+                    boolean middle = (act_k == k && (act_j == j + 1 || (act_j == j && act_i == i + 1)));
+                    boolean bottom = (act_k == k + 1 && (act_i == i + 1 && act_j == j + 1));
+
+                    int act_cell = (act_i * j_num_grid_cells + act_j) * k_num_grid_cells + act_k;
+                    if ((top || middle || bottom) && (cell_begin[act_cell] < cell_begin[act_cell + 1]))
+                    {//if1
+                        for (int u = begin; u < end; u++)
                         {
-                            neighbour_boxes.add(neighbour);
+                            calculate_repulsive_force_on_node(cell_nodes[u], cell_nodes,
+                                    cell_begin[act_cell], cell_begin[act_cell + 1],
+                                    position, F_rep, three_dimensional, f_rep_u_on_v);
                         }
-                    }
+                    }//if1
                 }
             }
         }
-
-
-        //forget neighbour_boxes that already had access to this box
-        for (IPoint act_neighbour_box_it : neighbour_boxes)
-        {//forall
-            int act_i = act_neighbour_box_it.getX();
-            int act_j = act_neighbour_box_it.getY();
-            int act_k = act_neighbour_box_it.getZ();
-
-            boolean top = (act_k == k - 1 && !(act_i == i - 1 && act_j == j - 1));
-            boolean middle = (act_k == k && (act_j == j + 1 || (act_j == j && act_i == i + 1)));
-            boolean bottom = (act_k == k + 1 && (act_i == i + 1 && act_j == j + 1));
-
-            if ((top || middle || bottom) &&
-                    (contained_nodes[act_i][act_j][act_k] != null &&
-                    contained_nodes[act_i][act_j][act_k].size() > 0))
-            {//if1
-                for (node v_it : contained_nodes[i][j][k])
-                {
-                    calculate_repulsive_force_on_node(
-                            v_it,
-                            contained_nodes[act_i][act_j][act_k],
-                            A, F_rep);
-                }
-            }//if1
-        }//forall
     }
 
     public void calculate_approx_repulsive_forces(
-            final Graph G,
-            final NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+            final double[] position,
+            final int number_of_nodes,
+            double[] F_rep)
     {
         //GRID algorithm by Fruchterman & Reingold
 
-        int i, j, k;
+        final boolean three_dimensional = (PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._3);
+        LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
 
-        //init F_rep
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
-        {
-            node v = iter.next();
-            F_rep.set(v, PointFactory.INSTANCE.newDPoint());
-        }
+        //init max_gridindex and sort the nodes by grid cell (counting sort)
 
-        //init max_gridindex and set contained_nodes;
-
-        max_gridindex = (int) (Math.sqrt((double) (G.numberOfNodes())) / grid_quotient());
+        max_gridindex = (int) (Math.sqrt((double) (number_of_nodes)) / grid_quotient());
         max_gridindex = ((max_gridindex > 0) ? max_gridindex : 1);
-        int i_num_grid_cells = max_gridindex;
-        int j_num_grid_cells = max_gridindex;
-        int k_num_grid_cells = PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._2 ? 1 : max_gridindex;
-
-        @SuppressWarnings("unchecked")
-        final List<node>[][][] contained_nodes = new ArrayList[i_num_grid_cells][j_num_grid_cells][k_num_grid_cells];
-        List<Integer[]> non_empty_cell_list = new ArrayList<Integer[]>();
-
-        double gridboxlength = boxlength / max_gridindex;
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        final int i_num_grid_cells = max_gridindex;
+        final int j_num_grid_cells = max_gridindex;
+        final int k_num_grid_cells = three_dimensional ? max_gridindex : 1;
+        int number_of_cells = i_num_grid_cells * j_num_grid_cells * k_num_grid_cells;
+
+        final int[] cell_begin = new int[number_of_cells + 1];
+        final int[] cell_nodes = new int[number_of_nodes];
+        final int[] cell_of_node = new int[number_of_nodes];
+
+        final double gridboxlength = boxlength / max_gridindex;
+        final double x_0 = down_left_corner.getX(), y_0 = down_left_corner.getY(), z_0 = down_left_corner.getZ();
+        layoutComputeService.execute(new LayoutComputeService.RangeKernel()
         {
-            node v = iter.next();
-            DPoint offset = A.get(v).get_position().minus(down_left_corner);
-            int x_index = (int) (offset.getX() / gridboxlength);
-            int y_index = (int) (offset.getY() / gridboxlength);
-            int z_index = (int) (offset.getZ() / gridboxlength);
-
-            if (contained_nodes[x_index][y_index][z_index] == null)
+            @Override
+            public void process(int startIndex, int endIndex)
             {
-                contained_nodes[x_index][y_index][z_index] = new ArrayList<node>();
-                non_empty_cell_list.add(new Integer[] {x_index, y_index, z_index});
+                for (int v = startIndex; v < endIndex; v++)
+                {
+                    int x_index = grid_index(position[3 * v] - x_0, gridboxlength, i_num_grid_cells);
+                    int y_index = grid_index(position[3 * v + 1] - y_0, gridboxlength, j_num_grid_cells);
+                    int z_index = grid_index(position[3 * v + 2] - z_0, gridboxlength, k_num_grid_cells);
+                    cell_of_node[v] = (x_index * j_num_grid_cells + y_index) * k_num_grid_cells + z_index;
+                }
             }
-            contained_nodes[x_index][y_index][z_index].add(v);
-        }
-
-        @SuppressWarnings("unchecked")
-        final List<Integer[]>[] per_thread_cell_list = new ArrayList[NUMBER_OF_THREADS];
-        int cells_per_thread = (int) Math.ceil((double) non_empty_cell_list.size() / NUMBER_OF_THREADS);
-        int thread = 0;
+        }, number_of_nodes, Math.max(MULTITHREAD_NODE_COUNT_THRESHOLD,
+                number_of_nodes / (BLOCKS_PER_THREAD * layoutComputeService.getNumberOfWorkers())), null);
 
-        // Distribute cells over threads
-        for (Integer[] cell : non_empty_cell_list)
+        for (int v = 0; v < number_of_nodes; v++)
         {
-            if (per_thread_cell_list[thread] == null)
-            {
-                per_thread_cell_list[thread] = new ArrayList<Integer[]>();
-            }
-
-            per_thread_cell_list[thread].add(new Integer[]
-                    {
-                        cell[0], cell[1], cell[2]
-                    });
+            cell_begin[cell_of_node[v] + 1]++;
+        }
 
-            if (per_thread_cell_list[thread].size() >= cells_per_thread)
+        int number_of_non_empty_cells = 0;
+        for (int cell = 0; cell < number_of_cells; cell++)
+        {
+            if (cell_begin[cell + 1] > 0)
             {
-                thread++;
+                number_of_non_empty_cells++;
             }
+            cell_begin[cell + 1] += cell_begin[cell];
         }
 
-        long startTime = System.nanoTime();
-
-        ArrayList<FutureTask<NodeArray<DPoint>>> futures = new ArrayList<FutureTask<NodeArray<DPoint>>>();
-
-        //force calculation
-        for (thread = 0; thread < NUMBER_OF_THREADS; thread++)
+        final int[] non_empty_cells = new int[number_of_non_empty_cells];
+        for (int cell = 0, i = 0; cell < number_of_cells; cell++)
         {
-            final List<Integer[]> cell_list = per_thread_cell_list[thread];
-
-            if (cell_list == null)
+            if (cell_begin[cell] < cell_begin[cell + 1])
             {
-                continue;
+                non_empty_cells[i++] = cell;
             }
+        }
 
-            futures.add(thread, new FutureTask<NodeArray<DPoint>>(
-                    new Callable<NodeArray<DPoint>>()
-                    {
-                        @Override
-                        public NodeArray<DPoint> call()
-                        {
-                            NodeArray<DPoint> F_rep_thread = new NodeArray<DPoint>(G, Factory.DPOINT);
+        int[] next = Arrays.copyOf(cell_begin, number_of_cells);
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            cell_nodes[next[cell_of_node[v]]++] = v;
+        }
 
-                            for (Integer[] cell : cell_list)
-                            {
-                                calculate_approx_repulsive_forces_for_cell(A, F_rep_thread,
-                                        contained_nodes, cell[0], cell[1], cell[2]);
-                            }
+        long startTime = System.nanoTime();
 
-                            return F_rep_thread;
-                        }
-                    }));
-            executor.submit(futures.get(thread));
-        }
+        //force calculation
+        final int cells_per_block = Math.max(1, number_of_non_empty_cells /
+                (BLOCKS_PER_THREAD * layoutComputeService.getNumberOfWorkers()));
+        int number_of_blocks = (number_of_non_empty_cells + cells_per_block - 1) / cells_per_block;
 
-        // Recombine results from threads
-        try
+        calculate_forces_in_parallel(number_of_nodes, number_of_blocks, new BlockKernel()
         {
-            for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+            @Override
+            public void process(int block, double[] F_rep_thread, double[] f_rep_u_on_v)
             {
-                node v = iter.next();
-                for (FutureTask<NodeArray<DPoint>> future : futures)
+                int end = Math.min(non_empty_cells.length, (block + 1) * cells_per_block);
+                for (int c = block * cells_per_block; c < end; c++)
                 {
-                    F_rep.set(v, F_rep.get(v).plus(future.get().get(v)));
+                    int cell = non_empty_cells[c];
+                    int k = cell % k_num_grid_cells;
+                    int j = (cell / k_num_grid_cells) % j_num_grid_cells;
+                    int i = cell / (k_num_grid_cells * j_num_grid_cells);
+                    calculate_approx_repulsive_forces_for_cell(position, F_rep_thread,
+                            cell_begin, cell_nodes, i_num_grid_cells, j_num_grid_cells, k_num_grid_cells,
+                            i, j, k, three_dimensional, f_rep_u_on_v);
                 }
             }
+        }, F_rep);
 
-            if (DEBUG_BUILD && PERFORMANCE_METRICS)
-            {
-                println("calculate_approx_repulsive_forces " + non_empty_cell_list.size() + " cells, " +
-                        ((double)(System.nanoTime() - startTime) / 1000000000.0) + " seconds");
-            }
-        }
-        catch (InterruptedException e)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("calculate_approx_repulsive_forces, InterruptedException " + e.getMessage());
-            }
-        }
-        catch (ExecutionException e)
+        if (DEBUG_BUILD && PERFORMANCE_METRICS)
         {
-            if (DEBUG_BUILD)
-            {
-                println("calculate_approx_repulsive_forces, ExecutionException " + e.getMessage());
-            }
+            println("calculate_approx_repulsive_forces " + number_of_non_empty_cells + " cells, " +
+                    ((double)(System.nanoTime() - startTime) / 1000000000.0) + " seconds");
         }
     }
 
+    private static int grid_index(double offset, double gridboxlength, int num_grid_cells)
+    {
+        int index = (int) (offset / gridboxlength);
+        return Math.max(0, Math.min(index, num_grid_cells - 1));
+    }
+
     public void make_initialisations(double bl, DPoint d_l_c, int grid_quot)
     {
         grid_quotient(grid_quot);
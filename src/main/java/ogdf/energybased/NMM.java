@@ -42,7 +42,7 @@ package ogdf.energybased;
  * \see  http://www.gnu.org/copyleft/gpl.html
  ***************************************************************/
 
-/*import java.util.*;
+import java.util.*;
 import ogdf.basic.*;
 import org.BioLayoutExpress3D.Utils.Complex;
 import org.BioLayoutExpress3D.Utils.ref;
@@ -51,7 +51,7 @@ import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 
 public class NMM
 {
-    final double MIN_BOX_LENGTH = 1e-300;
+    static final double MIN_BOX_LENGTH = 1e-300;
     int MIN_NODE_NUMBER; //The minimum number of nodes for which the forces are
     //calculated using NMM (for lower values the exact
     //calculation is used).
@@ -71,16 +71,18 @@ public class NMM
     List<DPoint2> rep_forces;	//stores the rep. forces of the last iteration
     //(needed for error calculation)
     Random random;
+    OctreeNM octree; //replaces the quadtree and the planar expansions in 3D
+    int[] octree_stack;
 
 
-    public NMM(Random random)
+    public NMM(Random random, FruchtermanReingold exactMethod)
     {
         this.random = random;
 
         //set MIN_NODE_NUMBER and using_NMM
         MIN_NODE_NUMBER = 175;
         using_NMM = true;
-        ExactMethod = new FruchtermanReingold();
+        ExactMethod = exactMethod; //shared with FMMMLayout, so that no extra thread pool is created
 
         //setting predefined parameters
         precision(4);
@@ -90,31 +92,40 @@ public class NMM
         find_sm_cell(FMMMLayout.SmallestCellFinding.scfIteratively);
     }
 
+    //Stores the repulsive forces of the nodes of L (a flat copy of G and A) in L.F_rep.
     void calculate_repulsive_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+            FlatGraph L)
     {
-        if (using_NMM) //use NewMultipoleMethod
+        if (using_NMM && L.three_dimensional)
         {
+            calculate_repulsive_forces_by_octree(L);
+        }
+        else if (using_NMM) //use NewMultipoleMethod
+        {
+            //the quadtree and the expansions still work on the node attributes
+            NodeArray<DPoint> F_rep = new NodeArray<DPoint>(G, Factory.DPOINT);
+            L.export_positions(A);
             calculate_repulsive_forces_by_NMM(G, A, F_rep);
+            L.import_forces(F_rep, L.F_rep);
         }
         else //used the exact naive way
         {
-            calculate_repulsive_forces_by_exact_method(G, A, F_rep);
+            calculate_repulsive_forces_by_exact_method(L);
         }
     }
 
     public void calculate_repulsive_forces_by_NMM(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_rep)
     {
         QuadTreeNM T = new QuadTreeNM();
         node v;
-        NodeArray<DPoint2> F_direct = new NodeArray<DPoint2>(G, Factory.DPOINT);
-        NodeArray<DPoint2> F_local_exp = new NodeArray<DPoint2>(G, Factory.DPOINT);
-        NodeArray<DPoint2> F_multipole_exp = new NodeArray<DPoint2>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_direct = new NodeArray<DPoint>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_local_exp = new NodeArray<DPoint>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_multipole_exp = new NodeArray<DPoint>(G, Factory.DPOINT);
         List<QuadTreeNodeNM> quad_tree_leaves;
 
         //initializations
@@ -122,9 +133,9 @@ public class NMM
         for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
         {
             v = i.next();
-            F_direct.set(v, new DPoint2());
-            F_local_exp.set(v, new DPoint2());
-            F_multipole_exp.set(v, new DPoint2());
+            F_direct.set(v, PointFactory.INSTANCE.newDPoint());
+            F_local_exp.set(v, PointFactory.INSTANCE.newDPoint());
+            F_multipole_exp.set(v, PointFactory.INSTANCE.newDPoint());
         }
 
         quad_tree_leaves = new ArrayList<QuadTreeNodeNM>();
@@ -147,18 +158,42 @@ public class NMM
         delete_red_quad_tree_and_count_treenodes(T);
     }
 
-    void calculate_repulsive_forces_by_exact_method(
-            Graph G,
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+    //The 3D counterpart of calculate_repulsive_forces_by_NMM: the same bucket size, and an
+    //opening criterion theta = 2^(-p/2), so that the theta^2 error of the monopoles equals
+    //the 2^(-p) error bound of the p-term expansions. The precision is clamped to at least 2,
+    //so theta <= 0.5: a cell is then only accepted at more than twice its boxlength from
+    //the particle, which excludes the cells containing the particle itself (no self-force).
+    void calculate_repulsive_forces_by_octree(FlatGraph L)
+    {
+        double theta = Math.pow(2.0, -0.5 * Math.max(precision(), 2));
+        double[] force = new double[3];
+
+        if (octree == null)
+        {
+            octree = new OctreeNM();
+            octree_stack = octree.create_traversal_stack();
+        }
+
+        octree.build(L.position, L.number_of_nodes, particles_in_leaves());
+
+        for (int v = 0; v < L.number_of_nodes; v++)
+        {
+            octree.calculate_repulsive_force(L.position, v, theta, octree_stack, force);
+            L.F_rep[3 * v] = force[0];
+            L.F_rep[3 * v + 1] = force[1];
+            L.F_rep[3 * v + 2] = force[2];
+        }
+    }
+
+    void calculate_repulsive_forces_by_exact_method(FlatGraph L)
     {
-        ExactMethod.calculate_exact_repulsive_forces(G, A, F_rep);
+        ExactMethod.calculate_exact_repulsive_forces(L.position, L.number_of_nodes, L.F_rep);
     }
 
     void make_initialisations(
             Graph G,
             double bl,
-            DPoint2 d_l_c,
+            DPoint d_l_c,
             int p_i_l,
             int p,
             FMMMLayout.ReducedTreeConstruction t_c_w,
@@ -172,7 +207,7 @@ public class NMM
             precision(p);
             tree_construction_way(t_c_w);
             find_sm_cell(f_s_c);
-            down_left_corner = new DPoint2(d_l_c); //Export this two values from FMMM
+            down_left_corner = new DPoint2(d_l_c.getX(), d_l_c.getY()); //Export this two values from FMMM
             boxlength = bl;
             init_binko(2 * precision());
             init_power_of_2_array();
@@ -184,12 +219,12 @@ public class NMM
         }
     }
 
-    void update_boxlength_and_cornercoordinate(double b_l, DPoint2 d_l_c)
+    void update_boxlength_and_cornercoordinate(double b_l, DPoint d_l_c)
     {
         if (using_NMM)
         {
             boxlength = b_l;
-            down_left_corner = new DPoint2(d_l_c);
+            down_left_corner = new DPoint2(d_l_c.getX(), d_l_c.getY());
         }
         else
         {
@@ -248,8 +283,6 @@ public class NMM
     {
         List<QuadTreeNodeNM> act_leaf_List, new_leaf_List;
         List<QuadTreeNodeNM> act_leaf_List_ptr, new_leaf_List_ptr, help_ptr;
-        List<ParticleInfo> act_x_List_copy = new ArrayList<ParticleInfo>();
-        List<ParticleInfo> act_y_List_copy = new ArrayList<ParticleInfo>();
         QuadTreeNodeNM act_node_ptr;
 
         build_up_root_node(G, A, T);
@@ -264,11 +297,9 @@ public class NMM
         {
             while (!act_leaf_List_ptr.isEmpty())
             {
-                act_node_ptr = act_leaf_List_ptr.remove(0);
-                make_copy_and_init_Lists(act_node_ptr.get_x_List_ptr(), act_x_List_copy,
-                        act_node_ptr.get_y_List_ptr(), act_y_List_copy);
+                act_node_ptr = act_leaf_List_ptr.remove(act_leaf_List_ptr.size() - 1);
                 T.set_act_ptr(act_node_ptr);
-                decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List_ptr);
+                decompose_subtreenode(T, new_leaf_List_ptr);
             }
             help_ptr = act_leaf_List_ptr;
             act_leaf_List_ptr = new_leaf_List_ptr;
@@ -276,60 +307,6 @@ public class NMM
         }
     }
 
-    void make_copy_and_init_Lists(
-            List<ParticleInfo> L_x_orig,
-            List<ParticleInfo> L_x_copy,
-            List<ParticleInfo> L_y_orig,
-            List<ParticleInfo> L_y_copy)
-    {
-        ListIterator<ParticleInfo> origin_x_item, copy_x_item, origin_y_item, copy_y_item;
-        ParticleInfo P_x_orig, P_y_orig, P_x_copy, P_y_copy;
-        boolean L_y_orig_traversed = false;
-
-        L_x_copy.clear();
-        L_y_copy.clear();
-
-        origin_x_item = L_x_orig.listIterator();
-        while (origin_x_item.hasNext())
-        {
-            //reset values
-            P_x_orig = origin_x_item.next();
-            P_x_orig.set_subList_ptr(null); //clear subList_ptr
-            P_x_orig.set_copy_item(null);   //clear copy_item
-            P_x_orig.unmark(); //unmark this element
-            P_x_orig.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-            //update L_x_copy
-            P_x_copy = new ParticleInfo(P_x_orig);
-            L_x_copy.add(P_x_copy);
-
-            //update L_x_orig
-            P_x_orig.set_copy_item(P_x_copy);
-        }
-
-        origin_y_item = L_y_orig.listIterator();
-        while (origin_y_item.hasNext())
-        {
-            //reset values
-            P_y_orig = origin_y_item.next();
-            P_y_orig.set_subList_ptr(null); //clear subList_ptr
-            P_y_orig.set_copy_item(null);   //clear copy_item
-            P_y_orig.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-            P_y_orig.unmark(); //unmark this element
-
-            //update L_x(y)_copy
-            P_y_copy = new ParticleInfo(P_y_orig);
-            ParticleInfo new_cross_ref_item = P_y_orig.get_cross_ref_item().get_copy_item();
-            P_y_copy.set_cross_ref_item(new_cross_ref_item);
-            L_y_copy.add(P_y_copy);
-            new_cross_ref_item.set_cross_ref_item(P_y_copy);
-            P_x_copy = new ParticleInfo(new_cross_ref_item);
-
-            //update L_y_orig
-            P_y_orig.set_copy_item(P_y_copy);
-        }
-    }
-
     void build_up_root_node(
             Graph G,
             NodeArray<NodeAttributes> A,
@@ -390,176 +367,141 @@ public class NMM
         }
     }
 
-
+    //Follows the path through the quadrants that contain the most particles down to a
+    //leaf. The sorted L_x and L_y Lists of the actual node are split into the sorted
+    //Lists of its four quadrants in one linear pass each (the order of the particles is
+    //preserved); the quadrants that are not on the path are appended to new_leaf_List and
+    //decomposed later.
     void decompose_subtreenode(
             QuadTreeNM T,
-            List<ParticleInfo> act_x_List_copy,
-            List<ParticleInfo> act_y_List_copy,
             List<QuadTreeNodeNM> new_leaf_List)
     {
         QuadTreeNodeNM act_ptr = T.get_act_ptr();
         int act_particle_number = act_ptr.get_x_List_ptr().size();
         double x_min, x_max, y_min, y_max;
-        ref<List<ParticleInfo>> L_x_l_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_r_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_lb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_rb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_lt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_rt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_l_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_r_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_lb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_rb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_lt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_rt_ptr = new ref<List<ParticleInfo>>(null);
 
         ref<Double> x_min_ref = new ref<Double>();
         ref<Double> x_max_ref = new ref<Double>();
         ref<Double> y_min_ref = new ref<Double>();
         ref<Double> y_max_ref = new ref<Double>();
-        calculate_boundaries_of_act_node(T.get_act_ptr(), x_min_ref, x_max_ref, y_min_ref, y_max_ref);
+        calculate_boundaries_of_act_node(act_ptr, x_min_ref, x_max_ref, y_min_ref, y_max_ref);
         x_min = x_min_ref.get();
         x_max = x_max_ref.get();
         y_min = y_min_ref.get();
         y_max = y_max_ref.get();
 
-        if (find_sm_cell() == FMMMLayout.SmallestCellFinding.scfIteratively)
-        {
-            find_small_cell_iteratively(T.get_act_ptr(), x_min, x_max, y_min, y_max);
-        }
-        else //find_small_cell == FMMMLayout.scfAluru
-        {
-            find_small_cell_iteratively(T.get_act_ptr(), x_min, x_max, y_min, y_max);
-        }
+        find_small_cell_iteratively(act_ptr, x_min, x_max, y_min, y_max);
 
         if ((act_particle_number > particles_in_leaves()) &&
                 ((x_max - x_min >= MIN_BOX_LENGTH) || (y_max - y_min >= MIN_BOX_LENGTH)))
         {//if0
+            double Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
+            double x_mid_coord = act_ptr.get_Sm_downleftcorner().m_x + Sm_boxlength_half;
+            double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + Sm_boxlength_half;
 
-            //recursive calls for the half of the quad that contains the most particles
-
-            split_in_x_direction(act_ptr, L_x_l_ptr, L_y_l_ptr,
-                    L_x_r_ptr, L_y_r_ptr);
-
-            if (L_x_r_ptr.get() == null ||
-                    (L_x_l_ptr.get() != null && L_x_l_ptr.get().size() > L_x_r_ptr.get().size()))
-            {//if1 left half contains more particles
-                split_in_y_direction(act_ptr, L_x_lb_ptr,
-                        L_y_lb_ptr, L_x_lt_ptr, L_y_lt_ptr);
-                if ((L_x_lt_ptr.get() == null) ||
-                        (L_x_lb_ptr.get() != null && L_x_lb_ptr.get().size() > L_x_lt_ptr.get().size()))
-                {//if2
-                    T.create_new_lb_child(L_x_lb_ptr.get(), L_y_lb_ptr.get());
-                    T.go_to_lb_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//if2
-                else //L_x_lt_ptr.get() != null &&  L_x_lb_ptr.get().size() <= L_x_lt_ptr.get().size()
-                {//else1
-                    T.create_new_lt_child(L_x_lt_ptr.get(), L_y_lt_ptr.get());
-                    T.go_to_lt_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//else1
-            }//if1
-            else //L_x_r_ptr.get() != null && (L_x_l_ptr.get().size() <= L_x_r_ptr.get().size())
-            {//else2 right half contains more particles
-                split_in_y_direction(act_ptr, L_x_rb_ptr,
-                        L_y_rb_ptr, L_x_rt_ptr, L_y_rt_ptr);
-                if ((L_x_rt_ptr.get() == null) ||
-                        (L_x_rb_ptr.get() != null && L_x_rb_ptr.get().size() > L_x_rt_ptr.get().size()))
-                {//if3
-                    T.create_new_rb_child(L_x_rb_ptr.get(), L_y_rb_ptr.get());
-                    T.go_to_rb_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//if3
-                else// L_x_rt_ptr.get() != null && L_x_rb_ptr.get().size() <= L_x_rt_ptr.get().size()
-                {//else3
-                    T.create_new_rt_child(L_x_rt_ptr.get(), L_y_rt_ptr.get());
-                    T.go_to_rt_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//else3
-            }//else2
-
-            //build up the rest of the quad-subLists
-
-            if (L_x_l_ptr.get() != null && L_x_lb_ptr.get() == null && L_x_lt_ptr.get() == null &&
-                    !act_ptr.child_lb_exists() && !act_ptr.child_lt_exists())
-            {
-                split_in_y_direction(act_ptr, L_x_l_ptr, L_x_lb_ptr, L_x_lt_ptr, L_y_l_ptr,
-                        L_y_lb_ptr, L_y_lt_ptr);
-            }
-            else if (L_x_r_ptr.get() != null && L_x_rb_ptr.get() == null && L_x_rt_ptr.get() == null &&
-                    !act_ptr.child_rb_exists() && !act_ptr.child_rt_exists())
-            {
-                split_in_y_direction(act_ptr, L_x_r_ptr, L_x_rb_ptr, L_x_rt_ptr, L_y_r_ptr,
-                        L_y_rb_ptr, L_y_rt_ptr);
-            }
-
-            //create rest of the childnodes
-            if ((!act_ptr.child_lb_exists()) && (L_x_lb_ptr.get() != null))
-            {
-                T.create_new_lb_child(L_x_lb_ptr.get(), L_y_lb_ptr.get());
-                T.go_to_lb_child();
-                new_leaf_List.add(T.get_act_ptr());
-                T.go_to_father();
+            //index 0 = lb, 1 = rb, 2 = lt, 3 = rt
+            @SuppressWarnings("unchecked")
+            List<ParticleInfo>[] L_x_quad = new List[4];
+            @SuppressWarnings("unchecked")
+            List<ParticleInfo>[] L_y_quad = new List[4];
+
+            for (ParticleInfo P_x : act_ptr.get_x_List_ptr())
+            {
+                int quad = quadrant_index(P_x.get_x_y_coord(), P_x.get_cross_ref_item().get_x_y_coord(),
+                        x_mid_coord, y_mid_coord);
+                if (L_x_quad[quad] == null)
+                {
+                    L_x_quad[quad] = new ArrayList<ParticleInfo>();
+                }
+                L_x_quad[quad].add(P_x);
             }
-            if ((!act_ptr.child_lt_exists()) && (L_x_lt_ptr.get() != null))
+
+            for (ParticleInfo P_y : act_ptr.get_y_List_ptr())
             {
-                T.create_new_lt_child(L_x_lt_ptr.get(), L_y_lt_ptr.get());
-                T.go_to_lt_child();
-                new_leaf_List.add(T.get_act_ptr());
-                T.go_to_father();
+                int quad = quadrant_index(P_y.get_cross_ref_item().get_x_y_coord(), P_y.get_x_y_coord(),
+                        x_mid_coord, y_mid_coord);
+                if (L_y_quad[quad] == null)
+                {
+                    L_y_quad[quad] = new ArrayList<ParticleInfo>();
+                }
+                L_y_quad[quad].add(P_y);
             }
-            if ((!act_ptr.child_rb_exists()) && (L_x_rb_ptr.get() != null))
+
+            //the Lists are now owned by the child nodes
+            act_ptr.set_x_List_ptr(null);
+            act_ptr.set_y_List_ptr(null);
+
+            int largest_quad = -1;
+            for (int quad = 0; quad < 4; quad++)
             {
-                T.create_new_rb_child(L_x_rb_ptr.get(), L_y_rb_ptr.get());
-                T.go_to_rb_child();
-                new_leaf_List.add(T.get_act_ptr());
-                T.go_to_father();
+                if ((L_x_quad[quad] != null) &&
+                        ((largest_quad == -1) || (L_x_quad[quad].size() > L_x_quad[largest_quad].size())))
+                {
+                    largest_quad = quad;
+                }
             }
-            if ((!act_ptr.child_rt_exists()) && (L_x_rt_ptr.get() != null))
+
+            for (int quad = 0; quad < 4; quad++)
             {
-                T.create_new_rt_child(L_x_rt_ptr.get(), L_y_rt_ptr.get());
-                T.go_to_rt_child();
-                new_leaf_List.add(T.get_act_ptr());
+                if (L_x_quad[quad] == null)
+                {
+                    continue;
+                }
+
+                switch (quad)
+                {
+                    case 0:
+                        T.create_new_lb_child(L_x_quad[quad], L_y_quad[quad]);
+                        T.go_to_lb_child();
+                        break;
+                    case 1:
+                        T.create_new_rb_child(L_x_quad[quad], L_y_quad[quad]);
+                        T.go_to_rb_child();
+                        break;
+                    case 2:
+                        T.create_new_lt_child(L_x_quad[quad], L_y_quad[quad]);
+                        T.go_to_lt_child();
+                        break;
+                    default:
+                        T.create_new_rt_child(L_x_quad[quad], L_y_quad[quad]);
+                        T.go_to_rt_child();
+                        break;
+                }
+
+                if (quad == largest_quad)
+                {
+                    decompose_subtreenode(T, new_leaf_List);
+                }
+                else
+                {
+                    new_leaf_List.add(T.get_act_ptr());
+                }
                 T.go_to_father();
             }
-            //reset  act_ptr.set_x(y)_List_ptr to avoid multiple deleting of dynamic memory;
-            //(only if *act_ptr is a leaf of T the reserved space is freed (and this is
-            //sufficient !!!))
-            act_ptr.set_x_List_ptr(null);
-            act_ptr.set_y_List_ptr(null);
         }//if0
         else
         { //else a leaf or machineprecision is reached:
-            //The List contained_nodes is set for *act_ptr and the information of
-            //act_x_List_copy and act_y_List_copy is used to insert particles into the
-            //shorter Lists of previous touched treenodes;additionaly the dynamical allocated
-            //space for *act_ptr.get_x(y)_List_ptr() is freed.
+            //The List contained_nodes is set for *act_ptr and the space for
+            //*act_ptr.get_x(y)_List_ptr() is freed.
 
             List<node> L = new ArrayList<node>();
 
-            //set List contained nodes
-
             for (ParticleInfo it : act_ptr.get_x_List_ptr())
             {
                 L.add(it.get_vertex());
             }
-            T.get_act_ptr().set_contained_nodes(L);
+            act_ptr.set_contained_nodes(L);
 
-            //insert particles into previous touched Lists
-
-            build_up_sorted_subLists(act_x_List_copy, act_y_List_copy);
-
-            //free allocated space for *act_ptr.get_x(y)_List_ptr()
-            act_ptr.get_x_List_ptr().clear();//free used space for old L_x,L_y Lists
-            act_ptr.get_y_List_ptr().clear();
+            act_ptr.set_x_List_ptr(null);
+            act_ptr.set_y_List_ptr(null);
         }//else
     }
 
+    int quadrant_index(double x, double y, double x_mid_coord, double y_mid_coord)
+    {
+        return ((x < x_mid_coord) ? 0 : 1) + ((y < y_mid_coord) ? 0 : 2);
+    }
+
     void calculate_boundaries_of_act_node(
             QuadTreeNodeNM act_ptr,
             ref<Double> x_min,
@@ -680,543 +622,6 @@ public class NMM
         }
     }
 
-    void split_in_x_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr)
-    {
-        ListIterator<ParticleInfo> l_item = act_ptr.get_x_List_ptr().listIterator();
-        ListIterator<ParticleInfo> r_item = act_ptr.get_x_List_ptr().listIterator(act_ptr.get_x_List_ptr().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double x_mid_coord = act_ptr.get_Sm_downleftcorner().m_x + act_Sm_boxlength_half;
-        double l_xcoord, r_xcoord;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-
-        //traverse *act_ptr.get_x_List_ptr() from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_xcoord = l_item.next().get_x_y_coord();
-            r_xcoord = r_item.previous().get_x_y_coord();
-            if (l_xcoord >= x_mid_coord)
-            {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = act_ptr.get_x_List_ptr().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_xcoord < x_mid_coord)
-            {
-                if (r_item.nextIndex() < act_ptr.get_x_List_ptr().size())
-                {
-                    last_left_item = act_ptr.get_x_List_ptr().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
-            }
-            else
-            {
-                break;
-            }
-        }//while
-
-        //get the L_x(y) Lists of the bigger half (from *act_ptr.get_x(y)_List_ptr))
-        //and make entries in L_x_copy,L_y_copy for the smaller halfs
-
-        if (left_particleList_empty)
-        {
-            L_x_left_ptr.set(null);
-            L_y_left_ptr.set(null);
-            L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-            L_x_right_ptr.set(null);
-            L_y_right_ptr.set(null);
-        }
-        else if (left_particleList_larger)
-        {
-            x_delete_right_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-        else //left particleList is smaller or equal to right particleList
-        {
-            x_delete_left_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-    }
-
-    void split_in_y_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr)
-    {
-        ListIterator<ParticleInfo> l_item = act_ptr.get_y_List_ptr().listIterator();
-        ListIterator<ParticleInfo> r_item = act_ptr.get_y_List_ptr().listIterator(act_ptr.get_y_List_ptr().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + act_Sm_boxlength_half;
-        double l_ycoord, r_ycoord;
-        boolean last_left_item_found = false;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-        //traverse *act_ptr.get_y_List_ptr() from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_ycoord = l_item.next().get_x_y_coord();
-            r_ycoord = r_item.previous().get_x_y_coord();
-            if (l_ycoord >= y_mid_coord)
-            {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = act_ptr.get_y_List_ptr().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_ycoord < y_mid_coord)
-            {
-                if (r_item.nextIndex() < act_ptr.get_y_List_ptr().size())
-                {
-                    last_left_item = act_ptr.get_y_List_ptr().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
-            }
-            else
-            {
-                break;
-            }
-        }//while
-
-        //get the L_x(y) Lists of the bigger half (from *act_ptr.get_x(y)_List_ptr))
-        //and make entries in L_x_copy,L_y_copy for the smaller halfs
-
-        if (left_particleList_empty)
-        {
-            L_x_left_ptr.set(null);
-            L_y_left_ptr.set(null);
-            L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-            L_x_right_ptr.set(null);
-            L_y_right_ptr.set(null);
-        }
-        else if (left_particleList_larger)
-        {
-            y_delete_right_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-        else //left particleList is smaller or equal to right particleList
-        {
-            y_delete_left_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-    }
-
-    void x_delete_right_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_right_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_right_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = L_x_left_ptr.get().indexOf(last_left_item) + 1; i < L_x_left_ptr.get().size(); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_x_item = act_p_info.get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_right_ptr.get());
-
-            p_in_L_y_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_right_ptr.get());
-
-            //create *L_x(y)_left_ptr
-            L_y_left_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_x_left_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void x_delete_left_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_left_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_left_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = 0; i <= L_x_right_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            act_p_info = L_x_right_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_x_item = act_p_info.get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_left_ptr.get());
-
-            p_in_L_y_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_left_ptr.get());
-
-            //create *L_x(y)_right_ptr
-            L_y_right_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_x_right_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void y_delete_right_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_right_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_right_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = L_y_left_ptr.get().indexOf(last_left_item) + 1; i < L_y_left_ptr.get().size(); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_y_item = act_p_info.get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_right_ptr.get());
-
-            p_in_L_x_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_right_ptr.get());
-
-            //create *L_x(y)_left_ptr
-            L_x_left_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_y_left_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void y_delete_left_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_left_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_left_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = 0; i <= L_y_right_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_y_item = act_p_info.get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_left_ptr.get());
-
-            p_in_L_x_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_left_ptr.get());
-
-            //create *L_x(y)_right_ptr
-            L_x_right_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_y_right_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void split_in_y_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_b_ptr,
-            ref<List<ParticleInfo>> L_x_t_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_b_ptr,
-            ref<List<ParticleInfo>> L_y_t_ptr)
-    {
-        ListIterator<ParticleInfo> l_item = L_y_ptr.get().listIterator();
-        ListIterator<ParticleInfo> r_item = L_y_ptr.get().listIterator(L_y_ptr.get().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + act_Sm_boxlength_half;
-        double l_ycoord, r_ycoord;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-
-        //traverse *L_y_ptr from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_ycoord = l_item.next().get_x_y_coord();
-            r_ycoord = r_item.previous().get_x_y_coord();
-            if (l_ycoord >= y_mid_coord)
-            {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = L_y_ptr.get().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_ycoord < y_mid_coord)
-            {
-                if (r_item.nextIndex() < L_y_ptr.get().size())
-                {
-                    last_left_item = L_y_ptr.get().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
-            }
-            else
-            {
-                break;
-            }
-        }//while
-
-        //create *L_x_l(b)_ptr
-
-        if (left_particleList_empty)
-        {
-            L_x_b_ptr.set(null);
-            L_y_b_ptr.set(null);
-            L_x_t_ptr.set(L_x_ptr.get());
-            L_y_t_ptr.set(L_y_ptr.get());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_b_ptr.set(L_x_ptr.get());
-            L_y_b_ptr.set(L_y_ptr.get());
-            L_x_t_ptr.set(null);
-            L_y_t_ptr.set(null);
-        }
-        else if (left_particleList_larger)
-        {
-            y_move_right_subLists(L_x_ptr, L_x_b_ptr, L_x_t_ptr, L_y_ptr, L_y_b_ptr, L_y_t_ptr,
-                    last_left_item);
-        }
-        else //left particleList is smaller or equal to right particleList
-        {
-            y_move_left_subLists(L_x_ptr, L_x_b_ptr, L_x_t_ptr, L_y_ptr, L_y_b_ptr, L_y_t_ptr,
-                    last_left_item);
-        }
-    }
-
-    void y_move_left_subLists(
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_l_ptr,
-            ref<List<ParticleInfo>> L_x_r_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_l_ptr,
-            ref<List<ParticleInfo>> L_y_r_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo p_in_L_x_info, p_in_L_y_info;
-
-        L_x_r_ptr.set(L_x_ptr.get());
-        L_y_r_ptr.set(L_y_ptr.get());
-        L_x_l_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_l_ptr.set(new ArrayList<ParticleInfo>());
-
-        //build up the L_y_Lists and update crossreferences in *L_x_l_ptr
-        for (int i = 0; i <= L_y_r_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            p_in_L_y_info = L_y_r_ptr.get().get(i);
-
-            //create *L_x(y)_l_ptr
-            L_y_l_ptr.get().add(p_in_L_y_info);
-            p_in_L_x_info = p_in_L_y_info.get_cross_ref_item();
-            p_in_L_x_info.set_cross_ref_item(L_y_l_ptr.get().get(L_y_l_ptr.get().size() - 1));
-            p_in_L_x_info.mark(); //mark this element of the List
-
-            //create *L_y_r_ptr
-            L_y_r_ptr.get().remove(p_in_L_y_info);
-        }//while
-
-        //build up the L_x Lists and update crossreferences in *L_y_l_ptr
-        for (int i = 0; i < L_x_r_ptr.get().size(); i++)
-        {//while
-            p_in_L_x_info = L_x_r_ptr.get().get(i);
-
-            if (p_in_L_x_info.is_marked())
-            {
-                p_in_L_x_info.unmark();
-                L_x_l_ptr.get().add(p_in_L_x_info);
-                p_in_L_y_info = p_in_L_x_info.get_cross_ref_item();
-                p_in_L_y_info.set_cross_ref_item(L_x_l_ptr.get().get(L_x_l_ptr.get().size() - 1));
-            }
-
-            //create *L_x_r_ptr
-            if (p_in_L_x_info.is_marked())
-            {
-                L_x_r_ptr.get().remove(p_in_L_x_info);
-            }
-        }//while
-    }
-
-    void y_move_right_subLists(
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_l_ptr,
-            ref<List<ParticleInfo>> L_x_r_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_l_ptr,
-            ref<List<ParticleInfo>> L_y_r_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo p_in_L_x_info, p_in_L_y_info;
-
-        L_x_l_ptr.set(L_x_ptr.get());
-        L_y_l_ptr.set(L_y_ptr.get());
-        L_x_r_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_r_ptr.set(new ArrayList<ParticleInfo>());
-
-        //build up the L_y_Lists and update crossreferences in *L_x_r_ptr
-        for (int i = L_y_l_ptr.get().indexOf(last_left_item) + 1; i < L_y_l_ptr.get().size(); i++)
-        {//while
-            p_in_L_y_info = L_y_r_ptr.get().get(i);
-
-            //create *L_x(y)_r_ptr
-            L_y_r_ptr.get().add(p_in_L_y_info);
-            p_in_L_x_info = p_in_L_y_info.get_cross_ref_item();
-            p_in_L_x_info.set_cross_ref_item(L_y_r_ptr.get().get(L_y_r_ptr.get().size() - 1));
-            p_in_L_x_info.mark(); //mark this element of the List
-
-            //create *L_y_l_ptr
-            L_y_l_ptr.get().remove(p_in_L_y_info);
-        }//while
-
-        //build up the L_x Lists and update crossreferences in *L_y_r_ptr
-        for (int i = 0; i < L_x_l_ptr.get().size(); i++)
-        {//while
-            p_in_L_x_info = L_x_l_ptr.get().get(i);
-
-            if (p_in_L_x_info.is_marked())
-            {
-                p_in_L_x_info.unmark();
-                L_x_l_ptr.get().add(p_in_L_x_info);
-                p_in_L_y_info = p_in_L_x_info.get_cross_ref_item();
-                p_in_L_y_info.set_cross_ref_item(L_x_r_ptr.get().get(L_x_r_ptr.get().size() - 1));
-            }
-
-            //create *L_x_r_ptr
-            if (p_in_L_x_info.is_marked())
-            {
-                L_x_l_ptr.get().remove(p_in_L_x_info);
-            }
-        }//while
-    }
-
-    void build_up_sorted_subLists(
-            List<ParticleInfo> L_x_copy,
-            List<ParticleInfo> L_y_copy)
-    {
-        ParticleInfo P_x, P_y;
-        List<ParticleInfo> L_x_ptr = new ArrayList<ParticleInfo>();
-        List<ParticleInfo> L_y_ptr = new ArrayList<ParticleInfo>();
-        ListIterator<ParticleInfo> it;
-        ParticleInfo new_cross_ref_item;
-
-        it = L_x_copy.listIterator();
-        while (it.hasNext())
-        {
-            P_x = it.next();
-
-            if (P_x.get_subList_ptr() != null)
-            {
-                //reset values
-                L_x_ptr = P_x.get_subList_ptr();
-                P_x.set_subList_ptr(null); //clear subList_ptr
-                P_x.set_copy_item(null);   //clear copy_item
-                P_x.unmark(); //unmark this element
-                P_x.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-                //update *L_x_ptr
-                L_x_ptr.add(P_x);
-
-                //update L_x_copy
-                P_x.set_tmp_cross_ref_item(P_x);
-            }
-        }
-
-        it = L_x_copy.listIterator();
-        while (it.hasNext())
-        {
-            P_y = it.next();
-
-            if (P_y.get_subList_ptr() != null)
-            {
-                //reset values
-                L_y_ptr = P_y.get_subList_ptr();
-                P_y.set_subList_ptr(null); //clear subList_ptr
-                P_y.set_copy_item(null);   //clear copy_item
-                P_y.unmark(); //unmark this element
-                P_y.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-                //update *L_x(y)_ptr
-
-                new_cross_ref_item = P_y.get_cross_ref_item().get_tmp_cross_ref_item();
-                P_y.set_cross_ref_item(new_cross_ref_item);
-                L_y_ptr.add(P_y);
-                P_x = new_cross_ref_item;
-                P_x.set_cross_ref_item(P_y);
-            }
-        }
-    }
-
 // **********Functions needed for subtree by subtree  treeruction(Begin)*********
     void build_up_red_quad_tree_subtree_by_subtree(
             Graph G,
@@ -2163,7 +1568,7 @@ public class NMM
 
         for (node v_it : nodes_in_box)
         {
-            Q.plus(new Complex(1.0));
+            Q = Q.plus(new Complex(1.0));
         }
 
         coef[0] = Q;
@@ -2195,7 +1600,7 @@ public class NMM
 
         z_1 = father_ptr.get_Sm_center();
         z_0 = act_ptr.get_Sm_center();
-        father_ptr.get_multipole_exp()[0] = act_ptr.get_multipole_exp()[0].plus(act_ptr.get_multipole_exp()[0]);
+        father_ptr.get_multipole_exp()[0] = father_ptr.get_multipole_exp()[0].plus(act_ptr.get_multipole_exp()[0]);
 
         //init z_0_minus_z_1_over
         z_0_minus_z_1_over[0] = new Complex(1.0);
@@ -2688,7 +2093,7 @@ public class NMM
             else
             {
                 ptr_1.get_local_exp()[0] = ptr_1.get_local_exp()[0].plus(
-                        z_1.minus(z_0).log()).multipliedBy(multipole_0_of_v);
+                        z_1.minus(z_0).log().multipliedBy(multipole_0_of_v));
             }
 
             z_1_minus_z_0_over_s = z_1.minus(z_0);
@@ -2698,7 +2103,7 @@ public class NMM
                 ptr_1.get_local_exp()[s] = ptr_1.get_local_exp()[s].plus(
                         pow_minus_1_s_plus_1.multipliedBy(multipole_0_of_v).dividedBy(
                         z_1_minus_z_0_over_s.multipliedBy(s)));
-                z_1_minus_z_0_over_s = z_1_minus_z_0_over_s.plus(z_1.minus(z_0));
+                z_1_minus_z_0_over_s = z_1_minus_z_0_over_s.multipliedBy(z_1.minus(z_0));
             }
         }//forall
     }
@@ -2706,13 +2111,12 @@ public class NMM
     void transform_local_exp_to_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_local_exp)
+            NodeArray<DPoint> F_local_exp)
     {
         List<node> contained_nodes;
         Complex sum;
         Complex z_0;
         Complex z_v_minus_z_0_over_k_minus_1;
-        DPoint2 force_vector = new DPoint2();
 
         //calculate derivative of the potential polynom (= local expansion at leaf nodes)
         //and evaluate it for each node in contained_nodes()
@@ -2734,9 +2138,7 @@ public class NMM
                             z_v_minus_z_0_over_k_minus_1));
                     z_v_minus_z_0_over_k_minus_1 = z_v_minus_z_0_over_k_minus_1.multipliedBy(z_v.minus(z_0));
                 }
-                force_vector.m_x = sum.r();
-                force_vector.m_y = (-1.0) * sum.i();
-                F_local_exp.set(v_ptr, force_vector);
+                F_local_exp.set(v_ptr, new DPoint2(sum.r(), (-1.0) * sum.i()));
             }
         }
     }
@@ -2744,7 +2146,7 @@ public class NMM
     void transform_multipole_exp_to_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_multipole_exp)
+            NodeArray<DPoint> F_multipole_exp)
     {
         List<QuadTreeNodeNM> M;
         List<node> act_contained_nodes;
@@ -2792,16 +2194,16 @@ public class NMM
     void calculate_neighbourcell_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_direct)
+            NodeArray<DPoint> F_direct)
     {
         List<node> act_contained_nodes, neighbour_contained_nodes, non_neighbour_contained_nodes;
         List<QuadTreeNodeNM> neighboured_leaves;
         List<QuadTreeNodeNM> non_neighboured_leaves;
         double act_leaf_boxlength, neighbour_leaf_boxlength;
         DPoint2 act_leaf_dlc, neighbour_leaf_dlc;
-        DPoint2 f_rep_u_on_v = new DPoint2();
-        DPoint2 vector_v_minus_u;
-        DPoint2 pos_u, pos_v;
+        DPoint f_rep_u_on_v = PointFactory.INSTANCE.newDPoint();
+        DPoint vector_v_minus_u;
+        DPoint pos_u, pos_v;
         double norm_v_minus_u, scalar;
         int length;
         node u, v;
@@ -2832,17 +2234,16 @@ public class NMM
                         v = numbered_nodes[l];
                         pos_u = A.get(u).get_position();
                         pos_v = A.get(v).get_position();
-                        if (pos_u == pos_v)
+                        if (pos_u.equals(pos_v))
                         {//if2  (Exception handling if two nodes have the same position)
                             pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                         }//if2
                         vector_v_minus_u = pos_v.minus(pos_u);
-                        norm_v_minus_u = vector_v_minus_u.norm();
+                        norm_v_minus_u = vector_v_minus_u.length();
                         if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                         {
                             scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                            f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                            f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                            f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
                         }
                         F_direct.set(v, F_direct.get(v).plus(f_rep_u_on_v));
                         F_direct.set(u, F_direct.get(u).minus(f_rep_u_on_v));
@@ -2877,17 +2278,16 @@ public class NMM
                             {//for
                                 pos_u = A.get(u_ptr).get_position();
                                 pos_v = A.get(v_ptr).get_position();
-                                if (pos_u == pos_v)
+                                if (pos_u.equals(pos_v))
                                 {//if2  (Exception handling if two nodes have the same position)
                                     pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                                 }//if2
                                 vector_v_minus_u = pos_v.minus(pos_u);
-                                norm_v_minus_u = vector_v_minus_u.norm();
+                                norm_v_minus_u = vector_v_minus_u.length();
                                 if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                                 {
                                     scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                                    f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                                    f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                                    f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
                                 }
                                 F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                                 F_direct.set(u_ptr, F_direct.get(u_ptr).minus(f_rep_u_on_v));
@@ -2909,17 +2309,16 @@ public class NMM
                         {//for
                             pos_u = A.get(u_ptr).get_position();
                             pos_v = A.get(v_ptr).get_position();
-                            if (pos_u == pos_v)
+                            if (pos_u.equals(pos_v))
                             {//if2  (Exception handling if two nodes have the same position)
                                 pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                             }//if2
                             vector_v_minus_u = pos_v.minus(pos_u);
-                            norm_v_minus_u = vector_v_minus_u.norm();
+                            norm_v_minus_u = vector_v_minus_u.length();
                             if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                             {
                                 scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                                f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                                f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                                f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
                             }
                             F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                         }//for
@@ -2933,12 +2332,11 @@ public class NMM
                     pos_v = A.get(v_ptr).get_position();
                     pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_v);
                     vector_v_minus_u = pos_v.minus(pos_u);
-                    norm_v_minus_u = vector_v_minus_u.norm();
+                    norm_v_minus_u = vector_v_minus_u.length();
                     if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                     {
                         scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                        f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                        f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                        f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
                     }
                     F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                 }
@@ -2948,10 +2346,10 @@ public class NMM
 
     void add_rep_forces(
             Graph G,
-            NodeArray<DPoint2> F_direct,
-            NodeArray<DPoint2> F_multipole_exp,
-            NodeArray<DPoint2> F_local_exp,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_direct,
+            NodeArray<DPoint> F_multipole_exp,
+            NodeArray<DPoint> F_local_exp,
+            NodeArray<DPoint> F_rep)
     {
         node v;
         for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
@@ -3047,4 +2445,4 @@ public class NMM
     {
         return _precision;
     }
-}*/
+}
@@ -0,0 +1,255 @@
+package ogdf.energybased;
+
+/**
+ * \file \brief Declaration of class OctreeNM.
+ *
+ * The complex multipole and local expansions of the New Multipole Method only exist in the plane, so in 3D the
+ * repulsive forces of the rfcNMM setting are approximated with this bucket octree instead. Leaves hold at most
+ * particles_in_leaves particles, cells are shrunk to the bounding cube of their particles, and a cell is replaced by
+ * its monopole (particle count at the center of mass) once it is well separated from the particle, that is when
+ * boxlength / distance < theta. Because the dipole term vanishes around the center of mass, the relative error of a
+ * monopole is of order theta^2; NMM picks theta so that this matches the error of the p-term planar expansions.
+ *
+ * All cells are stored in flat primitive arrays and the particles of a cell are a contiguous range of one
+ * permutation array, so rebuilding the tree on every iteration only allocates when the arrays have to grow.
+ */
+import java.util.*;
+
+public class OctreeNM
+{
+    static final int MAX_DEPTH = 40;
+    static final int INITIAL_NUMBER_OF_CELLS = 1024;
+
+    int number_of_cells;
+    int[] cell_first_child; //-1 for leaves, otherwise the index of the first of the (consecutive) children
+    int[] cell_number_of_children;
+    int[] cell_begin; //range of the particles of the cell in particle_order
+    int[] cell_end;
+    double[] cell_boxlength;
+    double[] cell_mass_center; //3 values per cell
+    int[] particle_order;
+    int[] octant_count = new int[8];
+    int[] octant_begin = new int[8];
+    int[] order_tmp;
+
+    public OctreeNM()
+    {
+        allocate_cells(INITIAL_NUMBER_OF_CELLS);
+    }
+
+    void allocate_cells(int capacity)
+    {
+        if (cell_first_child == null)
+        {
+            cell_first_child = new int[capacity];
+            cell_number_of_children = new int[capacity];
+            cell_begin = new int[capacity];
+            cell_end = new int[capacity];
+            cell_boxlength = new double[capacity];
+            cell_mass_center = new double[3 * capacity];
+        }
+        else
+        {
+            cell_first_child = Arrays.copyOf(cell_first_child, capacity);
+            cell_number_of_children = Arrays.copyOf(cell_number_of_children, capacity);
+            cell_begin = Arrays.copyOf(cell_begin, capacity);
+            cell_end = Arrays.copyOf(cell_end, capacity);
+            cell_boxlength = Arrays.copyOf(cell_boxlength, capacity);
+            cell_mass_center = Arrays.copyOf(cell_mass_center, 3 * capacity);
+        }
+    }
+
+    int new_cell(int begin, int end)
+    {
+        if (number_of_cells == cell_first_child.length)
+        {
+            allocate_cells(2 * number_of_cells);
+        }
+        int cell = number_of_cells++;
+        cell_first_child[cell] = -1;
+        cell_number_of_children[cell] = 0;
+        cell_begin[cell] = begin;
+        cell_end[cell] = end;
+        return cell;
+    }
+
+    //Builds the tree for the n particles whose coordinates are stored at pos[3 * i ...3 * i + 2].
+    public void build(double[] pos, int n, int particles_in_leaves)
+    {
+        if ((particle_order == null) || (particle_order.length < n))
+        {
+            particle_order = new int[n];
+            order_tmp = new int[n];
+        }
+        for (int i = 0; i < n; i++)
+        {
+            particle_order[i] = i;
+        }
+
+        number_of_cells = 0;
+        int root = new_cell(0, n);
+        build_cell(root, pos, ((particles_in_leaves >= 1) ? particles_in_leaves : 1), 0);
+    }
+
+    void build_cell(int cell, double[] pos, int particles_in_leaves, int depth)
+    {
+        int begin = cell_begin[cell];
+        int end = cell_end[cell];
+        double x_min = Double.MAX_VALUE, y_min = Double.MAX_VALUE, z_min = Double.MAX_VALUE;
+        double x_max = -Double.MAX_VALUE, y_max = -Double.MAX_VALUE, z_max = -Double.MAX_VALUE;
+        double x_sum = 0.0, y_sum = 0.0, z_sum = 0.0;
+
+        //smallest surrounding cube and center of mass
+        for (int i = begin; i < end; i++)
+        {
+            int p = 3 * particle_order[i];
+            double x = pos[p], y = pos[p + 1], z = pos[p + 2];
+            x_min = Math.min(x_min, x);
+            x_max = Math.max(x_max, x);
+            y_min = Math.min(y_min, y);
+            y_max = Math.max(y_max, y);
+            z_min = Math.min(z_min, z);
+            z_max = Math.max(z_max, z);
+            x_sum += x;
+            y_sum += y;
+            z_sum += z;
+        }
+        int number_of_particles = end - begin;
+        double boxlength = Math.max(Math.max(x_max - x_min, y_max - y_min), z_max - z_min);
+        cell_boxlength[cell] = boxlength;
+        cell_mass_center[3 * cell] = x_sum / number_of_particles;
+        cell_mass_center[3 * cell + 1] = y_sum / number_of_particles;
+        cell_mass_center[3 * cell + 2] = z_sum / number_of_particles;
+
+        if ((number_of_particles <= particles_in_leaves) || (boxlength < NMM.MIN_BOX_LENGTH) || (depth >= MAX_DEPTH))
+        {
+            return;
+        }
+
+        //sort the particles of the cell by octant (counting sort, stable)
+        double x_mid = x_min + 0.5 * boxlength;
+        double y_mid = y_min + 0.5 * boxlength;
+        double z_mid = z_min + 0.5 * boxlength;
+        Arrays.fill(octant_count, 0);
+        for (int i = begin; i < end; i++)
+        {
+            octant_count[octant(pos, particle_order[i], x_mid, y_mid, z_mid)]++;
+        }
+        int next = begin;
+        for (int o = 0; o < 8; o++)
+        {
+            octant_begin[o] = next;
+            next += octant_count[o];
+        }
+        for (int i = begin; i < end; i++)
+        {
+            int particle = particle_order[i];
+            order_tmp[octant_begin[octant(pos, particle, x_mid, y_mid, z_mid)]++] = particle;
+        }
+        System.arraycopy(order_tmp, begin, particle_order, begin, number_of_particles);
+
+        //the children of a cell are allocated consecutively
+        int first_child = number_of_cells;
+        int child_begin = begin;
+        for (int o = 0; o < 8; o++)
+        {
+            if (octant_count[o] > 0)
+            {
+                new_cell(child_begin, child_begin + octant_count[o]);
+                child_begin += octant_count[o];
+            }
+        }
+        cell_first_child[cell] = first_child;
+        cell_number_of_children[cell] = number_of_cells - first_child;
+
+        for (int child = first_child; child < first_child + cell_number_of_children[cell]; child++)
+        {
+            build_cell(child, pos, particles_in_leaves, depth + 1);
+        }
+    }
+
+    static int octant(double[] pos, int particle, double x_mid, double y_mid, double z_mid)
+    {
+        int p = 3 * particle;
+        return ((pos[p] < x_mid) ? 0 : 1) + ((pos[p + 1] < y_mid) ? 0 : 2) + ((pos[p + 2] < z_mid) ? 0 : 4);
+    }
+
+    //Stores the repulsive force sum (v - u) / |v - u|^2 of all other particles u on particle v in force[0..2].
+    //The stack must be able to hold 7 * MAX_DEPTH + 1 cells (see create_traversal_stack()).
+    public void calculate_repulsive_force(double[] pos, int v, double theta, int[] stack, double[] force)
+    {
+        double x_v = pos[3 * v], y_v = pos[3 * v + 1], z_v = pos[3 * v + 2];
+        double f_x = 0.0, f_y = 0.0, f_z = 0.0;
+        double theta_square = theta * theta;
+        int top = 0;
+
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            int cell = stack[--top];
+            int begin = cell_begin[cell];
+            int end = cell_end[cell];
+            double d_x = x_v - cell_mass_center[3 * cell];
+            double d_y = y_v - cell_mass_center[3 * cell + 1];
+            double d_z = z_v - cell_mass_center[3 * cell + 2];
+            double dist_square = d_x * d_x + d_y * d_y + d_z * d_z;
+            double boxlength = cell_boxlength[cell];
+
+            if ((boxlength * boxlength < theta_square * dist_square) && (dist_square > 0.0))
+            {
+                //well separated: use the monopole of the cell
+                double scalar = (end - begin) / dist_square;
+                f_x += scalar * d_x;
+                f_y += scalar * d_y;
+                f_z += scalar * d_z;
+            }
+            else if (cell_first_child[cell] == -1)
+            {
+                for (int i = begin; i < end; i++)
+                {
+                    int u = particle_order[i];
+                    if (u == v)
+                    {
+                        continue;
+                    }
+                    d_x = x_v - pos[3 * u];
+                    d_y = y_v - pos[3 * u + 1];
+                    d_z = z_v - pos[3 * u + 2];
+                    dist_square = d_x * d_x + d_y * d_y + d_z * d_z;
+                    if (dist_square == 0.0)
+                    {
+                        //Exception handling if two nodes have the same position: as in the exact
+                        //method, u is moved to a random point within radius epsilon around v
+                        do
+                        {
+                            d_x = (numexcept.random.nextDouble() - 0.5) * 2.0 * numexcept.epsilon;
+                            d_y = (numexcept.random.nextDouble() - 0.5) * 2.0 * numexcept.epsilon;
+                            d_z = (numexcept.random.nextDouble() - 0.5) * 2.0 * numexcept.epsilon;
+                            dist_square = d_x * d_x + d_y * d_y + d_z * d_z;
+                        } while ((dist_square == 0.0) || (dist_square >= numexcept.epsilon * numexcept.epsilon));
+                    }
+                    f_x += d_x / dist_square;
+                    f_y += d_y / dist_square;
+                    f_z += d_z / dist_square;
+                }
+            }
+            else
+            {
+                int first_child = cell_first_child[cell];
+                for (int child = first_child; child < first_child + cell_number_of_children[cell]; child++)
+                {
+                    stack[top++] = child;
+                }
+            }
+        }
+
+        force[0] = f_x;
+        force[1] = f_y;
+        force[2] = f_z;
+    }
+
+    public int[] create_traversal_stack()
+    {
+        return new int[7 * MAX_DEPTH + 1];
+    }
+}
@@ -167,6 +167,23 @@ public class numexcept
         return choose_distinct_random_point_in_disque(old_pos, xmin, xmax, ymin, ymax, zmin, zmax);
     }
 
+    //Array version of choose_distinct_random_point_in_radius_epsilon: a random vector
+    //offset is stored in offset[0..2], such that old_pos + offset is the distinct random
+    //point in the disque; offset[2] is 0 unless three_dimensional is set.
+    public static void choose_distinct_random_offset_in_radius_epsilon(double[] offset, boolean three_dimensional)
+    {
+        double radius = epsilon * epsilon;
+        double length_square;
+
+        do
+        {
+            offset[0] = (random.nextDouble() - 0.5) * 2.0 * radius;
+            offset[1] = (random.nextDouble() - 0.5) * 2.0 * radius;
+            offset[2] = three_dimensional ? (random.nextDouble() - 0.5) * 2.0 * radius : 0.0;
+            length_square = offset[0] * offset[0] + offset[1] * offset[1] + offset[2] * offset[2];
+        } while ((length_square == 0.0) || (length_square >= radius * radius));
+    }
+
     //If distance has a value near the machine precision the repulsive force calculation
     //is not possible (calculated values exceed the machine accuracy) in this cases
     //true is returned and force is set to a reasonable value that does
@@ -257,6 +274,58 @@ public class numexcept
         }
     }
 
+    //Array versions of f_rep_near_machine_precision and f_near_machine_precision: force is
+    //stored in force[0..2] (force[2] is 0 unless three_dimensional is set).
+    public static boolean f_rep_near_machine_precision(double distance, double[] force, boolean three_dimensional)
+    {
+        double POS_BIG_LIMIT = POS_BIG_DOUBLE * 1e-190;
+        double POS_SMALL_LIMIT = POS_SMALL_DOUBLE * 1e190;
+
+        if (distance > POS_BIG_LIMIT)
+        {
+            set_random_force(force, POS_SMALL_LIMIT, 1.0, three_dimensional);
+            return true;
+        }
+        else if (distance < POS_SMALL_LIMIT)
+        {
+            set_random_force(force, POS_BIG_LIMIT, 0.0, three_dimensional);
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    public static boolean f_near_machine_precision(double distance, double[] force, boolean three_dimensional)
+    {
+        double POS_BIG_LIMIT = POS_BIG_DOUBLE * 1e-190;
+        double POS_SMALL_LIMIT = POS_SMALL_DOUBLE * 1e190;
+
+        if (distance < POS_SMALL_LIMIT)
+        {
+            set_random_force(force, POS_SMALL_LIMIT, 1.0, three_dimensional);
+            return true;
+        }
+        else if (distance > POS_BIG_LIMIT)
+        {
+            set_random_force(force, POS_BIG_LIMIT, 0.0, three_dimensional);
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    //Each coordinate is set to +-limit * (offset + r) with a random number r in range (0,1).
+    private static void set_random_force(double[] force, double limit, double offset, boolean three_dimensional)
+    {
+        force[0] = limit * (offset + random.nextDouble()) * (random.nextBoolean() ? 1.0 : -1.0);
+        force[1] = limit * (offset + random.nextDouble()) * (random.nextBoolean() ? 1.0 : -1.0);
+        force[2] = three_dimensional ? limit * (offset + random.nextDouble()) * (random.nextBoolean() ? 1.0 : -1.0) : 0.0;
+    }
+
     //Returns true if a is "nearly" equal to b (needed, when machine accuracy is
     //insufficient in functions well_seperated and bordering of NMM)
     public static boolean nearly_equal(double a, double b)
@@ -0,0 +1,113 @@
+package org.BioLayoutExpress3D.Analysis.Blobs;
+
+/**
+*
+* OverRepresentation is the immutable record of the over-representation statistics of one term in a selection of genes,
+* kept as primitives so the table models don't have to parse them back from strings.
+* The expected values are the moments of the null distribution of the number of selected genes in the term.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class OverRepresentation
+{
+
+    /**
+    *  Number of selected genes in the term & number of selected genes.
+    */
+    public final int observedCount;
+    public final int selectionSize;
+
+    /**
+    *  Number of genes in the term & number of genes of the whole chip.
+    */
+    public final int backgroundCount;
+    public final int chipGeneCount;
+
+    /**
+    *  Observed & expected (background) frequencies of the term & their ratio.
+    */
+    public final double observedFrequency;
+    public final double expectedFrequency;
+    public final double overRepresentation;
+
+    /**
+    *  Mean & standard deviation of the number of selected genes in the term under the null distribution.
+    */
+    public final double expectedCount;
+    public final double expectedCountStdDev;
+
+    /**
+    *  Mean & standard deviation of the over-representation under the null distribution.
+    */
+    public final double expectedOverRepresentation;
+    public final double overRepresentationStdDev;
+
+    /**
+    *  Standard score of the observed over-representation, 0.0 when the null distribution has no variance
+    *  (eg the whole chip is selected, so the observed over-representation is exactly the expected one).
+    */
+    public final double zScore;
+
+    /**
+    *  The OverRepresentation constructor.
+    */
+    public OverRepresentation(int observedCount, int selectionSize, int backgroundCount, int chipGeneCount,
+                              double expectedCount, double expectedCountStdDev, double expectedOverRepresentation, double overRepresentationStdDev)
+    {
+        this.observedCount = observedCount;
+        this.selectionSize = selectionSize;
+        this.backgroundCount = backgroundCount;
+        this.chipGeneCount = chipGeneCount;
+        this.expectedCount = expectedCount;
+        this.expectedCountStdDev = expectedCountStdDev;
+        this.expectedOverRepresentation = expectedOverRepresentation;
+        this.overRepresentationStdDev = overRepresentationStdDev;
+
+        observedFrequency = (double)observedCount / (double)selectionSize;
+        expectedFrequency = (double)backgroundCount / (double)chipGeneCount;
+        overRepresentation = observedFrequency / expectedFrequency;
+        zScore = (overRepresentationStdDev > 0.0) ? (overRepresentation - expectedOverRepresentation) / overRepresentationStdDev : 0.0;
+    }
+
+    /**
+    *  Returns the observed count as displayed in the analysis tables.
+    */
+    public String getObservedText()
+    {
+        return observedCount + "/" + selectionSize;
+    }
+
+    /**
+    *  Returns the background count as displayed in the analysis tables.
+    */
+    public String getExpectedText()
+    {
+        return backgroundCount + "/" + chipGeneCount;
+    }
+
+    /**
+    *  Returns the expected count & its standard deviation (rounded to 5 decimal places) as displayed in the analysis tables.
+    */
+    public String getExpectedTrialText()
+    {
+        return round(expectedCount, 5) + "/" + selectionSize + "±" + round(expectedCountStdDev, 5);
+    }
+
+    /**
+    *  Returns the over-representation & its standard deviation as displayed in the analysis tables.
+    */
+    public String getOverRepresentationText()
+    {
+        return overRepresentation + "±" + overRepresentationStdDev;
+    }
+
+    private static double round(double value, int precision)
+    {
+        double scale = java.lang.Math.pow(10, precision);
+        return java.lang.Math.floor(value * scale + 0.5) / scale;
+    }
+
+
+}
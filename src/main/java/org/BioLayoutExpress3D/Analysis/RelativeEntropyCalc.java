@@ -4,7 +4,9 @@ import java.util.*;
 import org.BioLayoutExpress3D.Analysis.Blobs.*;
 import org.BioLayoutExpress3D.Analysis.Utils.*;
 import org.BioLayoutExpress3D.CoreUI.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
 import org.BioLayoutExpress3D.Network.*;
+import org.BioLayoutExpress3D.StaticLibraries.Random.XORShiftRandomStream;
 import static java.lang.Math.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
@@ -13,6 +15,9 @@ import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 *
 * RelativeEntropyCalc provides statistical information. Due to complex calculations, it usually is usud inside a Runnable/Thread.
 * The abortThread variable is used to silently abort that Runnable/Thread.
+* The over-representation of a term is compared to the exact moments of the hypergeometric distribution (drawing the selected genes from the chip);
+* only when the counts don't define one (eg a selection larger than the chip) the moments are estimated by random sampling,
+* with the trials spread over the cores & every trial using its own random stream.
 *
 * @author Markus Brosch (mb8[at]sanger[dot]ac[dot]uk)
 * @author Full refactoring by Thanos Theo, 2008-2009-2010-2011
@@ -23,14 +28,16 @@ public class RelativeEntropyCalc
 {
 
     private static final int NUMBER_OF_TRIALS = 1000;
+    private static final int TRIALS_PER_CHUNK = 50;
+    private static final int TERMS_PER_CHUNK = 8;
 
     private NetworkContainer nc = null;
     private LayoutClassSetsManager layoutClassSetsManager = null;
-    private Random random = null;
+    private long seed = 0;
 
     private static transient Set<String> allGenes = null;
-    private static transient String storedTypeName = null;
-    private static transient AnnotationType cachedAnnotationType = null;
+    private static transient Set<String> cachedTypeNames = null;
+    private static transient AnnotationTypeManager cachedAnnotationTypeManager = null;
 
     /**
     *  The abortThread variable is used to silently abort a Runnable/Thread.
@@ -42,22 +49,14 @@ public class RelativeEntropyCalc
         this.nc = nc;
 
         layoutClassSetsManager = nc.getLayoutClassSetsManager();
-        random = new Random();
+        seed = new Random().nextLong();
     }
 
-    public Map<String, HashMap<String, String>> overRepForEachCluster(Set<String> genes, String typeName)
+    public Map<String, OverRepresentation> overRepForEachCluster(Set<String> genes, String typeName)
     {
         if (DEBUG_BUILD) println("OverRep Test for:" + genes.size() + " genes");
 
-        HashMap<String, HashMap<String, String>> clusterNames2OverRep = new HashMap<String, HashMap<String, String>>();
-
-        HashMap<String, String> Observed      = new HashMap<String, String>();
-        HashMap<String, String> Expected      = new HashMap<String, String>();
-        HashMap<String, String> ExpectedTrial = new HashMap<String, String>();
-        HashMap<String, String> Fobs          = new HashMap<String, String>();
-        HashMap<String, String> Fexp          = new HashMap<String, String>();
-        HashMap<String, String> OverRep       = new HashMap<String, String>();
-        HashMap<String, String> Zscore        = new HashMap<String, String>();
+        HashMap<String, OverRepresentation> clusterNames2OverRep = new HashMap<String, OverRepresentation>();
 
         AnnotationType bg = AnnotationTypeManagerBG.getInstanceSingleton().getType(typeName);
         AnnotationType annotationType = getCache(typeName, genes);
@@ -65,65 +64,36 @@ public class RelativeEntropyCalc
         if (abortThread) return null;
 
         int chipGenes = AnnotationTypeManagerBG.getInstanceSingleton().getChipGeneCount();
-        int n = 0;
+        int selectionSize = genes.size();
         int selectedInCategory = 0;
         int r1 = 0;
-        double fobs = 0.0;
-        double fexp = 0.0;
-        double overRep = 0.0;
         double[] stdevs = null;
-        double expectedNo = 0.0;
-        double expectedDev = 0.0;
-        double expectedOverrep = 0.0;
-        double zScore = 0.0;
-
-        if (abortThread) return null;
 
         for ( String clusterName : annotationType.getKeys() )
         {
             if (abortThread) return null;
-            if (DEBUG_BUILD) println("Cluster:>" + clusterName + "<" + " " + genes.size());
+            if (DEBUG_BUILD) println("Cluster:>" + clusterName + "<" + " " + selectionSize);
 
-            n = chipGenes;
             selectedInCategory = annotationType.getCount(clusterName);
             r1 = bg.getCount(clusterName);
-            fobs = (double) selectedInCategory / (double) genes.size();
-            fexp = (double) r1 / (double) n;
-            overRep = fobs / fexp;
-            stdevs = doRandomSampling(genes.size(), fexp);
+            stdevs = ( MathUtil.isHyperGeometricDefined(selectionSize, r1, chipGenes) )
+                     ? hyperGeometricMoments(selectionSize, r1, chipGenes)
+                     : doRandomSampling( selectionSize, (double)r1 / (double)chipGenes );
 
             if (abortThread) return null;
 
-            if (DEBUG_BUILD) println("STDEVS:" + stdevs[0] + " " + stdevs[1]);
-
-            expectedNo = round((((double) r1 / (double) n) *(double) genes.size()), 5);
-            expectedDev = round(((stdevs[0]) * (double) genes.size()), 5);
-            expectedOverrep = stdevs[3];
-            zScore = (overRep - expectedOverrep) / stdevs[1];
+            OverRepresentation overRepresentation = new OverRepresentation(selectedInCategory, selectionSize, r1, chipGenes,
+                                                                           stdevs[2] * selectionSize, stdevs[0] * selectionSize, stdevs[3], stdevs[1]);
 
             if (DEBUG_BUILD)
             {
-                println("OverRep:" + overRep + " " + " Expected:" + expectedOverrep + " Std:" + stdevs[1] + " Zscore:" + zScore + "\n" +
-                        clusterName + " " + expectedNo + " " + expectedDev + " " + expectedOverrep);
+                println("OverRep:" + overRepresentation.overRepresentation + " " + " Expected:" + overRepresentation.expectedOverRepresentation +
+                        " Std:" + overRepresentation.overRepresentationStdDev + " Zscore:" + overRepresentation.zScore);
             }
 
-            Observed.put(clusterName, selectedInCategory + "/" + genes.size());
-            Expected.put(clusterName, r1 + "/" + n);
-            ExpectedTrial.put(clusterName, expectedNo + "/" + genes.size() + "±" + expectedDev);
-            Fobs.put(clusterName, Double.toString(fobs));
-            Fexp.put(clusterName, Double.toString(fexp));
-            OverRep.put(clusterName, overRep + "±" + stdevs[1]);
-            Zscore.put(clusterName, Double.toString(zScore));
+            clusterNames2OverRep.put(clusterName, overRepresentation);
         }
 
-        clusterNames2OverRep.put("Obs", Observed);
-        clusterNames2OverRep.put("Exp", Expected);
-        clusterNames2OverRep.put("Fobs", Fobs);
-        clusterNames2OverRep.put("Fexp", Fexp);
-        clusterNames2OverRep.put("OverRep", OverRep);
-        clusterNames2OverRep.put("ExpT", ExpectedTrial);
-        clusterNames2OverRep.put("Zscore", Zscore);
-
         return clusterNames2OverRep;
     }
 
@@ -144,54 +114,47 @@ public class RelativeEntropyCalc
 
         HashMap<String, Double> clusterNames2FisherValues = new HashMap<String, Double>();
 
-        AnnotationType bg = AnnotationTypeManagerBG.getInstanceSingleton().getType(typeName);
-        AnnotationType annotationType = getCache(typeName, genes);
+        final AnnotationType bg = AnnotationTypeManagerBG.getInstanceSingleton().getType(typeName);
+        final AnnotationType annotationType = getCache(typeName, genes);
 
         if (abortThread) return null;
 
-        int chipGenes = AnnotationTypeManagerBG.getInstanceSingleton().getChipGeneCount();
-        int n = 0;
-        int selectedInCategory = 0;
-        int r1 = 0;
-        int nonSelectedInCategory = 0;
-        int c1 = 0;
-        int selectedNotInCategory = 0;
-        int c2 =0;
-        int nonSelectedNotInCategory = 0;
-        double fobs = 0.0;
-        double fexp = 0.0;
-        double overRep = 0.0;
-        double f = 0.0;
-        for ( String clusterName : annotationType.getKeys() )
-        {
-            if (abortThread) return null;
-            if (DEBUG_BUILD) println("Cluster:>" + clusterName + "<" + " " + genes.size());
+        final int chipGenes = AnnotationTypeManagerBG.getInstanceSingleton().getChipGeneCount();
+        final int c1 = genes.size();
+        final String[] clusterNames = annotationType.getKeys().toArray( new String[annotationType.getKeys().size()] );
+        final double[] fisherValues = new double[clusterNames.length];
 
-            n = chipGenes;
-            selectedInCategory = annotationType.getCount(clusterName);
-            r1 = bg.getCount(clusterName);
-            nonSelectedInCategory = r1 - selectedInCategory;
-            c1 = genes.size();
-            selectedNotInCategory = c1 - selectedInCategory;
-            c2 = n - c1;
-            nonSelectedNotInCategory = c2 - nonSelectedInCategory;
-            fobs = (double) selectedInCategory / (double)genes.size();
-            fexp = (double) r1 / (double)chipGenes;
-            overRep = fobs / fexp;
+        // the terms are independent, so their tests are spread over the cores
+        executeInParallel(new LayoutComputeService.RangeKernel()
+        {
 
-            if (DEBUG_BUILD)
+            @Override
+            public void process(int startIndex, int endIndex)
             {
-                println("Fobs:" + fobs + " Fexp: " + fexp + " OverRep: " + overRep);
-                println("category\tselected\tnotSelec\tsum");
-                println(clusterName + "\t" + selectedInCategory + "\t" + nonSelectedInCategory + "\t" + r1);
-                println("-|" + clusterName + "\t" + selectedNotInCategory + "\t" + nonSelectedNotInCategory);
-                println("sum\t" + c1 + "\t" + c2 + "\t" + n);
+                for (int i = startIndex; i < endIndex; i++)
+                {
+                    if (abortThread) return;
+
+                    int selectedInCategory = annotationType.getCount(clusterNames[i]);
+                    int r1 = bg.getCount(clusterNames[i]);
+                    int nonSelectedInCategory = r1 - selectedInCategory;
+                    int selectedNotInCategory = c1 - selectedInCategory;
+                    int c2 = chipGenes - c1;
+                    int nonSelectedNotInCategory = c2 - nonSelectedInCategory;
+
+                    fisherValues[i] = MathUtil.fisher(selectedInCategory, nonSelectedInCategory, selectedNotInCategory, nonSelectedNotInCategory)[2];
+                }
             }
 
-            f = MathUtil.fisher(selectedInCategory, nonSelectedInCategory, selectedNotInCategory, nonSelectedNotInCategory)[2];
 
-            if (DEBUG_BUILD) println("Fisher:" + f);
-            clusterNames2FisherValues.put(clusterName, new Double(f));
+        }, clusterNames.length, TERMS_PER_CHUNK);
+
+        if (abortThread) return null;
+
+        for (int i = 0; i < clusterNames.length; i++)
+        {
+            if (DEBUG_BUILD) println("Cluster:>" + clusterNames[i] + "<" + " Fisher:" + fisherValues[i]);
+            clusterNames2FisherValues.put( clusterNames[i], new Double(fisherValues[i]) );
         }
 
         return clusterNames2FisherValues;
@@ -264,51 +227,92 @@ public class RelativeEntropyCalc
         return annotationTypeManager;
     }
 
-    private void setCache(Set<String> genes, String typeName, AnnotationType annotationType)
+    private void setCache(Set<String> genes, Set<String> typeNames, AnnotationTypeManager annotationTypeManager)
     {
         allGenes = genes;
-        storedTypeName = typeName;
-        cachedAnnotationType = annotationType;
+        cachedTypeNames = typeNames;
+        cachedAnnotationTypeManager = annotationTypeManager;
     }
 
+    /**
+    *  Returns the annotation type of the genes, caching the annotation types of all class sets for the genes at once,
+    *  as they are collected in the same pass & the analysis tables request them one type after the other.
+    */
     private AnnotationType getCache(String typeName, Set<String> genes)
     {
-        if (allGenes != null && storedTypeName != null && cachedAnnotationType != null)
-            if ( storedTypeName.equals(typeName) && allGenes.equals(genes) )
-                return cachedAnnotationType;
+        if (allGenes != null && cachedTypeNames != null && cachedAnnotationTypeManager != null)
+            if ( cachedTypeNames.contains(typeName) && allGenes.equals(genes) )
+                return cachedAnnotationTypeManager.getType(typeName);
+
+        Set<String> typeNames = new HashSet<String>();
+        for ( LayoutClasses layoutClass : layoutClassSetsManager.getClassSetNames() )
+            typeNames.add( layoutClass.getClassSetName() );
 
         AnnotationTypeManager subTypes4clusterName = getSubType(genes);
 
         if (abortThread) return null;
 
-        AnnotationType annotationType = subTypes4clusterName.getType(typeName);
-        setCache(genes, typeName, annotationType);
+        setCache(genes, typeNames, subTypes4clusterName);
 
-        return annotationType;
+        return subTypes4clusterName.getType(typeName);
     }
 
-    private double[] doRandomSampling(int totalGenes, double expectedFrequency)
+    /**
+    *  Returns the exact { observed frequency stdev, over-representation stdev, observed frequency mean, over-representation mean }
+    *  when the selected genes are drawn from the chip without replacement.
+    */
+    private double[] hyperGeometricMoments(int totalGenes, int genesInCategory, int chipGenes)
     {
-        double[] trialObs = new double[NUMBER_OF_TRIALS];
-        double[] trialOverRep = new double[NUMBER_OF_TRIALS];
+        double expectedFrequency = (double)genesInCategory / (double)chipGenes;
+        double trialObsStdev = sqrt( MathUtil.hyperGeometricVariance(totalGenes, genesInCategory, chipGenes) ) / (double)totalGenes;
+        double trialObsAvg = MathUtil.hyperGeometricMean(totalGenes, genesInCategory, chipGenes) / (double)totalGenes;
+
+        return new double[]{ trialObsStdev, trialObsStdev / expectedFrequency, trialObsAvg, trialObsAvg / expectedFrequency };
+    }
+
+    /**
+    *  Estimates the { observed frequency stdev, over-representation stdev, observed frequency mean, over-representation mean }
+    *  from random trials, each gene being selected independently with the expected frequency.
+    *  Trial i always uses random stream i of the seed, so the estimate doesn't depend on the number of cores.
+    */
+    private double[] doRandomSampling(final int totalGenes, final double expectedFrequency)
+    {
+        final double[] trialObs = new double[NUMBER_OF_TRIALS];
+        final double[] trialOverRep = new double[NUMBER_OF_TRIALS];
         double   trialObsAvg = 0;
         double   trialOverRepAvg = 0;
         double   trialObsStdev = 0;
         double   trialOverRepStdev = 0;
 
-        for (int i = 0; i < NUMBER_OF_TRIALS; i++)
+        executeInParallel(new LayoutComputeService.RangeKernel()
         {
-            if (abortThread) return null;
 
-            int hits = 0;
-            for (int j = 0; j < totalGenes; j++)
-                if (random.nextDouble() <= expectedFrequency)
-                    hits++;
+            @Override
+            public void process(int startIndex, int endIndex)
+            {
+                XORShiftRandomStream random = new XORShiftRandomStream(seed);
+                for (int i = startIndex; i < endIndex; i++)
+                {
+                    if (abortThread) return;
+
+                    random.setStream(seed, i);
+                    int hits = 0;
+                    for (int j = 0; j < totalGenes; j++)
+                        if (random.nextDouble() <= expectedFrequency)
+                            hits++;
+
+                    trialObs[i] = hits / (double)totalGenes;
+                    trialOverRep[i] = trialObs[i] / expectedFrequency;
+                }
+            }
 
-            if (DEBUG_BUILD) println("Got " + hits + " hits");
 
-            trialObs[i] = hits / (double)totalGenes;
-            trialOverRep[i] = trialObs[i] / expectedFrequency;
+        }, NUMBER_OF_TRIALS, TRIALS_PER_CHUNK);
+
+        if (abortThread) return null;
+
+        for (int i = 0; i < NUMBER_OF_TRIALS; i++)
+        {
             trialObsAvg += trialObs[i];
             trialOverRepAvg += trialOverRep[i];
         }
@@ -320,8 +324,6 @@ public class RelativeEntropyCalc
 
         for (int i = 0; i < NUMBER_OF_TRIALS; i++)
         {
-            if (abortThread) return null;
-
             trialObsStdev += (trialObs[i] - trialObsAvg) * (trialObs[i] - trialObsAvg);
             trialOverRepStdev += (trialOverRep[i] - trialOverRepAvg) * (trialOverRep[i] - trialOverRepAvg);
         }
@@ -334,12 +336,15 @@ public class RelativeEntropyCalc
         return new double[]{ trialObsStdev, trialOverRepStdev, trialObsAvg, trialOverRepAvg };
     }
 
-    private double round(double val, int precision)
+    /**
+    *  Executes the given kernel over the index range, in parallel if N-Core parallelism is available.
+    */
+    private void executeInParallel(LayoutComputeService.RangeKernel rangeKernel, int numberOfIndices, int chunkSize)
     {
-        // Multiply by 10 to the power of precision and add 0.5 for rounding up
-        // Take the nearest integer smaller than this value
-        // Divide it by 10**precision to get the rounded value
-        return  floor(val * pow(10, precision) + 0.5) / pow(10, precision);
+        if (USE_MULTICORE_PROCESS)
+            LayoutComputeService.getInstance().execute(rangeKernel, numberOfIndices, chunkSize, null);
+        else
+            rangeKernel.process(0, numberOfIndices);
     }
 
     public void setAbortThread(boolean abortThread)
@@ -109,6 +109,46 @@ public final class MathUtil
         return exp( logComb(r1, x) + logComb(r2, c1 - x) - logComb( c1 + c2, c1) );
     }
 
+    /**
+    * Checks that a hypergeometric distribution is defined for the given counts.
+    * @param sampleSize number of objects drawn without replacement
+    * @param successes number of successes in the population
+    * @param population size of the population
+    * @return true if 0 <= successes <= population & 0 < sampleSize <= population
+    */
+    public static boolean isHyperGeometricDefined(int sampleSize, int successes, int population)
+    {
+        return (successes >= 0) && (successes <= population) && (sampleSize > 0) && (sampleSize <= population);
+    }
+
+    /**
+    * Mean of the hypergeometric distribution, the expected number of successes in the sample.
+    * @param sampleSize number of objects drawn without replacement
+    * @param successes number of successes in the population
+    * @param population size of the population
+    * @return sampleSize * successes / population
+    */
+    public static double hyperGeometricMean(int sampleSize, int successes, int population)
+    {
+        return sampleSize * ( (double)successes / (double)population );
+    }
+
+    /**
+    * Variance of the hypergeometric distribution, the binomial variance with the finite population correction.
+    * @param sampleSize number of objects drawn without replacement
+    * @param successes number of successes in the population
+    * @param population size of the population
+    * @return sampleSize * p * (1 - p) * (population - sampleSize) / (population - 1), with p = successes / population
+    */
+    public static double hyperGeometricVariance(int sampleSize, int successes, int population)
+    {
+        if (population <= 1)
+            return 0.0;
+
+        double p = (double)successes / (double)population;
+        return sampleSize * p * (1.0 - p) * ( (double)(population - sampleSize) / (double)(population - 1) );
+    }
+
     /**
     * Fisher's exact test (approximation)  <p>
     * data | group 1 | group 2 | combined  <br>
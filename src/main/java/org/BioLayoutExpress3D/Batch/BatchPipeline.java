@@ -0,0 +1,303 @@
+package org.BioLayoutExpress3D.Batch;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import org.BioLayoutExpress3D.Clustering.MCL.*;
+import org.BioLayoutExpress3D.CoreUI.*;
+import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.Expression.*;
+import org.BioLayoutExpress3D.Files.*;
+import org.BioLayoutExpress3D.Files.Parsers.*;
+import org.BioLayoutExpress3D.Graph.GraphElements.*;
+import org.BioLayoutExpress3D.Network.*;
+import org.BioLayoutExpress3D.StaticLibraries.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.Expression.ExpressionEnvironment.*;
+
+/**
+*
+* BatchPipeline runs the expression data pipeline of one dataset without any GUI (headless batch mode):
+* parse, preprocess, correlate, filter, graph, layout, cluster & save.
+* It drives the same ExpressionLoader, ExpressionData, ExpressionParser, NetworkRootContainer & CoreSaver code as the layout frame,
+* with no layout frame & the no-op HeadlessLayoutProgressBar, and prints the elapsed time & heap usage of every stage as a metrics line.
+* The correlation & clustering settings are read from the static ExpressionEnvironment & GlobalEnvironment variables,
+* so only one pipeline may run per JVM at a time.
+*
+* @see org.BioLayoutExpress3D.Batch.BatchRunner
+* @version 3.0.0.0
+*
+*/
+
+public final class BatchPipeline
+{
+    /**
+    *  Metrics line prefix & header.
+    */
+    public static final String METRICS_PREFIX = "METRICS";
+    public static final String METRICS_HEADER = METRICS_PREFIX + "\tdataset\tstage\telapsed_ms\tused_heap_mb\tpeak_heap_mb";
+
+    private static final String EXPRESSION_FILE_EXTENSION = "expression";
+    private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+    private final File expressionFile;
+    private final File outputDirectory;
+    private final int firstDataColumn;
+    private final int firstDataRow;
+    private final boolean transpose;
+    private final float filterMinValue;
+    private final float filterMinCoefficientOfVariation;
+    private final GraphLayoutAlgorithm graphLayoutAlgorithm;
+    private final boolean clusterNetwork;
+    private final PrintStream metricsStream;
+
+    private String datasetName = "";
+    private String currentStageName = "";
+    private long currentStageStartTime = 0;
+    private String reasonForFailure = "";
+
+    /**
+    *  The constructor of the BatchPipeline class.
+    *  A NaN filter value disables that filter & the ALWAYS_ASK layout algorithm falls back to Fruchterman-Reingold, as there is no one to ask.
+    */
+    public BatchPipeline(File expressionFile, File outputDirectory, int firstDataColumn, int firstDataRow, boolean transpose,
+                         float filterMinValue, float filterMinCoefficientOfVariation, GraphLayoutAlgorithm graphLayoutAlgorithm,
+                         boolean clusterNetwork, PrintStream metricsStream)
+    {
+        this.expressionFile = expressionFile;
+        this.outputDirectory = outputDirectory;
+        this.firstDataColumn = firstDataColumn;
+        this.firstDataRow = firstDataRow;
+        this.transpose = transpose;
+        this.filterMinValue = filterMinValue;
+        this.filterMinCoefficientOfVariation = filterMinCoefficientOfVariation;
+        this.graphLayoutAlgorithm = (graphLayoutAlgorithm != GraphLayoutAlgorithm.ALWAYS_ASK) ? graphLayoutAlgorithm : GraphLayoutAlgorithm.FRUCHTERMAN_REINGOLD;
+        this.clusterNetwork = clusterNetwork;
+        this.metricsStream = metricsStream;
+
+        datasetName = expressionFile.getName();
+    }
+
+    /**
+    *  Runs all the stages of the pipeline. Returns false with a reason for failure if a stage fails,
+    *  an exception thrown by a stage being its reason for failure.
+    */
+    public boolean run()
+    {
+        reasonForFailure = "";
+        try
+        {
+            return runStages();
+        }
+        catch (Exception exc)
+        {
+            return fail( exc.toString() );
+        }
+    }
+
+    /**
+    *  Runs all the stages of the pipeline one after the other.
+    */
+    private boolean runStages()
+    {
+        LayoutProgressBar headlessLayoutProgressBar = HeadlessLayoutProgressBar.getHeadlessLayoutProgressBarSingleton();
+
+        // parse
+        startStage("parse");
+        LayoutClassSetsManager layoutClassSetsManager = new LayoutClassSetsManager();
+        NetworkRootContainer nc = new NetworkRootContainer(layoutClassSetsManager, null);
+        ExpressionData expressionData = new ExpressionData(null);
+        ExpressionLoader expressionLoader = new ExpressionLoader(layoutClassSetsManager);
+        expressionLoader.init(expressionFile, expressionData, firstDataColumn, firstDataRow, transpose);
+        if ( !expressionLoader.parse(headlessLayoutProgressBar) )
+            return fail( "Expression file parsing failed" + ( !expressionLoader.reasonForFailure.isEmpty() ? ": " + expressionLoader.reasonForFailure : "" ) );
+
+        EXPRESSION_FILE = expressionFile.getName();
+        EXPRESSION_FILE_PATH = expressionFile.getAbsolutePath().substring(0, expressionFile.getAbsolutePath().lastIndexOf( System.getProperty("file.separator") ) + 1);
+        EXPRESSION_DATA_FIRST_COLUMN = firstDataColumn;
+        EXPRESSION_DATA_FIRST_ROW = firstDataRow;
+        EXPRESSION_DATA_TRANSPOSE = transpose;
+        DATA_TYPE = DataTypes.EXPRESSION;
+        endStage();
+
+        // preprocess
+        startStage("preprocess");
+        expressionData.preprocess(headlessLayoutProgressBar, CURRENT_SCALE_TRANSFORM);
+        endStage();
+
+        // correlate, reusing the cached correlation file of the same expression file contents & correlation settings if there is a valid one
+        startStage("correlate");
+        ExpressionDataCache expressionDataCache = null;
+        try
+        {
+            expressionDataCache = new ExpressionDataCache(expressionFile, firstDataColumn, firstDataRow, transpose);
+        }
+        catch (IOException ioe)
+        {
+            return fail( "Expression data cache access failed: " + ioe.getMessage() );
+        }
+
+        File correlationFile = expressionDataCache.getCorrelationFile();
+        boolean isCorrelationFileValid = false;
+        if ( expressionDataCache.hasCorrelationFile() )
+        {
+            ExpressionParser checker = new ExpressionParser(nc, null, expressionData);
+            checker.init(correlationFile, EXPRESSION_FILE_EXTENSION);
+            isCorrelationFileValid = checker.checkFile();
+            checker.close();
+            if (!isCorrelationFileValid)
+                correlationFile.delete();
+        }
+
+        if (!isCorrelationFileValid)
+        {
+            expressionData.buildCorrelationNetwork(headlessLayoutProgressBar, correlationFile, CURRENT_METRIC.toString().toLowerCase(), STORED_CORRELATION_THRESHOLD, null);
+            if ( !correlationFile.exists() )
+                return fail( "Correlation network building failed for " + correlationFile.getAbsolutePath() );
+            expressionDataCache.correlationFileStored();
+        }
+        endStage();
+
+        // filter
+        startStage("filter");
+        CURRENT_FILTER_SET = new HashSet<Integer>();
+        if ( !Float.isNaN(filterMinValue) )
+            CURRENT_FILTER_SET.addAll( expressionData.filterMinValue(filterMinValue) );
+        if ( !Float.isNaN(filterMinCoefficientOfVariation) )
+            CURRENT_FILTER_SET.addAll( expressionData.filterMinCoefficientOfVariation(filterMinCoefficientOfVariation) );
+        endStage();
+
+        // graph
+        startStage("graph");
+        ExpressionParser parser = new ExpressionParser(nc, null, expressionData);
+        if ( !parser.init(correlationFile, EXPRESSION_FILE_EXTENSION) || !parser.parse() )
+            return fail( "Correlation file parsing failed for " + correlationFile.getAbsolutePath() );
+        if ( !expressionLoader.parseAnnotations(headlessLayoutProgressBar, nc) )
+            return fail("Expression annotations parsing failed");
+
+        // directional edges off for expression data, since directionality there has no meaning
+        DIRECTIONAL_EDGES.set(false);
+        nc.createNetworkComponentsContainer();
+        endStage();
+
+        // layout, reusing the cached converged layout of the same network & layout settings if there is one
+        startStage("layout");
+        if ( !nc.getVertices().isEmpty() ) // fail-safe check in case the correlation network is an empty graph
+        {
+            if ( expressionDataCache.loadLayout(nc, graphLayoutAlgorithm) )
+                nc.setKvalue();
+            else
+            {
+                nc.optimize(graphLayoutAlgorithm);
+                expressionDataCache.storeLayout(nc, graphLayoutAlgorithm);
+            }
+        }
+        nc.clearRoot();
+        nc.normaliseWeights();
+        endStage();
+
+        // cluster
+        if (clusterNetwork)
+        {
+            startStage("cluster");
+            if ( !nc.getVertices().isEmpty() )
+                MCLNetworkClustering.clusterNetwork(nc);
+            endStage();
+        }
+
+        // save
+        startStage("save");
+        File layoutFile = new File( outputDirectory, IOUtils.getPrefix( expressionFile.getName() ) + "." + SupportedOutputFileTypes.LAYOUT.toString().toLowerCase() );
+        try
+        {
+            saveLayoutFile(nc, layoutFile);
+        }
+        catch (IOException ioe)
+        {
+            return fail( "Layout file saving failed for " + layoutFile.getAbsolutePath() + ": " + ioe.getMessage() );
+        }
+        endStage();
+
+        return true;
+    }
+
+    /**
+    *  Builds the graph nodes & graph edges of the network the same way as the graph does when rebuilt & saves them as a layout file.
+    */
+    private void saveLayoutFile(NetworkContainer nc, File layoutFile) throws IOException
+    {
+        HashMap<Integer, GraphNode> graphNodes = new HashMap<Integer, GraphNode>( nc.getNumberOfVertices() );
+        ArrayList<GraphEdge> graphEdges = new ArrayList<GraphEdge>( nc.getEdges().size() );
+        GraphNode firstGraphNode = null;
+        GraphNode secondGraphNode = null;
+        for ( Edge edge : nc.getEdges() )
+        {
+            firstGraphNode = graphNodes.get( edge.getFirstVertex().getVertexID() );
+            if (firstGraphNode == null)
+            {
+                firstGraphNode = new GraphNode( edge.getFirstVertex() );
+                graphNodes.put(firstGraphNode.getNodeID(), firstGraphNode);
+            }
+
+            secondGraphNode = graphNodes.get( edge.getSecondVertex().getVertexID() );
+            if (secondGraphNode == null)
+            {
+                secondGraphNode = new GraphNode( edge.getSecondVertex() );
+                graphNodes.put(secondGraphNode.getNodeID(), secondGraphNode);
+            }
+
+            graphEdges.add( new GraphEdge( firstGraphNode, secondGraphNode, edge, edge.getScaledWeight() ) );
+        }
+
+        CoreSaver.saveLayoutFile(nc, graphNodes.values(), graphEdges, layoutFile);
+    }
+
+    /**
+    *  Starts timing a stage & resets the peak heap usage.
+    */
+    private void startStage(String stageName)
+    {
+        currentStageName = stageName;
+        for ( MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans() )
+            if ( memoryPoolMXBean.getType().equals(MemoryType.HEAP) )
+                memoryPoolMXBean.resetPeakUsage();
+
+        currentStageStartTime = System.nanoTime();
+    }
+
+    /**
+    *  Ends timing the current stage & prints its metrics line.
+    */
+    private void endStage()
+    {
+        long elapsedTime = (System.nanoTime() - currentStageStartTime) / 1000000L;
+        long peakHeapUsage = 0;
+        for ( MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans() )
+            if ( memoryPoolMXBean.getType().equals(MemoryType.HEAP) )
+                peakHeapUsage += memoryPoolMXBean.getPeakUsage().getUsed();
+        long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        metricsStream.println( String.format( Locale.US, "%s\t%s\t%s\t%d\t%.1f\t%.1f", METRICS_PREFIX, datasetName, currentStageName, elapsedTime, usedHeap / BYTES_PER_MEGABYTE, peakHeapUsage / BYTES_PER_MEGABYTE ) );
+        metricsStream.flush();
+    }
+
+    /**
+    *  Records the reason for failure of the current stage.
+    */
+    private boolean fail(String reason)
+    {
+        reasonForFailure = currentStageName + ": " + reason;
+
+        return false;
+    }
+
+    /**
+    *  Gets the reason for failure of the last run, empty if it succeeded.
+    */
+    public String getReasonForFailure()
+    {
+        return reasonForFailure;
+    }
+
+
+}
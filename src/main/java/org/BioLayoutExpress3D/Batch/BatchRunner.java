@@ -0,0 +1,390 @@
+package org.BioLayoutExpress3D.Batch;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.BioLayoutExpress3D.CPUParallelism.Executors.*;
+import org.BioLayoutExpress3D.Environment.Preferences.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.Expression.ExpressionEnvironment.*;
+
+/**
+*
+* BatchRunner is the command-line entry point of the headless batch mode (Layout -batch [options] files).
+* Every expression data file is run through a BatchPipeline & saved as a layout file, with no windows or OpenGL contexts.
+* With one job the datasets are run one after the other in this JVM. With more jobs every dataset is run in its own worker JVM,
+* as the pipeline settings are static global variables, with up to the given number of worker JVMs at a time sharing the thread budget.
+*
+* @see org.BioLayoutExpress3D.Batch.BatchPipeline
+* @version 3.0.0.0
+*
+*/
+
+public final class BatchRunner
+{
+    private static final String BATCH_OPTION = "-batch";
+    private static final String JOBS_OPTION = "-jobs";
+    private static final String THREADS_OPTION = "-threads";
+
+    private File outputDirectory = null;
+    private int firstDataColumn = 1;
+    private int firstDataRow = 1;
+    private boolean transpose = false;
+    private CorrelationTypes metric = null;
+    private ScaleTransformType scaleTransform = null;
+    private float correlationThreshold = Float.NaN;
+    private float storedCorrelationThreshold = Float.NaN;
+    private int storedCorrelationTopKNeighbours = -1;
+    private float filterMinValue = Float.NaN;
+    private float filterMinCoefficientOfVariation = Float.NaN;
+    private GraphLayoutAlgorithm graphLayoutAlgorithm = null;
+    private boolean clusterNetwork = false;
+    private boolean useDefaultPreferences = false;
+    private Map<String, String> preferences = new HashMap<String, String>();
+    private int numberOfJobs = 1;
+    private int numberOfThreads = Integer.getInteger( AVAILABLE_PROCESSORS_PROPERTY, Runtime.getRuntime().availableProcessors() ); // a worker JVM keeps its given share
+
+    // the options passed on as they are to the worker JVMs
+    private ArrayList<String> workerOptions = new ArrayList<String>();
+    private ArrayList<File> expressionFiles = new ArrayList<File>();
+
+    /**
+    *  Static method to print out the batch mode command-line options & exit, with exit code 0 only for the help page & 1 for argument errors.
+    */
+    private static void usage(String msg)
+    {
+        usage(msg, 1);
+    }
+
+    /**
+    *  Static method to print out the batch mode command-line options & exit with the given exit code.
+    */
+    private static void usage(String msg, int exitCode)
+    {
+        System.err.println(msg);
+        System.err.println();
+        System.err.println("Usage: -batch [options] file1.expression [file2.expression ...]");
+        System.err.println(" -outputDirectory dir                    : directory of the saved layout files (default the expression file directory)");
+        System.err.println(" -firstDataColumn n                      : first expression data column, counting from 0 (default 1)");
+        System.err.println(" -firstDataRow n                         : first expression data row, counting from 0 (default 1)");
+        System.err.println(" -transpose                              : correlate the columns instead of the rows");
+        System.err.println(" -metric [pearson|spearman]              : correlation metric (default pearson)");
+        System.err.println(" -scaleTransform [none|log2|log10|antilog2|antilog10] : scale transform of the expression data (default none)");
+        System.err.println(" -storedThreshold r                      : correlation threshold of the correlation cache file (default 0.70)");
+        System.err.println(" -topK k                                 : stored correlations per row, 0 for all (default 0)");
+        System.err.println(" -threshold r                            : correlation threshold of the network (default 0.85)");
+        System.err.println(" -filterMinValue v                       : filter out rows with no value of at least v");
+        System.err.println(" -filterMinCoefficientOfVariation v      : filter out rows with a coefficient of variation below v");
+        System.err.println(" -layoutAlgorithm [fruchterman_reingold|fmmm|circle] : layout algorithm (default the graph_layout_algorithm preference)");
+        System.err.println(" -cluster [on|off]                       : MCL cluster the network with the mcl_* preferences (default off)");
+        System.err.println(" -jobs n                                 : datasets processed concurrently, each in its own JVM (default 1)");
+        System.err.println(" -threads n                              : total threads shared by all jobs (default all cores)");
+        System.err.println(" -useDefaultPreferences                  : use the defaults for all saved preferences");
+        System.err.println(" -usePreference <preference> <value>     : set a specific preference to some value");
+        System.err.println(" -help                                   : prints out this help page");
+
+        System.exit(exitCode);
+    }
+
+    /**
+    *  The main batch mode entry point, called from Layout.main() with the arguments following -batch.
+    */
+    public static void main(String[] args)
+    {
+        System.exit( new BatchRunner().run(args) );
+    }
+
+    /**
+    *  Parses the arguments & runs all the datasets. Returns the exit code, non zero if any dataset failed.
+    */
+    private int run(String[] args)
+    {
+        parseArguments(args);
+
+        if ( expressionFiles.isEmpty() )
+            usage("No expression data files given.");
+
+        // no screen in batch mode, set before any AWT class initialization
+        System.setProperty("java.awt.headless", "true");
+        // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=7075600
+        System.setProperty("java.util.Arrays.useLegacyMergeSort", "true");
+
+        numberOfJobs = Math.max( 1, Math.min(numberOfJobs, expressionFiles.size() ) );
+        numberOfThreads = Math.max(1, numberOfThreads);
+
+        System.out.println(BatchPipeline.METRICS_HEADER);
+
+        return (numberOfJobs == 1) ? runInProcess() : runWorkerProcesses();
+    }
+
+    /**
+    *  Parses the command-line arguments without touching the global environment, as its number of processors is set after parsing.
+    */
+    private void parseArguments(String[] args)
+    {
+        int i = 0;
+        try
+        {
+            for (; i < args.length; i++)
+            {
+                String option = args[i];
+                if ( JOBS_OPTION.equals(option) )
+                    numberOfJobs = Integer.parseInt(args[++i]);
+                else if ( THREADS_OPTION.equals(option) )
+                    numberOfThreads = Integer.parseInt(args[++i]);
+                else if ( "-help".equals(option) )
+                    usage("Help page requested.", 0);
+                else if ( option.startsWith("-") )
+                    i += parseWorkerOption(args, i);
+                else
+                {
+                    File file = new File(option);
+                    if ( !file.isFile() )
+                        usage("Invalid argument: " + option);
+                    expressionFiles.add( file.getAbsoluteFile() );
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            usage("Argument at position " + i + " missing:\n" + e.getMessage());
+        }
+        catch (IllegalArgumentException e)
+        {
+            usage("Invalid value at position " + i + ":\n" + e.getMessage());
+        }
+    }
+
+    /**
+    *  Parses an option passed on to the worker JVMs & returns the number of values it took.
+    */
+    private int parseWorkerOption(String[] args, int i)
+    {
+        String option = args[i];
+        workerOptions.add(option);
+        if ( "-transpose".equals(option) )
+        {
+            transpose = true;
+            return 0;
+        }
+        else if ( "-useDefaultPreferences".equals(option) )
+        {
+            useDefaultPreferences = true;
+            return 0;
+        }
+
+        String value = args[i + 1];
+        if ( "-usePreference".equals(option) )
+        {
+            // the preference name & its value
+            preferences.put( value.toLowerCase(), args[i + 2] );
+            workerOptions.add(value);
+            workerOptions.add(args[i + 2]);
+            return 2;
+        }
+
+        workerOptions.add(value);
+        if ( "-outputDirectory".equals(option) )
+        {
+            outputDirectory = new File(value).getAbsoluteFile();
+            workerOptions.set( workerOptions.size() - 1, outputDirectory.getPath() );
+        }
+        else if ( "-firstDataColumn".equals(option) )
+            firstDataColumn = Integer.parseInt(value);
+        else if ( "-firstDataRow".equals(option) )
+            firstDataRow = Integer.parseInt(value);
+        else if ( "-metric".equals(option) )
+            metric = CorrelationTypes.valueOf( value.toUpperCase() );
+        else if ( "-scaleTransform".equals(option) )
+            scaleTransform = ScaleTransformType.valueOf( value.toUpperCase() );
+        else if ( "-storedThreshold".equals(option) )
+            storedCorrelationThreshold = Float.parseFloat(value);
+        else if ( "-topK".equals(option) )
+            storedCorrelationTopKNeighbours = Integer.parseInt(value);
+        else if ( "-threshold".equals(option) )
+            correlationThreshold = Float.parseFloat(value);
+        else if ( "-filterMinValue".equals(option) )
+            filterMinValue = Float.parseFloat(value);
+        else if ( "-filterMinCoefficientOfVariation".equals(option) )
+            filterMinCoefficientOfVariation = Float.parseFloat(value);
+        else if ( "-layoutAlgorithm".equals(option) )
+            graphLayoutAlgorithm = GraphLayoutAlgorithm.valueOf( value.toUpperCase() );
+        else if ( "-cluster".equals(option) )
+        {
+            if ( "on".equalsIgnoreCase(value) )
+                clusterNetwork = true;
+            else if ( "off".equalsIgnoreCase(value) )
+                clusterNetwork = false;
+            else
+                usage("Invalid value for -cluster: " + value + ", expected on or off.");
+        }
+        else
+            usage("Invalid argument: " + option);
+
+        return 1;
+    }
+
+    /**
+    *  Runs all the datasets one after the other in this JVM.
+    */
+    private int runInProcess()
+    {
+        // caps the cores used by the N-Core parallelism, has to be set before the global environment is initialized
+        System.setProperty( AVAILABLE_PROCESSORS_PROPERTY, Integer.toString(numberOfThreads) );
+
+        if (!useDefaultPreferences)
+            LayoutPreferences.getLayoutPreferencesSingleton().loadPreferences();
+        if ( !LayoutPreferences.getLayoutPreferencesSingleton().useSpecifiedPreferences(preferences) )
+            usage("Invalid preference value given.");
+
+        if (metric != null)
+            CURRENT_METRIC = metric;
+        if (scaleTransform != null)
+            CURRENT_SCALE_TRANSFORM = scaleTransform;
+        if ( !Float.isNaN(storedCorrelationThreshold) )
+            STORED_CORRELATION_THRESHOLD = storedCorrelationThreshold;
+        if (storedCorrelationTopKNeighbours >= 0)
+            STORED_CORRELATION_TOP_K_NEIGHBOURS = storedCorrelationTopKNeighbours;
+        if ( !Float.isNaN(correlationThreshold) )
+            CURRENT_CORRELATION_THRESHOLD = correlationThreshold;
+
+        // the network is thresholded from the stored correlations, so it cannot be below the stored threshold
+        if (CURRENT_CORRELATION_THRESHOLD < STORED_CORRELATION_THRESHOLD)
+            usage("The threshold " + CURRENT_CORRELATION_THRESHOLD + " is below the stored threshold " + STORED_CORRELATION_THRESHOLD + ".");
+
+        // a failing dataset is logged & the rest are still run, the exit code then reports the failure
+        int exitCode = 0;
+        for (File expressionFile : expressionFiles)
+        {
+            try
+            {
+                // the exceptions of a stage are reported through the reason for failure
+                BatchPipeline batchPipeline = new BatchPipeline( expressionFile, (outputDirectory != null) ? outputDirectory : expressionFile.getParentFile(),
+                                                                 firstDataColumn, firstDataRow, transpose, filterMinValue, filterMinCoefficientOfVariation,
+                                                                 (graphLayoutAlgorithm != null) ? graphLayoutAlgorithm : GRAPH_LAYOUT_ALGORITHM.get(),
+                                                                 clusterNetwork, System.out );
+                if ( !batchPipeline.run() )
+                {
+                    System.err.println( expressionFile.getName() + ": " + batchPipeline.getReasonForFailure() );
+                    exitCode = 1;
+                }
+            }
+            catch (OutOfMemoryError memErr)
+            {
+                System.err.println( expressionFile.getName() + ": " + memErr );
+                exitCode = 1;
+            }
+        }
+
+        return exitCode;
+    }
+
+    /**
+    *  Runs every dataset in its own worker JVM, up to the number of jobs at a time, each capped to its share of the thread budget.
+    */
+    private int runWorkerProcesses()
+    {
+        ArrayList<String> command = new ArrayList<String>();
+        command.add( System.getProperty("java.home") + File.separator + "bin" + File.separator + "java" );
+        // only the heap size & the system properties are passed on, not debugger agents or other JVM flags that cannot be shared by several JVMs
+        for ( String inputArgument : ManagementFactory.getRuntimeMXBean().getInputArguments() )
+            if ( inputArgument.startsWith("-Xmx") || ( inputArgument.startsWith("-D") && !inputArgument.startsWith("-D" + AVAILABLE_PROCESSORS_PROPERTY + "=") ) )
+                command.add(inputArgument);
+        command.add("-Djava.awt.headless=true");
+        command.add( "-D" + AVAILABLE_PROCESSORS_PROPERTY + "=" + Math.max(1, numberOfThreads / numberOfJobs) );
+        command.add("-cp");
+        command.add( System.getProperty("java.class.path") );
+        command.add( org.BioLayoutExpress3D.Layout.class.getName() );
+        command.add(BATCH_OPTION);
+        command.addAll(workerOptions);
+        command.add(JOBS_OPTION);
+        command.add("1");
+
+        ExecutorService executor = Executors.newFixedThreadPool( numberOfJobs, new LoggerThreadFactory("BatchRunner") );
+        LinkedHashMap<File, Future<Integer>> exitCodes = new LinkedHashMap<File, Future<Integer>>();
+        for (File expressionFile : expressionFiles)
+        {
+            ArrayList<String> workerCommand = new ArrayList<String>(command);
+            workerCommand.add( expressionFile.getPath() );
+            exitCodes.put( expressionFile, executor.submit( new WorkerProcess( expressionFile.getName(), workerCommand ) ) );
+        }
+        executor.shutdown();
+
+        int exitCode = 0;
+        System.out.println("\nBatch summary:");
+        for ( Map.Entry<File, Future<Integer>> entry : exitCodes.entrySet() )
+        {
+            int workerExitCode = 0;
+            try
+            {
+                workerExitCode = entry.getValue().get();
+            }
+            catch (InterruptedException ie)
+            {
+                workerExitCode = -1;
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ee)
+            {
+                workerExitCode = -1;
+                System.err.println( entry.getKey().getName() + ": " + ee.getCause() );
+            }
+
+            System.out.println( entry.getKey().getName() + "\t" + ( (workerExitCode == 0) ? "OK" : "FAILED (exit code " + workerExitCode + ")" ) );
+            if (workerExitCode != 0)
+                exitCode = 1;
+        }
+
+        return exitCode;
+    }
+
+    /**
+    *  Runs one dataset in a worker JVM, relaying its output line by line. The metrics lines are relayed as they are, the rest with the dataset name.
+    */
+    private static class WorkerProcess implements Callable<Integer>
+    {
+
+        private String datasetName = "";
+        private List<String> command = null;
+
+        private WorkerProcess(String datasetName, List<String> command)
+        {
+            this.datasetName = datasetName;
+            this.command = command;
+        }
+
+        @Override
+        public Integer call() throws IOException, InterruptedException
+        {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            process.getOutputStream().close();
+
+            BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+            try
+            {
+                String line = null;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    if ( line.equals(BatchPipeline.METRICS_HEADER) )
+                        continue;
+
+                    synchronized (System.out)
+                    {
+                        System.out.println( line.startsWith(BatchPipeline.METRICS_PREFIX) ? line : "[" + datasetName + "] " + line );
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            return process.waitFor();
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,233 @@
+package org.BioLayoutExpress3D.CPUParallelism;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.CPUParallelism.Executors.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
+
+/**
+*
+* The LayoutComputeService class is a long-lived N-Core compute service for the layout algorithms.
+* Its worker threads stay alive across iterations & across graphs, and are released phase by phase through a Phaser,
+* so each parallel step costs two phase advances instead of a new thread pool & a CyclicBarrier handshake.
+* Work is handed out as chunks of an index range claimed dynamically by the workers (and the calling thread),
+* so an idle worker picks up the remaining chunks of the slower ones.
+*
+* @version 3.0.0.0
+*/
+
+public final class LayoutComputeService
+{
+
+    /**
+    *  The RangeKernel interface processes the [startIndex, endIndex) chunk of an index range.
+    */
+    public static interface RangeKernel
+    {
+        public void process(int startIndex, int endIndex);
+    }
+
+    /**
+    *  The shared instance of the LayoutComputeService class.
+    */
+    private static LayoutComputeService layoutComputeService = null;
+
+    /**
+    *  Variables needed for the Phaser based workers.
+    */
+    private final int numberOfWorkerThreads;
+    private final Phaser phaser;
+    private final ReentrantLock executeLock = new ReentrantLock();
+    private final ThreadLocal<Boolean> isWorkerThread = new ThreadLocal<Boolean>();
+
+    /**
+    *  Variables holding the current job.
+    */
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private volatile RangeKernel rangeKernel = null;
+    private volatile int numberOfIndices = 0;
+    private volatile int chunkSize = 1;
+    private volatile LayoutProgressBar layoutProgressBarDialog = null;
+    private volatile boolean cancelled = false;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    /**
+    *  The constructor of the LayoutComputeService class. Starts the worker threads, with the calling thread acting as the last worker.
+    */
+    private LayoutComputeService(int numberOfWorkers)
+    {
+        numberOfWorkerThreads = (numberOfWorkers > 1) ? numberOfWorkers - 1 : 0;
+        phaser = new Phaser(numberOfWorkerThreads + 1);
+
+        LoggerThreadFactory loggerThreadFactory = new LoggerThreadFactory("LayoutComputeService");
+        for (int i = 0; i < numberOfWorkerThreads; i++)
+        {
+            Thread workerThread = loggerThreadFactory.newThread( createWorker() );
+            workerThread.setDaemon(true);
+            workerThread.start();
+        }
+    }
+
+    /**
+    *  Gets the shared instance of the LayoutComputeService class, starting its worker threads on first use.
+    */
+    public static synchronized LayoutComputeService getInstance()
+    {
+        if (layoutComputeService == null)
+            layoutComputeService = new LayoutComputeService(NUMBER_OF_AVAILABLE_PROCESSORS);
+
+        return layoutComputeService;
+    }
+
+    /**
+    *  Gets the number of workers, including the calling thread.
+    */
+    public int getNumberOfWorkers()
+    {
+        return numberOfWorkerThreads + 1;
+    }
+
+    /**
+    *  Processes the [0, numberOfIndices) range with the given kernel in chunks of chunkSize indices.
+    *  The chunks are claimed in ascending index order, so the heaviest work should be placed at the lower indices.
+    *  Nested or concurrent calls are processed serially by the calling thread.
+    *  Returns false if the user cancelled through the given (optional) LayoutProgressBar.
+    *  The first exception or error thrown by the kernel on any thread is rethrown once all workers have finished the job.
+    */
+    public boolean execute(RangeKernel rangeKernel, int numberOfIndices, int chunkSize, LayoutProgressBar layoutProgressBarDialog)
+    {
+        if (chunkSize < 1)
+            chunkSize = 1;
+
+        if ( (numberOfWorkerThreads == 0) || (isWorkerThread.get() != null) || !executeLock.tryLock() )
+            return executeSerially(rangeKernel, numberOfIndices, chunkSize, layoutProgressBarDialog);
+
+        try
+        {
+            this.rangeKernel = rangeKernel;
+            this.numberOfIndices = numberOfIndices;
+            this.chunkSize = chunkSize;
+            this.layoutProgressBarDialog = layoutProgressBarDialog;
+            cancelled = false;
+            failure.set(null);
+            nextIndex.set(0);
+
+            phaser.arriveAndAwaitAdvance(); // release the workers
+            try
+            {
+                isWorkerThread.set(Boolean.TRUE);
+                processChunks();
+            }
+            catch (Throwable ex)
+            {
+                failure.compareAndSet(null, ex);
+            }
+            finally
+            {
+                isWorkerThread.remove();
+                phaser.arriveAndAwaitAdvance(); // wait for all workers to finish
+            }
+
+            rethrowFailure( failure.getAndSet(null) );
+
+            return !cancelled;
+        }
+        finally
+        {
+            this.rangeKernel = null;
+            this.layoutProgressBarDialog = null;
+            executeLock.unlock();
+        }
+    }
+
+    /**
+    *  Rethrows the given failure of a job (if any) on the calling thread, unchecked exceptions & errors as they are.
+    */
+    private static void rethrowFailure(Throwable failure)
+    {
+        if (failure == null)
+            return;
+
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException)failure;
+        if (failure instanceof Error)
+            throw (Error)failure;
+
+        throw new RuntimeException(failure);
+    }
+
+    /**
+    *  Processes the given range on the calling thread.
+    */
+    private boolean executeSerially(RangeKernel rangeKernel, int numberOfIndices, int chunkSize, LayoutProgressBar layoutProgressBarDialog)
+    {
+        for (int startIndex = 0; startIndex < numberOfIndices; startIndex += chunkSize)
+        {
+            if ( (layoutProgressBarDialog != null) && layoutProgressBarDialog.userHasCancelled() )
+                return false;
+
+            rangeKernel.process(startIndex, (startIndex + chunkSize < numberOfIndices) ? startIndex + chunkSize : numberOfIndices);
+        }
+
+        return true;
+    }
+
+    /**
+    *  Claims & processes chunks of the current job until none are left, the user has cancelled or a kernel has failed on any thread.
+    */
+    private void processChunks()
+    {
+        int startIndex = 0;
+        while ( !cancelled && (failure.get() == null) && ( startIndex = nextIndex.getAndAdd(chunkSize) ) < numberOfIndices )
+        {
+            if ( (layoutProgressBarDialog != null) && layoutProgressBarDialog.userHasCancelled() )
+            {
+                cancelled = true;
+                break;
+            }
+
+            rangeKernel.process(startIndex, (startIndex + chunkSize < numberOfIndices) ? startIndex + chunkSize : numberOfIndices);
+        }
+    }
+
+    /**
+    *  Return a light-weight worker that waits on the Phaser for each job of the LayoutComputeService.
+    */
+    private Runnable createWorker()
+    {
+        return new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                isWorkerThread.set(Boolean.TRUE);
+                while (true)
+                {
+                    phaser.arriveAndAwaitAdvance(); // wait for the next job
+                    try
+                    {
+                        processChunks();
+                    }
+                    catch (Throwable ex)
+                    {
+                        // kept apart from the user cancellation, to be rethrown by execute() on the calling thread
+                        failure.compareAndSet(null, ex);
+                        if (DEBUG_BUILD) println("Problem with a LayoutComputeService worker thread:\n" + ex.getMessage());
+                    }
+                    finally
+                    {
+                        phaser.arriveAndAwaitAdvance(); // signal the job is finished
+                    }
+                }
+            }
+
+
+        };
+    }
+
+
+}
@@ -927,7 +927,7 @@ public final class ClassViewerFrame extends JFrame implements ActionListener, Li
                         if ( tabbedPane.getSelectedIndex() == ENTROPY_DETAILS_TAB.ordinal() )
                             tabbedPane.setSelectedIndex( ENTROPY_TAB.ordinal() );
 
-                        analysisTableModel.setTerm2Entropy(null, null, null, null, null, null, null, null, null, null, null);
+                        analysisTableModel.setTerm2Entropy(null, null, null, null, null);
                     }
                 }
 
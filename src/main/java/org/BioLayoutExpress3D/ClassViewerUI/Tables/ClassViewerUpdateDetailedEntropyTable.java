@@ -3,6 +3,7 @@ package org.BioLayoutExpress3D.ClassViewerUI.Tables;
 import java.util.*;
 import javax.swing.*;
 import org.BioLayoutExpress3D.Analysis.*;
+import org.BioLayoutExpress3D.Analysis.Blobs.*;
 import org.BioLayoutExpress3D.ClassViewerUI.*;
 import org.BioLayoutExpress3D.ClassViewerUI.Tables.TableModels.*;
 import org.BioLayoutExpress3D.CoreUI.*;
@@ -60,13 +61,7 @@ public final class ClassViewerUpdateDetailedEntropyTable implements Runnable
         Map<String, Map<String, Double>>  perType = new HashMap<String, Map<String, Double>>();
         Map<String, Map<String, Double>> fishers  = new HashMap<String, Map<String, Double>>();
 
-        Map<String, HashMap<String, String>> Observed      = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> Expected      = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> Fobs          = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> Fexp          = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> OverRep       = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> ExpectedTrial = new HashMap<String, HashMap<String, String>>();
-        Map<String, HashMap<String, String>> Zscore        = new HashMap<String, HashMap<String, String>>();
+        Map<String, Map<String, OverRepresentation>> OverRep = new HashMap<String, Map<String, OverRepresentation>>();
 
         Map<String, Map<String, Integer>> numberOfMembers = new HashMap<String, Map<String, Integer>>();
 
@@ -104,7 +99,7 @@ public final class ClassViewerUpdateDetailedEntropyTable implements Runnable
 
                 fishers.put(type, fisher);
 
-                Map<String, HashMap<String, String>> overRepData = relEntropyCalc.overRepForEachCluster(selectedGenes, type);
+                Map<String, OverRepresentation> overRepData = relEntropyCalc.overRepForEachCluster(selectedGenes, type);
 
                 if (abortThread)
                 {
@@ -114,13 +109,7 @@ public final class ClassViewerUpdateDetailedEntropyTable implements Runnable
                     return;
                 }
 
-                Observed.put(type,  overRepData.get("Obs"));
-                Expected.put(type,  overRepData.get("Exp"));
-                Fobs.put(type,      overRepData.get("Fobs"));
-                Fexp.put(type,      overRepData.get("Fexp"));
-                OverRep.put(type,   overRepData.get("OverRep"));
-                ExpectedTrial.put(type, overRepData.get("ExpT"));
-                Zscore.put(type,    overRepData.get("Zscore"));
+                OverRep.put(type, overRepData);
 
                 Map<String, Integer> numberOfMember = relEntropyCalc.clusterMembers(selectedGenes, type);
                 numberOfMembers.put(type, numberOfMember);
@@ -162,8 +151,7 @@ public final class ClassViewerUpdateDetailedEntropyTable implements Runnable
             Map<String, Double>  fisher = fishers.get(type);
             Map<String, Integer> members = numberOfMembers.get(type);
 
-            modelDetail.addAnalysisValues( Observed.get(type), Expected.get(type), ExpectedTrial.get(type), Fobs.get(type), Fexp.get(type),
-                                           OverRep.get(type), Zscore.get(type), entropies, fisher, members, type);
+            modelDetail.addAnalysisValues( OverRep.get(type), entropies, fisher, members, type );
         }
 
         if (abortThread)
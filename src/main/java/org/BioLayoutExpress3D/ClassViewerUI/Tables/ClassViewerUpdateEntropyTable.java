@@ -3,6 +3,7 @@ package org.BioLayoutExpress3D.ClassViewerUI.Tables;
 import java.util.*;
 import javax.swing.*;
 import org.BioLayoutExpress3D.Analysis.*;
+import org.BioLayoutExpress3D.Analysis.Blobs.*;
 import org.BioLayoutExpress3D.ClassViewerUI.*;
 import org.BioLayoutExpress3D.ClassViewerUI.Tables.TableModels.*;
 import org.BioLayoutExpress3D.CoreUI.*;
@@ -59,7 +60,7 @@ public final class ClassViewerUpdateEntropyTable implements Runnable
             layoutProgressBarDialog.startProgressBar();
             layoutProgressBarDialog.incrementProgress();
 
-            Map<String, HashMap<String, String>> overRepData = relativeEntropyCalc.overRepForEachCluster(selectedGenes, annotationClass);
+            Map<String, OverRepresentation> overRepData = relativeEntropyCalc.overRepForEachCluster(selectedGenes, annotationClass);
 
             if (abortThread)
             {
@@ -70,14 +71,6 @@ public final class ClassViewerUpdateEntropyTable implements Runnable
             }
             layoutProgressBarDialog.incrementProgress();
 
-            Map<String, String> observed      = overRepData.get("Obs");
-            Map<String, String> expected      = overRepData.get("Exp");
-            Map<String, String> fobs          = overRepData.get("Fobs");
-            Map<String, String> fexp          = overRepData.get("Fexp");
-            Map<String, String> overrep       = overRepData.get("OverRep");
-            Map<String, String> expectedTrial = overRepData.get("ExpT");
-            Map<String, String> zscore        = overRepData.get("Zscore");
-
             Map<String, Double>  entropies    = relativeEntropyCalc.relEntropy4Selection(selectedGenes, annotationClass);
             Map<String, Double>  fishers      = relativeEntropyCalc.fisherTestForEachCluster(selectedGenes, annotationClass);
             Map<String, Integer> members      = relativeEntropyCalc.clusterMembers(selectedGenes, annotationClass);
@@ -91,7 +84,7 @@ public final class ClassViewerUpdateEntropyTable implements Runnable
             }
             layoutProgressBarDialog.incrementProgress();
 
-            analysisTableModel.setTerm2Entropy(observed, expected, expectedTrial, fobs, fexp, overrep, zscore, entropies, fishers, members, annotationClass);
+            analysisTableModel.setTerm2Entropy(overRepData, entropies, fishers, members, annotationClass);
 
             if (abortThread)
             {
@@ -2,6 +2,7 @@ package org.BioLayoutExpress3D.ClassViewerUI.Tables.TableModels;
 
 import java.util.*;
 import javax.swing.table.*;
+import org.BioLayoutExpress3D.Analysis.Blobs.*;
 import org.BioLayoutExpress3D.Analysis.Utils.*;
 
 /**
@@ -109,7 +110,7 @@ public final class ClassViewerTableModelDetail extends AbstractTableModel
         }
     }
 
-    public void setTerm2Entropy(Map<String, String> Observed, Map<String, String> Expected, Map<String, String> ExpectedTrial, Map<String, String> Fobs, Map<String, String> Fexp, Map<String, String> OverRep, Map<String, String> Zscore, Map<String, Double> Term2Entropy, Map<String, Double> Fishers, Map<String, Integer> Members, String AnnotationType)
+    public void setTerm2Entropy(Map<String, OverRepresentation> OverRep, Map<String, Double> Term2Entropy, Map<String, Double> Fishers, Map<String, Integer> Members, String AnnotationType)
     {
         if (Term2Entropy == null || AnnotationType == null)
         {
@@ -139,13 +140,7 @@ public final class ClassViewerTableModelDetail extends AbstractTableModel
             annotationTerm[i]  = term;
             annotationType[i]  = AnnotationType;
 
-            observed[i]        = Observed.get(annotationTerm[i]);
-            expected[i]        = Expected.get(annotationTerm[i]);
-            expectedTrial[i]   = ExpectedTrial.get(annotationTerm[i]);
-            fobs[i]            = Double.parseDouble( Fobs.get(annotationTerm[i]) );
-            fexp[i]            = Double.parseDouble( Fexp.get(annotationTerm[i]) );
-            overRep[i]         = OverRep.get(annotationTerm[i]);
-            zscore[i]          = Double.parseDouble( Zscore.get(annotationTerm[i]) );
+            setOverRepresentationValues( i, OverRep.get(annotationTerm[i]) );
 
             relativeEntropy[i] = Term2Entropy.get(annotationTerm[i]);
             fishersPvalue[i]   = Fishers.get(annotationTerm[i]);
@@ -157,6 +152,17 @@ public final class ClassViewerTableModelDetail extends AbstractTableModel
         }
     }
 
+    private void setOverRepresentationValues(int row, OverRepresentation overRepresentation)
+    {
+        observed[row]      = overRepresentation.getObservedText();
+        expected[row]      = overRepresentation.getExpectedText();
+        expectedTrial[row] = overRepresentation.getExpectedTrialText();
+        fobs[row]          = overRepresentation.observedFrequency;
+        fexp[row]          = overRepresentation.expectedFrequency;
+        overRep[row]       = overRepresentation.getOverRepresentationText();
+        zscore[row]        = overRepresentation.zScore;
+    }
+
     // VERY SPECIFIC USAGE to display over ALL values of ALL term types
 
     public void setSize(int size)
@@ -177,7 +183,7 @@ public final class ClassViewerTableModelDetail extends AbstractTableModel
         overallEntropies = 0;
     }
 
-    public void addAnalysisValues(Map<String, String> Observed, Map<String, String> Expected, Map<String, String> ExpectedTrial, Map<String, String> Fobs, Map<String, String> Fexp, Map<String, String> OverRep, Map<String, String> Zscore, Map<String, Double> Term2Entropy, Map<String, Double> Term2FisherPVal, Map<String, Integer> Term2MembersCount, String AnnotationType)
+    public void addAnalysisValues(Map<String, OverRepresentation> OverRep, Map<String, Double> Term2Entropy, Map<String, Double> Term2FisherPVal, Map<String, Integer> Term2MembersCount, String AnnotationType)
     {
         if (Term2Entropy == null || AnnotationType == null || Term2FisherPVal == null) return;
 
@@ -186,13 +192,7 @@ public final class ClassViewerTableModelDetail extends AbstractTableModel
         {
             annotationTerm[overallEntropies]  = term;
             annotationType[overallEntropies]  = AnnotationType;
-            observed[overallEntropies]        = Observed.get(annotationTerm[overallEntropies]);
-            expected[overallEntropies]        = Expected.get(annotationTerm[overallEntropies]);
-            expectedTrial[overallEntropies]   = ExpectedTrial.get(annotationTerm[overallEntropies]);
-            fobs[overallEntropies]            = Double.parseDouble( Fobs.get(annotationTerm[overallEntropies]) );
-            fexp[overallEntropies]            = Double.parseDouble( Fexp.get(annotationTerm[overallEntropies]) );
-            overRep[overallEntropies]         = OverRep.get(annotationTerm[overallEntropies]);
-            zscore[overallEntropies]          = Double.parseDouble( Zscore.get(annotationTerm[overallEntropies]) );
+            setOverRepresentationValues( overallEntropies, OverRep.get(annotationTerm[overallEntropies]) );
 
             relativeEntropy[overallEntropies] = Term2Entropy.get(annotationTerm[overallEntropies]);
             fishersPvalue[overallEntropies]   = Term2FisherPVal.get(annotationTerm[overallEntropies]);
@@ -0,0 +1,275 @@
+package org.BioLayoutExpress3D.Clustering.MCL;
+
+import java.awt.Color;
+import java.util.*;
+import org.BioLayoutExpress3D.CoreUI.*;
+import org.BioLayoutExpress3D.Network.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+
+/**
+*
+* MCLNetworkClustering runs the MCL clustering of a network container & stores the clusters as a class set.
+* It is shared by the MCL window dialog & the headless batch mode, which clusters without any GUI.
+*
+* @see org.BioLayoutExpress3D.Clustering.MCL.MCLWindowDialog
+* @version 3.0.0.0
+*
+*/
+
+public final class MCLNetworkClustering
+{
+    private static final int COLOR_UPPER_RANGE = (1 << 8) - 1; // 255
+    private static final int[] COLOR_PRIME_NUMBERS = org.BioLayoutExpress3D.StaticLibraries.Math.findPrimeNumbersUpToThreshold(COLOR_UPPER_RANGE);
+    private static final int COLOR_LOOKUP_THRESHOLD = 1000;
+
+    /**
+    *  Creates the MCL calculation from the weighted adjacency lists of the network, filling in the vertices by vertex ID.
+    */
+    static MarkovClustering createMarkovClustering(NetworkContainer nc, Vertex[] vertexIDs) // package access
+    {
+        int numberOfVertices = vertexIDs.length;
+        int[][] adjacencyRows = new int[numberOfVertices][];
+        float[][] adjacencyWeights = new float[numberOfVertices][];
+
+        // putting also Petri Net case that is a graphml file but does enable weights for proper red edge inhibitor renderering
+        boolean useEdgeWeights = WEIGHTED_EDGES && !nc.getIsPetriNet();
+        int vertexID = 0;
+        int index = 0;
+        long[] sortKeys = null;
+        for ( Vertex vertex : nc.getVertices() )
+        {
+            vertexID = vertex.getVertexID();
+            vertexIDs[vertexID] = vertex;
+
+            // the neighbour ID in the upper half & the weight bits in the lower half, so a primitive sort gives the ascending row order
+            HashMap<Vertex, Edge> edgeConnection = vertex.getEdgeConnectionsMap();
+            sortKeys = new long[edgeConnection.size()];
+            index = 0;
+            for ( Map.Entry<Vertex, Edge> entry : edgeConnection.entrySet() )
+                sortKeys[index++] = ( (long)entry.getKey().getVertexID() << 32 ) | ( Float.floatToIntBits( (useEdgeWeights) ? entry.getValue().getWeight() : 1.0f ) & 0xFFFFFFFFL );
+            Arrays.sort(sortKeys);
+
+            adjacencyRows[vertexID] = new int[sortKeys.length];
+            adjacencyWeights[vertexID] = new float[sortKeys.length];
+            for (int i = 0; i < sortKeys.length; i++)
+            {
+                adjacencyRows[vertexID][i] = (int)(sortKeys[i] >>> 32);
+                adjacencyWeights[vertexID][i] = Float.intBitsToFloat( (int)sortKeys[i] );
+            }
+        }
+
+        // vertices missing from the network keep an empty column & end up as singletons
+        for (int i = 0; i < numberOfVertices; i++)
+        {
+            if (adjacencyRows[i] == null)
+            {
+                adjacencyRows[i] = new int[0];
+                adjacencyWeights[i] = new float[0];
+            }
+        }
+
+        return new MarkovClustering( numberOfVertices, adjacencyRows, adjacencyWeights, ( MCL_PRE_INFLATION_VALUE.get() > 0.0f ) ? MCL_PRE_INFLATION_VALUE.get() : 0.0f,
+                                     USE_MULTICORE_PROCESS && USE_MCL_N_CORE_PARALLELISM.get() );
+    }
+
+    /**
+    *  Scales the edge weights by the converged flow between their vertices.
+    */
+    static void scaleEdgeWeights(NetworkContainer nc, MarkovClustering markovClustering) // package access
+    {
+        float weight = 0.0f;
+        int index1 = 0;
+        int index2 = 0;
+        for ( Edge edge : nc.getEdges() )
+        {
+            index1 = edge.getFirstVertex().getVertexID();
+            index2 = edge.getSecondVertex().getVertexID();
+            weight = Math.max( markovClustering.getValue(index1, index2), markovClustering.getValue(index2, index1) );
+            if (weight > 0.0f)
+                edge.setScaledWeight(weight);
+        }
+    }
+
+    /**
+    *  Creates or clears the MCL class set of the current inflation & scheme, makes it the current one & returns its classes.
+    */
+    static LayoutClasses createClassSet(LayoutClassSetsManager layoutClassSetsManager) // package access
+    {
+        String classSetName = "MCL_" + MCL_INFLATION_VALUE.get() + "_" + MCL_SCHEME.get();
+
+        if ( !layoutClassSetsManager.classSetExists(classSetName) )
+            layoutClassSetsManager.createNewClassSet(classSetName);
+
+        layoutClassSetsManager.getClassSet(classSetName).clearClasses();
+        layoutClassSetsManager.switchClassSet(classSetName);
+
+        return layoutClassSetsManager.getCurrentClassSetAllClasses();
+    }
+
+    /**
+    *  Applies the inflation, scheme & the resource flags of the advanced options (-P, -S, -R, -pct) to the MCL calculation.
+    *  The options that are not applied are reported one per line in the given messages.
+    *  Returns the applied options in mcl command line form.
+    */
+    static String setMCLOptions(MarkovClustering markovClustering, StringBuilder messages) // package access
+    {
+        markovClustering.setInflation( MCL_INFLATION_VALUE.get() );
+        markovClustering.setScheme( MCL_SCHEME.get() );
+
+        String MCL_options = "-I " + MCL_INFLATION_VALUE.get() + ( ( MCL_PRE_INFLATION_VALUE.get() > 0.0f ) ? " -pi " + MCL_PRE_INFLATION_VALUE.get() : "" ) + " -scheme " + MCL_SCHEME.get();
+        if ( !MCL_ADVANCED_OPTIONS.get().trim().isEmpty() )
+        {
+            String[] advancedOptions = MCL_ADVANCED_OPTIONS.get().trim().split("\\s+");
+            int value = 0;
+            for (int i = 0; i < advancedOptions.length; i++)
+            {
+                String option = advancedOptions[i];
+                if ( ( option.equals("-P") || option.equals("-S") || option.equals("-R") || option.equals("-pct") ) && (i + 1 < advancedOptions.length) )
+                {
+                    try
+                    {
+                        value = Integer.parseInt(advancedOptions[i + 1]);
+                    }
+                    catch (NumberFormatException nfe)
+                    {
+                        messages.append("Ignoring option " + option + " with non-integer value " + advancedOptions[i + 1] + "\n");
+                        i++;
+                        continue;
+                    }
+
+                    // a zero prune number would give an infinite prune threshold, so only positive values & percentages up to 100 are accepted
+                    if ( (value <= 0) || ( option.equals("-pct") && (value > 100) ) )
+                    {
+                        messages.append("Ignoring option " + option + " with out of range value " + value + "\n");
+                        i++;
+                        continue;
+                    }
+
+                    if ( option.equals("-P") )
+                        markovClustering.setPruneNumber(value);
+                    else if ( option.equals("-S") )
+                        markovClustering.setSelectionNumber(value);
+                    else if ( option.equals("-R") )
+                        markovClustering.setRecoveryNumber(value);
+                    else
+                        markovClustering.setRecoveryPercentage(value);
+
+                    MCL_options += " " + option + " " + value;
+                    i++;
+                }
+                else
+                    messages.append("Ignoring unsupported option " + option + "\n");
+            }
+        }
+
+        return MCL_options;
+    }
+
+    /**
+    *  Creates a class per MCL cluster, coloured by the prime number color generator unless random cluster colours are chosen.
+    *  Members of clusters not bigger than the smallest cluster preference are left without a class.
+    */
+    static void createAllLayoutClasses(LayoutClasses layoutClasses, int[][] clusters, Vertex[] vertexIDs) // package access
+    {
+        // prime numbers color generator values
+        int[] primeNumberIndices = { 3,    // start with prime number   7
+                                     18,   // start with prime number  67
+                                     27 }; // start with prime number 107
+        int[] colorIndicesRGB = null;
+        HashSet<Color> clusterColors = null;
+        Color clusterColor = null;
+        int sameColours = 0;
+        int colorRange = VertexClass.UPPER_THRESHOLD - VertexClass.LOWER_THRESHOLD;
+        int RGBColorCombinations = colorRange * colorRange * colorRange;
+        if ( !MCL_ASSIGN_RANDOM_CLUSTER_COLOURS.get() )
+        {
+            colorIndicesRGB = new int[]{ (VertexClass.UPPER_THRESHOLD - VertexClass.LOWER_THRESHOLD) / 2 + COLOR_PRIME_NUMBERS[ primeNumberIndices[0] ], (VertexClass.UPPER_THRESHOLD - VertexClass.LOWER_THRESHOLD) / 4 + COLOR_PRIME_NUMBERS[ primeNumberIndices[1] ], (VertexClass.UPPER_THRESHOLD - VertexClass.LOWER_THRESHOLD) / 2 + COLOR_PRIME_NUMBERS[ primeNumberIndices[2] ] };
+            clusterColors = new HashSet<Color>();
+        }
+
+        //BUILDS CLASSES FROM MCL RESULT CLUSTERS
+        String clusterNumberFormat = "Cluster%0" + Integer.toString(clusters.length).length() + "d";
+        int classNumberIndex = 0;
+        for (int[] cluster : clusters)
+        {
+            classNumberIndex++;
+            if ( !MCL_ASSIGN_RANDOM_CLUSTER_COLOURS.get() )
+            {
+                sameColours = 0;
+                clusterColor = createColorBasedOnPrimeNumbers(colorIndicesRGB, primeNumberIndices, false);
+                while (clusterColors.contains(clusterColor) && clusterColors.size() <= RGBColorCombinations)
+                {
+                    clusterColor = createColorBasedOnPrimeNumbers(colorIndicesRGB, primeNumberIndices, true);
+                    if (++sameColours > COLOR_LOOKUP_THRESHOLD)
+                    {
+                        sameColours = 0;
+                        clusterColor = VertexClass.createRandomColor();
+                    }
+                }
+                clusterColors.add(clusterColor);
+                layoutClasses.createClass( classNumberIndex, clusterColor, String.format(clusterNumberFormat, classNumberIndex) );
+            }
+            else
+                layoutClasses.createClass( classNumberIndex, String.format(clusterNumberFormat, classNumberIndex) );
+
+            // IF WE WANT: SET MEMBERS IN SMALL CLUSTERS TO NO CLASS
+            for (int i = 0; i < cluster.length; i++)
+                if (vertexIDs[cluster[i]] != null)
+                    layoutClasses.setClass(vertexIDs[cluster[i]], ( cluster.length > MCL_SMALLEST_CLUSTER.get() ) ? classNumberIndex : 0);
+        }
+    }
+
+    /**
+    *  Creates colors based on a prime number generator, same color hues reproducible for every run.
+    *  Verified for 6023986 uniquely generated colors.
+    */
+    private static Color createColorBasedOnPrimeNumbers(int[] colorIndicesRGB, int[] primeNumberIndices, boolean incrementPrimeNumberIndices)
+    {
+        if (incrementPrimeNumberIndices)
+        {
+            int primeNumbersIndexLength = (int)(VertexClass.COLOR_UPPER_INTENSITY_PERCENTAGE * COLOR_PRIME_NUMBERS.length);
+            for (int i = 0; i < primeNumberIndices.length; i++)
+                if (++primeNumberIndices[i] == primeNumbersIndexLength)
+                    primeNumberIndices[i] = 0;
+        }
+
+        for (int i = 0; i < colorIndicesRGB.length; i++)
+        {
+            colorIndicesRGB[i] += COLOR_PRIME_NUMBERS[ primeNumberIndices[i] ];
+            if (colorIndicesRGB[i] >= VertexClass.UPPER_THRESHOLD)
+                colorIndicesRGB[i] = VertexClass.LOWER_THRESHOLD + (colorIndicesRGB[i] - VertexClass.UPPER_THRESHOLD);
+        }
+
+        return new Color(colorIndicesRGB[0], colorIndicesRGB[1], colorIndicesRGB[2]);
+    }
+
+    /**
+    *  Clusters the network with MCL using the current MCL preferences, including the advanced options, & stores the clusters as the current class set, without any GUI.
+    *  The advanced options that are not applied are reported to the standard error.
+    *  Returns the clusters as arrays of vertex IDs.
+    */
+    public static int[][] clusterNetwork(NetworkContainer nc)
+    {
+        Vertex[] vertexIDs = new Vertex[ nc.getNumberOfVertices() ];
+        MarkovClustering markovClustering = createMarkovClustering(nc, vertexIDs);
+        StringBuilder messages = new StringBuilder();
+        setMCLOptions(markovClustering, messages);
+        if (messages.length() > 0)
+            System.err.print(messages);
+
+        boolean hasConverged = false;
+        while (!hasConverged)
+            hasConverged = markovClustering.iterate();
+
+        scaleEdgeWeights(nc, markovClustering);
+        int[][] clusters = markovClustering.getClusters();
+
+        LayoutClasses layoutClasses = createClassSet( nc.getLayoutClassSetsManager() );
+        layoutClasses.clearClasses();
+        createAllLayoutClasses(layoutClasses, clusters, vertexIDs);
+
+        return clusters;
+    }
+
+
+}
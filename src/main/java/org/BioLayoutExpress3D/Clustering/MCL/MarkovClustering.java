@@ -0,0 +1,544 @@
+package org.BioLayoutExpress3D.Clustering.MCL;
+
+import java.util.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
+
+/**
+*
+* The MarkovClustering class is an in-process implementation of the MCL algorithm on sparse column-stochastic matrices.
+* Every iteration squares the matrix (expansion), prunes each expanded column with the mcl precision, selection & recovery resource rules,
+* then raises its entries to the inflation power & normalises it (inflation), until the chaos of all columns drops below a threshold.
+* Columns are computed independently of each other, so each iteration is split over the N-Core workers.
+*
+* @see org.BioLayoutExpress3D.Clustering.MCL.MCLWindowDialog
+* @version 3.0.0.0
+*
+*/
+
+final class MarkovClustering // package access
+{
+    /**
+    *  The mcl resource schemes 1 to 7, as prune number, selection number, recovery number & recovery percentage.
+    */
+    private static final int[][] RESOURCE_SCHEMES = { {  3000,  400,  500, 90 },
+                                                      {  4000,  500,  600, 90 },
+                                                      {  5000,  600,  700, 90 },
+                                                      {  6000,  700,  800, 90 },
+                                                      {  7000,  800,  900, 90 },
+                                                      { 10000, 1100, 1400, 90 },
+                                                      { 10000, 1200, 1600, 90 }
+                                                    };
+
+    private static final double CHAOS_CONVERGENCE_THRESHOLD = 0.0001;
+    private static final int MAXIMUM_NUMBER_OF_ITERATIONS = 10000;
+    private static final int NUMBER_OF_COLUMNS_PER_CHUNK = 16;
+
+    private final int numberOfNodes;
+    private int[][] columnRows = null;
+    private float[][] columnValues = null;
+    private final double[] columnChaos;
+    private final boolean useNCoreParallelism;
+
+    // the per thread expansion scratch buffers, allocated once per worker thread for the whole clustering run
+    private final ThreadLocal<ExpansionWorkspace> workspaceThreadLocal = new ThreadLocal<ExpansionWorkspace>();
+
+    private float inflation = 2.0f;
+    private int pruneNumber = 0;
+    private int selectionNumber = 0;
+    private int recoveryNumber = 0;
+    private int recoveryPercentage = 0;
+
+    private int numberOfIterations = 0;
+    private double chaos = Double.MAX_VALUE;
+    private volatile boolean isCancelled = false;
+
+    /**
+    *  The constructor of the MarkovClustering class.
+    *  Takes the weighted adjacency lists of the graph as columns, each column holding its row indices in ascending order & its non-negative weights.
+    *  Pre-inflation is applied to the weights when above zero, then loops of the column max weight are added & the columns are normalised.
+    */
+    public MarkovClustering(int numberOfNodes, int[][] adjacencyRows, float[][] adjacencyWeights, float preInflation, boolean useNCoreParallelism)
+    {
+        this.numberOfNodes = numberOfNodes;
+        this.useNCoreParallelism = useNCoreParallelism;
+
+        columnRows = new int[numberOfNodes][];
+        columnValues = new float[numberOfNodes][];
+        columnChaos = new double[numberOfNodes];
+        setScheme(6);
+
+        int size = 0;
+        int loopIndex = 0;
+        float weight = 0.0f;
+        float maxWeight = 0.0f;
+        double sum = 0.0;
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            int[] rows = adjacencyRows[column];
+            float[] weights = adjacencyWeights[column];
+            int[] newRows = new int[rows.length + 1];
+            float[] newValues = new float[rows.length + 1];
+
+            // the loop is inserted in its ascending row position
+            size = 0;
+            loopIndex = -1;
+            maxWeight = 0.0f;
+            for (int i = 0; i < rows.length; i++)
+            {
+                if (rows[i] == column)
+                    continue;
+
+                weight = (preInflation > 0.0f) ? (float)Math.pow(weights[i], preInflation) : weights[i];
+                if ( !(weight > 0.0f) )
+                    continue;
+
+                if ( (loopIndex < 0) && (rows[i] > column) )
+                    loopIndex = size++;
+                newRows[size] = rows[i];
+                newValues[size++] = weight;
+                if (weight > maxWeight)
+                    maxWeight = weight;
+            }
+            if (loopIndex < 0)
+                loopIndex = size++;
+            newRows[loopIndex] = column;
+            newValues[loopIndex] = (maxWeight > 0.0f) ? maxWeight : 1.0f;
+
+            sum = 0.0;
+            for (int i = 0; i < size; i++)
+                sum += newValues[i];
+            for (int i = 0; i < size; i++)
+                newValues[i] = (float)(newValues[i] / sum);
+
+            columnRows[column] = Arrays.copyOf(newRows, size);
+            columnValues[column] = Arrays.copyOf(newValues, size);
+        }
+    }
+
+    /**
+    *  Sets the inflation power.
+    */
+    public void setInflation(float inflation)
+    {
+        this.inflation = inflation;
+    }
+
+    /**
+    *  Sets the pruning resources to those of the given mcl scheme, from 1 to 7.
+    */
+    public void setScheme(int scheme)
+    {
+        int[] resourceScheme = RESOURCE_SCHEMES[ (scheme < 1) ? 0 : (scheme > RESOURCE_SCHEMES.length) ? RESOURCE_SCHEMES.length - 1 : scheme - 1 ];
+        pruneNumber = resourceScheme[0];
+        selectionNumber = resourceScheme[1];
+        recoveryNumber = resourceScheme[2];
+        recoveryPercentage = resourceScheme[3];
+    }
+
+    /**
+    *  Sets the prune number, entries below 1 / pruneNumber are removed from the expanded columns.
+    */
+    public void setPruneNumber(int pruneNumber)
+    {
+        this.pruneNumber = pruneNumber;
+    }
+
+    /**
+    *  Sets the selection number, at most this many of the largest entries are kept in the expanded columns.
+    */
+    public void setSelectionNumber(int selectionNumber)
+    {
+        this.selectionNumber = selectionNumber;
+    }
+
+    /**
+    *  Sets the recovery number, the number of entries pruned columns may be recovered to when below the recovery percentage of their mass.
+    */
+    public void setRecoveryNumber(int recoveryNumber)
+    {
+        this.recoveryNumber = recoveryNumber;
+    }
+
+    /**
+    *  Sets the recovery percentage.
+    */
+    public void setRecoveryPercentage(int recoveryPercentage)
+    {
+        this.recoveryPercentage = recoveryPercentage;
+    }
+
+    /**
+    *  Gets the number of iterations performed.
+    */
+    public int getNumberOfIterations()
+    {
+        return numberOfIterations;
+    }
+
+    /**
+    *  Gets the chaos of the last iteration, the max over all columns of (max entry / sum of squared entries - 1). It is zero for a converged matrix.
+    */
+    public double getChaos()
+    {
+        return chaos;
+    }
+
+    /**
+    *  Gets the number of non-zero entries of the current matrix.
+    */
+    public long getNumberOfEntries()
+    {
+        long numberOfEntries = 0;
+        for (int column = 0; column < numberOfNodes; column++)
+            numberOfEntries += columnRows[column].length;
+
+        return numberOfEntries;
+    }
+
+    /**
+    *  Cancels the clustering, the current iteration is left unfinished.
+    */
+    public void cancel()
+    {
+        isCancelled = true;
+    }
+
+    /**
+    *  Performs one expansion, pruning & inflation iteration.
+    *  Returns true once the matrix has converged or the max number of iterations has been reached.
+    */
+    public boolean iterate()
+    {
+        final int[][] newColumnRows = new int[numberOfNodes][];
+        final float[][] newColumnValues = new float[numberOfNodes][];
+        LayoutComputeService.RangeKernel rangeKernel = new LayoutComputeService.RangeKernel()
+            {
+
+                @Override
+                public void process(int startIndex, int endIndex)
+                {
+                    ExpansionWorkspace workspace = workspaceThreadLocal.get();
+                    if (workspace == null)
+                    {
+                        workspace = new ExpansionWorkspace(numberOfNodes);
+                        workspaceThreadLocal.set(workspace);
+                    }
+
+                    for (int column = startIndex; column < endIndex; column++)
+                    {
+                        if (isCancelled)
+                            return;
+
+                        expandPruneAndInflateColumn(column, workspace, newColumnRows, newColumnValues);
+                    }
+                }
+
+
+            };
+
+        if (useNCoreParallelism)
+            LayoutComputeService.getInstance().execute(rangeKernel, numberOfNodes, NUMBER_OF_COLUMNS_PER_CHUNK, null);
+        else
+            rangeKernel.process(0, numberOfNodes);
+
+        if (isCancelled)
+            return true;
+
+        columnRows = newColumnRows;
+        columnValues = newColumnValues;
+        numberOfIterations++;
+
+        chaos = 0.0;
+        for (int column = 0; column < numberOfNodes; column++)
+            if (columnChaos[column] > chaos)
+                chaos = columnChaos[column];
+
+        return (chaos < CHAOS_CONVERGENCE_THRESHOLD) || (numberOfIterations >= MAXIMUM_NUMBER_OF_ITERATIONS);
+    }
+
+    /**
+    *  Calculates the given column of the squared matrix, then prunes, inflates & normalises it.
+    */
+    private void expandPruneAndInflateColumn(int column, ExpansionWorkspace workspace, int[][] newColumnRows, float[][] newColumnValues)
+    {
+        double[] accumulator = workspace.accumulator;
+        int[] touchedRows = workspace.touchedRows;
+        int[] rowStamps = workspace.rowStamps;
+        int stamp = workspace.nextStamp();
+
+        // expansion: the column of M^2 is the sum of the columns of M weighted by the entries of this column
+        int numberOfTouchedRows = 0;
+        int[] rows = columnRows[column];
+        float[] values = columnValues[column];
+        int[] innerRows = null;
+        float[] innerValues = null;
+        double value = 0.0;
+        int row = 0;
+        for (int k = 0; k < rows.length; k++)
+        {
+            innerRows = columnRows[ rows[k] ];
+            innerValues = columnValues[ rows[k] ];
+            value = values[k];
+            for (int i = 0; i < innerRows.length; i++)
+            {
+                row = innerRows[i];
+                if (rowStamps[row] != stamp)
+                {
+                    // first touch of the row in this column pass
+                    rowStamps[row] = stamp;
+                    touchedRows[numberOfTouchedRows++] = row;
+                    accumulator[row] = value * innerValues[i];
+                }
+                else
+                {
+                    accumulator[row] += value * innerValues[i];
+                }
+            }
+        }
+
+        // pruning: entries below 1 / pruneNumber are removed, at most selectionNumber entries are kept,
+        // & if the kept mass is below the recovery percentage, the largest entries are recovered up to recoveryNumber entries
+        double pruneThreshold = 1.0 / pruneNumber;
+        double recoveryMass = recoveryPercentage / 100.0;
+        int numberOfKeptEntries = 0;
+        double keptMass = 0.0;
+        for (int i = 0; i < numberOfTouchedRows; i++)
+        {
+            if (accumulator[ touchedRows[i] ] >= pruneThreshold)
+            {
+                numberOfKeptEntries++;
+                keptMass += accumulator[ touchedRows[i] ];
+            }
+        }
+
+        int maximumRecoveredEntries = (recoveryNumber < numberOfTouchedRows) ? recoveryNumber : numberOfTouchedRows;
+        boolean useThresholdOnly = (numberOfKeptEntries <= selectionNumber) && ( (keptMass >= recoveryMass) || (numberOfKeptEntries >= maximumRecoveredEntries) );
+        long[] sortKeys = workspace.sortKeys;
+        int numberOfEntries = 0;
+        if (useThresholdOnly)
+        {
+            for (int i = 0; i < numberOfTouchedRows; i++)
+                if (accumulator[ touchedRows[i] ] >= pruneThreshold)
+                    sortKeys[numberOfEntries++] = touchedRows[i];
+        }
+        else
+        {
+            // the entries in descending order, the sortable float bits of the negated entry in the upper half & the row in the lower half
+            int bits = 0;
+            for (int i = 0; i < numberOfTouchedRows; i++)
+            {
+                bits = Float.floatToIntBits( (float)-accumulator[ touchedRows[i] ] );
+                bits ^= (bits >> 31) & 0x7FFFFFFF;
+                sortKeys[i] = ( (long)bits << 32 ) | touchedRows[i];
+            }
+            Arrays.sort(sortKeys, 0, numberOfTouchedRows);
+
+            numberOfEntries = (numberOfKeptEntries < selectionNumber) ? numberOfKeptEntries : selectionNumber;
+            keptMass = 0.0;
+            for (int i = 0; i < numberOfEntries; i++)
+                keptMass += accumulator[ (int)sortKeys[i] ];
+            while ( (numberOfEntries < maximumRecoveredEntries) && (keptMass < recoveryMass) )
+                keptMass += accumulator[ (int)sortKeys[numberOfEntries++] ];
+            if (numberOfEntries == 0)
+                numberOfEntries = 1;
+
+            for (int i = 0; i < numberOfEntries; i++)
+                sortKeys[i] = (int)sortKeys[i];
+        }
+
+        // inflation: the kept entries are raised to the inflation power & normalised
+        double sum = 0.0;
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            row = (int)sortKeys[i];
+            value = Math.pow(accumulator[row], inflation);
+            accumulator[row] = value;
+            sum += value;
+        }
+
+        int[] newRows = new int[numberOfEntries];
+        float[] newValues = new float[numberOfEntries];
+        double maxValue = 0.0;
+        double sumSquares = 0.0;
+        Arrays.sort(sortKeys, 0, numberOfEntries);
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            row = (int)sortKeys[i];
+            value = accumulator[row] / sum;
+            newRows[i] = row;
+            newValues[i] = (float)value;
+            if (value > maxValue)
+                maxValue = value;
+            sumSquares += value * value;
+        }
+
+        newColumnRows[column] = newRows;
+        newColumnValues[column] = newValues;
+        columnChaos[column] = (sumSquares > 0.0) ? maxValue / sumSquares - 1.0 : 0.0;
+    }
+
+    /**
+    *  Gets the entry of the current matrix at the given row & column.
+    */
+    public float getValue(int row, int column)
+    {
+        int index = Arrays.binarySearch(columnRows[column], row);
+        return (index >= 0) ? columnValues[column][index] : 0.0f;
+    }
+
+    /**
+    *  Gets the clusters of the current matrix, ordered by descending size, each with its nodes in ascending order.
+    *  Attractors are the nodes with a loop, attractors attracting each other form a cluster,
+    *  & every other node joins the cluster of the attractor with its largest entry, so overlapping nodes are assigned to a single cluster.
+    *  Entries below the prune cutoff are ignored, as they are left over by the last inflation & would be removed by a further expansion.
+    */
+    public int[][] getClusters()
+    {
+        float pruneThreshold = 1.0f / pruneNumber;
+        int[] parents = new int[numberOfNodes];
+        boolean[] isAttractorArray = new boolean[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; node++)
+        {
+            parents[node] = node;
+            isAttractorArray[node] = ( getValue(node, node) >= pruneThreshold );
+        }
+
+        int root1 = 0;
+        int root2 = 0;
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            if ( !isAttractorArray[column] )
+                continue;
+
+            for (int i = 0; i < columnRows[column].length; i++)
+            {
+                int row = columnRows[column][i];
+                if ( !isAttractorArray[row] || (columnValues[column][i] < pruneThreshold) )
+                    continue;
+
+                root1 = findRoot(parents, row);
+                root2 = findRoot(parents, column);
+                if (root1 != root2)
+                    parents[ (root1 > root2) ? root1 : root2 ] = (root1 > root2) ? root2 : root1;
+            }
+        }
+
+        // the columns without an attractor entry cannot happen for a converged matrix, they are kept as their own cluster
+        int[] attractors = new int[numberOfNodes];
+        int attractor = 0;
+        float maxValue = 0.0f;
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            attractor = column;
+            if ( !isAttractorArray[column] )
+            {
+                maxValue = 0.0f;
+                for (int i = 0; i < columnRows[column].length; i++)
+                {
+                    if ( isAttractorArray[ columnRows[column][i] ] && (columnValues[column][i] > maxValue) )
+                    {
+                        maxValue = columnValues[column][i];
+                        attractor = columnRows[column][i];
+                    }
+                }
+            }
+            attractors[column] = attractor;
+        }
+
+        for (int node = 0; node < numberOfNodes; node++)
+            if ( !isAttractorArray[node] )
+                parents[node] = findRoot(parents, attractors[node]);
+
+        int[] clusterSizes = new int[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; node++)
+            clusterSizes[ findRoot(parents, node) ]++;
+
+        // sorting by descending size then root keeps the ordering reproducible
+        ArrayList<Integer> roots = new ArrayList<Integer>();
+        for (int node = 0; node < numberOfNodes; node++)
+            if (parents[node] == node)
+                roots.add(node);
+
+        final int[] sizes = clusterSizes;
+        Collections.sort(roots, new Comparator<Integer>()
+            {
+
+                @Override
+                public int compare(Integer root1, Integer root2)
+                {
+                    return (sizes[root1] != sizes[root2]) ? sizes[root2] - sizes[root1] : root1 - root2;
+                }
+
+
+            });
+
+        int[] clusterIndices = new int[numberOfNodes];
+        int[][] clusters = new int[roots.size()][];
+        for (int i = 0; i < clusters.length; i++)
+        {
+            clusterIndices[ roots.get(i) ] = i;
+            clusters[i] = new int[ sizes[ roots.get(i) ] ];
+        }
+
+        int[] clusterFills = new int[clusters.length];
+        int clusterIndex = 0;
+        for (int node = 0; node < numberOfNodes; node++)
+        {
+            clusterIndex = clusterIndices[ findRoot(parents, node) ];
+            clusters[clusterIndex][ clusterFills[clusterIndex]++ ] = node;
+        }
+
+        return clusters;
+    }
+
+    /**
+    *  Finds the root of the given node, halving the path on the way.
+    */
+    private static int findRoot(int[] parents, int node)
+    {
+        while (parents[node] != node)
+        {
+            parents[node] = parents[ parents[node] ];
+            node = parents[node];
+        }
+
+        return node;
+    }
+
+    /**
+    *  The per worker dense accumulator of an expanded column & its scratch arrays.
+    *  A row is touched in the current column pass when its stamp equals the stamp of the pass, so the accumulator needs no clearing between the columns.
+    */
+    private static final class ExpansionWorkspace
+    {
+        private final double[] accumulator;
+        private final int[] touchedRows;
+        private final int[] rowStamps;
+        private final long[] sortKeys;
+        private int stamp = 0;
+
+        private ExpansionWorkspace(int numberOfNodes)
+        {
+            accumulator = new double[numberOfNodes];
+            touchedRows = new int[numberOfNodes];
+            rowStamps = new int[numberOfNodes];
+            sortKeys = new long[numberOfNodes];
+        }
+
+        /**
+        *  Returns the stamp of a new column pass, clearing the row stamps when the stamps wrap around.
+        */
+        private int nextStamp()
+        {
+            if (++stamp == Integer.MAX_VALUE)
+            {
+                Arrays.fill(rowStamps, 0);
+                stamp = 1;
+            }
+
+            return stamp;
+        }
+    }
+
+
+}
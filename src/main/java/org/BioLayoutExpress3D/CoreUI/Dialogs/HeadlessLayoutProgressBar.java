@@ -0,0 +1,86 @@
+package org.BioLayoutExpress3D.CoreUI.Dialogs;
+
+/**
+*
+* The HeadlessLayoutProgressBar class is the no-op LayoutProgressBar of the headless batch mode, where there is no dialog to show the progress in
+* & no user to cancel, so that the shared code reports its progress the same way with or without a GUI.
+* Only the status text is kept, formatted like the one of the LayoutProgressBarDialog, as some of the shared code reads it back.
+*
+* @see org.BioLayoutExpress3D.CoreUI.Dialogs.LayoutProgressBar
+* @version 3.0.0.0
+*
+*/
+
+public final class HeadlessLayoutProgressBar implements LayoutProgressBar
+{
+
+    /**
+    *  The only instance of the HeadlessLayoutProgressBar class.
+    */
+    private static final HeadlessLayoutProgressBar HEADLESS_LAYOUT_PROGRESS_BAR = new HeadlessLayoutProgressBar();
+
+    private String text = "";
+
+    /**
+    *  The private constructor of the HeadlessLayoutProgressBar class, use getHeadlessLayoutProgressBarSingleton().
+    */
+    private HeadlessLayoutProgressBar() {}
+
+    /**
+    *  Static method to get the only instance of the HeadlessLayoutProgressBar class.
+    */
+    public static HeadlessLayoutProgressBar getHeadlessLayoutProgressBarSingleton()
+    {
+        return HEADLESS_LAYOUT_PROGRESS_BAR;
+    }
+
+    @Override
+    public void prepareProgressBar(int max, String title, boolean isCancellable) {}
+
+    @Override
+    public void prepareProgressBar(int max, String title) {}
+
+    @Override
+    public void startProgressBar() {}
+
+    @Override
+    public void endProgressBar() {}
+
+    @Override
+    public void stopProgressBar() {}
+
+    @Override
+    public void incrementProgress(int value) {}
+
+    @Override
+    public void incrementProgress() {}
+
+    @Override
+    public synchronized void setText(String text)
+    {
+        this.text = " " + text;
+    }
+
+    @Override
+    public synchronized void appendText(String text)
+    {
+        this.text += text;
+    }
+
+    @Override
+    public void setIndeterminate(Boolean value) {}
+
+    @Override
+    public synchronized String getText()
+    {
+        return text;
+    }
+
+    @Override
+    public boolean userHasCancelled()
+    {
+        return false;
+    }
+
+
+}
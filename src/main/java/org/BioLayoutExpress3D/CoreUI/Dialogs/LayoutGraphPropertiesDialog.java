@@ -96,7 +96,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private boolean isChangingClasses = false;
     private boolean _3DRebuildNodes = false;
     private boolean _3DRebuildEdges = false;
-    private boolean optionsMCLChanged = false;
     private boolean isChangingClassSet = false;
 
     private ColorButton generalColor = null;
@@ -121,7 +120,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private JCheckBox generalShowLayoutIterations = null;
     private JCheckBox generalValidateXMLFiles = null;
     private JCheckBox generalUseInstallDirForScreenshots = null;
-    private JCheckBox generalUseInstallDirForMCLTempFile = null;
     private JCheckBox generalShowGraphPropertiesToolBar = null;
     private JCheckBox generalShowNavigationToolBar = null;
     private JCheckBox generalShowPopupOverlayPlot = null;
@@ -136,9 +134,12 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private JCheckBox layoutUseEdgeWeightsForLayout = null;
     private JCheckBox layoutTiledLayout = null;
     private FloatNumberField layoutKvalueField = null;
+    private JComboBox<String> layoutRepulsionMode = null;
+    private FloatNumberField layoutBarnesHutThetaField = null;
     private FloatNumberField layoutStartingTemperatureField = null;
     private JTextField layoutIterationsField = null;
     private JTextField layoutBurstIterationsField = null;
+    private JTextField layoutIncrementalLayoutHopsField = null;
     private JTextField layoutMinimumComponentSizeField = null;
 
     private FloatNumberField fmmmDesiredEdgeLength = null;
@@ -146,6 +147,8 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private JComboBox<String> fmmmQualityVsSpeed = null;
     private JComboBox<String> fmmmStopCriterion = null;
     private FloatNumberField fmmmIterationLevelFactor = null;
+    private FloatNumberField fmmmNmPrecision = null;
+    private FloatNumberField fmmmNmParticlesInLeaves = null;
 
     private SimpleSlider _3DNodeTesselationSlider = null;
     private JCheckBox showNodes = null;
@@ -927,10 +930,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         generalUseInstallDirForScreenshots.setActionCommand(CHANGE_ACTION_COMMAND);
         generalUseInstallDirForScreenshots.addActionListener(this);
         generalUseInstallDirForScreenshots.setToolTipText("Use application's install directory for Render Image To File screenshots");
-        generalUseInstallDirForMCLTempFile = new JCheckBox("Use application's install directory for MCL temporary file (in MCL folder)");
-        generalUseInstallDirForMCLTempFile.setActionCommand(CHANGE_ACTION_COMMAND);
-        generalUseInstallDirForMCLTempFile.addActionListener(this);
-        generalUseInstallDirForMCLTempFile.setToolTipText("Use application's install directory for MCL temporary file (in MCL folder)");
         generalShowGraphPropertiesToolBar = new JCheckBox("Show Graph Properties ToolBar");
         generalShowGraphPropertiesToolBar.setActionCommand(CHANGE_ACTION_COMMAND);
         generalShowGraphPropertiesToolBar.addActionListener(this);
@@ -1040,8 +1039,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         generalOptionsPanel1.add( Box.createRigidArea( new Dimension(10, 10) ) );
         generalOptionsPanel1.add(generalUseInstallDirForScreenshots);
         generalOptionsPanel1.add( Box.createRigidArea( new Dimension(10, 10) ) );
-        generalOptionsPanel1.add(generalUseInstallDirForMCLTempFile);
-        generalOptionsPanel1.add( Box.createRigidArea( new Dimension(10, 10) ) );
         generalOptionsPanel1.add(generalShowGraphPropertiesToolBar);
         generalOptionsPanel1.add( Box.createRigidArea( new Dimension(10, 10) ) );
         generalOptionsPanel1.add(generalShowNavigationToolBar);
@@ -1111,11 +1108,25 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         layoutBurstIterationsField = new JTextField("", 10);
         layoutBurstIterationsField.addCaretListener(this);
         layoutBurstIterationsField.setToolTipText("Burst Layout Iterations");
+        layoutIncrementalLayoutHopsField = new JTextField("", 10);
+        layoutIncrementalLayoutHopsField.addCaretListener(this);
+        layoutIncrementalLayoutHopsField.setToolTipText("Incremental Layout Neighbourhood Hops");
+        layoutRepulsionMode = new JComboBox<String>();
+        for (FRLayoutRepulsionMode rm : FRLayoutRepulsionMode.values())
+            layoutRepulsionMode.addItem( Utils.titleCaseOf( rm.toString() ) );
+        layoutRepulsionMode.addActionListener(this);
+        layoutRepulsionMode.setActionCommand(CHANGE_ACTION_COMMAND);
+        layoutRepulsionMode.setToolTipText("Repulsion Calculation");
+        layoutBarnesHutThetaField = new FloatNumberField(0, 10);
+        layoutBarnesHutThetaField.addCaretListener(this);
+        layoutBarnesHutThetaField.setToolTipText("Barnes-Hut Opening Angle");
 
         layoutStartingTemperatureField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
         layoutIterationsField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
         layoutKvalueField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
         layoutBurstIterationsField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        layoutIncrementalLayoutHopsField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        layoutBarnesHutThetaField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
 
         // Algorithm selection
         JPanel algorithmPanel = new JPanel(true);
@@ -1174,6 +1185,15 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Burst Layout Iterations");
         addTitledButtonBorder(layoutPropertiesPanelBorder, layoutBurstIterationsField, "           (e.g. 20)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fruchtermanReingoldPanel);
 
+        layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Incremental Layout Neighbourhood Hops");
+        addTitledButtonBorder(layoutPropertiesPanelBorder, layoutIncrementalLayoutHopsField, "           (e.g. 2)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fruchtermanReingoldPanel);
+
+        layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Repulsion Calculation");
+        addTitledButtonBorder(layoutPropertiesPanelBorder, layoutRepulsionMode, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fruchtermanReingoldPanel);
+
+        layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Barnes-Hut Opening Angle");
+        addTitledButtonBorder(layoutPropertiesPanelBorder, layoutBarnesHutThetaField, "          (e.g. 0.8)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fruchtermanReingoldPanel);
+
         // FMMM options
         JPanel fmmmPanel = new JPanel(true);
         fmmmPanel.setLayout(new BoxLayout(fmmmPanel, BoxLayout.Y_AXIS));
@@ -1238,6 +1258,22 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         addTitledButtonBorder(layoutPropertiesPanelBorder, fmmmIterationLevelFactor, "",
                 TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fmmmPanel);
 
+        fmmmNmPrecision = new FloatNumberField(4.0f, 10);
+        fmmmNmPrecision.addCaretListener(this);
+        fmmmNmPrecision.setToolTipText("Multipole Precision");
+        fmmmNmPrecision.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Multipole Precision");
+        addTitledButtonBorder(layoutPropertiesPanelBorder, fmmmNmPrecision, "",
+                TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fmmmPanel);
+
+        fmmmNmParticlesInLeaves = new FloatNumberField(25.0f, 10);
+        fmmmNmParticlesInLeaves.addCaretListener(this);
+        fmmmNmParticlesInLeaves.setToolTipText("Particles In Leaves");
+        fmmmNmParticlesInLeaves.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        layoutPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Particles In Leaves");
+        addTitledButtonBorder(layoutPropertiesPanelBorder, fmmmNmParticlesInLeaves, "",
+                TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, fmmmPanel);
+
         // Layout algorithm option panels
         JPanel layoutLargePanel = new JPanel(true);
         layoutLargePanel.setLayout( new GridBagLayout() );
@@ -3011,7 +3047,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         generalDisableNodesRendering.setSelected( DISABLE_NODES_RENDERING.get() );
         generalDisableEdgesRendering.setSelected( DISABLE_EDGES_RENDERING.get() );
         generalUseInstallDirForScreenshots.setSelected( USE_INSTALL_DIR_FOR_SCREENSHOTS.get() );
-        generalUseInstallDirForMCLTempFile.setSelected( USE_INSTALL_DIR_FOR_MCL_TEMP_FILE.get() );
         generalShowNavigationWizardOnStartup.setSelected( SHOW_NAVIGATION_WIZARD_ON_STARTUP.get() );
         generalShowLayoutIterations.setSelected( SHOW_LAYOUT_ITERATIONS.get() );
         generalValidateXMLFiles.setSelected( VALIDATE_XML_FILES.get() );
@@ -3067,6 +3102,8 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         fmmmQualityVsSpeed.setSelectedIndex(FMMM_QUALITY_VS_SPEED.getIndex());        
         fmmmStopCriterion.setSelectedIndex(FMMM_STOP_CRITERION.getIndex());
         fmmmIterationLevelFactor.setValue(FMMM_ITERATION_LEVEL_FACTOR.get());
+        fmmmNmPrecision.setValue(FMMM_NM_PRECISION.get());
+        fmmmNmParticlesInLeaves.setValue(FMMM_NM_PARTICLES_IN_LEAVES.get());
 
         layoutUseEdgeWeightsForLayout.setSelected( USE_EDGE_WEIGHTS_FOR_LAYOUT.get() );
         layoutTiledLayout.setSelected( TILED_LAYOUT.get() );
@@ -3074,6 +3111,9 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         layoutIterationsField.setText( Integer.toString( NUMBER_OF_LAYOUT_ITERATIONS.get() ) );
         layoutKvalueField.setText( Float.toString( KVALUE_MODIFIER.get() ) );
         layoutBurstIterationsField.setText( Integer.toString( BURST_LAYOUT_ITERATIONS.get() ) );
+        layoutIncrementalLayoutHopsField.setText( Integer.toString( INCREMENTAL_LAYOUT_NEIGHBOURHOOD_HOPS.get() ) );
+        layoutRepulsionMode.setSelectedIndex( FR_LAYOUT_REPULSION_MODE.getIndex() );
+        layoutBarnesHutThetaField.setText( Float.toString( FR_LAYOUT_BARNES_HUT_THETA.get() ) );
         layoutMinimumComponentSizeField.setText( Integer.toString( MINIMUM_COMPONENT_SIZE.get() ) );
 
         MCL_inflationField.setText( Float.toString( MCL_INFLATION_VALUE.get() ) );
@@ -3087,7 +3127,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         parallelismUseMCLNCoreParallelism.setEnabled(USE_MULTICORE_PROCESS);
         MCL_advancedOptionsTextField.setText( MCL_ADVANCED_OPTIONS.get() );
         MCL_smallestClusterAllowedField.setText( Integer.toString( MCL_SMALLEST_CLUSTER.get() ) );
-        optionsMCLChanged = false;
 
         saveSPNResultsCheckBox.setSelected( SAVE_SPN_RESULTS.get() );
         if ( SAVE_SPN_RESULTS.get() )
@@ -3241,7 +3280,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
                 if ( !numberField.getText().equals( String.valueOf(value) ) )
                 {
                     numberField.setText( String.valueOf(value) );
-                    optionsMCLChanged = true;
                     setEnabledAllApplyButtons(true);
                 }
             }
@@ -3251,7 +3289,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
                 if ( !numberField.getText().equals( Integer.toString(value) ) )
                 {
                     numberField.setText( String.valueOf(value) );
-                    optionsMCLChanged = true;
                     setEnabledAllApplyButtons(true);
                 }
             }
@@ -3355,10 +3392,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
                 layoutFrame.getClassViewerFrame().populateClassViewer(false, true);
         }
 
-        if (optionsMCLChanged)
-            layoutFrame.getLayoutClusterMCL().checkMCLExecutable();
-
-        optionsMCLChanged = false;
         generalChange = false;
         refreshClassViewer = false;
         setEnabledAllApplyButtons(false);
@@ -3393,6 +3426,9 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         NUMBER_OF_LAYOUT_ITERATIONS.set(layoutIterationsField);
         KVALUE_MODIFIER.set( layoutKvalueField.getValue() );
         BURST_LAYOUT_ITERATIONS.set(layoutBurstIterationsField);
+        INCREMENTAL_LAYOUT_NEIGHBOURHOOD_HOPS.set(layoutIncrementalLayoutHopsField);
+        FR_LAYOUT_REPULSION_MODE.set( FRLayoutRepulsionMode.values()[layoutRepulsionMode.getSelectedIndex()] );
+        FR_LAYOUT_BARNES_HUT_THETA.set( layoutBarnesHutThetaField.getValue() );
         MINIMUM_COMPONENT_SIZE.set(layoutMinimumComponentSizeField);
 
         FMMM_DESIRED_EDGE_LENGTH.set(fmmmDesiredEdgeLength.getValue());
@@ -3400,6 +3436,8 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         FMMM_QUALITY_VS_SPEED.set(FmmmQualityVsSpeed.values()[fmmmQualityVsSpeed.getSelectedIndex()]);
         FMMM_STOP_CRITERION.set(FmmmStopCriterion.values()[fmmmStopCriterion.getSelectedIndex()]);
         FMMM_ITERATION_LEVEL_FACTOR.set((int)fmmmIterationLevelFactor.getValue());
+        FMMM_NM_PRECISION.set((int)fmmmNmPrecision.getValue());
+        FMMM_NM_PARTICLES_IN_LEAVES.set((int)fmmmNmParticlesInLeaves.getValue());
 
         MCL_INFLATION_VALUE.set( MCL_inflationField.getValue() );
         MCL_PRE_INFLATION_VALUE.set( MCL_preInflationField.getValue() );
@@ -3460,7 +3498,6 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
             DISABLE_EDGES_RENDERING.set( generalDisableEdgesRendering.isSelected() );
             INSTALL_DIR_FOR_SCREENSHOTS_HAS_CHANGED = ( generalUseInstallDirForScreenshots.isSelected() != USE_INSTALL_DIR_FOR_SCREENSHOTS.get() );
             USE_INSTALL_DIR_FOR_SCREENSHOTS.set( generalUseInstallDirForScreenshots.isSelected() );
-            USE_INSTALL_DIR_FOR_MCL_TEMP_FILE.set( generalUseInstallDirForMCLTempFile.isSelected() );
             SHOW_NAVIGATION_WIZARD_ON_STARTUP.set( generalShowNavigationWizardOnStartup.isSelected() );
             SHOW_LAYOUT_ITERATIONS.set( generalShowLayoutIterations.isSelected() );
             VALIDATE_XML_FILES.set( generalValidateXMLFiles.isSelected() );
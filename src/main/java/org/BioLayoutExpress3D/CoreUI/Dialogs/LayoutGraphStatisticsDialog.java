@@ -4,8 +4,10 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import javax.swing.*;
+import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.Graph.*;
 import org.BioLayoutExpress3D.Graph.GraphElements.*;
+import org.BioLayoutExpress3D.Graph.Statistics.*;
 import org.BioLayoutExpress3D.StaticLibraries.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
@@ -24,11 +26,24 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
     */
     public static final long serialVersionUID = 111222333444555739L;
 
+    /**
+    *  Graphs with more nodes get the approximate (iFUB & sampled) distance statistics instead of the all-pairs ones.
+    */
+    private static final int MAXIMUM_NUMBER_OF_NODES_FOR_EXACT_DISTANCE_STATISTICS = 50000;
+
+    private LayoutFrame layoutFrame = null;
     private Graph graph = null;
     private JTextArea textArea = null;
+    private JButton createClassSetsButton = null;
     private AbstractAction graphStatisticsDialogAction = null;
 
     private int diameter = 0;
+    private int diameterUpperBound = 0;
+    private double averageShortestPathLength = 0.0;
+    private boolean isDistanceStatisticsExact = false;
+    private int[] eccentricities = null;
+    private volatile GraphDistanceStatistics graphDistanceStatistics = null;
+    private volatile GraphNetworkStatistics graphNetworkStatistics = null;
 
     private double averageConnectivityAll = 0.0;
     private double averageConnectivityParents = 0.0;
@@ -50,14 +65,15 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
     */
     private volatile boolean abortThread = false;
 
-    public LayoutGraphStatisticsDialog(JFrame frame, Graph graph)
+    public LayoutGraphStatisticsDialog(LayoutFrame layoutFrame, Graph graph)
     {
-        super(frame, false);
+        super(layoutFrame, false);
 
+        this.layoutFrame = layoutFrame;
         this.graph = graph;
 
         initActions();
-        initComponents(frame);
+        initComponents(layoutFrame);
     }
 
     private void initActions()
@@ -82,11 +98,24 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
     {
         textArea = new JTextArea();
         textArea.setFont( new Font("System", Font.ITALIC | Font.BOLD, 12) );
-        textArea.setRows(15);
+        textArea.setRows(25);
         textArea.setColumns(17);
         textArea.setEditable(false);
 
-        this.getContentPane().add(textArea);
+        createClassSetsButton = new JButton("Create Class Sets");
+        createClassSetsButton.setToolTipText("Create Clustering Coefficient, K-Core & Connected Components Class Sets");
+        createClassSetsButton.setEnabled(false);
+        createClassSetsButton.addActionListener( new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                createClassSets();
+            }
+        } );
+
+        this.getContentPane().add(textArea, BorderLayout.CENTER);
+        this.getContentPane().add(createClassSetsButton, BorderLayout.SOUTH);
         this.pack();
         this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         this.setLocationRelativeTo(null);
@@ -123,7 +152,7 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
             initGraphStatistics("Selected Graph Statistics", selectedNodes, selectedEdges, true);
         }
         else
-            initGraphStatistics("Full Graph Statistics", graph.getGraphNodes() , graph.getGraphEdges(), false);
+            initGraphStatistics("Full Graph Statistics", graph.getGraphNodes() , graph.getGraphEdges(), true);
 
         Thread graphStatisticsThread = new Thread(this, "graphStatisticsThread");
         graphStatisticsThread.setPriority(Thread.NORM_PRIORITY);
@@ -142,6 +171,7 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
     private void clearStatistics()
     {
         abortThread = true;
+        cancelGraphDistanceStatistics();
 
         averageConnectivityAll = 0.0;
         averageConnectivityParents = 0.0;
@@ -152,6 +182,12 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
         nodesWithChildren = 0;
         nodesWithParents = 0;
         diameter = 0;
+        diameterUpperBound = 0;
+        averageShortestPathLength = 0.0;
+        isDistanceStatisticsExact = false;
+        eccentricities = null;
+        graphNetworkStatistics = null;
+        createClassSetsButton.setEnabled(false);
     }
 
     @Override
@@ -182,14 +218,34 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
             textArea.append("Avg In Degree            : " + ( (averageConnectivityChilds == Double.NaN) ? 0.0 : Utils.numberFormatting(averageConnectivityChilds, 3) )   + "\n");
             textArea.append("Max In Degree            : " +   maxConnectivityChilds  + "\n");
 
+            GraphSnapshot graphSnapshot = new GraphSnapshot( currentNodes, graph.getVisibleEdges() );
+
+            textArea.append("\nCalculating Network Statistics :  ");
+
+            if ( getNetworkStatistics(graphSnapshot) )
+            {
+                textArea.append("done!\n");
+                textArea.append("Avg Clustering Coeff     : " + Utils.numberFormatting(graphNetworkStatistics.getAverageClusteringCoefficient(), 3) + "\n");
+                textArea.append("Global Clustering Coeff  : " + Utils.numberFormatting(graphNetworkStatistics.getGlobalClusteringCoefficient(), 3) + "\n");
+                textArea.append("Max K-Core               : " + graphNetworkStatistics.getMaximumCoreNumber() + "\n");
+                textArea.append("Degree Assortativity     : " + Utils.numberFormatting(graphNetworkStatistics.getDegreeAssortativity(), 3) + "\n");
+                textArea.append("Connected Components     : " + graphNetworkStatistics.getComponentSizes().length + "\n");
+                textArea.append("Component Sizes (x Count): " + getComponentSizeDistributionText( graphNetworkStatistics.getComponentSizeDistribution() ) + "\n");
+                createClassSetsButton.setEnabled(true);
+            }
+
             if (calculateDiameter)
             {
                 textArea.append("\nCalculating Diameter :  ");
 
-                getDiameter(currentNodes);
-
-                textArea.append("done!\n");
-                textArea.append("Network Diameter         : " + diameter + "\n");
+                if ( getDiameter(graphSnapshot) )
+                {
+                    textArea.append("done!\n");
+                    textArea.append("Network Diameter         : " + ( (diameter == diameterUpperBound) ? Integer.toString(diameter) : diameter + " - " + diameterUpperBound ) + "\n");
+                    textArea.append("Avg Shortest Path        : " + ( (isDistanceStatisticsExact) ? "" : "~" ) + Utils.numberFormatting(averageShortestPathLength, 3) + "\n");
+                    if (eccentricities != null)
+                        appendEccentricityStatistics();
+                }
             }
         }
         catch (Exception exc)
@@ -233,41 +289,112 @@ public final class LayoutGraphStatisticsDialog extends JDialog implements Runnab
         averageConnectivityChilds /= nodesWithChildren;
     }
 
-    private void getDiameter(Collection<GraphNode> nodes)
+    /**
+    *  Calculates the clustering coefficients, k-cores, degree assortativity & connected components of the graph snapshot.
+    *  Returns false if aborted.
+    */
+    private boolean getNetworkStatistics(GraphSnapshot graphSnapshot)
     {
-        Collection<GraphNode> selected = new HashSet<GraphNode>();
-        for (GraphNode graphNode : nodes)
-        {
-            if (abortThread) return;
+        if (abortThread) return false;
 
-            selected.clear();
-            selected.add(graphNode);
+        GraphNetworkStatistics graphNetworkStatistics = new GraphNetworkStatistics(graphSnapshot);
+        if ( !graphNetworkStatistics.calculateStatistics(null) || abortThread ) return false;
 
-            getNodeDiameter(selected, 0);
-        }
+        this.graphNetworkStatistics = graphNetworkStatistics;
+
+        return true;
     }
 
-    private void getNodeDiameter(Collection<GraphNode> selected, int diameter)
+    /**
+    *  Lists the largest component sizes with their counts, as in '120 x1, 3 x4, 2 x10'.
+    */
+    private String getComponentSizeDistributionText(NavigableMap<Integer, Integer> componentSizeDistribution)
     {
-        if (abortThread) return;
+        final int maximumNumberOfSizes = 5;
+        StringBuilder text = new StringBuilder();
+        int numberOfSizes = 0;
+        for ( Integer componentSize : componentSizeDistribution.descendingKeySet() )
+        {
+            if (numberOfSizes++ == maximumNumberOfSizes)
+            {
+                text.append(", ...");
+                break;
+            }
 
-        Collection<GraphNode> neigbours = new HashSet<GraphNode>();
-        for (GraphNode graphNode : selected)
-            neigbours.addAll( graphNode.getNodeNeighbours() );
+            text.append( (numberOfSizes > 1) ? ", " : "" ).append(componentSize).append(" x").append( componentSizeDistribution.get(componentSize) );
+        }
 
-        if ( selected.containsAll(neigbours) )
-        {
-            if (this.diameter < diameter)
-                this.diameter = diameter;
+        return text.toString();
+    }
 
+    /**
+    *  Stores the per node network statistics as class sets, switching to the k-core one.
+    */
+    private void createClassSets()
+    {
+        GraphNetworkStatistics graphNetworkStatistics = this.graphNetworkStatistics;
+        if (graphNetworkStatistics == null)
             return;
-        }
-        else
+
+        graphNetworkStatistics.createClassSets( layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager(), GraphNetworkStatistics.K_CORE_CLASS_SET_NAME );
+        graph.rebuildGraph();
+        layoutFrame.getClassViewerFrame().refreshCurrentClassSetSelection();
+        layoutFrame.getClassViewerFrame().populateClassViewer(null, false, true, true);
+    }
+
+    /**
+    *  Calculates the diameter & average shortest path length of the graph snapshot.
+    *  Returns false if aborted.
+    */
+    private boolean getDiameter(GraphSnapshot graphSnapshot)
+    {
+        GraphDistanceStatistics graphDistanceStatistics = new GraphDistanceStatistics(graphSnapshot);
+        this.graphDistanceStatistics = graphDistanceStatistics;
+        if (abortThread) return false;
+
+        boolean isCalculated = (graphSnapshot.getNumberOfNodes() <= MAXIMUM_NUMBER_OF_NODES_FOR_EXACT_DISTANCE_STATISTICS)
+                               ? graphDistanceStatistics.calculateExactStatistics()
+                               : graphDistanceStatistics.calculateApproximateStatistics(GraphDistanceStatistics.DEFAULT_NUMBER_OF_APPROXIMATE_SEARCHES);
+        this.graphDistanceStatistics = null;
+        if (!isCalculated || abortThread) return false;
+
+        diameter = graphDistanceStatistics.getDiameter();
+        diameterUpperBound = graphDistanceStatistics.getDiameterUpperBound();
+        averageShortestPathLength = graphDistanceStatistics.getAverageShortestPathLength();
+        isDistanceStatisticsExact = graphDistanceStatistics.isExact();
+        eccentricities = graphDistanceStatistics.getEccentricities();
+
+        return true;
+    }
+
+    /**
+    *  Appends the radius & average eccentricity of the exact distance statistics.
+    *  Isolated nodes (eccentricity 0) are left out, like the unreachable pairs are for the diameter.
+    */
+    private void appendEccentricityStatistics()
+    {
+        int radius = Integer.MAX_VALUE;
+        long sumOfEccentricities = 0;
+        int numberOfConnectedNodes = 0;
+        for (int eccentricity : eccentricities)
         {
-            selected.addAll(neigbours);
+            if (eccentricity == 0) continue;
 
-            getNodeDiameter(selected, diameter + 1);
+            if (radius > eccentricity)
+                radius = eccentricity;
+            sumOfEccentricities += eccentricity;
+            numberOfConnectedNodes++;
         }
+
+        textArea.append("Network Radius           : " + ( (numberOfConnectedNodes > 0) ? radius : 0 ) + "\n");
+        textArea.append("Avg Eccentricity         : " + Utils.numberFormatting( (numberOfConnectedNodes > 0) ? (double)sumOfEccentricities / numberOfConnectedNodes : 0.0, 3 ) + "\n");
+    }
+
+    private void cancelGraphDistanceStatistics()
+    {
+        GraphDistanceStatistics graphDistanceStatistics = this.graphDistanceStatistics;
+        if (graphDistanceStatistics != null)
+            graphDistanceStatistics.cancel();
     }
 
     public AbstractAction getGraphStatisticsDialogAction()
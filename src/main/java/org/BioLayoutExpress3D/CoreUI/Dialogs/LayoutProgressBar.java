@@ -0,0 +1,42 @@
+package org.BioLayoutExpress3D.CoreUI.Dialogs;
+
+/**
+*
+* The LayoutProgressBar interface is the progress reporting of the long running tasks,
+* implemented by the LayoutProgressBarDialog of the GUI & by the HeadlessLayoutProgressBar of the headless batch mode.
+*
+* @see org.BioLayoutExpress3D.CoreUI.Dialogs.LayoutProgressBarDialog
+* @see org.BioLayoutExpress3D.CoreUI.Dialogs.HeadlessLayoutProgressBar
+* @version 3.0.0.0
+*
+*/
+
+public interface LayoutProgressBar
+{
+
+    public void prepareProgressBar(int max, String title, boolean isCancellable);
+
+    public void prepareProgressBar(int max, String title);
+
+    public void startProgressBar();
+
+    public void endProgressBar();
+
+    public void stopProgressBar();
+
+    public void incrementProgress(int value);
+
+    public void incrementProgress();
+
+    public void setText(String text);
+
+    public void appendText(String text);
+
+    public void setIndeterminate(Boolean value);
+
+    public String getText();
+
+    public boolean userHasCancelled();
+
+
+}
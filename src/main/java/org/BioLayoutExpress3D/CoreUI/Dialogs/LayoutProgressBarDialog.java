@@ -13,7 +13,7 @@ import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 *
 */
 
-public class LayoutProgressBarDialog extends JDialog implements ActionListener
+public class LayoutProgressBarDialog extends JDialog implements ActionListener, LayoutProgressBar
 {
     /**
     *  Serial version UID variable for the LayoutProgressBar class.
@@ -111,6 +111,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
     private AbstractAction toolsMenuSavePreferencesAction = null;
     private AbstractAction toolsMenuRevertToDefaultPreferencesAction = null;
     private AbstractAction helpMenuCheckForUpdatesAction = null;
+    private AbstractAction editMenuChangeCorrelationThresholdAction = null;
 
     private FileDragNDrop fileDragNDrop = null;
     private BioLayoutExpress3DFileFilter bioLayoutExpress3DFileFilter = null;
@@ -629,6 +630,21 @@ public final class LayoutFrame extends JFrame implements GraphListener
             }
         };
 
+        editMenuChangeCorrelationThresholdAction = new AbstractAction("Change Correlation Threshold")
+        {
+            /**
+            *  Serial version UID variable for the AbstractAction class.
+            */
+            public static final long serialVersionUID = 111222333444555691L;
+
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                changeCorrelationThreshold();
+            }
+        };
+        editMenuChangeCorrelationThresholdAction.setEnabled(false);
+
         initGraphPropertiesToolBarActions();
         initGeneralToolBarActions();
         initNavigationToolBarActions();
@@ -677,6 +693,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
         layoutMenuBar.setEditMenuUnCollapseAllGroupsAction( graph.getSelectionManager().getUnGroupAllAction() );
         layoutMenuBar.setEditMenuFilterNodesByEdgesAction( filterNodesByEdgesDialog.getFilterNodesByEdgesAction() );
         layoutMenuBar.setEditMenuFilterEdgesByWeightAction( filterEdgesByWeightDialog.getFilterEdgesByWeightAction() );
+        layoutMenuBar.setEditMenuChangeCorrelationThresholdAction(editMenuChangeCorrelationThresholdAction);
 
         layoutMenuBar.setEditSubMenuSelectAllAction( graph.getSelectionManager().getSelectAllAction() );
         layoutMenuBar.setEditSubMenuSelectNeighbours( graph.getSelectionManager().getSelectNeighbourAction() );
@@ -989,6 +1006,96 @@ public final class LayoutFrame extends JFrame implements GraphListener
             checkToShowNavigationWizardOnStartup();
     }
 
+    /**
+    *  Asks for a new correlation threshold & re-thresholds the loaded correlation graph in a light-weight thread.
+    */
+    private void changeCorrelationThreshold()
+    {
+        final CorrelationEdgeList correlationEdgeList = expressionData.getCorrelationEdgeList();
+        if (correlationEdgeList == null)
+            return;
+
+        String thresholdString = (String)JOptionPane.showInputDialog(this, "Please enter a correlation threshold between " + correlationEdgeList.getStoredThreshold() + " and 1.0:",
+                                                                     "Change Correlation Threshold", JOptionPane.QUESTION_MESSAGE, null, null, Float.toString(CURRENT_CORRELATION_THRESHOLD) );
+        if (thresholdString == null)
+            return;
+
+        final float threshold;
+        try
+        {
+            threshold = Float.parseFloat( thresholdString.trim() );
+        }
+        catch (NumberFormatException nfe)
+        {
+            JOptionPane.showMessageDialog(this, "The correlation threshold has to be a number.", "Change Correlation Threshold", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if ( (threshold < correlationEdgeList.getStoredThreshold()) || (threshold >= 1.0f) )
+        {
+            JOptionPane.showMessageDialog(this, "The correlation threshold has to be between " + correlationEdgeList.getStoredThreshold() + " and 1.0.\nLower thresholds need the correlations to be calculated again.", "Change Correlation Threshold", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (threshold == CURRENT_CORRELATION_THRESHOLD)
+            return;
+
+        // the deleted nodes & the selection are reset here on the Event Dispatch Thread, before the light-weight thread changes the network
+        if ( graph.getSelectionManager().getUndeleteAllNodesAction().isEnabled() )
+            graph.getSelectionManager().undeleteAllNodes();
+        graph.getSelectionManager().deselectAll();
+
+        Thread runLightWeightThread = new Thread( new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                blockAllAction.actionPerformed(blockEvent);
+                rethresholdCorrelationGraph(correlationEdgeList, threshold);
+                blockAllAction.actionPerformed(unblockEvent);
+            }
+        }, "changeCorrelationThreshold" );
+
+        runLightWeightThread.setPriority(Thread.NORM_PRIORITY);
+        runLightWeightThread.start();
+    }
+
+    /**
+    *  Re-thresholds the loaded correlation graph from its kept correlation edge list, without reparsing the correlation file.
+    *  Only the edges crossing the threshold change, so only their nodes & the nodes around them are moved by incremental layout iterations,
+    *  starting from the current node positions. The frame & class viewer updates are passed on to the Event Dispatch Thread.
+    */
+    private void rethresholdCorrelationGraph(CorrelationEdgeList correlationEdgeList, float threshold)
+    {
+        HashSet<Vertex> changedVertices = correlationEdgeList.setThreshold(nc, threshold);
+        CURRENT_CORRELATION_THRESHOLD = threshold;
+
+        nc.createNetworkComponentsContainer();
+        if ( !nc.getVertices().isEmpty() )
+            nc.relayoutIncrementally(changedVertices);
+
+        nc.clearRoot();
+        nc.normaliseWeights();
+        graph.rebuildGraph();
+
+        SwingUtilities.invokeLater( new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                graph.resetAllValues();
+
+                setTitle(VERSION + "  [ " + fileNameAbsolutePath + fileNameLoaded + " at " + CURRENT_CORRELATION_THRESHOLD + " ] (weighted graph)");
+                classViewerFrame.populateClassViewer( null, false, !expressionData.isTransposed(), true);
+                classViewerFrame.refreshCurrentClassSetSelection();
+            }
+
+
+        } );
+    }
+
     /**
     *   Process a light-weight thread using the Adapter technique to avoid any load latencies.
     */
@@ -1091,6 +1198,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
         boolean isNotSkipped = true; // so as to avoid parsing files and not updating the GUI
         boolean reachedRebuildNetwork = false;
         CoreParser parser = null;
+        File fileToParse = file; // differs from the loaded file only for expression data, which is parsed from its correlation cache file
         String fileName = file.getAbsolutePath();
         String fileExtension = fileName.substring( fileName.lastIndexOf(".") + 1, fileName.length() ).toUpperCase(); // tolerance to upper/lowercase mix-ups
         DataTypes prevDataType = DATA_TYPE;
@@ -1101,7 +1209,9 @@ public final class LayoutFrame extends JFrame implements GraphListener
         EXPRESSION_FILE = "";
         EXPRESSION_FILE_PATH = "";
         WEIGHTED_EDGES = false;
+        expressionData.setCorrelationEdgeList(null);
         ExpressionLoader expressionLoader = null;
+        ExpressionDataCache expressionDataCache = null;
         String reasonForExpressionLoadFailure = null;
         double correlationCutOffValue = 0.0;
 
@@ -1157,70 +1267,55 @@ public final class LayoutFrame extends JFrame implements GraphListener
                     if (DEBUG_BUILD) println("Expression File is: " + EXPRESSION_FILE_PATH + EXPRESSION_FILE);
                     String metricName = CURRENT_METRIC.toString().toLowerCase();
 
-                    String correlationFilename = IOUtils.getPrefix(file.getAbsolutePath());
-                    correlationFilename += "_r-" + STORED_CORRELATION_THRESHOLD;
-
-                    if (EXPRESSION_DATA_TRANSPOSE)
+                    File correlationTextFile = (generateTextFile) ? new File( ExpressionData.getCorrelationTextFilename( file.getAbsolutePath() ) ) : null;
+                    try
                     {
-                        correlationFilename += "_transpose";
+                        // the correlation cache entry is found by the expression file contents & the correlation settings
+                        expressionDataCache = new ExpressionDataCache( file, EXPRESSION_DATA_FIRST_COLUMN, EXPRESSION_DATA_FIRST_ROW, EXPRESSION_DATA_TRANSPOSE );
                     }
-
-                    if (CURRENT_SCALE_TRANSFORM != ScaleTransformType.NONE)
+                    catch (IOException ioe)
                     {
-                        correlationFilename += "_" + Utils.hyphenatedOf(CURRENT_SCALE_TRANSFORM.toString());
+                        if (DEBUG_BUILD) println("IOException in LayoutFrame.parseFile() creating the expression data cache:\n" + ioe.getMessage());
+                        expressionLoader.reasonForFailure = "Could not access the expression data cache: " + ioe.getMessage();
+                        isSuccessful = false;
                     }
 
-                    correlationFilename += "_" + metricName;
-                    correlationFilename += ".correlationcache";
-
-                    File correlationFile = new File(correlationFilename);
-                    if (!correlationFile.exists())
-                    {
-                        expressionData.buildCorrelationNetwork(layoutProgressBarDialog,
-                                correlationFile, metricName, STORED_CORRELATION_THRESHOLD,
-                                generateTextFile);
-
-                        if (!layoutProgressBarDialog.userHasCancelled())
-                        {
-                            file = correlationFile;
-                        }
-                        else
-                        {
-                            isNotSkipped = false;
-                        }
-                    }
-                    else
+                    if (isSuccessful)
                     {
-                        File correlationTextFile = new File(correlationFilename + ".txt");
+                        File correlationFile = expressionDataCache.getCorrelationFile();
                         boolean forceGeneration = generateTextFile && !correlationTextFile.exists();
-
-                        // there seems to be saved expression correlations here, let's check they are good for our requirements
-                        ExpressionParser checker = new ExpressionParser(nc, this, expressionData);
-                        checker.init(correlationFile, fileExtension);
-
-                        if (!forceGeneration && checker.checkFile())
+                        boolean isCorrelationFileValid = false;
+                        if (!forceGeneration && expressionDataCache.hasCorrelationFile())
                         {
-                            // the file looks good, let's use it
-                            file = correlationFile;
+                            // there seems to be saved expression correlations here, let's check they are good for our requirements
+                            ExpressionParser checker = new ExpressionParser(nc, this, expressionData);
+                            checker.init(correlationFile, fileExtension);
+                            isCorrelationFileValid = checker.checkFile();
+                            checker.close();
                         }
-                        else
+
+                        if (!isCorrelationFileValid)
                         {
-                            // We should only get here if the correlationcache file is created by a different version
-                            //
-                            // The file is not good, close file before deletion, delete it & rebuild it
-                            checker.close();
+                            // We should only get here if the correlationcache file is missing, evicted or created by a different version
                             correlationFile.delete();
                             expressionData.buildCorrelationNetwork(layoutProgressBarDialog,
                                     correlationFile, metricName, STORED_CORRELATION_THRESHOLD,
-                                    generateTextFile);
-                            file = correlationFile;
+                                    correlationTextFile);
+
+                            if (!layoutProgressBarDialog.userHasCancelled())
+                                expressionDataCache.correlationFileStored();
+                            else
+                                isNotSkipped = false;
                         }
+
+                        // the cache file is named by its hash, the expression file keeps naming the loaded graph
+                        fileToParse = correlationFile;
                     }
 
-                    if (isNotSkipped)
+                    if (isSuccessful && isNotSkipped)
                     {
                         ExpressionParser scanner = new ExpressionParser(nc, this, expressionData);
-                        scanner.init(file, fileExtension);
+                        scanner.init(fileToParse, fileExtension);
                         scanner.scan();
 
                         ExpressionLoaderSummaryDialog expressionLoaderSummaryDialog =
@@ -1322,9 +1417,9 @@ public final class LayoutFrame extends JFrame implements GraphListener
         // Parse the file here
         if (parser != null)
         {
-            if ( parser.init(file, fileExtension) )
+            if ( parser.init(fileToParse, fileExtension) )
             {
-                if (DEBUG_BUILD) println("Parsing: " + file.getName() );
+                if (DEBUG_BUILD) println("Parsing: " + fileToParse.getName() );
 
                 // rest of file types perform network clearing here
                 if ( !DATA_TYPE.equals(DataTypes.EXPRESSION) )
@@ -1419,7 +1514,18 @@ public final class LayoutFrame extends JFrame implements GraphListener
                         gla = lasd.getGraphLayoutAlgorithm();
                     }
 
-                    nc.optimize(gla);
+                    // expression data reuses the cached converged layout of the same network & layout settings
+                    if ( (expressionDataCache != null) && DATA_TYPE.equals(DataTypes.EXPRESSION) && expressionDataCache.loadLayout(nc, gla) )
+                    {
+                        nc.setKvalue();
+                    }
+                    else
+                    {
+                        nc.optimize(gla);
+
+                        if ( (expressionDataCache != null) && DATA_TYPE.equals(DataTypes.EXPRESSION) && !layoutProgressBarDialog.userHasCancelled() )
+                            expressionDataCache.storeLayout(nc, gla);
+                    }
                 }
                 else
                 {
@@ -1455,6 +1561,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
 
             filterNodesByEdgesDialog.getFilterNodesByEdgesAction().setEnabled(true);
             filterEdgesByWeightDialog.getFilterEdgesByWeightAction().setEnabled(WEIGHTED_EDGES); // enable weight filter dialog action only when weights have been parsed
+            editMenuChangeCorrelationThresholdAction.setEnabled( DATA_TYPE.equals(DataTypes.EXPRESSION) && (expressionData.getCorrelationEdgeList() != null) );
 
             layoutGraphPropertiesDialog.setEnabledProportionalEdgesSizeToWeight(WEIGHTED_EDGES); // enable proportional edges sizes to weight only when weights have been parsed
             layoutGraphPropertiesDialog.setEnabledNodeNameTextFieldAndSelectNodesTab(false, null, 0);
@@ -1849,6 +1956,9 @@ public final class LayoutFrame extends JFrame implements GraphListener
         if ( filterEdgesByWeightDialog.getFilterEdgesByWeightAction().isEnabled() )
             filterEdgesByWeightDialog.getFilterEdgesByWeightAction().setEnabled(false);
 
+        if ( editMenuChangeCorrelationThresholdAction.isEnabled() )
+            editMenuChangeCorrelationThresholdAction.setEnabled(false);
+
         if ( exportCorrelationNodesEdgesTable.getExportCorrelationNodesEdgesTableAction().isEnabled() )
             exportCorrelationNodesEdgesTable.getExportCorrelationNodesEdgesTableAction().setEnabled(false);
 
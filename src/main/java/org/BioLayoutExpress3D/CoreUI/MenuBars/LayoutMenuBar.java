@@ -398,6 +398,12 @@ public final class LayoutMenuBar extends JMenuBar implements ActionListener
         editFilterByWeight.setMnemonic(KeyEvent.VK_W);
     }
 
+    public void setEditMenuChangeCorrelationThresholdAction(AbstractAction changeCorrelationThresholdAction)
+    {
+        JMenuItem editChangeCorrelationThreshold = editMenu.add(changeCorrelationThresholdAction);
+        editChangeCorrelationThreshold.setMnemonic(KeyEvent.VK_C);
+    }
+
     public void setEditSubMenuSelectAllAction(AbstractAction selectAction)
     {
         JMenuItem editSelectAll = selectionSubMenu.add(selectAction);
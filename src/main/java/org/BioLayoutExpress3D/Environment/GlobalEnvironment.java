@@ -46,7 +46,8 @@ public final class GlobalEnvironment
     public static final boolean IS_LINUX = LoadNativeLibrary.isLinux();
     public static final boolean IS_MAC = LoadNativeLibrary.isMac();
     public static final boolean IS_64BIT = LoadNativeLibrary.is64bit();
-    public static final int NUMBER_OF_AVAILABLE_PROCESSORS = RUNTIME.availableProcessors();
+    public static final String AVAILABLE_PROCESSORS_PROPERTY = "biolayout.processors"; // caps the cores used, eg by the batch mode worker processes
+    public static final int NUMBER_OF_AVAILABLE_PROCESSORS = max( 1, min( RUNTIME.availableProcessors(), Integer.getInteger( AVAILABLE_PROCESSORS_PROPERTY, RUNTIME.availableProcessors() ) ) );
     public static final boolean USE_MULTICORE_PROCESS = (NUMBER_OF_AVAILABLE_PROCESSORS > 1);
     public static final char DECIMAL_SEPARATOR_CHARACTER = DecimalFormatSymbols.getInstance().getDecimalSeparator();
     public static final String DECIMAL_SEPARATOR_STRING = Character.valueOf(DECIMAL_SEPARATOR_CHARACTER).toString();
@@ -174,7 +175,7 @@ public final class GlobalEnvironment
     public static final PrefBool RENDERER_MODE_START_3D = new PrefBool(true, "renderer_mode_start_3d", true);
     public static boolean RENDERER_MODE_3D = false;
     public static boolean IS_RENDERER_MODE_FIRST_SWITCH = true;
-    public static final Dimension SCREEN_DIMENSION = new Dimension( Toolkit.getDefaultToolkit().getScreenSize() );
+    public static final Dimension SCREEN_DIMENSION = ( GraphicsEnvironment.isHeadless() ) ? new Dimension(1024, 768) : new Dimension( Toolkit.getDefaultToolkit().getScreenSize() ); // no screen in headless batch mode
     public static final Dimension APPLICATION_SCREEN_DIMENSION = new Dimension( (int)( 0.9 * SCREEN_DIMENSION.width ), (int)( 0.9 * SCREEN_DIMENSION.height ) );
     public static final BufferedImage BIOLAYOUT_ICON_IMAGE = loadImageFromURL( GlobalEnvironment.class.getResource(IMAGE_FILES_PATH + "BioLayoutExpress3DIcon.png") );
     public static final ImageIcon BIOLAYOUT_MENU_ITEM_ICON = new ImageIcon( resizeImageByGivenRatio(BIOLAYOUT_ICON_IMAGE, 0.125f, true) );
@@ -201,7 +202,6 @@ public final class GlobalEnvironment
     public static final PrefBool SHOW_LAYOUT_ITERATIONS = new PrefBool(false, "show_layout_iterations", true);
     public static final PrefBool VALIDATE_XML_FILES = new PrefBool(false, "validate_xml_files", true);
     public static final PrefBool USE_INSTALL_DIR_FOR_SCREENSHOTS = new PrefBool(false, "use_install_dir_for_screenshots", true);
-    public static final PrefBool USE_INSTALL_DIR_FOR_MCL_TEMP_FILE = new PrefBool(false, "use_install_dir_for_mcl_temp_file", true);
     public static final PrefBool SHOW_GRAPH_PROPERTIES_TOOLBAR = new PrefBool(true, "show_graph_properties_toolbar", true);
     public static final PrefBool SHOW_NAVIGATION_TOOLBAR = new PrefBool(true, "show_navigation_toolbar", true);
     public static final PrefBool SHOW_POPUP_OVERLAY_PLOT = new PrefBool(true, "show_popup_overlay_plot", true);
@@ -220,6 +220,11 @@ public final class GlobalEnvironment
     public static final PrefInt NUMBER_OF_LAYOUT_ITERATIONS = new PrefInt(100, "number_of_layout_iterations", true);
     public static final PrefFloat KVALUE_MODIFIER = new PrefFloat(1.0f, "kvalue_modifier", true);
     public static final PrefInt BURST_LAYOUT_ITERATIONS = new PrefInt(20, "burst_layout_iterations", true);
+    public static final PrefInt INCREMENTAL_LAYOUT_NEIGHBOURHOOD_HOPS = new PrefInt(2, "incremental_layout_neighbourhood_hops", true);
+    public static enum FRLayoutRepulsionMode { EXACT, BARNES_HUT }
+    public static final PrefEnum<FRLayoutRepulsionMode> FR_LAYOUT_REPULSION_MODE = new PrefEnum<FRLayoutRepulsionMode>(
+            FRLayoutRepulsionMode.class, FRLayoutRepulsionMode.EXACT, "fr_layout_repulsion_mode", true);
+    public static final PrefFloat FR_LAYOUT_BARNES_HUT_THETA = new PrefFloat(0.8f, "fr_layout_barnes_hut_theta", true);
     public static final PrefInt MINIMUM_COMPONENT_SIZE = new PrefInt(1, "minimum_component_size", true);
 
     public static final PrefFloat FMMM_DESIRED_EDGE_LENGTH = new PrefFloat(20.0f, "fmmm_desired_edge_length", true);
@@ -233,13 +238,15 @@ public final class GlobalEnvironment
     public static final PrefEnum<FmmmQualityVsSpeed> FMMM_QUALITY_VS_SPEED = new PrefEnum<FmmmQualityVsSpeed>(
             FmmmQualityVsSpeed.class, FmmmQualityVsSpeed.LOW_QUALITY_HIGH_SPEED, "fmmm_quality_vs_speed", true);    
     
-    public static enum FmmmForceModel { EADES, FRUCHTERMAN_REINGOLD }
+    public static enum FmmmForceModel { EADES, FRUCHTERMAN_REINGOLD, NEW_MULTIPOLE_METHOD }
     public static final PrefEnum<FmmmForceModel> FMMM_FORCE_MODEL = new PrefEnum<FmmmForceModel>(
             FmmmForceModel.class, FmmmForceModel.FRUCHTERMAN_REINGOLD, "fmmm_force_model", true);
     public static enum FmmmStopCriterion { FORCE_THRESHOLD_AND_FIXED_ITERATIONS, FIXED_ITERATIONS, FORCE_THRESHOLD }
     public static final PrefEnum<FmmmStopCriterion> FMMM_STOP_CRITERION = new PrefEnum<FmmmStopCriterion>(
             FmmmStopCriterion.class, FmmmStopCriterion.FORCE_THRESHOLD_AND_FIXED_ITERATIONS, "fmmm_stop_criterion", true);
     public static final PrefInt FMMM_ITERATION_LEVEL_FACTOR = new PrefInt(10, "fmmm_iteration_level_factor", true);
+    public static final PrefInt FMMM_NM_PRECISION = new PrefInt(4, "fmmm_nm_precision", true);
+    public static final PrefInt FMMM_NM_PARTICLES_IN_LEAVES = new PrefInt(25, "fmmm_nm_particles_in_leaves", true);
 
     public static final String DEFAULT_SURFACE_IMAGE_FILES_PATH = IMAGE_FILES_PATH + "SurfaceImages/";
     private static final String DEFAULT_SURFACE_IMAGE_FILE_NAME = "SurfaceImagesData.txt";
@@ -394,6 +401,7 @@ public final class GlobalEnvironment
     public static final double EXPRESSION_DATA_GPU_COMPUTING_MAX_ERROR_THRESHOLD = 0.0001; // 1e-4f precision up to 3 decimals
     public static final double LAYOUT_GPU_COMPUTING_MAX_ERROR_THRESHOLD = 1.0; // 1e-0f precision up to 1.0 (1 integer pixel)
 
+    public static final PrefInt EXPRESSION_DATA_CACHE_SIZE = new PrefInt(2048, "expression_data_cache_size", true); // in MB, beyond it the least recently used correlation & layout cache entries are evicted
     public static final PrefBool USE_EXRESSION_CORRELATION_CALCULATION_N_CORE_PARALLELISM = new PrefBool(true, "use_expression_correlation_calculation_n_core_parallelism", true);
     public static final PrefBool USE_OPENCL_GPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION = new PrefBool(false, "use_opencl_gpu_computing_expression_correlation_calculation", true);
     public static final PrefInt OPENCL_GPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION_ITERATION_SIZE = new PrefInt(OPENCL_DEFAULT_EXPRESSION_CORRELATION_ITERATION_SIZE, "opencl_gpu_computing_expression_correlation_iteration_size", true);
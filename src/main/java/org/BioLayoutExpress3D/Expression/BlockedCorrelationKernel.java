@@ -0,0 +1,198 @@
+package org.BioLayoutExpress3D.Expression;
+
+/**
+*
+* The BlockedCorrelationKernel class calculates Pearson correlations (Spearman when given the rank matrix) as a tiled matrix multiply.
+* Every row is standardised once to a unit-length z-score vector, so the correlation of two rows becomes a single dot product.
+* A panel of rows is then multiplied against blocks of the following rows that stay cache resident,
+* with a 1x4 register tile so each value of the panel row is loaded once for four dot products.
+*
+* @see org.BioLayoutExpress3D.Expression.ExpressionData
+* @version 3.0.0.0
+*
+*/
+
+public final class BlockedCorrelationKernel
+{
+    /**
+    *  Number of rows of a row panel, the unit of work handed out to the N-Core workers.
+    */
+    public static final int ROW_PANEL_SIZE = 32;
+
+    /**
+    *  Number of rows of a column block, kept small enough for the block to stay in the L2 cache for typical column counts.
+    */
+    private static final int COLUMN_BLOCK_SIZE = 256;
+
+    private final int totalRows;
+    private final int totalColumns;
+    private final float[] zScoresArray;
+    private final boolean[] isConstantRowArray;
+
+    /**
+    *  The constructor of the BlockedCorrelationKernel class. Standardises the rows of the given row-major matrix.
+    */
+    public BlockedCorrelationKernel(float[] matrix, int totalRows, int totalColumns)
+    {
+        this.totalRows = totalRows;
+        this.totalColumns = totalColumns;
+
+        zScoresArray = new float[totalRows * totalColumns];
+        isConstantRowArray = new boolean[totalRows];
+
+        int rowIndex = 0;
+        double mean = 0.0;
+        double deviation = 0.0;
+        double sumSquaredDeviations = 0.0;
+        double norm = 0.0;
+        for (int row = 0; row < totalRows; row++)
+        {
+            rowIndex = row * totalColumns;
+
+            mean = 0.0;
+            for (int k = 0; k < totalColumns; k++)
+                mean += matrix[rowIndex + k];
+            mean /= totalColumns;
+
+            sumSquaredDeviations = 0.0;
+            for (int k = 0; k < totalColumns; k++)
+            {
+                deviation = matrix[rowIndex + k] - mean;
+                sumSquaredDeviations += deviation * deviation;
+            }
+
+            norm = Math.sqrt(sumSquaredDeviations);
+            if ( (norm == 0.0) || Double.isNaN(norm) )
+            {
+                isConstantRowArray[row] = true;
+                continue;
+            }
+
+            for (int k = 0; k < totalColumns; k++)
+                zScoresArray[rowIndex + k] = (float)( (matrix[rowIndex + k] - mean) / norm );
+        }
+    }
+
+    /**
+    *  Gets the size of the results of the [startRow, endRow) panel, each row i holding the correlations against rows i + 1 to totalRows - 1.
+    */
+    public int getRowPanelResultsSize(int startRow, int endRow)
+    {
+        // sum of (totalRows - 1 - i) for i in [startRow, endRow)
+        int numberOfRows = endRow - startRow;
+        return numberOfRows * (totalRows - 1) - ( (startRow + endRow - 1) * numberOfRows ) / 2;
+    }
+
+    /**
+    *  Calculates the correlations of the [startRow, endRow) panel against all following rows.
+    *  Row i is written at resultsOffset, right after row i - 1, its correlation with row j at index j - (i + 1).
+    *  Rows with a zero variance get a -1.0 correlation, as with ExpressionData.calculateCorrelation().
+    */
+    public void calculateRowPanel(int startRow, int endRow, float[] results, int resultsOffset)
+    {
+        int[] rowOffsets = new int[endRow - startRow];
+        int offset = resultsOffset;
+        for (int i = startRow; i < endRow; i++)
+        {
+            rowOffsets[i - startRow] = offset - (i + 1);
+            offset += totalRows - (i + 1);
+        }
+
+        int blockEndRow = 0;
+        for (int blockStartRow = startRow + 1; blockStartRow < totalRows; blockStartRow += COLUMN_BLOCK_SIZE)
+        {
+            blockEndRow = (blockStartRow + COLUMN_BLOCK_SIZE < totalRows) ? blockStartRow + COLUMN_BLOCK_SIZE : totalRows;
+            for (int i = startRow; (i < endRow) && (i + 1 < blockEndRow); i++)
+                calculateRowBlock(i, (i + 1 > blockStartRow) ? i + 1 : blockStartRow, blockEndRow, results, rowOffsets[i - startRow]);
+        }
+    }
+
+    /**
+    *  Calculates the correlations of the [startRow, endRow) panel against all rows, for the top-k neighbour selection.
+    *  Row i is written at (i - startRow) * totalRows, its correlation with row j at index j. The correlation of a row with itself is set to NaN.
+    */
+    public void calculateFullRowPanel(int startRow, int endRow, float[] results)
+    {
+        int blockEndRow = 0;
+        for (int blockStartRow = 0; blockStartRow < totalRows; blockStartRow += COLUMN_BLOCK_SIZE)
+        {
+            blockEndRow = (blockStartRow + COLUMN_BLOCK_SIZE < totalRows) ? blockStartRow + COLUMN_BLOCK_SIZE : totalRows;
+            for (int i = startRow; i < endRow; i++)
+                calculateRowBlock(i, blockStartRow, blockEndRow, results, (i - startRow) * totalRows);
+        }
+
+        for (int i = startRow; i < endRow; i++)
+            results[(i - startRow) * totalRows + i] = Float.NaN;
+    }
+
+    /**
+    *  Calculates the correlations of row i against the [startColumnRow, endColumnRow) rows, writing the one with row j at offset + j.
+    */
+    private void calculateRowBlock(int i, int startColumnRow, int endColumnRow, float[] results, int offset)
+    {
+        int j = startColumnRow;
+        if (isConstantRowArray[i])
+        {
+            for (; j < endColumnRow; j++)
+                results[offset + j] = -1.0f;
+            return;
+        }
+
+        for (; j + 3 < endColumnRow; j += 4)
+            calculateRowTile(i, j, results, offset);
+        for (; j < endColumnRow; j++)
+            results[offset + j] = (isConstantRowArray[j]) ? -1.0f : clamp( dotProduct(i * totalColumns, j * totalColumns) );
+    }
+
+    /**
+    *  Calculates the 1x4 tile of row i against rows j to j + 3.
+    */
+    private void calculateRowTile(int i, int j, float[] results, int offset)
+    {
+        int indexI = i * totalColumns;
+        int indexJ0 = j * totalColumns;
+        int indexJ1 = indexJ0 + totalColumns;
+        int indexJ2 = indexJ1 + totalColumns;
+        int indexJ3 = indexJ2 + totalColumns;
+        float sum0 = 0.0f;
+        float sum1 = 0.0f;
+        float sum2 = 0.0f;
+        float sum3 = 0.0f;
+        float valueI = 0.0f;
+        for (int k = 0; k < totalColumns; k++)
+        {
+            valueI = zScoresArray[indexI + k];
+            sum0 += valueI * zScoresArray[indexJ0 + k];
+            sum1 += valueI * zScoresArray[indexJ1 + k];
+            sum2 += valueI * zScoresArray[indexJ2 + k];
+            sum3 += valueI * zScoresArray[indexJ3 + k];
+        }
+
+        results[offset + j]     = (isConstantRowArray[j])     ? -1.0f : clamp(sum0);
+        results[offset + j + 1] = (isConstantRowArray[j + 1]) ? -1.0f : clamp(sum1);
+        results[offset + j + 2] = (isConstantRowArray[j + 2]) ? -1.0f : clamp(sum2);
+        results[offset + j + 3] = (isConstantRowArray[j + 3]) ? -1.0f : clamp(sum3);
+    }
+
+    /**
+    *  Calculates the dot product of two standardised rows.
+    */
+    private float dotProduct(int indexI, int indexJ)
+    {
+        float sum = 0.0f;
+        for (int k = 0; k < totalColumns; k++)
+            sum += zScoresArray[indexI + k] * zScoresArray[indexJ + k];
+
+        return sum;
+    }
+
+    /**
+    *  Clamps a correlation to the [-1.0, 1.0] range.
+    */
+    private static float clamp(float correlation)
+    {
+        return (correlation > 1.0f) ? 1.0f : ( (correlation < -1.0f) ? -1.0f : correlation );
+    }
+
+
+}
@@ -0,0 +1,257 @@
+package org.BioLayoutExpress3D.Expression;
+
+import java.util.*;
+import org.BioLayoutExpress3D.CoreUI.*;
+import org.BioLayoutExpress3D.Network.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.StaticLibraries.Random.*;
+
+/**
+*
+* The CorrelationEdgeList class keeps all the stored correlations of a loaded correlation file in memory, sorted by descending weight.
+* The edges above a threshold are then always a prefix of the list, so re-thresholding only touches the edges between the old & new prefix ends,
+* re-using the Vertex & Edge objects so as to keep the current layout positions as the starting point of the following layout iterations.
+*
+* @see org.BioLayoutExpress3D.Files.Parsers.ExpressionParser
+* @version 3.0.0.0
+*
+*/
+
+public final class CorrelationEdgeList
+{
+    private final float storedThreshold;
+    private final int numberOfEdges;
+    private final int[] firstRows;
+    private final int[] secondRows;
+    private final float[] weights;
+    private final Edge[] networkEdges;
+
+    private final ExpressionData expressionData;
+    private final Vertex[] verticesByRow;
+    private final boolean[] isRowKeptArray;
+    private final boolean[] hasLayoutPositionArray;
+    private int numberOfCurrentEdges = 0;
+
+    // the annotation classes of kept rows that have no Vertex yet, set on the Vertex once a lower threshold creates it
+    private final HashMap<LayoutClasses, VertexClass[]> pendingRowClassesMap = new HashMap<LayoutClasses, VertexClass[]>();
+
+    /**
+    *  The constructor of the CorrelationEdgeList class. Sorts the given correlations by descending weight.
+    *  The Vertex of a row is only created once an edge above the threshold connects it, as creating it registers it with the network container.
+    */
+    public CorrelationEdgeList(ExpressionData expressionData, float storedThreshold, int[] rows, int[] columns, float[] correlations, int numberOfCorrelations)
+    {
+        this.expressionData = expressionData;
+        this.storedThreshold = storedThreshold;
+        numberOfEdges = numberOfCorrelations;
+        firstRows = new int[numberOfEdges];
+        secondRows = new int[numberOfEdges];
+        weights = new float[numberOfEdges];
+        networkEdges = new Edge[numberOfEdges];
+
+        // the sortable float bits of the negated weight in the upper half & the original index in the lower half,
+        // so a primitive sort gives the descending weight order, ties kept in row order
+        long[] sortKeys = new long[numberOfEdges];
+        int bits = 0;
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            bits = Float.floatToIntBits(-correlations[i]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            sortKeys[i] = ( (long)bits << 32 ) | i;
+        }
+        Arrays.sort(sortKeys);
+
+        int index = 0;
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            index = (int)sortKeys[i];
+            firstRows[i] = rows[index];
+            secondRows[i] = columns[index];
+            weights[i] = correlations[index];
+        }
+
+        int totalRows = expressionData.getTotalRows();
+        verticesByRow = new Vertex[totalRows];
+        hasLayoutPositionArray = new boolean[totalRows];
+        isRowKeptArray = new boolean[totalRows];
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            isRowKeptArray[firstRows[i]] = true;
+            isRowKeptArray[secondRows[i]] = true;
+        }
+    }
+
+    /**
+    *  Gets the number of edges with a weight above the given threshold, through a binary search of the descending weights.
+    */
+    public int getNumberOfEdgesAbove(float threshold)
+    {
+        int low = 0;
+        int high = numberOfEdges;
+        int middle = 0;
+        while (low < high)
+        {
+            middle = (low + high) >>> 1;
+            if (weights[middle] > threshold)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+    *  Gets the threshold the correlations were stored with, the lowest threshold the network can be set to.
+    */
+    public float getStoredThreshold()
+    {
+        return storedThreshold;
+    }
+
+    /**
+    *  Gets the total number of kept correlations.
+    */
+    public int getNumberOfEdges()
+    {
+        return numberOfEdges;
+    }
+
+    /**
+    *  Gets the number of edges currently in the network.
+    */
+    public int getNumberOfCurrentEdges()
+    {
+        return numberOfCurrentEdges;
+    }
+
+    /**
+    *  Gets the Vertex of the given row, null if no edge above a threshold set so far has connected it.
+    */
+    public Vertex getVertex(int row)
+    {
+        return verticesByRow[row];
+    }
+
+    /**
+    *  Checks whether the given row takes part in a kept correlation.
+    */
+    public boolean isRowKept(int row)
+    {
+        return isRowKeptArray[row];
+    }
+
+    /**
+    *  Keeps the annotation class of a kept row that has no Vertex yet, to be set on the Vertex once it is created.
+    */
+    public void setPendingRowClass(int row, LayoutClasses layoutClasses, VertexClass vertexClass)
+    {
+        VertexClass[] rowClasses = pendingRowClassesMap.get(layoutClasses);
+        if (rowClasses == null)
+        {
+            rowClasses = new VertexClass[verticesByRow.length];
+            pendingRowClassesMap.put(layoutClasses, rowClasses);
+        }
+
+        rowClasses[row] = vertexClass;
+    }
+
+    /**
+    *  Gets the Vertex of the given row, creating it through the network container & setting its pending annotation classes if it does not exist yet.
+    */
+    private Vertex getOrCreateVertex(NetworkContainer nc, int row)
+    {
+        if (verticesByRow[row] == null)
+        {
+            verticesByRow[row] = new Vertex(expressionData.getRowID(row), nc);
+            for ( Map.Entry<LayoutClasses, VertexClass[]> entry : pendingRowClassesMap.entrySet() )
+            {
+                if (entry.getValue()[row] != null)
+                {
+                    entry.getKey().setClass(verticesByRow[row], entry.getValue()[row]);
+                    entry.getValue()[row] = null;
+                }
+            }
+        }
+
+        return verticesByRow[row];
+    }
+
+    /**
+    *  Sets the network to the edges with a weight above the given threshold.
+    *  Only the edges between the current & the new prefix end are connected or disconnected, then the edges list & vertices map are refilled from the prefix.
+    *  Vertices appearing for the first time are placed next to an already positioned neighbour.
+    *  Returns the vertices of all connected or disconnected edges, as the starting points of an incremental layout.
+    */
+    public HashSet<Vertex> setThreshold(NetworkContainer nc, float threshold)
+    {
+        int newNumberOfCurrentEdges = getNumberOfEdgesAbove(threshold);
+        HashSet<Vertex> changedVertices = new HashSet<Vertex>();
+
+        Vertex vertex1 = null;
+        Vertex vertex2 = null;
+        for (int i = newNumberOfCurrentEdges; i < numberOfCurrentEdges; i++)
+        {
+            vertex1 = verticesByRow[firstRows[i]];
+            vertex2 = verticesByRow[secondRows[i]];
+            vertex1.removeConnection(vertex2);
+            vertex2.removeConnection(vertex1);
+            networkEdges[i] = null;
+            changedVertices.add(vertex1);
+            changedVertices.add(vertex2);
+        }
+
+        for (int i = numberOfCurrentEdges; i < newNumberOfCurrentEdges; i++)
+        {
+            vertex1 = getOrCreateVertex(nc, firstRows[i]);
+            vertex2 = getOrCreateVertex(nc, secondRows[i]);
+            networkEdges[i] = new Edge(vertex1, vertex2, weights[i]);
+            vertex1.addConnection(vertex2, networkEdges[i]);
+            vertex2.addConnection(vertex1, networkEdges[i]);
+            changedVertices.add(vertex1);
+            changedVertices.add(vertex2);
+
+            if ( !hasLayoutPositionArray[firstRows[i]] && hasLayoutPositionArray[secondRows[i]] )
+                placeNextTo(firstRows[i], vertex2);
+            else if ( hasLayoutPositionArray[firstRows[i]] && !hasLayoutPositionArray[secondRows[i]] )
+                placeNextTo(secondRows[i], vertex1);
+        }
+
+        numberOfCurrentEdges = newNumberOfCurrentEdges;
+
+        // refilled as the component finding may have removed edges & vertices of small components from the previous network
+        ArrayList<Edge> edges = nc.getEdges();
+        edges.clear();
+        edges.ensureCapacity(numberOfCurrentEdges);
+        for (int i = 0; i < numberOfCurrentEdges; i++)
+            edges.add(networkEdges[i]);
+
+        HashMap<String, Vertex> verticesMap = nc.getVerticesMap();
+        verticesMap.clear();
+        for (int row = 0; row < verticesByRow.length; row++)
+        {
+            if ( (verticesByRow[row] != null) && !verticesByRow[row].getEdgeConnectionsMap().isEmpty() )
+            {
+                verticesMap.put(verticesByRow[row].getVertexName(), verticesByRow[row]);
+                hasLayoutPositionArray[row] = true;
+            }
+        }
+        nc.verticesModified();
+
+        return changedVertices;
+    }
+
+    /**
+    *  Places the vertex of the given row at a small random offset from the given neighbour.
+    */
+    private void placeNextTo(int row, Vertex neighbour)
+    {
+        float offset = (float)REFERENCE_K_VALUE;
+        verticesByRow[row].setVertexLocation( neighbour.getX() + offset * (nextFloat() - 0.5f),
+                                              neighbour.getY() + offset * (nextFloat() - 0.5f),
+                                              neighbour.getZ() + offset * (nextFloat() - 0.5f) );
+        hasLayoutPositionArray[row] = true;
+    }
+
+
+}
@@ -0,0 +1,260 @@
+package org.BioLayoutExpress3D.Expression;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import static org.BioLayoutExpress3D.Expression.CorrelationFileWriter.*;
+
+/**
+*
+* The CorrelationFileReader class reads the versioned block correlation file format through memory-mapped segments.
+* Rows are decoded with absolute reads only, so several threads may decode different rows concurrently.
+* Rows whose max weight is not above a given cutoff are skipped through the row index without being decoded.
+*
+* @see org.BioLayoutExpress3D.Expression.CorrelationFileWriter
+* @version 3.0.0.0
+*
+*/
+
+public final class CorrelationFileReader
+{
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private RandomAccessFile randomAccessFile = null;
+    private FileChannel fileChannel = null;
+
+    private int totalRows = 0;
+    private float threshold = 0.0f;
+    private long numberOfCorrelations = 0;
+    private int maximumRowSize = 0;
+
+    private long[] rowOffsets = null;
+    private int[] rowSizes = null;
+    private char[] rowMaxWeights = null;
+    private int[] rowSegments = null;
+    private MappedByteBuffer[] segments = null;
+    private long[] segmentOffsets = null;
+
+    /**
+    *  The constructor of the CorrelationFileReader class. Throws an IOException if the file is not of the current format version.
+    */
+    public CorrelationFileReader(File file) throws IOException
+    {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        fileChannel = randomAccessFile.getChannel();
+
+        try
+        {
+            if (fileChannel.size() < HEADER_SIZE)
+                throw new IOException("CorrelationFileReader: file too small for a correlation file header");
+
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            while ( headerBuffer.hasRemaining() && (fileChannel.read(headerBuffer, headerBuffer.position()) >= 0) );
+            headerBuffer.flip();
+
+            if ( headerBuffer.getInt() != ExpressionData.FILE_MAGIC_NUMBER )
+                throw new IOException("CorrelationFileReader: wrong correlation file magic number");
+            if ( headerBuffer.getInt() != ExpressionData.FILE_VERSION )
+                throw new IOException("CorrelationFileReader: unsupported correlation file version");
+
+            totalRows = headerBuffer.getInt();
+            threshold = headerBuffer.getFloat();
+            long indexOffset = headerBuffer.getLong();
+            numberOfCorrelations = headerBuffer.getLong();
+            if ( (indexOffset < HEADER_SIZE) || ( indexOffset + (long)totalRows * INDEX_ENTRY_SIZE > fileChannel.size() ) )
+                throw new IOException("CorrelationFileReader: truncated correlation file");
+
+            readRowIndex(indexOffset);
+            mapSegments(indexOffset);
+        }
+        catch (IOException ioe)
+        {
+            close();
+            throw ioe;
+        }
+    }
+
+    /**
+    *  Reads the row index.
+    */
+    private void readRowIndex(long indexOffset) throws IOException
+    {
+        rowOffsets = new long[totalRows];
+        rowSizes = new int[totalRows];
+        rowMaxWeights = new char[totalRows];
+
+        MappedByteBuffer indexBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long)totalRows * INDEX_ENTRY_SIZE);
+        for (int row = 0; row < totalRows; row++)
+        {
+            rowOffsets[row] = indexBuffer.getLong();
+            rowSizes[row] = indexBuffer.getInt();
+            rowMaxWeights[row] = indexBuffer.getChar();
+            if (rowSizes[row] > maximumRowSize)
+                maximumRowSize = rowSizes[row];
+        }
+    }
+
+    /**
+    *  Maps the row blocks in segments of up to MAX_SEGMENT_SIZE bytes, split at row boundaries so no row straddles two segments.
+    */
+    private void mapSegments(long indexOffset) throws IOException
+    {
+        // the end of each row block is the offset of the next written row, or the index for the last one
+        long[] rowEnds = new long[totalRows];
+        long nextRowOffset = indexOffset;
+        for (int row = totalRows - 1; row >= 0; row--)
+        {
+            rowEnds[row] = nextRowOffset;
+            if (rowSizes[row] > 0)
+                nextRowOffset = rowOffsets[row];
+        }
+
+        rowSegments = new int[totalRows];
+        long[] segmentStarts = new long[totalRows + 1];
+        long[] segmentEnds = new long[totalRows + 1];
+        int numberOfSegments = 0;
+        long segmentStart = HEADER_SIZE;
+        for (int row = 0; row < totalRows; row++)
+        {
+            if ( (rowSizes[row] > 0) && (rowEnds[row] - segmentStart > MAX_SEGMENT_SIZE) && (rowOffsets[row] > segmentStart) )
+            {
+                segmentStarts[numberOfSegments] = segmentStart;
+                segmentEnds[numberOfSegments++] = rowOffsets[row];
+                segmentStart = rowOffsets[row];
+            }
+            rowSegments[row] = numberOfSegments;
+        }
+        segmentStarts[numberOfSegments] = segmentStart;
+        segmentEnds[numberOfSegments++] = indexOffset;
+
+        segments = new MappedByteBuffer[numberOfSegments];
+        segmentOffsets = new long[numberOfSegments];
+        for (int i = 0; i < numberOfSegments; i++)
+        {
+            segmentOffsets[i] = segmentStarts[i];
+            segments[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[i], segmentEnds[i] - segmentStarts[i]);
+        }
+    }
+
+    /**
+    *  Gets the total rows.
+    */
+    public int getTotalRows()
+    {
+        return totalRows;
+    }
+
+    /**
+    *  Gets the threshold the correlations were stored with.
+    */
+    public float getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+    *  Gets the number of stored correlations.
+    */
+    public long getNumberOfCorrelations()
+    {
+        return numberOfCorrelations;
+    }
+
+    /**
+    *  Gets the largest number of correlations stored for a row, to be used for sizing the readRow() arrays.
+    */
+    public int getMaximumRowSize()
+    {
+        return maximumRowSize;
+    }
+
+    /**
+    *  Gets the number of correlations stored for the given row.
+    */
+    public int getRowSize(int row)
+    {
+        return rowSizes[row];
+    }
+
+    /**
+    *  Gets the max correlation stored for the given row.
+    */
+    public float getRowMaxCorrelation(int row)
+    {
+        return dequantiseWeight(rowMaxWeights[row]);
+    }
+
+    /**
+    *  Decodes the correlations of the given row that are above the minimum correlation.
+    *  The arrays have to hold at least getRowSize(row) values. Returns the number of correlations read.
+    */
+    public int readRow(int row, float minimumCorrelation, int[] columns, float[] correlations)
+    {
+        int rowSize = rowSizes[row];
+        if ( (rowSize == 0) || (dequantiseWeight(rowMaxWeights[row]) <= minimumCorrelation) )
+            return 0;
+
+        MappedByteBuffer segment = segments[rowSegments[row]];
+        int position = (int)(rowOffsets[row] - segmentOffsets[rowSegments[row]]);
+        int column = row;
+        int delta = 0;
+        int shift = 0;
+        byte value = 0;
+        for (int i = 0; i < rowSize; i++)
+        {
+            delta = 0;
+            shift = 0;
+            do
+            {
+                value = segment.get(position++);
+                delta |= (value & 0x7F) << shift;
+                shift += 7;
+            }
+            while (value < 0);
+
+            column += delta;
+            columns[i] = column;
+        }
+
+        int numberOfCorrelationsRead = 0;
+        float correlation = 0.0f;
+        for (int i = 0; i < rowSize; i++)
+        {
+            correlation = dequantiseWeight( segment.getChar(position) );
+            position += 2;
+            if (correlation > minimumCorrelation)
+            {
+                columns[numberOfCorrelationsRead] = columns[i];
+                correlations[numberOfCorrelationsRead++] = correlation;
+            }
+        }
+
+        return numberOfCorrelationsRead;
+    }
+
+    /**
+    *  Closes the file & drops the references to the mapped segments.
+    *  Java offers no portable way to unmap a MappedByteBuffer, so the mappings are only released once the segments are garbage collected;
+    *  until then, on Windows the file cannot be deleted or overwritten.
+    */
+    public void close()
+    {
+        segments = null;
+        try
+        {
+            if (fileChannel != null) fileChannel.close();
+            if (randomAccessFile != null) randomAccessFile.close();
+        }
+        catch (IOException ioe)
+        {
+            // nothing to do, the file is read only
+        }
+        finally
+        {
+            fileChannel = null;
+            randomAccessFile = null;
+        }
+    }
+
+
+}
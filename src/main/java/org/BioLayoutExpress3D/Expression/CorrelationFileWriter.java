@@ -0,0 +1,223 @@
+package org.BioLayoutExpress3D.Expression;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+*
+* The CorrelationFileWriter class writes the threshold-pruned correlations in the versioned block correlation file format.
+*
+* File layout (all values big endian):
+*   header:  int magic number, int version, int total rows, float stored threshold, long row index offset, long number of correlations
+*   blocks:  per row, the column indices delta-encoded as varints (starting from the row itself), followed by the quantised weights as unsigned shorts
+*   index:   per row, long block offset, int number of correlations, unsigned short quantised max weight
+*
+* The per row max weight lets the reader skip whole rows when re-thresholding at a higher cutoff.
+*
+* @see org.BioLayoutExpress3D.Expression.CorrelationFileReader
+* @version 3.0.0.0
+*
+*/
+
+public final class CorrelationFileWriter
+{
+    public static final int HEADER_SIZE = 32;
+    public static final int INDEX_ENTRY_SIZE = 14;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final int totalRows;
+    private final float threshold;
+    private FileOutputStream fileOutputStream = null;
+    private FileChannel fileChannel = null;
+    private final ByteBuffer outputBuffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+    private long filePosition = HEADER_SIZE;
+    private long numberOfCorrelations = 0;
+
+    private final long[] rowOffsets;
+    private final int[] rowSizes;
+    private final char[] rowMaxWeights;
+
+    private int currentRow = -1;
+    private int currentRowSize = 0;
+    private int[] currentRowColumns = new int[1024];
+    private char[] currentRowWeights = new char[1024];
+
+    /**
+    *  The constructor of the CorrelationFileWriter class.
+    */
+    public CorrelationFileWriter(File file, int totalRows, float threshold) throws IOException
+    {
+        this.totalRows = totalRows;
+        this.threshold = threshold;
+
+        rowOffsets = new long[totalRows];
+        rowSizes = new int[totalRows];
+        rowMaxWeights = new char[totalRows];
+
+        fileOutputStream = new FileOutputStream(file);
+        fileChannel = fileOutputStream.getChannel();
+        fileChannel.position(HEADER_SIZE);
+    }
+
+    /**
+    *  Quantises a correlation weight in the [-1.0, 1.0] range to an unsigned short.
+    *  Rounds toward positive infinity, so the dequantised weight is never below the weight & a correlation above the threshold stays above it.
+    */
+    public static char quantiseWeight(float weight)
+    {
+        float value = (weight + 1.0f) * 32767.5f;
+        if (value <= 0.0f)
+            return 0;
+        if (value >= 65535.0f)
+            return 65535;
+
+        int quantisedWeight = (int)Math.ceil(value);
+        // the float rounding of the scaling may still leave the dequantised weight one step below
+        if ( (quantisedWeight < 65535) && (dequantiseWeight( (char)quantisedWeight ) < weight) )
+            quantisedWeight++;
+
+        return (char)quantisedWeight;
+    }
+
+    /**
+    *  Restores a correlation weight from its quantised unsigned short value.
+    */
+    public static float dequantiseWeight(char quantisedWeight)
+    {
+        return quantisedWeight / 32767.5f - 1.0f;
+    }
+
+    /**
+    *  Starts the block of the given row. Rows have to be written in ascending order.
+    */
+    public void beginRow(int row)
+    {
+        currentRow = row;
+        currentRowSize = 0;
+    }
+
+    /**
+    *  Adds a correlation to the current row. Columns have to be added in ascending order.
+    */
+    public void writeCorrelation(int column, float correlation)
+    {
+        if (currentRowSize == currentRowColumns.length)
+        {
+            int[] newRowColumns = new int[currentRowSize << 1];
+            System.arraycopy(currentRowColumns, 0, newRowColumns, 0, currentRowSize);
+            currentRowColumns = newRowColumns;
+            char[] newRowWeights = new char[currentRowSize << 1];
+            System.arraycopy(currentRowWeights, 0, newRowWeights, 0, currentRowSize);
+            currentRowWeights = newRowWeights;
+        }
+
+        currentRowColumns[currentRowSize] = column;
+        currentRowWeights[currentRowSize++] = quantiseWeight(correlation);
+    }
+
+    /**
+    *  Ends the block of the given row & encodes it to the file.
+    */
+    public void endRow(int row) throws IOException
+    {
+        if (row != currentRow)
+            throw new IOException("CorrelationFileWriter: row " + row + " ended while row " + currentRow + " was being written");
+
+        char maxWeight = 0;
+        int previousColumn = row;
+        int delta = 0;
+        long rowOffset = filePosition + outputBuffer.position();
+        for (int i = 0; i < currentRowSize; i++)
+        {
+            if (outputBuffer.remaining() < MAX_VARINT_SIZE)
+                flushOutputBuffer();
+
+            delta = currentRowColumns[i] - previousColumn;
+            previousColumn = currentRowColumns[i];
+            while ( (delta & ~0x7F) != 0 )
+            {
+                outputBuffer.put( (byte)( (delta & 0x7F) | 0x80 ) );
+                delta >>>= 7;
+            }
+            outputBuffer.put( (byte)delta );
+        }
+
+        for (int i = 0; i < currentRowSize; i++)
+        {
+            if (outputBuffer.remaining() < 2)
+                flushOutputBuffer();
+
+            outputBuffer.putChar(currentRowWeights[i]);
+            if (currentRowWeights[i] > maxWeight)
+                maxWeight = currentRowWeights[i];
+        }
+
+        rowOffsets[row] = rowOffset;
+        rowSizes[row] = currentRowSize;
+        rowMaxWeights[row] = maxWeight;
+        numberOfCorrelations += currentRowSize;
+
+        currentRow = -1;
+        currentRowSize = 0;
+    }
+
+    /**
+    *  Writes the buffered blocks to the file.
+    */
+    private void flushOutputBuffer() throws IOException
+    {
+        outputBuffer.flip();
+        while ( outputBuffer.hasRemaining() )
+            filePosition += fileChannel.write(outputBuffer);
+        outputBuffer.clear();
+    }
+
+    /**
+    *  Writes the row index & the header, then closes the file.
+    */
+    public void close() throws IOException
+    {
+        if (fileChannel == null)
+            return;
+
+        try
+        {
+            flushOutputBuffer();
+
+            long indexOffset = filePosition;
+            for (int row = 0; row < totalRows; row++)
+            {
+                if (outputBuffer.remaining() < INDEX_ENTRY_SIZE)
+                    flushOutputBuffer();
+
+                outputBuffer.putLong(rowOffsets[row]);
+                outputBuffer.putInt(rowSizes[row]);
+                outputBuffer.putChar(rowMaxWeights[row]);
+            }
+            flushOutputBuffer();
+
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            headerBuffer.putInt(ExpressionData.FILE_MAGIC_NUMBER);
+            headerBuffer.putInt(ExpressionData.FILE_VERSION);
+            headerBuffer.putInt(totalRows);
+            headerBuffer.putFloat(threshold);
+            headerBuffer.putLong(indexOffset);
+            headerBuffer.putLong(numberOfCorrelations);
+            headerBuffer.flip();
+            long position = 0;
+            while ( headerBuffer.hasRemaining() )
+                position += fileChannel.write(headerBuffer, position);
+        }
+        finally
+        {
+            fileChannel.close();
+            fileOutputStream.close();
+            fileChannel = null;
+            fileOutputStream = null;
+        }
+    }
+
+
+}
@@ -26,6 +26,7 @@ public final class ExpressionLoaderDialog extends JDialog implements ActionListe
     public static final long serialVersionUID = 111222333444555706L;
 
     private FloatNumberField correlationField = null;
+    private WholeNumberField topKNeighboursField = null;
     private JComboBox<String> firstDataColumn = null;
     private JComboBox<String> firstDataRow = null;
     private JComboBox<String> correlationMetric = null;
@@ -104,6 +105,13 @@ public final class ExpressionLoaderDialog extends JDialog implements ActionListe
         saveCorrelationTextFileCheckBox.setText("Save Cache As Text File");
         tabLine1.add(saveCorrelationTextFileCheckBox);
 
+        // Top-k neighbours
+        topKNeighboursField = new WholeNumberField(0, 3);
+        topKNeighboursField.setValue(STORED_CORRELATION_TOP_K_NEIGHBOURS);
+        topKNeighboursField.setToolTipText("Keep only the correlations to the k nearest neighbours of each row (0 keeps all above the Minimum Correlation)");
+        tabLine2.add(new JLabel("Top-k Neighbours:"));
+        tabLine2.add(topKNeighboursField);
+
         // Data bounds
         firstDataColumn = new JComboBox<String>();
         firstDataColumn.addActionListener(this);
@@ -215,6 +223,7 @@ public final class ExpressionLoaderDialog extends JDialog implements ActionListe
                     return;
                 }
 
+                STORED_CORRELATION_TOP_K_NEIGHBOURS = ( topKNeighboursField.isEmpty() ) ? DEFAULT_STORED_CORRELATION_TOP_K_NEIGHBOURS : topKNeighboursField.getValue();
                 CURRENT_METRIC = CorrelationTypes.values()[correlationMetric.getSelectedIndex()];
                 CURRENT_SCALE_TRANSFORM = ScaleTransformType.values()[scaleTransformComboBox.getSelectedIndex()];
                 proceed = true;
@@ -120,6 +120,55 @@ public final class ExpressionData
         }
     }
 
+    /**
+    *  The kept correlations of a row panel, held in primitive buffers until the panel is written to the correlation file.
+    */
+    private static final class SparseCorrelationPanel
+    {
+        private final int startRow;
+        private final int[] rowSizes;
+        private int[] columns = new int[256];
+        private float[] correlations = new float[256];
+        private int size = 0;
+        private int rowStart = 0;
+
+        public SparseCorrelationPanel(int startRow, int endRow)
+        {
+            this.startRow = startRow;
+            this.rowSizes = new int[endRow - startRow];
+        }
+
+        public void addCorrelation(int column, float correlation)
+        {
+            if (size == columns.length)
+            {
+                columns = Arrays.copyOf(columns, size << 1);
+                correlations = Arrays.copyOf(correlations, size << 1);
+            }
+
+            columns[size] = column;
+            correlations[size++] = correlation;
+        }
+
+        public void endRow(int row)
+        {
+            rowSizes[row - startRow] = size - rowStart;
+            rowStart = size;
+        }
+
+        public void writeToFile(CorrelationFileWriter correlationFileWriter) throws IOException
+        {
+            int index = 0;
+            for (int i = 0; i < rowSizes.length; i++)
+            {
+                correlationFileWriter.beginRow(startRow + i);
+                for (int k = 0; k < rowSizes[i]; k++, index++)
+                    correlationFileWriter.writeCorrelation(columns[index], correlations[index]);
+                correlationFileWriter.endRow(startRow + i);
+            }
+        }
+    }
+
     /**
     *  Constant used defining the amount of RAM to be used in the N-Core Parallelization algorithm.
     *  Here, 128Mb (2^27) RAM will be allocated for the float results array.
@@ -131,10 +180,14 @@ public final class ExpressionData
     */
     private static final int MAX_ARRAY_SIZE = MAX_ARRAY_RAM_USAGE / 4;
 
-    public static final int FILE_MAGIC_NUMBER = 0xB73D0004;
+    /**
+    *  Magic number & version of the block correlation file format, see CorrelationFileWriter.
+    */
+    public static final int FILE_MAGIC_NUMBER = 0xB73D0005;
+    public static final int FILE_VERSION = 1;
 
     private LayoutFrame layoutFrame = null;
-    private LayoutProgressBarDialog layoutProgressBarDialog = null;
+    private LayoutProgressBar layoutProgressBarDialog = null;
     private int rowIndex = 0;
     private long searchSpace = 0;
     private String metricName = "";
@@ -177,9 +230,12 @@ public final class ExpressionData
 
     private HashMap<Integer, ColumnAnnotation> columnAnnotations;
 
-    // variables needed for N-CP
-    private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
+    // variables needed for the sparse correlation output
+    private static final int SPARSE_CORRELATION_PANELS_PER_STEP_PER_WORKER = 64;
+    private float[] topKCorrelationCutoffsArray = null;
+
+    // the stored correlations of the loaded correlation file, kept for re-thresholding
+    private CorrelationEdgeList correlationEdgeList = null;
 
     /**
     *  The constructor of the ExpressionData class.
@@ -231,6 +287,7 @@ public final class ExpressionData
         maxStddev = Float.MIN_VALUE;
         meanCache = null;
         meanCached = false;
+        correlationEdgeList = null;
     }
 
     public void addColumnAnnotation(int index, String name)
@@ -330,11 +387,38 @@ public final class ExpressionData
     }
 
     /**
-    *  Builds the correlation network.
+    *  Gets the correlation text file name of the given expression file for the current correlation settings.
+    *  The binary correlation files are kept in the expression data cache instead.
+    *
+    *  @see org.BioLayoutExpress3D.Expression.ExpressionDataCache
+    */
+    public static String getCorrelationTextFilename(String expressionFilePath)
+    {
+        String correlationTextFilename = IOUtils.getPrefix(expressionFilePath);
+        correlationTextFilename += "_r-" + STORED_CORRELATION_THRESHOLD;
+
+        if (STORED_CORRELATION_TOP_K_NEIGHBOURS > 0)
+            correlationTextFilename += "_k-" + STORED_CORRELATION_TOP_K_NEIGHBOURS;
+
+        if (EXPRESSION_DATA_TRANSPOSE)
+            correlationTextFilename += "_transpose";
+
+        if (CURRENT_SCALE_TRANSFORM != ScaleTransformType.NONE)
+            correlationTextFilename += "_" + Utils.hyphenatedOf( CURRENT_SCALE_TRANSFORM.toString() );
+
+        correlationTextFilename += "_" + CURRENT_METRIC.toString().toLowerCase();
+        correlationTextFilename += ".correlation.txt";
+
+        return correlationTextFilename;
+    }
+
+    /**
+    *  Builds the correlation network. The correlation text file is only written if not null.
     */
-    public void buildCorrelationNetwork(LayoutProgressBarDialog layoutProgressBarDialog, File correlationFile,
-            String metricName, float threshold, boolean writeCorrelationTextFile)
+    public void buildCorrelationNetwork(LayoutProgressBar layoutProgressBarDialog, File correlationFile,
+            String metricName, float threshold, File correlationTextFile)
     {
+        boolean writeCorrelationTextFile = (correlationTextFile != null);
         this.layoutProgressBarDialog = layoutProgressBarDialog;
         this.rowIndex = 0;
         this.searchSpace = (long)totalRows * (long)totalRows; // has to be cast like this so as to not lose the long conversion and result in an overflow after the multiplication
@@ -356,13 +440,13 @@ public final class ExpressionData
             convertToSpearmanRankOrder();
 
         File correlationFileTmp = new File(correlationFile.getAbsolutePath() + ".tmp");
-        File correlationFileTextTmp = new File(correlationFile.getAbsolutePath() + ".txt.tmp");
-        ObjectOutputStream outOstream = null;
+        File correlationFileTextTmp = (writeCorrelationTextFile) ? new File(correlationTextFile.getAbsolutePath() + ".tmp") : null;
+        CorrelationFileWriter correlationFileWriter = null;
         PrintWriter outPrintWriter = null;
 
         try
         {
-            outOstream = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream(correlationFileTmp) ) );
+            correlationFileWriter = new CorrelationFileWriter(correlationFileTmp, totalRows, threshold);
             if ( writeCorrelationTextFile )
             {
                 outPrintWriter = new PrintWriter(correlationFileTextTmp);
@@ -379,58 +463,56 @@ public final class ExpressionData
                 sumColumns_X2_cacheArray[i] = (totalColumns * sumX2_cacheArray[i]);
             }
 
-            outOstream.writeInt(FILE_MAGIC_NUMBER);
-
+            // the GPU Computing paths write all correlations above the threshold, so the top-k neighbour selection always runs on the CPU,
+            // as does the headless batch mode with no layout frame for the GPU Computing contexts
+            boolean useCPUOnly = (STORED_CORRELATION_TOP_K_NEIGHBOURS > 0) || (layoutFrame == null);
             if (USE_EXRESSION_CORRELATION_CALCULATION_N_CORE_PARALLELISM.get() && USE_MULTICORE_PROCESS)
             {
-                calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                        outOstream, outPrintWriter, writeCorrelationTextFile);
+                performCPUCorrelationCalculationAndWriteToFile(threshold, correlationFileWriter,
+                        outPrintWriter, writeCorrelationTextFile);
             }
-            else if (USE_OPENCL_GPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION.get() && OPENCL_GPU_COMPUTING_ENABLED)
+            else if (USE_OPENCL_GPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION.get() && OPENCL_GPU_COMPUTING_ENABLED && !useCPUOnly)
             {
                 FloatBuffer expressionData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? expressionDataBuffer : ( ( CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN) ) ? expressionRanksBuffer : expressionDataBuffer );
-                performOpenCLGPUComputingCorrelationCalculation(expressionData, threshold, outOstream,
+                performOpenCLGPUComputingCorrelationCalculation(expressionData, threshold, correlationFileWriter,
                         outPrintWriter, writeCorrelationTextFile);
             }
-            else if (USE_GLSL_GPGPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION.get() && USE_SHADERS_PROCESS)
+            else if (USE_GLSL_GPGPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION.get() && USE_SHADERS_PROCESS && !useCPUOnly)
             {
                 FloatBuffer expressionData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? expressionDataBuffer : ( ( CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN) ) ? expressionRanksBuffer : expressionDataBuffer );
-                performGLSLGPUComputingCorrelationCalculation(expressionData, threshold, outOstream,
+                performGLSLGPUComputingCorrelationCalculation(expressionData, threshold, correlationFileWriter,
                         outPrintWriter, writeCorrelationTextFile);
             }
             else
             {
-                if (!USE_MULTICORE_PROCESS)
-                {
-                    performSingleCoreCorrelationCalculationAndWriteToFile(threshold, outOstream,
-                            outPrintWriter, writeCorrelationTextFile);
-                }
-                else
-                {
-                    calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                            outOstream, outPrintWriter, writeCorrelationTextFile);
-                }
+                performCPUCorrelationCalculationAndWriteToFile(threshold, correlationFileWriter,
+                        outPrintWriter, writeCorrelationTextFile);
             }
 
-            outOstream.flush();
             if ( writeCorrelationTextFile )
                 outPrintWriter.flush();
         }
         catch (IOException ioe)
         {
             if (DEBUG_BUILD) println("IOException in ExpressionData.buildCorrelationNetwork()\n" + ioe.getMessage());
-            JOptionPane.showMessageDialog(layoutFrame, "IOException in building the Correlation network\n" + ioe.getMessage(), "Error: IOException in building the Correlation network", JOptionPane.ERROR_MESSAGE);
+            if (layoutFrame != null)
+                JOptionPane.showMessageDialog(layoutFrame, "IOException in building the Correlation network\n" + ioe.getMessage(), "Error: IOException in building the Correlation network", JOptionPane.ERROR_MESSAGE);
+            else
+                println("IOException in building the Correlation network\n" + ioe.getMessage());
         }
         finally
         {
             try
             {
-                if (outOstream != null) outOstream.close();
+                if (correlationFileWriter != null) correlationFileWriter.close();
             }
             catch (IOException ioe)
             {
-                if (DEBUG_BUILD) println("IOException in ExpressionData.buildCorrelationNetwork() closing the outOstream stream\n" + ioe.getMessage());
-                JOptionPane.showMessageDialog(layoutFrame, "IOException in closing the Correlation network outOstream stream\n" + ioe.getMessage(), "Error: IOException in closing the Correlation network outOstream stream", JOptionPane.ERROR_MESSAGE);
+                if (DEBUG_BUILD) println("IOException in ExpressionData.buildCorrelationNetwork() closing the correlationFileWriter\n" + ioe.getMessage());
+                if (layoutFrame != null)
+                    JOptionPane.showMessageDialog(layoutFrame, "IOException in closing the Correlation network correlationFileWriter stream\n" + ioe.getMessage(), "Error: IOException in closing the Correlation network correlationFileWriter stream", JOptionPane.ERROR_MESSAGE);
+                else
+                    println("IOException in closing the Correlation network correlationFileWriter stream\n" + ioe.getMessage());
             }
 
             if ( writeCorrelationTextFile )
@@ -447,7 +529,8 @@ public final class ExpressionData
                 correlationFileTmp.renameTo(correlationFile);
                 if (writeCorrelationTextFile)
                 {
-                    correlationFileTextTmp.renameTo(new File(correlationFile.getAbsolutePath() + ".txt"));
+                    correlationTextFile.delete();
+                    correlationFileTextTmp.renameTo(correlationTextFile);
                 }
             }
             else
@@ -465,46 +548,323 @@ public final class ExpressionData
     }
 
     /**
-    *  Calculates the correlation values in a single thread and writes them to a binary file.
+    *  Calculates the correlation values on the CPU and writes them to a binary file.
+    *  Without a correlation text file only the kept correlations are buffered, otherwise all of them are needed for the text file.
     */
-    private void performSingleCoreCorrelationCalculationAndWriteToFile(float threshold, ObjectOutputStream outOstream,
+    private void performCPUCorrelationCalculationAndWriteToFile(float threshold, CorrelationFileWriter correlationFileWriter,
             PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
-        float[] expressionData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? expressionDataArray : ( ( CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN) ) ? expressionRanksArray : expressionDataArray );
+        BlockedCorrelationKernel blockedCorrelationKernel = createBlockedCorrelationKernel();
+
+        if (STORED_CORRELATION_TOP_K_NEIGHBOURS > 0)
+        {
+            topKCorrelationCutoffsArray = calculateTopKCorrelationCutoffs(blockedCorrelationKernel, STORED_CORRELATION_TOP_K_NEIGHBOURS);
+            if ( (topKCorrelationCutoffsArray == null) || layoutProgressBarDialog.userHasCancelled() )
+                return;
+        }
+
+        if (!writeCorrelationTextFile)
+        {
+            performSparseCorrelationCalculationAndWriteToFile(blockedCorrelationKernel, threshold, correlationFileWriter);
+        }
+        else if (!USE_MULTICORE_PROCESS)
+        {
+            performSingleCoreCorrelationCalculationAndWriteToFile(blockedCorrelationKernel, threshold, correlationFileWriter,
+                    outPrintWriter, writeCorrelationTextFile);
+        }
+        else
+        {
+            calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(blockedCorrelationKernel, threshold,
+                    correlationFileWriter, outPrintWriter, writeCorrelationTextFile);
+        }
+    }
+
+    /**
+    *  Checks if a correlation is kept, being above the threshold and, for the top-k neighbour selection, among the k nearest neighbours of either row.
+    */
+    private boolean isCorrelationKept(int row, int column, float correlation, float threshold)
+    {
+        return (correlation >= threshold) && ( (topKCorrelationCutoffsArray == null) || (correlation >= topKCorrelationCutoffsArray[row]) || (correlation >= topKCorrelationCutoffsArray[column]) );
+    }
+
+    /**
+    *  Calculates the k-th largest correlation of every row against all other rows, to be used as the per row top-k neighbour cutoff.
+    *  Returns null if the user cancelled.
+    */
+    private float[] calculateTopKCorrelationCutoffs(final BlockedCorrelationKernel blockedCorrelationKernel, final int k)
+    {
+        layoutProgressBarDialog.setText("Selecting the top " + k + " neighbours of each row...");
+
+        final float[] topKCorrelationCutoffs = new float[totalRows];
+        final int numberOfPanels = (totalRows + BlockedCorrelationKernel.ROW_PANEL_SIZE - 1) / BlockedCorrelationKernel.ROW_PANEL_SIZE;
+        // the per worker scratch arrays, allocated once per thread instead of once per chunk
+        final ThreadLocal<float[]> panelResultsThreadLocal = new ThreadLocal<float[]>();
+        final ThreadLocal<float[]> heapThreadLocal = new ThreadLocal<float[]>();
+        LayoutComputeService.RangeKernel rangeKernel = new LayoutComputeService.RangeKernel()
+            {
+
+                @Override
+                public void process(int startIndex, int endIndex)
+                {
+                    float[] panelResults = panelResultsThreadLocal.get();
+                    float[] heap = heapThreadLocal.get();
+                    if (panelResults == null)
+                    {
+                        panelResults = new float[BlockedCorrelationKernel.ROW_PANEL_SIZE * totalRows];
+                        panelResultsThreadLocal.set(panelResults);
+                        heap = new float[k];
+                        heapThreadLocal.set(heap);
+                    }
+
+                    int panelStartRow = 0;
+                    int panelEndRow = 0;
+                    for (int panel = startIndex; panel < endIndex; panel++)
+                    {
+                        panelStartRow = panel * BlockedCorrelationKernel.ROW_PANEL_SIZE;
+                        panelEndRow = (panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE < totalRows) ? panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE : totalRows;
+                        blockedCorrelationKernel.calculateFullRowPanel(panelStartRow, panelEndRow, panelResults);
+
+                        for (int i = panelStartRow; i < panelEndRow; i++)
+                            topKCorrelationCutoffs[i] = selectKthLargestCorrelation(panelResults, (i - panelStartRow) * totalRows, totalRows, heap);
+                    }
+                }
+
+
+            };
+
+        if (USE_MULTICORE_PROCESS)
+            return LayoutComputeService.getInstance().execute(rangeKernel, numberOfPanels, 1, layoutProgressBarDialog) ? topKCorrelationCutoffs : null;
+
+        for (int panel = 0; panel < numberOfPanels; panel++)
+        {
+            if (layoutProgressBarDialog.userHasCancelled())
+                return null;
+
+            rangeKernel.process(panel, panel + 1);
+        }
+
+        return topKCorrelationCutoffs;
+    }
+
+    /**
+    *  Selects the k-th largest of the given correlations through a min heap of size k, skipping NaN values.
+    *  Returns negative infinity if there are fewer than k correlations.
+    */
+    private static float selectKthLargestCorrelation(float[] correlations, int offset, int length, float[] heap)
+    {
+        int k = heap.length;
+        int heapSize = 0;
+        int index = 0;
+        int child = 0;
         float correlation = 0.0f;
-        for (int i = 0; i < totalRows - 1; i++) // last row does not perform any calculations, thus skipped
+        float swap = 0.0f;
+        for (int j = offset; j < offset + length; j++)
         {
-            updateSingleCoreGUI();
+            correlation = correlations[j];
+            if (correlation != correlation) // NaN check, see definition of Float.isNaN()
+                continue;
 
-            outOstream.writeInt(i);
+            if (heapSize < k)
+            {
+                // sift up
+                index = heapSize++;
+                heap[index] = correlation;
+                while ( (index > 0) && (heap[(index - 1) >> 1] > heap[index]) )
+                {
+                    swap = heap[(index - 1) >> 1];
+                    heap[(index - 1) >> 1] = heap[index];
+                    heap[index] = swap;
+                    index = (index - 1) >> 1;
+                }
+            }
+            else if (correlation > heap[0])
+            {
+                // sift down
+                heap[0] = correlation;
+                index = 0;
+                while ( ( child = (index << 1) + 1 ) < k )
+                {
+                    if ( (child + 1 < k) && (heap[child + 1] < heap[child]) )
+                        child++;
+                    if (heap[index] <= heap[child])
+                        break;
+
+                    swap = heap[child];
+                    heap[child] = heap[index];
+                    heap[index] = swap;
+                    index = child;
+                }
+            }
+        }
 
-            for (int j = (i + 1); j < totalRows; j++)
+        return (heapSize < k) ? Float.NEGATIVE_INFINITY : heap[0];
+    }
+
+    /**
+    *  Calculates the correlation values and writes them to a binary file, buffering only the kept correlations.
+    *  Each row panel is filtered right after being calculated into a per worker scratch array, so the memory held per step
+    *  scales with the kept correlations instead of the whole triangle of the step's rows, allowing for much bigger steps.
+    *  The panels of a step are written to the file in row order once the whole step is done.
+    */
+    private void performSparseCorrelationCalculationAndWriteToFile(final BlockedCorrelationKernel blockedCorrelationKernel, final float threshold,
+            CorrelationFileWriter correlationFileWriter) throws IOException
+    {
+        final int lastRow = totalRows - 1; // last row does not perform any calculations, thus skipped
+        final int totalPanels = (lastRow + BlockedCorrelationKernel.ROW_PANEL_SIZE - 1) / BlockedCorrelationKernel.ROW_PANEL_SIZE;
+        final int panelResultsSize = blockedCorrelationKernel.getRowPanelResultsSize(0, (BlockedCorrelationKernel.ROW_PANEL_SIZE < lastRow) ? BlockedCorrelationKernel.ROW_PANEL_SIZE : lastRow);
+        int numberOfWorkers = (USE_MULTICORE_PROCESS) ? LayoutComputeService.getInstance().getNumberOfWorkers() : 1;
+        int panelsPerStep = SPARSE_CORRELATION_PANELS_PER_STEP_PER_WORKER * numberOfWorkers;
+        final SparseCorrelationPanel[] stepPanels = new SparseCorrelationPanel[panelsPerStep];
+        final ThreadLocal<float[]> panelResultsThreadLocal = new ThreadLocal<float[]>();
+
+        for (int stepStartPanel = 0; stepStartPanel < totalPanels; stepStartPanel += panelsPerStep)
+        {
+            final int firstPanel = stepStartPanel;
+            int numberOfStepPanels = (stepStartPanel + panelsPerStep < totalPanels) ? panelsPerStep : totalPanels - stepStartPanel;
+            LayoutComputeService.RangeKernel rangeKernel = new LayoutComputeService.RangeKernel()
+                {
+
+                    @Override
+                    public void process(int startIndex, int endIndex)
+                    {
+                        float[] panelResults = panelResultsThreadLocal.get();
+                        if (panelResults == null)
+                        {
+                            panelResults = new float[panelResultsSize];
+                            panelResultsThreadLocal.set(panelResults);
+                        }
+
+                        int panelStartRow = 0;
+                        int panelEndRow = 0;
+                        for (int panel = startIndex; panel < endIndex; panel++)
+                        {
+                            panelStartRow = (firstPanel + panel) * BlockedCorrelationKernel.ROW_PANEL_SIZE;
+                            panelEndRow = (panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE < lastRow) ? panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE : lastRow;
+                            blockedCorrelationKernel.calculateRowPanel(panelStartRow, panelEndRow, panelResults, 0);
+                            stepPanels[panel] = createSparseCorrelationPanel(panelStartRow, panelEndRow, panelResults, threshold);
+                        }
+                    }
+
+
+                };
+
+            if (USE_MULTICORE_PROCESS)
+            {
+                if ( !LayoutComputeService.getInstance().execute(rangeKernel, numberOfStepPanels, 1, layoutProgressBarDialog) )
+                    break;
+            }
+            else
             {
-                correlation = calculateCorrelation(i, j, expressionData);
-                if (correlation >= threshold)
+                for (int panel = 0; panel < numberOfStepPanels; panel++)
                 {
-                    outOstream.writeInt(j);
-                    outOstream.writeFloat(correlation);
+                    if (layoutProgressBarDialog.userHasCancelled())
+                        break;
+
+                    rangeKernel.process(panel, panel + 1);
                 }
 
-                if (writeCorrelationTextFile)
+                if (layoutProgressBarDialog.userHasCancelled())
+                    break;
+            }
+
+            for (int panel = 0; panel < numberOfStepPanels; panel++)
+            {
+                stepPanels[panel].writeToFile(correlationFileWriter);
+                stepPanels[panel] = null;
+            }
+        }
+    }
+
+    /**
+    *  Filters the calculated correlations of a row panel to a SparseCorrelationPanel.
+    */
+    private SparseCorrelationPanel createSparseCorrelationPanel(int panelStartRow, int panelEndRow, float[] panelResults, float threshold)
+    {
+        SparseCorrelationPanel sparseCorrelationPanel = new SparseCorrelationPanel(panelStartRow, panelEndRow);
+        int index = 0;
+        float correlation = 0.0f;
+        for (int i = panelStartRow; i < panelEndRow; i++)
+        {
+            if (USE_MULTICORE_PROCESS)
+                updateMultiCoreGUI();
+            else
+                updateSingleCoreGUI();
+
+            for (int j = (i + 1); j < totalRows; j++)
+            {
+                correlation = panelResults[index++];
+                if ( isCorrelationKept(i, j, correlation, threshold) )
+                    sparseCorrelationPanel.addCorrelation(j, correlation);
+            }
+
+            sparseCorrelationPanel.endRow(i);
+        }
+
+        return sparseCorrelationPanel;
+    }
+
+    /**
+    *  Calculates the correlation values in a single thread and writes them to a binary file.
+    */
+    private void performSingleCoreCorrelationCalculationAndWriteToFile(BlockedCorrelationKernel blockedCorrelationKernel, float threshold, CorrelationFileWriter correlationFileWriter,
+            PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
+    {
+        float[] panelResults = new float[blockedCorrelationKernel.getRowPanelResultsSize(0, BlockedCorrelationKernel.ROW_PANEL_SIZE < totalRows ? BlockedCorrelationKernel.ROW_PANEL_SIZE : totalRows)];
+        int panelEndRow = 0;
+        int index = 0;
+        float correlation = 0.0f;
+        for (int panelStartRow = 0; panelStartRow < totalRows - 1; panelStartRow += BlockedCorrelationKernel.ROW_PANEL_SIZE) // last row does not perform any calculations, thus skipped
+        {
+            panelEndRow = (panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE < totalRows - 1) ? panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE : totalRows - 1;
+            blockedCorrelationKernel.calculateRowPanel(panelStartRow, panelEndRow, panelResults, 0);
+
+            index = 0;
+            for (int i = panelStartRow; i < panelEndRow; i++)
+            {
+                updateSingleCoreGUI();
+
+                correlationFileWriter.beginRow(i);
+
+                for (int j = (i + 1); j < totalRows; j++)
                 {
-                    outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[j] + "\t" + nf3.format(correlation));
+                    correlation = panelResults[index++];
+                    if ( isCorrelationKept(i, j, correlation, threshold) )
+                    {
+                        correlationFileWriter.writeCorrelation(j, correlation);
+                    }
+
+                    if (writeCorrelationTextFile)
+                    {
+                        outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[j] + "\t" + nf3.format(correlation));
+                    }
                 }
+
+                correlationFileWriter.endRow(i);
             }
 
-            outOstream.writeInt(i);
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                break;
+            }
         }
     }
 
+    /**
+    *  Creates the blocked correlation kernel for the current metric, standardising the rows once for all the row pairs.
+    */
+    private BlockedCorrelationKernel createBlockedCorrelationKernel()
+    {
+        float[] expressionData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? expressionDataArray : ( ( CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN) ) ? expressionRanksArray : expressionDataArray );
+        return new BlockedCorrelationKernel(expressionData, totalRows, totalColumns);
+    }
+
     /**
     *  Calculates the steps needed, memory allocated per step and executes the correlation calculation with N-Core parallelism.
     */
-    private void calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(float threshold,
-            ObjectOutputStream outOstream, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
+    private void calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(BlockedCorrelationKernel blockedCorrelationKernel, float threshold,
+            CorrelationFileWriter correlationFileWriter, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
         // below is code to break the correlation calculation into steps according to how much memory we are allocating for the intermediate step results
-        boolean isPowerOfTwo = org.BioLayoutExpress3D.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
         int arraySize = 0;
         int startRow = 0;
         int endRow = -1; // has to init at -1 for 'startRow = endRow + 1' line, so as to start at row 0
@@ -545,7 +905,7 @@ public final class ExpressionData
             stepResults = new float[arraySize];
 
             if (DEBUG_BUILD) println("Now starting the N-Core parallelization process with the variables below:\nstartRow: " + (startRow + 1) + " endRow: " + (endRow + 1) + " arraySize: " + arraySize + " rowsSearchProcessedStopped: " + rowsSearchProcessedStopped);
-            performMultiCoreCorrelationCalculation(isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip);
+            performMultiCoreCorrelationCalculation(blockedCorrelationKernel, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip);
 
             if (layoutProgressBarDialog.userHasCancelled())
             {
@@ -553,7 +913,7 @@ public final class ExpressionData
             }
 
             writeAllStepResultsToFile(threshold, startRow, endRow, stepNumber, stepResults,
-                    outOstream, outPrintWriter, writeCorrelationTextFile);
+                    correlationFileWriter, outPrintWriter, writeCorrelationTextFile);
 
             // clean memory before continuing
             stepResults = null;
@@ -568,129 +928,45 @@ public final class ExpressionData
 
     /**
     *  Main method of the correlation calculation execution code. Uses an N-Core paralellism algorithm in case of multiple core availability.
+    *  The [startRow, endRow] rows are split in row panels claimed dynamically by the LayoutComputeService workers,
+    *  so the longer panels at the start of the triangular search space do not hold back a statically assigned thread.
     */
-    private void performMultiCoreCorrelationCalculation(boolean isPowerOfTwo, int startRow, int endRow, float[] stepResults, int[] cachedRowsResultsIndicesToSkip)
+    private void performMultiCoreCorrelationCalculation(final BlockedCorrelationKernel blockedCorrelationKernel, final int startRow, final int endRow, final float[] stepResults, int[] cachedRowsResultsIndicesToSkip)
     {
-        LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                         new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                         new LoggerThreadFactory("ExpressionData"),
-                                                                         new ThreadPoolExecutor.CallerRunsPolicy() );
-
-        cyclicBarrierTimer.clear();
-        for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-            executor.execute( correlationCalculationProcessKernel(threadId, isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip) );
-
-        try
-        {
-            threadBarrier.await(); // wait for all threads to be ready
-            threadBarrier.await(); // wait for all threads to finish
-            executor.shutdown();
-        }
-        catch (BrokenBarrierException ex)
-        {
-            if (DEBUG_BUILD) println("Problem with a broken barrier with the main correlation calculation thread in performMultiCoreCorrelationCalculation()!:\n" + ex.getMessage());
-        }
-        catch (InterruptedException ex)
+        final int numberOfPanels = (endRow - startRow) / BlockedCorrelationKernel.ROW_PANEL_SIZE + 1;
+        final int[] panelResultsOffsets = new int[numberOfPanels];
+        int offset = 0;
+        for (int i = startRow; i <= endRow; i++)
         {
-            // restore the interuption status after catching InterruptedException
-            Thread.currentThread().interrupt();
-            if (DEBUG_BUILD) println("Problem with pausing the main correlation calculation thread in performMultiCoreCorrelationCalculation()!:\n" + ex.getMessage());
+            if ( ( (i - startRow) % BlockedCorrelationKernel.ROW_PANEL_SIZE ) == 0 )
+                panelResultsOffsets[(i - startRow) / BlockedCorrelationKernel.ROW_PANEL_SIZE] = offset;
+            offset += cachedRowsResultsIndicesToSkip[i];
         }
 
-        if (DEBUG_BUILD) println("\nTotal ExpressionData N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
-    }
-
-    /**
-    *  Performs all correlation calculations.
-    */
-    private void allCorrelationCalculations(int threadId, boolean isPowerOfTwo, int startRow, int endRow, float[] stepResults, int[] cachedRowsResultsIndicesToSkip)
-    {
-        float[] expressionData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? expressionDataArray : ( ( CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN) ) ? expressionRanksArray : expressionDataArray );
-        int rowResultIndex = 0;
-        if (isPowerOfTwo)
-        {
-            for (int i = startRow; i <= endRow; i++)
-            {
-                if ( ( i & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
-                {
-                    updateMultiCoreGUI();
-
-                    for (int j = (i + 1); j < totalRows; j++)
-                        stepResults[rowResultIndex++] = calculateCorrelation(i, j, expressionData);
-                }
-                else
-                {
-                    rowResultIndex += cachedRowsResultsIndicesToSkip[i];
-                }
-
-                if (layoutProgressBarDialog.userHasCancelled())
-                {
-                    break;
-                }
-            }
-        }
-        else
-        {
-            for (int i = startRow; i <= endRow; i++)
+        long startTime = System.nanoTime();
+        LayoutComputeService.getInstance().execute(new LayoutComputeService.RangeKernel()
             {
-                if ( (i % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
-                {
-                    updateMultiCoreGUI();
 
-                    for (int j = (i + 1); j < totalRows; j++)
-                        stepResults[rowResultIndex++] = calculateCorrelation(i, j, expressionData);
-                }
-                else
+                @Override
+                public void process(int startIndex, int endIndex)
                 {
-                    rowResultIndex += cachedRowsResultsIndicesToSkip[i];
-                }
-
-                if (layoutProgressBarDialog.userHasCancelled())
-                {
-                    break;
-                }
-            }
-        }
-    }
-
-    /**
-    *   Return a light-weight runnable using the Adapter technique for the correlation calculation so as to avoid any load latencies.
-    *   The coding style simulates an OpenCL/CUDA kernel.
-    */
-    private Runnable correlationCalculationProcessKernel(final int threadId, final boolean isPowerOfTwo, final int startRow, final int endRow, final float[] stepResults, final int[] cachedRowsResultsIndicesToSkip)
-    {
-        return new Runnable()
-        {
-
-            @Override
-            public void run()
-            {
-                try
-                {
-                   threadBarrier.await();
-                    try
+                    int panelStartRow = 0;
+                    int panelEndRow = 0;
+                    for (int panel = startIndex; panel < endIndex; panel++)
                     {
-                        allCorrelationCalculations(threadId, isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip);
-                    }
-                    finally
-                    {
-                        threadBarrier.await();
+                        panelStartRow = startRow + panel * BlockedCorrelationKernel.ROW_PANEL_SIZE;
+                        panelEndRow = (panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE <= endRow) ? panelStartRow + BlockedCorrelationKernel.ROW_PANEL_SIZE : endRow + 1;
+                        blockedCorrelationKernel.calculateRowPanel(panelStartRow, panelEndRow, stepResults, panelResultsOffsets[panel]);
+
+                        for (int i = panelStartRow; i < panelEndRow; i++)
+                            updateMultiCoreGUI();
                     }
                 }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in correlationCalculationProcessKernel()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the N-Core thread with threadId " + threadId + " in correlationCalculationProcessKernel()!:\n" + ex.getMessage());
-                }
-            }
 
 
-        };
+            }, numberOfPanels, 1, layoutProgressBarDialog);
+
+        if (DEBUG_BUILD) println("\nTotal ExpressionData N-CP run time: " + ( (System.nanoTime() - startTime) / 1e6 ) + " ms.\n");
     }
 
     /**
@@ -736,7 +1012,7 @@ public final class ExpressionData
     *  Writes all step results to a binary file.
     */
     private void writeAllStepResultsToFile(float threshold, int startRow, int endRow,
-            int stepNumber, float[] stepResults, ObjectOutputStream outOstream,
+            int stepNumber, float[] stepResults, CorrelationFileWriter correlationFileWriter,
             PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
         String currentLayoutProgressBarText = layoutProgressBarDialog.getText();
@@ -749,15 +1025,14 @@ public final class ExpressionData
         {
             int percent = ((i - startRow) * 100) / (endRow - startRow);
 
-            outOstream.writeInt(i);
+            correlationFileWriter.beginRow(i);
 
             for (int j = (i + 1); j < totalRows; j++)
             {
                 correlation = stepResults[index++];
-                if (correlation >= threshold)
+                if ( isCorrelationKept(i, j, correlation, threshold) )
                 {
-                    outOstream.writeInt(j);
-                    outOstream.writeFloat(correlation);
+                    correlationFileWriter.writeCorrelation(j, correlation);
                 }
 
                 if (writeCorrelationTextFile)
@@ -767,7 +1042,7 @@ public final class ExpressionData
                 }
             }
 
-            outOstream.writeInt(i);
+            correlationFileWriter.endRow(i);
 
             layoutProgressBarDialog.setText(currentLayoutProgressBarText +
                     "  (Saving " + percent + "%)");
@@ -778,25 +1053,17 @@ public final class ExpressionData
     *  Main method of the OpenCL GPU correlation calculation data parallel execution code.
     */
     private void performOpenCLGPUComputingCorrelationCalculation(FloatBuffer expressionBuffer, float threshold,
-            ObjectOutputStream outOstream, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
+            CorrelationFileWriter correlationFileWriter, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
         org.BioLayoutExpress3D.GPUComputing.OpenCLContext.ExpressionData.ExpressionDataComputing expressionDataComputingContext = new org.BioLayoutExpress3D.GPUComputing.OpenCLContext.ExpressionData.ExpressionDataComputing( layoutFrame, true, COMPARE_GPU_COMPUTING_EXRESSION_CORRELATION_CALCULATION_WITH_CPU.get() );
-        expressionDataComputingContext.initializeExpressionDataComputingVariables(this, layoutProgressBarDialog, nf1, nf2, nf3, totalRows, totalColumns, rowIDsArray, sumX_cacheBuffer, sumX_sumX2_cacheBuffer, sumColumns_X2_cacheBuffer, expressionBuffer, threshold, outOstream, outPrintWriter, EXPRESSION_DATA_GPU_COMPUTING_MAX_ERROR_THRESHOLD);
+        expressionDataComputingContext.initializeExpressionDataComputingVariables(this, layoutProgressBarDialog, nf1, nf2, nf3, totalRows, totalColumns, rowIDsArray, sumX_cacheBuffer, sumX_sumX2_cacheBuffer, sumColumns_X2_cacheBuffer, expressionBuffer, threshold, correlationFileWriter, outPrintWriter, EXPRESSION_DATA_GPU_COMPUTING_MAX_ERROR_THRESHOLD);
         expressionDataComputingContext.startGPUComputingProcessing();
 
         // CPU fail-safe mechanism if OpenCL GPU Computing fails for some reason
         if ( expressionDataComputingContext.getErrorOccured() )
         {
-            if (USE_MULTICORE_PROCESS)
-            {
-                calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                        outOstream, outPrintWriter, writeCorrelationTextFile);
-            }
-            else
-            {
-                performSingleCoreCorrelationCalculationAndWriteToFile(threshold, outOstream,
-                        outPrintWriter, writeCorrelationTextFile);
-            }
+            performCPUCorrelationCalculationAndWriteToFile(threshold, correlationFileWriter,
+                    outPrintWriter, writeCorrelationTextFile);
         }
 
         expressionDataComputingContext = null;
@@ -806,7 +1073,7 @@ public final class ExpressionData
     *  Main method of the GLSL GPU correlation calculation data parallel execution code.
     */
     private void performGLSLGPUComputingCorrelationCalculation(FloatBuffer expressionBuffer, float threshold,
-            ObjectOutputStream outOstream, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
+            CorrelationFileWriter correlationFileWriter, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
         // MAX_ALLOWED_TEXTURE_SIZE = 3584
         // TEXTURE_2D_ARB_R_32, MAX_ALLOWED_TEXTURE_SIZE, 14182, 52
@@ -848,22 +1115,14 @@ public final class ExpressionData
         }
 
         org.BioLayoutExpress3D.GPUComputing.OpenGLContext.ExpressionData.ExpressionDataComputing expressionDataComputingContext = new org.BioLayoutExpress3D.GPUComputing.OpenGLContext.ExpressionData.ExpressionDataComputing(textureParameters, textureSize, totalRows, totalColumns, true);
-        expressionDataComputingContext.initializeExpressionDataComputingVariables(this, layoutProgressBarDialog, nf1, nf2, nf3, rowIDsArray, sumX_cacheBuffer, sumX_sumX2_cacheBuffer, sumColumns_X2_cacheBuffer, expressionBuffer, threshold, outOstream, outPrintWriter, EXPRESSION_DATA_GPU_COMPUTING_MAX_ERROR_THRESHOLD);
+        expressionDataComputingContext.initializeExpressionDataComputingVariables(this, layoutProgressBarDialog, nf1, nf2, nf3, rowIDsArray, sumX_cacheBuffer, sumX_sumX2_cacheBuffer, sumColumns_X2_cacheBuffer, expressionBuffer, threshold, correlationFileWriter, outPrintWriter, EXPRESSION_DATA_GPU_COMPUTING_MAX_ERROR_THRESHOLD);
         expressionDataComputingContext.doGPUComputingProcessing();
 
         // CPU fail-safe mechanism if GLSL GPU Computing fails for some reason
         if ( expressionDataComputingContext.getErrorOccured() )
         {
-            if (USE_MULTICORE_PROCESS)
-            {
-                calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                        outOstream, outPrintWriter, writeCorrelationTextFile);
-            }
-            else
-            {
-                performSingleCoreCorrelationCalculationAndWriteToFile(threshold, outOstream,
-                        outPrintWriter, writeCorrelationTextFile);
-            }
+            performCPUCorrelationCalculationAndWriteToFile(threshold, correlationFileWriter,
+                    outPrintWriter, writeCorrelationTextFile);
         }
 
         expressionDataComputingContext = null;
@@ -915,6 +1174,7 @@ public final class ExpressionData
         nf1 = null;
         nf2 = null;
         nf3 = null;
+        topKCorrelationCutoffsArray = null;
 
         System.gc();
     }
@@ -953,6 +1213,22 @@ public final class ExpressionData
         return countsArray;
     }
 
+    /**
+    *  Gets the stored correlations edge list of the loaded correlation file, null if none has been loaded.
+    */
+    public CorrelationEdgeList getCorrelationEdgeList()
+    {
+        return correlationEdgeList;
+    }
+
+    /**
+    *  Sets the stored correlations edge list of the loaded correlation file.
+    */
+    public void setCorrelationEdgeList(CorrelationEdgeList correlationEdgeList)
+    {
+        this.correlationEdgeList = correlationEdgeList;
+    }
+
     /**
     *  Gets a value from the expression data structure.
     */
@@ -1489,7 +1765,7 @@ public final class ExpressionData
         @Override public float f(float x) { return (float)pow(10.0, x); }
     }
 
-    private void rescale(LayoutProgressBarDialog layoutProgressBarDialog, IRescaleDelegate d)
+    private void rescale(LayoutProgressBar layoutProgressBarDialog, IRescaleDelegate d)
     {
         for (int row = 0; row < totalRows; row++)
         {
@@ -1568,7 +1844,7 @@ public final class ExpressionData
         return filtered;
     }
 
-    public void preprocess(LayoutProgressBarDialog layoutProgressBarDialog,
+    public void preprocess(LayoutProgressBar layoutProgressBarDialog,
             ScaleTransformType scaleTransformType)
     {
         layoutProgressBarDialog.prepareProgressBar(100, "Preprocessing");
@@ -0,0 +1,345 @@
+package org.BioLayoutExpress3D.Expression;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+import org.BioLayoutExpress3D.Environment.*;
+import org.BioLayoutExpress3D.Network.*;
+import org.BioLayoutExpress3D.Utils.Path;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.Expression.ExpressionEnvironment.*;
+import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
+
+/**
+*
+* ExpressionDataCache is the content-addressed cache of the correlation files & converged layouts of expression data files.
+* The correlation key is a SHA-1 hash of the expression file bytes & of all the settings the correlations depend on,
+* so an edited expression file or a changed setting never reuses stale correlations, while a moved or renamed file still does.
+* The layout key extends the correlation key with the network threshold, the filtered rows, the layout algorithm & its settings.
+* All entries live in one cache directory, bounded in size by evicting the least recently used entries first.
+* An entry is marked as used by refreshing its last modified time.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class ExpressionDataCache
+{
+    private static final String CACHE_DIRECTORY_NAME = "ExpressionDataCache";
+    private static final String CORRELATION_FILE_EXTENSION = ".correlationcache";
+    private static final String LAYOUT_FILE_EXTENSION = ".layoutcache";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final int LAYOUT_FILE_MAGIC_NUMBER = 0x424C4C43; // "BLLC"
+    private static final int LAYOUT_FILE_VERSION = 1;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private File cacheDirectory = null;
+    private String correlationKey = "";
+
+    /**
+    *  The constructor of the ExpressionDataCache class. Hashes the expression file with the current correlation settings.
+    */
+    public ExpressionDataCache(File expressionFile, int firstDataColumn, int firstDataRow, boolean transpose) throws IOException
+    {
+        cacheDirectory = new File( Path.combine(DataFolder.get(), CACHE_DIRECTORY_NAME) );
+        if ( !cacheDirectory.isDirectory() && !cacheDirectory.mkdirs() )
+            throw new IOException( "Could not create the cache directory " + cacheDirectory.getAbsolutePath() );
+
+        MessageDigest messageDigest = createMessageDigest();
+        InputStream inputStream = new FileInputStream(expressionFile);
+        try
+        {
+            byte[] buffer = new byte[IO_BUFFER_SIZE];
+            int bytesRead = 0;
+            while ( ( bytesRead = inputStream.read(buffer) ) != -1 )
+                messageDigest.update(buffer, 0, bytesRead);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+
+        String correlationSettings = "correlation" +
+                                     "|" + ExpressionData.FILE_VERSION +
+                                     "|" + firstDataColumn +
+                                     "|" + firstDataRow +
+                                     "|" + transpose +
+                                     "|" + CURRENT_SCALE_TRANSFORM +
+                                     "|" + CURRENT_METRIC +
+                                     "|" + STORED_CORRELATION_THRESHOLD +
+                                     "|" + STORED_CORRELATION_TOP_K_NEIGHBOURS;
+        messageDigest.update( correlationSettings.getBytes( Charset.forName("UTF-8") ) );
+        correlationKey = toHexString( messageDigest.digest() );
+    }
+
+    /**
+    *  Gets the cached correlation file, which may not exist yet.
+    */
+    public File getCorrelationFile()
+    {
+        return new File(cacheDirectory, correlationKey + CORRELATION_FILE_EXTENSION);
+    }
+
+    /**
+    *  Checks if there is a cached correlation file & marks it as recently used.
+    */
+    public boolean hasCorrelationFile()
+    {
+        File correlationFile = getCorrelationFile();
+        if ( !correlationFile.isFile() )
+            return false;
+
+        correlationFile.setLastModified( System.currentTimeMillis() );
+        return true;
+    }
+
+    /**
+    *  To be called once the correlation file is built, so as to mark it as recently used & keep the cache within its size.
+    */
+    public void correlationFileStored()
+    {
+        File correlationFile = getCorrelationFile();
+        correlationFile.setLastModified( System.currentTimeMillis() );
+        evictLeastRecentlyUsedEntries(correlationFile);
+    }
+
+    /**
+    *  Loads the cached layout of the network for the given layout algorithm & the current network settings, if any.
+    *  All the vertices of the network have to be in the cached layout, else no vertex is moved.
+    *  Returns true if the network was laid out, it is then marked as optimized.
+    */
+    public boolean loadLayout(NetworkContainer nc, GraphLayoutAlgorithm graphLayoutAlgorithm)
+    {
+        File layoutFile = getLayoutFile(graphLayoutAlgorithm);
+        if ( !layoutFile.isFile() )
+            return false;
+
+        int numberOfVertices = nc.getNumberOfVertices();
+        String[] vertexNames = new String[numberOfVertices];
+        float[] vertexLocations = new float[3 * numberOfVertices];
+        HashSet<String> loadedVertexNames = new HashSet<String>(numberOfVertices);
+        DataInputStream dataInputStream = null;
+        try
+        {
+            dataInputStream = new DataInputStream( new BufferedInputStream( new FileInputStream(layoutFile), IO_BUFFER_SIZE ) );
+            if ( (dataInputStream.readInt() != LAYOUT_FILE_MAGIC_NUMBER) || (dataInputStream.readInt() != LAYOUT_FILE_VERSION) || (dataInputStream.readInt() != numberOfVertices) )
+                return false;
+
+            for (int i = 0; i < numberOfVertices; i++)
+            {
+                vertexNames[i] = dataInputStream.readUTF();
+                if ( !nc.getVerticesMap().containsKey(vertexNames[i]) || !loadedVertexNames.add(vertexNames[i]) )
+                    return false;
+
+                vertexLocations[3 * i    ] = dataInputStream.readFloat();
+                vertexLocations[3 * i + 1] = dataInputStream.readFloat();
+                vertexLocations[3 * i + 2] = dataInputStream.readFloat();
+            }
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in ExpressionDataCache.loadLayout():\n" + ioe.getMessage());
+
+            return false;
+        }
+        finally
+        {
+            closeQuietly(dataInputStream);
+        }
+
+        for (int i = 0; i < numberOfVertices; i++)
+            nc.updateVertexLocation(vertexNames[i], vertexLocations[3 * i], vertexLocations[3 * i + 1], vertexLocations[3 * i + 2]);
+        layoutFile.setLastModified( System.currentTimeMillis() );
+
+        return true;
+    }
+
+    /**
+    *  Stores the converged layout of the network for the given layout algorithm & the current network settings.
+    */
+    public void storeLayout(NetworkContainer nc, GraphLayoutAlgorithm graphLayoutAlgorithm)
+    {
+        File layoutFile = getLayoutFile(graphLayoutAlgorithm);
+        File layoutFileTmp = new File(layoutFile.getAbsolutePath() + TEMPORARY_FILE_EXTENSION);
+        DataOutputStream dataOutputStream = null;
+        boolean isSuccessful = false;
+        try
+        {
+            dataOutputStream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(layoutFileTmp), IO_BUFFER_SIZE ) );
+            dataOutputStream.writeInt(LAYOUT_FILE_MAGIC_NUMBER);
+            dataOutputStream.writeInt(LAYOUT_FILE_VERSION);
+            dataOutputStream.writeInt( nc.getNumberOfVertices() );
+            for ( Vertex vertex : nc.getVertices() )
+            {
+                dataOutputStream.writeUTF( vertex.getVertexName() );
+                dataOutputStream.writeFloat( vertex.getX() );
+                dataOutputStream.writeFloat( vertex.getY() );
+                dataOutputStream.writeFloat( vertex.getZ() );
+            }
+            dataOutputStream.close();
+            dataOutputStream = null;
+
+            layoutFile.delete();
+            isSuccessful = layoutFileTmp.renameTo(layoutFile);
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in ExpressionDataCache.storeLayout():\n" + ioe.getMessage());
+        }
+        finally
+        {
+            closeQuietly(dataOutputStream);
+            if (!isSuccessful)
+                layoutFileTmp.delete();
+        }
+
+        if (isSuccessful)
+            evictLeastRecentlyUsedEntries( layoutFile, getCorrelationFile() );
+    }
+
+    /**
+    *  Gets the cached layout file of the given layout algorithm & the current network & layout settings.
+    */
+    private File getLayoutFile(GraphLayoutAlgorithm graphLayoutAlgorithm)
+    {
+        StringBuilder layoutSettings = new StringBuilder();
+        layoutSettings.append("layout")
+                      .append("|").append(correlationKey)
+                      .append("|").append(LAYOUT_FILE_VERSION)
+                      .append("|").append(CURRENT_CORRELATION_THRESHOLD)
+                      .append("|").append(graphLayoutAlgorithm)
+                      .append("|").append(RENDERER_MODE_3D)
+                      .append("|").append(WEIGHTED_EDGES)
+                      .append("|").append( TILED_LAYOUT.get() )
+                      .append("|").append( USE_EDGE_WEIGHTS_FOR_LAYOUT.get() )
+                      .append("|").append( STARTING_TEMPERATURE.get() )
+                      .append("|").append( NUMBER_OF_LAYOUT_ITERATIONS.get() )
+                      .append("|").append( KVALUE_MODIFIER.get() )
+                      .append("|").append( FR_LAYOUT_REPULSION_MODE.get() )
+                      .append("|").append( FR_LAYOUT_BARNES_HUT_THETA.get() )
+                      .append("|").append( MINIMUM_COMPONENT_SIZE.get() )
+                      .append("|").append( FMMM_DESIRED_EDGE_LENGTH.get() )
+                      .append("|").append( FMMM_QUALITY_VS_SPEED.get() )
+                      .append("|").append( FMMM_FORCE_MODEL.get() )
+                      .append("|").append( FMMM_STOP_CRITERION.get() )
+                      .append("|").append( FMMM_ITERATION_LEVEL_FACTOR.get() )
+                      .append("|").append( FMMM_NM_PRECISION.get() )
+                      .append("|").append( FMMM_NM_PARTICLES_IN_LEAVES.get() );
+
+        // the filtered rows in ascending order, so the key does not depend on the hash set order
+        Integer[] filteredRows = CURRENT_FILTER_SET.toArray( new Integer[CURRENT_FILTER_SET.size()] );
+        Arrays.sort(filteredRows);
+        layoutSettings.append("|filter");
+        for (Integer filteredRow : filteredRows)
+            layoutSettings.append(",").append(filteredRow);
+
+        MessageDigest messageDigest = createMessageDigest();
+        messageDigest.update( layoutSettings.toString().getBytes( Charset.forName("UTF-8") ) );
+
+        return new File( cacheDirectory, toHexString( messageDigest.digest() ) + LAYOUT_FILE_EXTENSION );
+    }
+
+    /**
+    *  Deletes the least recently used cache entries till the cache is within its size, never the given entries in use.
+    *  Synchronized as the cache directory is shared by all the expression data caches of this JVM.
+    */
+    private static synchronized void evictLeastRecentlyUsedEntries(File... entriesInUse)
+    {
+        File cacheDirectory = entriesInUse[0].getParentFile();
+        File[] entries = cacheDirectory.listFiles(new FileFilter()
+            {
+
+                @Override
+                public boolean accept(File file)
+                {
+                    return file.isFile() && ( file.getName().endsWith(CORRELATION_FILE_EXTENSION) || file.getName().endsWith(LAYOUT_FILE_EXTENSION) );
+                }
+
+
+            });
+        if (entries == null)
+            return;
+
+        long cacheSize = 0;
+        for (File entry : entries)
+            cacheSize += entry.length();
+
+        long maximumCacheSize = EXPRESSION_DATA_CACHE_SIZE.get() * BYTES_PER_MEGABYTE;
+        if (cacheSize <= maximumCacheSize)
+            return;
+
+        // oldest last modified time first, sorting on a snapshot of the times as they may change while sorting
+        final HashMap<File, Long> lastModifiedTimes = new HashMap<File, Long>(entries.length);
+        for (File entry : entries)
+            lastModifiedTimes.put( entry, entry.lastModified() );
+        Arrays.sort(entries, new Comparator<File>()
+            {
+
+                @Override
+                public int compare(File file1, File file2)
+                {
+                    return lastModifiedTimes.get(file1).compareTo( lastModifiedTimes.get(file2) );
+                }
+
+
+            });
+
+        List<File> entriesInUseList = Arrays.asList(entriesInUse);
+        for (File entry : entries)
+        {
+            if (cacheSize <= maximumCacheSize)
+                break;
+
+            if ( entriesInUseList.contains(entry) )
+                continue;
+
+            long entrySize = entry.length();
+            if ( entry.delete() )
+            {
+                cacheSize -= entrySize;
+                if (DEBUG_BUILD) println("ExpressionDataCache evicted: " + entry.getName());
+            }
+        }
+    }
+
+    private static MessageDigest createMessageDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA1");
+        }
+        catch (NoSuchAlgorithmException nsa)
+        {
+            // every Java platform has to support SHA-1
+            throw new IllegalStateException(nsa);
+        }
+    }
+
+    private static String toHexString(byte[] bytes)
+    {
+        StringBuilder hexString = new StringBuilder(2 * bytes.length);
+        for (byte value : bytes)
+            hexString.append( Character.forDigit( (value >> 4) & 0xF, 16 ) ).append( Character.forDigit(value & 0xF, 16) );
+
+        return hexString.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in ExpressionDataCache.closeQuietly():\n" + ioe.getMessage());
+        }
+    }
+
+
+}
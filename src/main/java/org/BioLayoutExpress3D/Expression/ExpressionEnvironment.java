@@ -42,6 +42,8 @@ public final class ExpressionEnvironment
     public static float       CURRENT_CORRELATION_THRESHOLD = DEFAULT_CORRELATION_THRESHOLD;
     public static HashSet<Integer> CURRENT_FILTER_SET = new HashSet<Integer>();
     public static float       STORED_CORRELATION_THRESHOLD = DEFAULT_STORED_CORRELATION_THRESHOLD;
+    public static final int   DEFAULT_STORED_CORRELATION_TOP_K_NEIGHBOURS = 0; // 0 keeps all correlations above the stored threshold
+    public static int         STORED_CORRELATION_TOP_K_NEIGHBOURS = DEFAULT_STORED_CORRELATION_TOP_K_NEIGHBOURS;
     public static String      EXPRESSION_FILE = "";
     public static String      EXPRESSION_FILE_PATH = "";
     public static int         EXPRESSION_DATA_FIRST_COLUMN = 0;
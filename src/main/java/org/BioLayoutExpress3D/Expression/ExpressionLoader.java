@@ -6,7 +6,6 @@ import org.BioLayoutExpress3D.Analysis.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
 import org.BioLayoutExpress3D.Network.*;
-import org.BioLayoutExpress3D.Utils.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 
@@ -26,6 +25,7 @@ public final class ExpressionLoader
     private int firstDataColumn = 0;
     private int firstDataRow = 0;
     private boolean transpose = false;
+    private ExpressionMatrixReader expressionMatrixReader = null;
     boolean isSuccessful = false;
     public String reasonForFailure = "";
 
@@ -46,62 +46,35 @@ public final class ExpressionLoader
         return true;
     }
 
-    class ParseProgressIndicator implements TextDelimitedMatrix.ProgressIndicator
-    {
-        private LayoutProgressBarDialog layoutProgressBarDialog;
-
-        public ParseProgressIndicator(LayoutProgressBarDialog layoutProgressBarDialog)
-        {
-            this.layoutProgressBarDialog = layoutProgressBarDialog;
-        }
-
-        @Override
-        public void notify(int percent)
-        {
-            layoutProgressBarDialog.incrementProgress(percent);
-        }
-    }
-
-    private void setReasonForFailure(int row, int column, String reason)
+    public boolean parse(LayoutFrame layoutFrame)
     {
-        if (row >= 0 && column >= 0)
-        {
-            reasonForFailure += "At row " + (row + 1) + ", column " + (column + 1) + ":\n";
-        }
-
-        reasonForFailure += reason;
+        return parse( layoutFrame.getLayoutProgressBar() );
     }
 
-    public boolean parse(LayoutFrame layoutFrame)
+    /**
+    *  Parses the expression data reporting to the given progress bar, the no-op HeadlessLayoutProgressBar in headless batch mode.
+    */
+    public boolean parse(LayoutProgressBar layoutProgressBarDialog)
     {
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
-
         layoutProgressBarDialog.prepareProgressBar(100, "Reading Expression Data: ");
         layoutProgressBarDialog.startProgressBar();
 
-        ParseProgressIndicator ppi = new ParseProgressIndicator(layoutProgressBarDialog);
-
-        TextDelimitedMatrix tdm;
-        int row = -1;
-        int column = -1;
-
         try
         {
             reasonForFailure = "";
 
-            tdm = new TextDelimitedMatrix(file, "\t", ppi);
+            expressionMatrixReader = new ExpressionMatrixReader(file, firstDataColumn, firstDataRow, transpose);
 
-            layoutProgressBarDialog.setText("Parsing " + tdm.numLines() + " lines");
+            layoutProgressBarDialog.setText("Scanning lines");
 
-            if (!tdm.parse())
+            if ( !expressionMatrixReader.scan(layoutProgressBarDialog) )
             {
-                reasonForFailure = tdm.reasonForFailure;
+                reasonForFailure = expressionMatrixReader.reasonForFailure;
                 return false;
             }
 
-            tdm.setTranspose(transpose);
-            int numColumns = tdm.numColumns();
-            int numRows = tdm.numRows();
+            int numColumns = expressionMatrixReader.getNumberOfColumns();
+            int numRows = expressionMatrixReader.getNumberOfRows();
 
             // - 1 because the first column is always the row ID
             rowAnnotationLabels = new String[firstDataColumn - 1];
@@ -111,27 +84,33 @@ public final class ExpressionLoader
                     numColumns - firstDataColumn,
                     transpose);
 
+            layoutProgressBarDialog.setText("Parsing " + expressionMatrixReader.getNumberOfLines() + " lines");
+
+            // the data cells are parsed straight into the ExpressionData array, only the header rows & the row IDs are left below
+            if ( !expressionMatrixReader.read(expressionData, layoutProgressBarDialog) )
+            {
+                reasonForFailure = expressionMatrixReader.reasonForFailure;
+                return false;
+            }
+
             layoutProgressBarDialog.setText("Loading data");
 
-            for (row = 0; row < numRows; row++)
+            for (int row = 0; row < numRows; row++)
             {
                 int percent = (100 * row) / numRows;
                 layoutProgressBarDialog.incrementProgress(percent);
 
-                for (column = 0; column < numColumns; column++)
+                if (row == 0)
                 {
-                    String value = tdm.valueAt(column, row);
-                    int dataColumn = column - firstDataColumn;
-                    int dataRow = row - firstDataRow;
-
-                    if (row == 0)
+                    for (int column = 1; column < numColumns; column++) // First column is always the row ID
                     {
+                        String value = expressionMatrixReader.valueAt(column, row);
                         if (column >= firstDataColumn)
                         {
                             // Data column names
-                            expressionData.setColumnName(dataColumn, value);
+                            expressionData.setColumnName(column - firstDataColumn, value);
                         }
-                        else if (column >= 1) // First column is always the row ID
+                        else
                         {
                             // Annotation classes
                             String annotation = cleanString(value);
@@ -139,53 +118,29 @@ public final class ExpressionLoader
                             rowAnnotationLabels[column - 1] = annotation;
                         }
                     }
-                    else if (row < firstDataRow)
-                    {
-                        if (column == 0)
-                        {
-                            // Column annotation name
-                            String annotation = cleanString(value);
-                            expressionData.addColumnAnnotation(row - 1, annotation);
-                        }
-                        else if (column >= firstDataColumn)
-                        {
-                            // Column annotation
-                            ExpressionData.ColumnAnnotation columnAnnotation =
-                                    expressionData.getColumnAnnotationByIndex(row - 1);
+                }
+                else if (row < firstDataRow)
+                {
+                    // Column annotation name
+                    String annotation = cleanString( expressionMatrixReader.valueAt(0, row) );
+                    expressionData.addColumnAnnotation(row - 1, annotation);
 
-                            columnAnnotation.setValue(dataColumn, value);
+                    // Column annotation
+                    ExpressionData.ColumnAnnotation columnAnnotation =
+                            expressionData.getColumnAnnotationByIndex(row - 1);
 
-                        }
-                    }
-                    else if (row >= firstDataRow)
-                    {
-                        if (column == 0)
-                        {
-                            // Row names
-                            expressionData.setRowID(dataRow, value);
-                        }
-                        else if (column >= firstDataColumn)
-                        {
-                            // The data itself
-                            float currentValue = Float.parseFloat(value.replace(',', '.'));
-                            expressionData.setExpressionDataValue(dataRow, dataColumn, currentValue);
-                        }
-                    }
+                    for (int column = firstDataColumn; column < numColumns; column++)
+                        columnAnnotation.setValue(column - firstDataColumn, expressionMatrixReader.valueAt(column, row));
+                }
+                else
+                {
+                    // Row names
+                    expressionData.setRowID( row - firstDataRow, expressionMatrixReader.valueAt(0, row) );
                 }
             }
 
             expressionData.sumRows();
         }
-        catch (NumberFormatException nfe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("NumberFormatException in ExpressionLoader.parse():\n" + nfe.getMessage());
-            }
-
-            setReasonForFailure(row, column, nfe.toString());
-            return false;
-        }
         catch (IOException ioe)
         {
             if (DEBUG_BUILD)
@@ -193,7 +148,7 @@ public final class ExpressionLoader
                 println("IOException in ExpressionLoader.parse():\n" + ioe.getMessage());
             }
 
-            setReasonForFailure(row, column, ioe.toString());
+            reasonForFailure = ioe.toString();
             return false;
         }
         finally
@@ -206,55 +161,80 @@ public final class ExpressionLoader
 
     public boolean parseAnnotations(LayoutFrame layoutFrame, NetworkContainer nc)
     {
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        return parseAnnotations(layoutFrame.getLayoutProgressBar(), nc);
+    }
 
+    /**
+    *  Parses the expression annotations reporting to the given progress bar, the no-op HeadlessLayoutProgressBar in headless batch mode.
+    */
+    public boolean parseAnnotations(LayoutProgressBar layoutProgressBarDialog, NetworkContainer nc)
+    {
         layoutProgressBarDialog.prepareProgressBar(100, "Reading Expression Data: ");
         layoutProgressBarDialog.startProgressBar();
 
-        ParseProgressIndicator ppi = new ParseProgressIndicator(layoutProgressBarDialog);
-
-        TextDelimitedMatrix tdm;
-
         int chipGeneCount = 0;
 
         try
         {
-            tdm = new TextDelimitedMatrix(file, "\t", ppi);
+            // the annotation columns are kept from parse(), so the file is only read again if that did not complete
+            if (expressionMatrixReader == null)
+            {
+                expressionMatrixReader = new ExpressionMatrixReader(file, firstDataColumn, firstDataRow, transpose);
 
-            layoutProgressBarDialog.setText("Parsing " + tdm.numLines() + " lines");
+                layoutProgressBarDialog.setText("Parsing lines");
 
-            if (!tdm.parse())
-            {
-                reasonForFailure = tdm.reasonForFailure;
-                return false;
+                if ( !expressionMatrixReader.scan(layoutProgressBarDialog) || !expressionMatrixReader.read(null, layoutProgressBarDialog) )
+                {
+                    reasonForFailure = expressionMatrixReader.reasonForFailure;
+                    return false;
+                }
             }
 
-            tdm.setTranspose(transpose);
-            int numColumns = tdm.numColumns();
-            int numRows = tdm.numRows();
+            int numRows = expressionMatrixReader.getNumberOfRows();
 
             layoutProgressBarDialog.setText("Loading annotations");
 
+            // rows only kept in the correlation edge list get their classes too, for when a lower threshold adds them to the network,
+            // kept as pending classes of the edge list if their vertex has not been created yet
+            CorrelationEdgeList correlationEdgeList = expressionData.getCorrelationEdgeList();
+
             for (int row = firstDataRow; row < numRows; row++)
             {
                 int percent = (100 * row) / numRows;
                 layoutProgressBarDialog.incrementProgress(percent);
 
                 Vertex vertex = null;
+                boolean isInNetwork = false;
+                boolean isPendingRow = false;
 
                 for (int column = 0; column < firstDataColumn; column++)
                 {
-                    String value = tdm.valueAt(column, row);
-                    int dataColumn = column - firstDataColumn;
+                    String value = expressionMatrixReader.valueAt(column, row);
                     int dataRow = row - firstDataRow;
 
                     if (column == 0)
                     {
                         vertex = nc.getVerticesMap().get(expressionData.getRowID(dataRow));
+                        isInNetwork = (vertex != null);
+                        if (!isInNetwork && correlationEdgeList != null)
+                        {
+                            vertex = correlationEdgeList.getVertex(dataRow);
+                            isPendingRow = (vertex == null) && correlationEdgeList.isRowKept(dataRow);
+                        }
+                    }
+                    else if (isPendingRow)
+                    {
+                        String annotation = cleanString(value);
+                        if ( !annotation.isEmpty() )
+                        {
+                            LayoutClasses layoutClasses = layoutClassSetsManager.getClassSetByName(rowAnnotationLabels[column - 1]);
+                            correlationEdgeList.setPendingRowClass( dataRow, layoutClasses, layoutClasses.createClass(annotation) );
+                        }
                     }
                     else if (vertex != null)
                     {
-                        chipGeneCount++;
+                        if (isInNetwork)
+                            chipGeneCount++;
                         String annotation = cleanString(value);
                         LayoutClasses layoutClasses =
                                 layoutClassSetsManager.getClassSetByName(rowAnnotationLabels[column - 1]);
@@ -268,8 +248,9 @@ public final class ExpressionLoader
                         {
                             VertexClass vc = layoutClasses.createClass(annotation);
                             layoutClasses.setClass(vertex, vc);
-                            AnnotationTypeManagerBG.getInstanceSingleton().add(vertex.getVertexName(),
-                                    layoutClasses.getClassSetName(), vc.getName());
+                            if (isInNetwork)
+                                AnnotationTypeManagerBG.getInstanceSingleton().add(vertex.getVertexName(),
+                                        layoutClasses.getClassSetName(), vc.getName());
                         }
                     }
                 }
@@ -286,6 +267,7 @@ public final class ExpressionLoader
         }
         finally
         {
+            expressionMatrixReader = null;
             AnnotationTypeManagerBG.getInstanceSingleton().setChipGeneCount(chipGeneCount);
             layoutProgressBarDialog.endProgressBar();
         }
@@ -0,0 +1,476 @@
+package org.BioLayoutExpress3D.Expression;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.concurrent.atomic.*;
+import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
+
+/**
+*
+* The ExpressionMatrixReader class reads a tab delimited expression matrix through memory-mapped, line aligned chunks processed in parallel.
+* A first pass counts the lines of each chunk, a second pass tokenizes the chunks & parses the numeric cells straight into the ExpressionData array.
+* Only the header rows & annotation columns are kept as strings, so the whole table is never materialised.
+* The cells are handled as the TextDelimitedMatrix class does: leading & trailing quotes are stripped, short rows are padded with empty cells
+* (trailing empty cells are ignored) & rows with excess columns are an error.
+*
+* @see org.BioLayoutExpress3D.Expression.ExpressionLoader
+* @version 3.0.0.0
+*
+*/
+
+public final class ExpressionMatrixReader
+{
+    private static final int CHUNK_SIZE = 1 << 23;
+    private static final int LINE_SEARCH_BUFFER_SIZE = 1 << 16;
+    private static final byte DELIMITER = '\t';
+    private static final int MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+    private static final float[] EXACT_FLOAT_POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+    private final File file;
+    private final int firstDataColumn;
+    private final int firstDataRow;
+    private final boolean transpose;
+    private final Charset charset = Charset.defaultCharset();
+
+    private long[] chunkStarts = null;
+    private int[] chunkFirstLines = null;
+    private int numberOfChunks = 0;
+    private int numberOfLines = 0;
+    private int numberOfCells = 0;
+
+    private String[][] headerRowValues = null;
+    private String[][] annotationColumnValues = null;
+
+    private volatile boolean failed = false;
+    public String reasonForFailure = "";
+
+    /**
+    *  The constructor of the ExpressionMatrixReader class.
+    */
+    public ExpressionMatrixReader(File file, int firstDataColumn, int firstDataRow, boolean transpose)
+    {
+        this.file = file;
+        this.firstDataColumn = firstDataColumn;
+        this.firstDataRow = firstDataRow;
+        this.transpose = transpose;
+    }
+
+    /**
+    *  Splits the file in line aligned chunks, counts the lines of each chunk in parallel & checks the number of columns of each line against the first one.
+    */
+    public boolean scan(LayoutProgressBar layoutProgressBarDialog) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel fileChannel = randomAccessFile.getChannel();
+            long fileSize = fileChannel.size();
+
+            int maxNumberOfChunks = (int)( (fileSize + CHUNK_SIZE - 1) / CHUNK_SIZE );
+            chunkStarts = new long[maxNumberOfChunks + 1];
+            numberOfChunks = 0;
+            long chunkStart = 0;
+            while (chunkStart < fileSize)
+            {
+                chunkStarts[numberOfChunks++] = chunkStart;
+                chunkStart = findNextLineStart(fileChannel, chunkStart + CHUNK_SIZE, fileSize);
+            }
+            chunkStarts[numberOfChunks] = fileSize;
+
+            numberOfCells = (numberOfChunks > 0) ? countFirstLineCells(fileChannel) : 0;
+
+            final int[] chunkNumberOfLines = new int[numberOfChunks];
+            final int[] chunkFirstExcessLines = new int[numberOfChunks];
+            final int[] chunkExcessColumns = new int[numberOfChunks];
+            boolean isCompleted = LayoutComputeService.getInstance().execute(new LayoutComputeService.RangeKernel()
+                {
+
+                    @Override
+                    public void process(int startIndex, int endIndex)
+                    {
+                        for (int chunk = startIndex; chunk < endIndex; chunk++)
+                            chunkNumberOfLines[chunk] = countChunkLines(fileChannel, chunk, chunkFirstExcessLines, chunkExcessColumns);
+                    }
+
+
+                }, numberOfChunks, 1, layoutProgressBarDialog);
+
+            chunkFirstLines = new int[numberOfChunks + 1];
+            for (int chunk = 0; chunk < numberOfChunks; chunk++)
+            {
+                if ( !failed && (chunkExcessColumns[chunk] > 0) )
+                    setFailure(-1, -1, "Row " + (chunkFirstLines[chunk] + chunkFirstExcessLines[chunk] + 1) + " contains " + chunkExcessColumns[chunk] + " excess columns");
+                chunkFirstLines[chunk + 1] = chunkFirstLines[chunk] + chunkNumberOfLines[chunk];
+            }
+            numberOfLines = chunkFirstLines[numberOfChunks];
+
+            return isCompleted && !failed;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+    *  Tokenizes the chunks in parallel, parsing the numeric cells straight into the given ExpressionData (if not null) & keeping the header rows & annotation columns.
+    */
+    public boolean read(final ExpressionData expressionData, final LayoutProgressBar layoutProgressBarDialog) throws IOException
+    {
+        int numberOfRows = getNumberOfRows();
+        int numberOfColumns = getNumberOfColumns();
+        headerRowValues = new String[(firstDataRow < numberOfRows) ? firstDataRow : numberOfRows][numberOfColumns];
+        annotationColumnValues = new String[numberOfRows][(firstDataColumn < numberOfColumns) ? firstDataColumn : numberOfColumns];
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel fileChannel = randomAccessFile.getChannel();
+            final AtomicInteger numberOfChunksRead = new AtomicInteger();
+            boolean isCompleted = LayoutComputeService.getInstance().execute(new LayoutComputeService.RangeKernel()
+                {
+
+                    @Override
+                    public void process(int startIndex, int endIndex)
+                    {
+                        for (int chunk = startIndex; chunk < endIndex; chunk++)
+                        {
+                            readChunk(fileChannel, chunk, expressionData);
+                            layoutProgressBarDialog.incrementProgress( (100 * numberOfChunksRead.incrementAndGet()) / numberOfChunks );
+                        }
+                    }
+
+
+                }, numberOfChunks, 1, layoutProgressBarDialog);
+
+            return isCompleted && !failed;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+    *  Finds the start of the first line beginning at or after the given position.
+    */
+    private static long findNextLineStart(FileChannel fileChannel, long position, long fileSize) throws IOException
+    {
+        if (position >= fileSize)
+            return fileSize;
+
+        // the line containing the byte before the position may end right before it
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_SEARCH_BUFFER_SIZE);
+        long searchPosition = position - 1;
+        while (searchPosition < fileSize)
+        {
+            buffer.clear();
+            int bytesRead = fileChannel.read(buffer, searchPosition);
+            if (bytesRead <= 0)
+                break;
+
+            for (int i = 0; i < bytesRead; i++)
+                if (buffer.get(i) == '\n')
+                    return searchPosition + i + 1;
+
+            searchPosition += bytesRead;
+        }
+
+        return fileSize;
+    }
+
+    /**
+    *  Counts the cells of the first line, which all other lines are checked against.
+    */
+    private int countFirstLineCells(FileChannel fileChannel) throws IOException
+    {
+        long lineEnd = findNextLineStart(fileChannel, 1, chunkStarts[numberOfChunks]);
+        if (lineEnd - 1 > Integer.MAX_VALUE)
+            throw new IOException("ExpressionMatrixReader: first line too long");
+
+        byte[] bytes = new byte[(int)lineEnd];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while ( buffer.hasRemaining() && (fileChannel.read(buffer, buffer.position()) > 0) );
+
+        int lineLength = ( (bytes.length > 0) && (bytes[bytes.length - 1] == '\n') ) ? bytes.length - 1 : bytes.length;
+        return countLineCells( bytes, 0, trimLineEnd(bytes, 0, lineLength) );
+    }
+
+    /**
+    *  Maps a chunk & copies it to a byte array for the tokenizer.
+    */
+    private byte[] mapChunk(FileChannel fileChannel, int chunk) throws IOException
+    {
+        long chunkSize = chunkStarts[chunk + 1] - chunkStarts[chunk];
+        if (chunkSize > Integer.MAX_VALUE)
+            throw new IOException("ExpressionMatrixReader: line too long at byte " + chunkStarts[chunk]);
+
+        MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, chunkStarts[chunk], chunkSize);
+        byte[] bytes = new byte[(int)chunkSize];
+        mappedByteBuffer.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+    *  Counts the lines of a chunk, recording its first line with more cells than the first line of the file.
+    */
+    private int countChunkLines(FileChannel fileChannel, int chunk, int[] chunkFirstExcessLines, int[] chunkExcessColumns)
+    {
+        int numberOfChunkLines = 0;
+        try
+        {
+            byte[] bytes = mapChunk(fileChannel, chunk);
+            int lineStart = 0;
+            int lineEnd = 0;
+            int cells = 0;
+            while (lineStart < bytes.length)
+            {
+                lineEnd = lineStart;
+                while ( (lineEnd < bytes.length) && (bytes[lineEnd] != '\n') )
+                    lineEnd++;
+
+                cells = countLineCells( bytes, lineStart, trimLineEnd(bytes, lineStart, lineEnd) );
+                if ( (cells > numberOfCells) && (chunkExcessColumns[chunk] == 0) )
+                {
+                    chunkFirstExcessLines[chunk] = numberOfChunkLines;
+                    chunkExcessColumns[chunk] = cells - numberOfCells;
+                }
+
+                numberOfChunkLines++;
+                lineStart = lineEnd + 1;
+            }
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in ExpressionMatrixReader.countChunkLines():\n" + ioe.getMessage());
+            setFailure(-1, -1, ioe.toString());
+        }
+
+        return numberOfChunkLines;
+    }
+
+    /**
+    *  Tokenizes the lines of a chunk.
+    */
+    private void readChunk(FileChannel fileChannel, int chunk, ExpressionData expressionData)
+    {
+        try
+        {
+            byte[] bytes = mapChunk(fileChannel, chunk);
+            int line = chunkFirstLines[chunk];
+            int lineStart = 0;
+            int lineEnd = 0;
+            while ( (lineStart < bytes.length) && !failed )
+            {
+                lineEnd = lineStart;
+                while ( (lineEnd < bytes.length) && (bytes[lineEnd] != '\n') )
+                    lineEnd++;
+
+                storeLineCells(bytes, lineStart, trimLineEnd(bytes, lineStart, lineEnd), line++, expressionData);
+                lineStart = lineEnd + 1;
+            }
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in ExpressionMatrixReader.readChunk():\n" + ioe.getMessage());
+            setFailure(-1, -1, ioe.toString());
+        }
+    }
+
+    /**
+    *  Strips a trailing carriage return from a line.
+    */
+    private static int trimLineEnd(byte[] bytes, int lineStart, int lineEnd)
+    {
+        return ( (lineEnd > lineStart) && (bytes[lineEnd - 1] == '\r') ) ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+    *  Counts the cells of a line, ignoring trailing empty cells as String.split() does.
+    */
+    private static int countLineCells(byte[] bytes, int lineStart, int lineEnd)
+    {
+        int cells = 0;
+        int cell = 0;
+        int cellStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++)
+        {
+            if ( (i == lineEnd) || (bytes[i] == DELIMITER) )
+            {
+                if (i > cellStart)
+                    cells = cell + 1;
+                cell++;
+                cellStart = i + 1;
+            }
+        }
+
+        return (lineEnd == lineStart) ? 1 : cells;
+    }
+
+    /**
+    *  Stores the cells of a line, the numeric ones parsed into the ExpressionData array, the other ones as strings.
+    */
+    private void storeLineCells(byte[] bytes, int lineStart, int lineEnd, int line, ExpressionData expressionData)
+    {
+        int column = 0;
+        int cellStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++)
+        {
+            if ( (i == lineEnd) || (bytes[i] == DELIMITER) )
+            {
+                // only trailing empty cells are left, the excess columns were checked by scan()
+                if (column >= numberOfCells)
+                    return;
+
+                storeCell(bytes, cellStart, i, line, column++, expressionData);
+                cellStart = i + 1;
+            }
+        }
+
+        // short rows are padded with empty cells
+        for (; column < numberOfCells; column++)
+            storeCell(bytes, lineEnd, lineEnd, line, column, expressionData);
+    }
+
+    /**
+    *  Stores a cell after stripping its leading & trailing quotes.
+    */
+    private void storeCell(byte[] bytes, int cellStart, int cellEnd, int line, int column, ExpressionData expressionData)
+    {
+        if ( (cellEnd > cellStart) && (bytes[cellStart] == '"') )
+            cellStart++;
+        if ( (cellEnd > cellStart) && (bytes[cellEnd - 1] == '"') )
+            cellEnd--;
+
+        int row = (transpose) ? column : line;
+        int matrixColumn = (transpose) ? line : column;
+        if ( (row >= firstDataRow) && (matrixColumn >= firstDataColumn) )
+        {
+            if (expressionData == null)
+                return;
+
+            try
+            {
+                expressionData.setExpressionDataValue( row - firstDataRow, matrixColumn - firstDataColumn, parseFloat(bytes, cellStart, cellEnd) );
+            }
+            catch (NumberFormatException nfe)
+            {
+                if (DEBUG_BUILD) println("NumberFormatException in ExpressionMatrixReader.storeCell():\n" + nfe.getMessage());
+                setFailure(row, matrixColumn, nfe.toString());
+            }
+        }
+        else
+        {
+            String value = new String(bytes, cellStart, cellEnd - cellStart, charset);
+            if (row < firstDataRow)
+                headerRowValues[row][matrixColumn] = value;
+            if (matrixColumn < firstDataColumn)
+                annotationColumnValues[row][matrixColumn] = value;
+        }
+    }
+
+    /**
+    *  Parses a float, with a comma accepted as the decimal separator.
+    *  Plain decimals with up to 7 significant digits & up to 10 decimal places are parsed with a single exactly rounded float operation,
+    *  giving the same result as Float.parseFloat(), which is used for all other cases.
+    */
+    private static float parseFloat(byte[] bytes, int start, int end)
+    {
+        int i = start;
+        while ( (i < end) && (bytes[i] <= ' ') )
+            i++;
+        int trimmedEnd = end;
+        while ( (trimmedEnd > i) && (bytes[trimmedEnd - 1] <= ' ') )
+            trimmedEnd--;
+
+        boolean isNegative = false;
+        if ( (i < trimmedEnd) && ( (bytes[i] == '-') || (bytes[i] == '+') ) )
+            isNegative = (bytes[i++] == '-');
+
+        int mantissa = 0;
+        int decimalPlaces = -1;
+        int digits = 0;
+        byte value = 0;
+        for (; i < trimmedEnd; i++)
+        {
+            value = bytes[i];
+            if ( (value >= '0') && (value <= '9') )
+            {
+                if (mantissa >= MAX_EXACT_FLOAT_MANTISSA / 10)
+                    break;
+
+                mantissa = mantissa * 10 + (value - '0');
+                digits++;
+                if (decimalPlaces >= 0)
+                    decimalPlaces++;
+            }
+            else if ( ( (value == '.') || (value == ',') ) && (decimalPlaces < 0) )
+                decimalPlaces = 0;
+            else
+                break;
+        }
+
+        if ( (i == trimmedEnd) && (digits > 0) && (decimalPlaces < EXACT_FLOAT_POWERS_OF_TEN.length) )
+        {
+            float result = (decimalPlaces > 0) ? mantissa / EXACT_FLOAT_POWERS_OF_TEN[decimalPlaces] : (float)mantissa;
+            return (isNegative) ? -result : result;
+        }
+
+        return Float.parseFloat( new String(bytes, start, end - start, StandardCharsets.ISO_8859_1).replace(',', '.') );
+    }
+
+    /**
+    *  Records the first failure.
+    */
+    private synchronized void setFailure(int row, int column, String reason)
+    {
+        if (failed)
+            return;
+
+        failed = true;
+        if ( (row >= 0) && (column >= 0) )
+            reasonForFailure = "At row " + (row + 1) + ", column " + (column + 1) + ":\n";
+        reasonForFailure += reason;
+    }
+
+    /**
+    *  Gets the number of rows, after the transpose option.
+    */
+    public int getNumberOfRows()
+    {
+        return (transpose) ? numberOfCells : numberOfLines;
+    }
+
+    /**
+    *  Gets the number of columns, after the transpose option.
+    */
+    public int getNumberOfColumns()
+    {
+        return (transpose) ? numberOfLines : numberOfCells;
+    }
+
+    /**
+    *  Gets the number of lines of the file.
+    */
+    public int getNumberOfLines()
+    {
+        return numberOfLines;
+    }
+
+    /**
+    *  Gets a header row or annotation column value, after the transpose option. Data cells are not kept.
+    */
+    public String valueAt(int column, int row)
+    {
+        String value = (row < headerRowValues.length) ? headerRowValues[row][column] : annotationColumnValues[row][column];
+        return (value != null) ? value : "";
+    }
+
+
+}
@@ -58,6 +58,14 @@ public final class CoreSaver
         initComponents();
     }
 
+    /**
+    *  The constructor of the CoreSaver class for headless batch mode, without a layout frame & file chooser.
+    */
+    private CoreSaver(NetworkContainer nc)
+    {
+        this.nc = nc;
+    }
+
     private void initComponents()
     {
         fileNameExtensionFilterLayout = new FileNameExtensionFilter( "Save as a Layout File", SupportedOutputFileTypes.LAYOUT.toString().toLowerCase() );
@@ -275,15 +283,52 @@ public final class CoreSaver
 
     private void saveLayoutFile(File saveFile, boolean saveAllGraph)
     {
-        LayoutClassSetsManager layoutClassSetsManager = layoutFrame.getLayoutClassSetsManager();
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
-        FileWriter fileWriter = null;
+        LayoutProgressBar layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
 
         try
         {
             layoutProgressBarDialog.startProgressBar();
             layoutProgressBarDialog.prepareProgressBar(totalLines, (isCollapsed) ? "Now Saving Collapsed Layout File..." : "Now Saving Layout File...");
 
+            writeLayoutFile(saveFile, layoutProgressBarDialog, layoutFrame.getLayoutClassSetsManager());
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD) println("IOException in CoreSaver.saveLayoutFile():\n" + ioe.getMessage());
+
+            layoutProgressBarDialog.endProgressBar();
+            layoutProgressBarDialog.stopProgressBar();
+            JOptionPane.showMessageDialog(layoutFrame, "Something went wrong while saving the file:\n" + ioe.getMessage() + "\nPlease try again with a different file name/path/drive.", "Error with saving the file!", JOptionPane.ERROR_MESSAGE);
+            save(saveAllGraph);
+        }
+        finally
+        {
+            layoutProgressBarDialog.endProgressBar();
+            layoutProgressBarDialog.stopProgressBar();
+        }
+    }
+
+    /**
+    *  Saves the given graph nodes & graph edges of the network container as a layout file without any GUI (headless batch mode).
+    */
+    public static void saveLayoutFile(NetworkContainer nc, Collection<GraphNode> allNodesToSave, Collection<GraphEdge> allEdgesToSave, File saveFile) throws IOException
+    {
+        CoreSaver coreSaver = new CoreSaver(nc);
+        coreSaver.allNodesToSave = allNodesToSave;
+        coreSaver.allEdgesToSave = allEdgesToSave;
+        coreSaver.totalLines = allNodesToSave.size() + allEdgesToSave.size();
+        coreSaver.writeLayoutFile( saveFile, HeadlessLayoutProgressBar.getHeadlessLayoutProgressBarSingleton(), nc.getLayoutClassSetsManager() );
+    }
+
+    /**
+    *  Writes the layout file, reporting to the no-op HeadlessLayoutProgressBar in headless batch mode.
+    */
+    private void writeLayoutFile(File saveFile, LayoutProgressBar layoutProgressBarDialog, LayoutClassSetsManager layoutClassSetsManager) throws IOException
+    {
+        FileWriter fileWriter = null;
+
+        try
+        {
             fileWriter = new FileWriter(saveFile);
             fileWriter.write("//" + VERSION + " " + " Layout File\n");
             if ( DATA_TYPE.equals(DataTypes.EXPRESSION) )
@@ -307,15 +352,6 @@ public final class CoreSaver
             fileWriter.write("//DEFAULTSEARCH\t" + ( (CUSTOM_SEARCH) ? SEARCH_URL.getUrl(): SEARCH_URL.getName() ) + "\n");
             fileWriter.flush();
         }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD) println("IOException in CoreSaver.saveLayoutFile():\n" + ioe.getMessage());
-
-            layoutProgressBarDialog.endProgressBar();
-            layoutProgressBarDialog.stopProgressBar();
-            JOptionPane.showMessageDialog(layoutFrame, "Something went wrong while saving the file:\n" + ioe.getMessage() + "\nPlease try again with a different file name/path/drive.", "Error with saving the file!", JOptionPane.ERROR_MESSAGE);
-            save(saveAllGraph);
-        }
         finally
         {
             try
@@ -326,17 +362,12 @@ public final class CoreSaver
             {
                 if (DEBUG_BUILD) println("IOException while closing streams in CoreSaver.saveLayoutFile():\n" + ioe.getMessage());
             }
-            finally
-            {
-                layoutProgressBarDialog.endProgressBar();
-                layoutProgressBarDialog.stopProgressBar();
-            }
         }
     }
 
     private void saveTGFFile(File saveFile, boolean saveAllGraph)
     {
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
         FileWriter fileWriter = null;
 
         try
@@ -377,7 +408,7 @@ public final class CoreSaver
         }
     }
 
-    private void savePairWiseData(LayoutProgressBarDialog layoutProgressBarDialog, FileWriter fileWriter) throws IOException
+    private void savePairWiseData(LayoutProgressBar layoutProgressBarDialog, FileWriter fileWriter) throws IOException
     {
         Edge edge = null;
         // get rid of redundant multiple lines with the same edge pair names when in collapsed mode so as to avoid redundant edges using a HashSet
@@ -480,7 +511,7 @@ public final class CoreSaver
         }
     }
 
-    private void saveAllNodesAndEdgesData(LayoutProgressBarDialog layoutProgressBarDialog, LayoutClassSetsManager layoutClassSetsManager, FileWriter fileWriter) throws IOException
+    private void saveAllNodesAndEdgesData(LayoutProgressBar layoutProgressBarDialog, LayoutClassSetsManager layoutClassSetsManager, FileWriter fileWriter) throws IOException
     {
         String[] nodeDescription = null;
         VertexClass vertexClass = null;
@@ -8,6 +8,8 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import javax.swing.*;
 import javax.swing.filechooser.*;
@@ -804,19 +806,6 @@ public final class ExportSbgn
         return glyph;
     }
 
-    private Glyph findGlyphWithId(Map map, String id)
-    {
-        for (Glyph glyph : map.getGlyph())
-        {
-            if (glyph.getId().equals(id))
-            {
-                return glyph;
-            }
-        }
-
-        return null;
-    }
-
     // We need a way to classify glyphs into groups for the purpose of adding clone markers; this is it
     private String metaClassStringForGlyph(Glyph glyph)
     {
@@ -875,31 +864,34 @@ public final class ExportSbgn
         return s;
     }
 
-    private List<Glyph> glyphsToNotClone = new ArrayList<Glyph>();
+    private static final java.util.Set<String> CLONEABLE_CLAZZES = new HashSet<String>(
+            Arrays.asList(
+            "unspecified entity",
+            "simple chemical",
+            "perturbing agent",
+            "phenotype",
+            "macromolecule",
+            "nucleic acid feature",
+            "simple chemical multimer",
+            "macromolecule multimer",
+            "nucleic acid feature multimer",
+            "complex",
+            "complex multimer"));
+
+    // Glyphs don't override equals/hashCode, so this is an identity set
+    private java.util.Set<Glyph> glyphsToNotClone = new HashSet<Glyph>();
 
     private boolean canBeCloned(Glyph glyph)
     {
-        List<String> cloneableClazzes = new ArrayList<String>(
-                Arrays.asList(
-                "unspecified entity",
-                "simple chemical",
-                "perturbing agent",
-                "phenotype",
-                "macromolecule",
-                "nucleic acid feature",
-                "simple chemical multimer",
-                "macromolecule multimer",
-                "nucleic acid feature multimer",
-                "complex",
-                "complex multimer"));
         String clazz = glyph.getClazz();
 
-        return cloneableClazzes.contains(clazz) && !glyphsToNotClone.contains(glyph);
+        return CLONEABLE_CLAZZES.contains(clazz) && !glyphsToNotClone.contains(glyph);
     }
 
     private void addCloneMarkers(Map map)
     {
-        java.util.Map<String, List<String>> clonedGlyphs = new HashMap<String, List<String>>();
+        // Group the glyphs themselves rather than their ids, so marking them needs no lookup
+        java.util.Map<String, List<Glyph>> clonedGlyphs = new HashMap<String, List<Glyph>>();
 
         for (Glyph glyph : map.getGlyph())
         {
@@ -912,15 +904,15 @@ public final class ExportSbgn
 
             if (!clonedGlyphs.containsKey(metaClass))
             {
-                clonedGlyphs.put(metaClass, new ArrayList<String>());
+                clonedGlyphs.put(metaClass, new ArrayList<Glyph>());
             }
 
-            clonedGlyphs.get(metaClass).add(glyph.getId());
+            clonedGlyphs.get(metaClass).add(glyph);
         }
 
-        for (java.util.Map.Entry<String, List<String>> clonedGlyph : clonedGlyphs.entrySet())
+        for (java.util.Map.Entry<String, List<Glyph>> clonedGlyph : clonedGlyphs.entrySet())
         {
-            List<String> clones = clonedGlyph.getValue();
+            List<Glyph> clones = clonedGlyph.getValue();
 
             if (clones.size() > 1)
             {
@@ -931,13 +923,9 @@ public final class ExportSbgn
 
                 // FIXME: for particular classes we need a label as well?
 
-                for (String id : clones)
+                for (Glyph glyph : clones)
                 {
-                    Glyph glyph = findGlyphWithId(map, id);
-                    if (glyph != null)
-                    {
-                        glyph.setClone(new Glyph.Clone());
-                    }
+                    glyph.setClone(new Glyph.Clone());
                 }
             }
         }
@@ -966,6 +954,13 @@ public final class ExportSbgn
             }
         }
 
+        if (compartments.isEmpty())
+        {
+            return;
+        }
+
+        CompartmentGrid compartmentGrid = new CompartmentGrid(compartments);
+
         for (Glyph glyph : map.getGlyph())
         {
             if (glyph.getClazz().equals("compartment"))
@@ -973,7 +968,8 @@ public final class ExportSbgn
                 continue;
             }
 
-            for (Glyph compartment : compartments)
+            // Only the compartments overlapping the glyph's corner can bound it
+            for (Glyph compartment : compartmentGrid.compartmentsAt(glyph.getBbox().getX(), glyph.getBbox().getY()))
             {
                 if (glyph.getCompartmentRef() != null)
                 {
@@ -994,6 +990,91 @@ public final class ExportSbgn
         }
     }
 
+    // A uniform grid over the compartment bounding boxes; each cell lists, in their original
+    // order, the compartments overlapping it, so finding the compartments that may contain a
+    // point is a constant time lookup instead of a scan over all of them
+    private static final class CompartmentGrid
+    {
+        private final float minX;
+        private final float minY;
+        private final float cellWidth;
+        private final float cellHeight;
+        private final int cellsPerSide;
+        private final List<List<Glyph>> cells;
+
+        private CompartmentGrid(List<Glyph> compartments)
+        {
+            float maxX = -Float.MAX_VALUE;
+            float maxY = -Float.MAX_VALUE;
+            float lowX = Float.MAX_VALUE;
+            float lowY = Float.MAX_VALUE;
+
+            for (Glyph compartment : compartments)
+            {
+                Bbox bbox = compartment.getBbox();
+                lowX = java.lang.Math.min(lowX, bbox.getX());
+                lowY = java.lang.Math.min(lowY, bbox.getY());
+                maxX = java.lang.Math.max(maxX, bbox.getX() + bbox.getW());
+                maxY = java.lang.Math.max(maxY, bbox.getY() + bbox.getH());
+            }
+
+            minX = lowX;
+            minY = lowY;
+            cellsPerSide = java.lang.Math.max(1, (int)java.lang.Math.ceil(java.lang.Math.sqrt(compartments.size())));
+            cellWidth = java.lang.Math.max((maxX - minX) / cellsPerSide, Float.MIN_NORMAL);
+            cellHeight = java.lang.Math.max((maxY - minY) / cellsPerSide, Float.MIN_NORMAL);
+
+            cells = new ArrayList<List<Glyph>>(cellsPerSide * cellsPerSide);
+            for (int i = 0; i < cellsPerSide * cellsPerSide; i++)
+            {
+                cells.add(new ArrayList<Glyph>(0));
+            }
+
+            for (Glyph compartment : compartments)
+            {
+                Bbox bbox = compartment.getBbox();
+                int left = column(bbox.getX());
+                int right = column(bbox.getX() + bbox.getW());
+                int top = row(bbox.getY());
+                int bottom = row(bbox.getY() + bbox.getH());
+
+                for (int row = top; row <= bottom; row++)
+                {
+                    for (int column = left; column <= right; column++)
+                    {
+                        cells.get(row * cellsPerSide + column).add(compartment);
+                    }
+                }
+            }
+        }
+
+        private int column(float x)
+        {
+            return cell((x - minX) / cellWidth);
+        }
+
+        private int row(float y)
+        {
+            return cell((y - minY) / cellHeight);
+        }
+
+        // Clamped, so points outside the grid fall in its border cells
+        private int cell(float position)
+        {
+            if (!(position > 0.0f))
+            {
+                return 0;
+            }
+
+            return java.lang.Math.min((int)position, cellsPerSide - 1);
+        }
+
+        private List<Glyph> compartmentsAt(float x, float y)
+        {
+            return cells.get(row(y) * cellsPerSide + column(x));
+        }
+    }
+
     private Point2D.Float getGlyphArcOutlyingPoint(Glyph glyph, Arc arc)
     {
         List<Arc.Next> nextList = arc.getNext();
@@ -1237,6 +1318,36 @@ public final class ExportSbgn
             }
         }
 
+        if (submaps.isEmpty())
+        {
+            return;
+        }
+
+        // Index the arcs by submap in one pass instead of scanning all arcs per submap;
+        // tags only ever replace the submap being processed, so the index stays valid
+        java.util.Map<Glyph, List<Arc>> arcsGoingToSubmap = new IdentityHashMap<Glyph, List<Arc>>();
+        java.util.Map<Glyph, List<Arc>> arcsComingFromSubmap = new IdentityHashMap<Glyph, List<Arc>>();
+        for (Glyph submap : submaps)
+        {
+            arcsGoingToSubmap.put(submap, new ArrayList<Arc>());
+            arcsComingFromSubmap.put(submap, new ArrayList<Arc>());
+        }
+
+        for (Arc arc : map.getArc())
+        {
+            List<Arc> goingTo = arcsGoingToSubmap.get(arc.getTarget());
+            if (goingTo != null)
+            {
+                goingTo.add(arc);
+            }
+
+            List<Arc> comingFrom = arcsComingFromSubmap.get(arc.getSource());
+            if (comingFrom != null)
+            {
+                comingFrom.add(arc);
+            }
+        }
+
         for (Glyph submap : submaps)
         {
             if (!submap.getClazz().equals("submap"))
@@ -1246,8 +1357,8 @@ public final class ExportSbgn
 
             List<Arc> incidentArcs = new ArrayList<Arc>();
 
-            incidentArcs.addAll(arcsGoingTo(submap, map.getArc()));
-            incidentArcs.addAll(arcsComingFrom(submap, map.getArc()));
+            incidentArcs.addAll(arcsGoingToSubmap.get(submap));
+            incidentArcs.addAll(arcsComingFromSubmap.get(submap));
 
             List<Arc> leftArcs = new ArrayList<Arc>();
             List<Arc> rightArcs = new ArrayList<Arc>();
@@ -1897,25 +2008,14 @@ public final class ExportSbgn
         return glyph;
     }
 
-    private boolean listContainsGlyphWithId(List<Glyph> glyphs, String id)
-    {
-        for (Glyph glyph : glyphs)
-        {
-            if (glyph.getId().equals(id))
-            {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private void makeGlyphIdUnique(Glyph glyph, List<Glyph> existingGlyphs)
+    private void makeGlyphIdUnique(Glyph glyph, java.util.Set<String> existingGlyphIds)
     {
-        while (listContainsGlyphWithId(existingGlyphs, glyph.getId()))
+        while (existingGlyphIds.contains(glyph.getId()))
         {
             glyph.setId(glyph.getId() + "_");
         }
+
+        existingGlyphIds.add(glyph.getId());
     }
 
     private Sbgn translateMepnToSbgn(Graph in)
@@ -1925,6 +2025,7 @@ public final class ExportSbgn
         sbgn.setMap(map);
         map.setLanguage("process description");
         java.util.Map<Integer,Glyph> sbgnGlyphs = new HashMap<Integer,Glyph>();
+        java.util.Set<String> glyphIds = new HashSet<String>();
         spnGlyphIds.clear();
         spnArcIds.clear();
         glyphsToNotClone.clear();
@@ -1937,6 +2038,7 @@ public final class ExportSbgn
                 Glyph glyph = translateContainerToSbgnGlyph(componentContainer, containerOrder);
 
                 map.getGlyph().add(glyph);
+                glyphIds.add(glyph.getId());
                 containerOrder++;
             }
         }
@@ -1945,7 +2047,7 @@ public final class ExportSbgn
         {
             Glyph glyph = translateNodeToSbgnGlyph(graphNode);
 
-            makeGlyphIdUnique(glyph, map.getGlyph());
+            makeGlyphIdUnique(glyph, glyphIds);
             map.getGlyph().add(glyph);
             sbgnGlyphs.put(graphNode.getNodeID(), glyph);
         }
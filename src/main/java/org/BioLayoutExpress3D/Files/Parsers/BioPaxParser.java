@@ -175,6 +175,7 @@ public final class BioPaxParser extends CoreParser
                     }
                 }
                 nc.getVerticesMap().put(vertex.getVertexName() + "#" + setIndex, vertex); //create a unique name by numbering the vertices
+                nc.verticesModified();
 
                 entityVertexMap.put(entity, vertex);
 
@@ -1,9 +1,10 @@
 package org.BioLayoutExpress3D.Files.Parsers;
 
 import java.io.*;
-import java.util.HashSet;
+import java.util.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
 import org.BioLayoutExpress3D.Expression.*;
 import org.BioLayoutExpress3D.Network.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
@@ -19,7 +20,12 @@ import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 
 public class ExpressionParser extends CoreParser
 {
-    private ObjectInputStream iistream = null;
+    private static final int NUMBER_OF_ROWS_PER_SCAN_CHUNK = 64;
+    private static final int NUMBER_OF_ROWS_PER_PARSE_BLOCK = 4096;
+    // bytes per stored correlation whilst building the correlation edge list, parse arrays, sorted arrays, sort keys & edge references included
+    private static final long BYTES_PER_KEPT_CORRELATION = 40L;
+
+    private CorrelationFileReader correlationFileReader = null;
     File file = null;
     private ExpressionData expressionData = null;
     private int[][] counts = null;
@@ -35,210 +41,231 @@ public class ExpressionParser extends CoreParser
     @Override
     public boolean init(File file, String fileExtension)
     {
+        this.file = file;
         try
         {
-            this.file = file;
-            iistream = new ObjectInputStream( new BufferedInputStream( new FileInputStream(file) ) );
+            correlationFileReader = new CorrelationFileReader(file);
 
             return true;
         }
-        catch (Exception exc)
+        catch (IOException ioe)
         {
-            try
-            {
-                iistream.close();
-            }
-            catch (IOException ioe)
-            {
-                if (DEBUG_BUILD) println("IOException while closing streamers in ExpressionParser.init():\n" + ioe.getMessage());
-            }
-            finally
-            {
-
-            }
+            if (DEBUG_BUILD) println("IOException in ExpressionParser.init():\n" + ioe.getMessage());
+            correlationFileReader = null;
 
             return false;
         }
     }
 
+    /**
+    *  Opens the correlation file again if it was closed by a previous parse() or close().
+    */
+    private boolean reopen()
+    {
+        return (correlationFileReader != null) || init(file, "");
+    }
+
     @Override
     public boolean parse()
     {
-        int counter = 0;
-        HashSet<Integer> filterSet = new HashSet<Integer>();
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        // no layout frame & so the no-op progress bar in headless batch mode
+        LayoutProgressBar layoutProgressBarDialog = (layoutFrame != null) ? layoutFrame.getLayoutProgressBar() : HeadlessLayoutProgressBar.getHeadlessLayoutProgressBarSingleton();
         layoutProgressBarDialog.prepareProgressBar(100, "Reading in Graph Data:");
         layoutProgressBarDialog.startProgressBar();
 
         isSuccessful = false;
         nc.setOptimized(false);
 
+        if ( !reopen() )
+        {
+            layoutProgressBarDialog.endProgressBar();
+            return false;
+        }
+
         try
         {
-            iistream.readInt();    // magic number
-
-            int nodeId = 0;
-            int percent = 0;
-            String nodeOne = "";
-            String nodeTwo = "";
-            int otherId = 0;
-            float weight = 0.0f;
-            while (iistream.available() != 0)
+            // rows are decoded in parallel a block at a time & appended in row order from this thread only.
+            // If they fit in memory, all the stored correlations are kept in the correlation edge list so later threshold changes need no reparse,
+            // otherwise only the correlations above the current threshold are added to the network, skipping the rows with none through the row index
+            final int totalRows = correlationFileReader.getTotalRows();
+            final int[][] blockColumns = new int[NUMBER_OF_ROWS_PER_PARSE_BLOCK][];
+            final float[][] blockCorrelations = new float[NUMBER_OF_ROWS_PER_PARSE_BLOCK][];
+            final int[] blockSizes = new int[NUMBER_OF_ROWS_PER_PARSE_BLOCK];
+            long numberOfStoredCorrelations = correlationFileReader.getNumberOfCorrelations();
+            final boolean keepAllCorrelations = canKeepCorrelationsInMemory(numberOfStoredCorrelations);
+            final float readThreshold = (keepAllCorrelations) ? Float.NEGATIVE_INFINITY : CURRENT_CORRELATION_THRESHOLD;
+            int[] rows = (keepAllCorrelations) ? new int[(int)numberOfStoredCorrelations] : null;
+            int[] columns = (keepAllCorrelations) ? new int[(int)numberOfStoredCorrelations] : null;
+            float[] correlations = (keepAllCorrelations) ? new float[(int)numberOfStoredCorrelations] : null;
+            int numberOfCorrelations = 0;
+            LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
+            for (int blockStartRow = 0; blockStartRow < totalRows; blockStartRow += NUMBER_OF_ROWS_PER_PARSE_BLOCK)
             {
-                nodeId = iistream.readInt();
-                percent = (int)( 100.0f * ( (float)counter / (float)expressionData.getTotalRows() ) );
+                final int startRow = blockStartRow;
+                int numberOfBlockRows = (startRow + NUMBER_OF_ROWS_PER_PARSE_BLOCK < totalRows) ? NUMBER_OF_ROWS_PER_PARSE_BLOCK : totalRows - startRow;
+                layoutComputeService.execute(new LayoutComputeService.RangeKernel()
+                    {
+
+                        @Override
+                        public void process(int startIndex, int endIndex)
+                        {
+                            for (int i = startIndex; i < endIndex; i++)
+                            {
+                                int row = startRow + i;
+                                blockSizes[i] = 0;
+                                if ( CURRENT_FILTER_SET.contains(row) || (correlationFileReader.getRowSize(row) == 0) )
+                                    continue;
+                                if ( !keepAllCorrelations && (correlationFileReader.getRowMaxCorrelation(row) <= readThreshold) )
+                                    continue;
+
+                                int rowSize = correlationFileReader.getRowSize(row);
+                                blockColumns[i] = new int[rowSize];
+                                blockCorrelations[i] = new float[rowSize];
+                                blockSizes[i] = correlationFileReader.readRow(row, readThreshold, blockColumns[i], blockCorrelations[i]);
+                            }
+                        }
+
 
-                layoutProgressBarDialog.incrementProgress(percent);
+                    }, numberOfBlockRows, NUMBER_OF_ROWS_PER_SCAN_CHUNK, null);
 
-                nodeOne = expressionData.getRowID(nodeId);
-                for (;;) // while (true)
+                for (int i = 0; i < numberOfBlockRows; i++)
                 {
-                    otherId = iistream.readInt();
-                    if (nodeId == otherId)
+                    if (keepAllCorrelations)
                     {
-                        break;
-                    }
-                    else
-                    {
-                        weight = iistream.readFloat();
-                        if (weight > CURRENT_CORRELATION_THRESHOLD)
+                        for (int k = 0; k < blockSizes[i]; k++)
                         {
-                            boolean filterOne = CURRENT_FILTER_SET.contains(nodeId);
-                            boolean filterTwo = CURRENT_FILTER_SET.contains(otherId);
-
-                            if (!filterOne && !filterTwo)
+                            if ( !CURRENT_FILTER_SET.contains(blockColumns[i][k]) )
                             {
-                                nodeTwo = expressionData.getRowID(otherId);
-                                nc.addNetworkConnection(nodeOne, nodeTwo, weight);
+                                rows[numberOfCorrelations] = startRow + i;
+                                columns[numberOfCorrelations] = blockColumns[i][k];
+                                correlations[numberOfCorrelations++] = blockCorrelations[i][k];
                             }
                         }
                     }
+                    else if (blockSizes[i] > 0)
+                    {
+                        String nodeOne = expressionData.getRowID(startRow + i);
+                        for (int k = 0; k < blockSizes[i]; k++)
+                            if ( !CURRENT_FILTER_SET.contains(blockColumns[i][k]) )
+                                nc.addNetworkConnection(nodeOne, expressionData.getRowID(blockColumns[i][k]), blockCorrelations[i][k]);
+                    }
+
+                    blockColumns[i] = null;
+                    blockCorrelations[i] = null;
                 }
 
-                counter++;
+                layoutProgressBarDialog.incrementProgress( (int)( 100.0f * ( (float)(startRow + numberOfBlockRows) / (float)totalRows ) ) );
+            }
+
+            if (keepAllCorrelations)
+            {
+                CorrelationEdgeList correlationEdgeList = new CorrelationEdgeList(expressionData, correlationFileReader.getThreshold(), rows, columns, correlations, numberOfCorrelations);
+                correlationEdgeList.setThreshold(nc, CURRENT_CORRELATION_THRESHOLD);
+                expressionData.setCorrelationEdgeList(correlationEdgeList);
+            }
+            else
+            {
+                // no re-thresholding without the kept correlations, a threshold change needs a reload
+                expressionData.setCorrelationEdgeList(null);
             }
 
             WEIGHTED_EDGES = true;
 
             isSuccessful = true;
         }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD) println("IOException in ExpressionParser.parse():\n" + ioe.getMessage());
-        }
         finally
         {
-            try
-            {
-                iistream.close();
-            }
-            catch (IOException ioe)
-            {
-                if (DEBUG_BUILD) println("IOException while closing streams in ExpressionParser.parse():\n" + ioe.getMessage());
-            }
-            finally
-            {
-                layoutProgressBarDialog.endProgressBar();
-            }
+            close();
+            layoutProgressBarDialog.endProgressBar();
         }
 
         return isSuccessful;
     }
 
+    /**
+    *  Checks whether all the stored correlations fit in an int indexed correlation edge list within a quarter of the maximum heap size.
+    */
+    private static boolean canKeepCorrelationsInMemory(long numberOfStoredCorrelations)
+    {
+        long maximumNumberOfKeptCorrelations = Math.min( Integer.MAX_VALUE - 8L, Runtime.getRuntime().maxMemory() / (4L * BYTES_PER_KEPT_CORRELATION) );
+
+        return numberOfStoredCorrelations <= maximumNumberOfKeptCorrelations;
+    }
+
     public void close()
     {
-        try
-        {
-            iistream.close();
-        }
-        catch (IOException ioe)
+        if (correlationFileReader != null)
         {
-            if (DEBUG_BUILD) println("IOException while closing streams in ExpressionParser.close():\n" + ioe.getMessage());
+            correlationFileReader.close();
+            correlationFileReader = null;
         }
     }
 
+    /**
+    *  Scans the correlation file for the per row correlation histograms in a single parallel pass.
+    */
     public void scan()
     {
-        try
-        {
-            iistream.readInt();    // magic number
+        if ( !reopen() )
+            return;
 
-            int nodeId = 0;
-            int otherId = 0;
-            int index = 0;
-            float weight = 0.0f;
-            while (iistream.available() != 0)
+        final int totalRows = correlationFileReader.getTotalRows();
+        final int maximumRowSize = correlationFileReader.getMaximumRowSize();
+        LayoutComputeService.getInstance().execute(new LayoutComputeService.RangeKernel()
             {
-                nodeId = iistream.readInt();
 
-                for (;;) // while (true)
+                @Override
+                public void process(int startIndex, int endIndex)
                 {
-                    otherId = iistream.readInt();
-                    if (nodeId == otherId)
-                    {
-                        break;
-                    }
-                    else
+                    int[] columns = new int[maximumRowSize];
+                    float[] correlations = new float[maximumRowSize];
+                    int[] rowCounts = new int[counts[0].length];
+                    int index = 0;
+                    for (int row = startIndex; row < endIndex; row++)
                     {
-                        weight = iistream.readFloat();
-                        index = (int)Math.floor(100.0f * weight);
+                        if ( CURRENT_FILTER_SET.contains(row) )
+                            continue;
 
-                        boolean filterOne = CURRENT_FILTER_SET.contains(nodeId);
-                        boolean filterTwo = CURRENT_FILTER_SET.contains(otherId);
+                        int rowSize = correlationFileReader.readRow(row, Float.NEGATIVE_INFINITY, columns, correlations);
+                        if (rowSize == 0)
+                            continue;
 
-                        if (!filterOne && !filterTwo)
+                        Arrays.fill(rowCounts, 0);
+                        for (int k = 0; k < rowSize; k++)
                         {
-                            counts[nodeId][index]++;
-                            counts[otherId][index]++;
+                            if ( CURRENT_FILTER_SET.contains(columns[k]) )
+                                continue;
+
+                            index = (int)Math.floor(100.0f * correlations[k]);
+                            rowCounts[index]++;
+                            synchronized (counts[columns[k]])
+                            {
+                                counts[columns[k]][index]++;
+                            }
+                        }
+
+                        synchronized (counts[row])
+                        {
+                            for (int k = 0; k < rowCounts.length; k++)
+                                counts[row][k] += rowCounts[k];
                         }
                     }
                 }
-            }
-        }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD) println("IOException in ExpressionParser.scan():\n" + ioe.getMessage());
-        }
+
+
+            }, totalRows, NUMBER_OF_ROWS_PER_SCAN_CHUNK, null);
     }
 
     public void rescan()
     {
-        try
-        {
-            counts = expressionData.clearCounts();
-            iistream = new ObjectInputStream( new BufferedInputStream( new FileInputStream(file) ) );
-            scan();
-        }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("IOException in ExpressionParser.rescan():\n" + ioe.getMessage());
-            }
-        }
+        counts = expressionData.clearCounts();
+        scan();
     }
 
     public boolean checkFile()
     {
-        int magicNumber = 0;
-
-        try
-        {
-            magicNumber = iistream.readInt();
-        }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD) println("IOException in ExpressionParser.check_file():\n" + ioe.getMessage());
-
-            return false;
-        }
-
-        if ( magicNumber == ExpressionData.FILE_MAGIC_NUMBER)
-        {
-            return true;
-        }
-
-        return false;
+        // the CorrelationFileReader only opens files of the current magic number & version
+        return (correlationFileReader != null);
     }
 
     public int getNodeCount()
@@ -262,6 +289,8 @@ public class ExpressionParser extends CoreParser
                 nc.getVertices().remove(vertex);
             }
         }
+
+        nc.verticesModified();
     }
 
 
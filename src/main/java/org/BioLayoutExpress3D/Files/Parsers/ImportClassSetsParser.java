@@ -7,7 +7,6 @@ import java.util.*;
 import javax.swing.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
-import org.BioLayoutExpress3D.DataStructures.*;
 import org.BioLayoutExpress3D.Files.*;
 import org.BioLayoutExpress3D.Files.Dialogs.*;
 import org.BioLayoutExpress3D.Network.*;
@@ -377,7 +376,7 @@ public final class ImportClassSetsParser extends CoreParser implements ImportCla
     {
         if ( !selectedClassSets.isEmpty() )
         {
-            Set<Tuple2<String, Vertex>> allCachedNames = preCacheAllNames(!selectedDelimiter.isEmpty() && !selectedMatchFullName, !selectedMatchCase);
+            NodeNameIndex allCachedNames = preCacheAllNames(!selectedMatchCase);
 
             LayoutClasses lc = null;
             VertexClass vc = null;
@@ -416,88 +415,29 @@ public final class ImportClassSetsParser extends CoreParser implements ImportCla
     }
 
     /**
-    *  Pre-caches all names.
+    *  Pre-caches all names (in lower case if needed) in a search index, built once per import for speed efficiency in internal loops.
     */
-    private Set<Tuple2<String, Vertex>> preCacheAllNames(boolean createDelimiterDataStructure, boolean createLowerCaseDataStructure)
+    private NodeNameIndex preCacheAllNames(boolean createLowerCaseDataStructure)
     {
-        Set<Tuple2<String, Vertex>> allCachedNames = new HashSet<Tuple2<String, Vertex>>();
-
-        // pre-cache all delimiter names with their original vertex names and associated vertex object for speed efficiency in internal loops
-        if (createDelimiterDataStructure)
-        {
-            // search only for first part of delimited name
-            if (createLowerCaseDataStructure)
-            {
-                for ( String vertexMapName : nc.getVerticesMap().keySet() )
-                    allCachedNames.add( Tuples.tuple( nc.getNodeName(vertexMapName).toLowerCase(), nc.getVerticesMap().get(vertexMapName) ) );
-            }
-            else
-            {
-                for ( String vertexMapName : nc.getVerticesMap().keySet() )
-                    allCachedNames.add( Tuples.tuple( nc.getNodeName(vertexMapName), nc.getVerticesMap().get(vertexMapName) ) );
-            }
-
-            return allCachedNames;
-        }
-        // pre-cache all names in lower case for speed efficiency in internal loops
-        else
-        {
-            if (createLowerCaseDataStructure)
-            {
-                for ( String vertexMapName : nc.getVerticesMap().keySet() )
-                    allCachedNames.add( Tuples.tuple( nc.getNodeName(vertexMapName).toLowerCase(), nc.getVerticesMap().get(vertexMapName) ) );
-            }
-            else
-            {
-                for ( String vertexMapName : nc.getVerticesMap().keySet() )
-                    allCachedNames.add( Tuples.tuple( nc.getNodeName(vertexMapName), nc.getVerticesMap().get(vertexMapName) ) );
-            }
-
-            return allCachedNames;
-        }
+        return new NodeNameIndex( nc.getVerticesMap(), nc, createLowerCaseDataStructure );
     }
 
     /**
     *  Performs search based on the node identifier parsing options.
     */
-    private Set<Vertex> performSearchBasedOnTheNodeIdentifierParsingOptions(Set<Vertex> vertexSet, Set<Tuple2<String, Vertex>> allCachedNames, String vertexName, String selectedDelimiter, boolean selectedMatchFullName, boolean selectedMatchCase, boolean selectedMatchEntireName)
+    private Set<Vertex> performSearchBasedOnTheNodeIdentifierParsingOptions(Set<Vertex> vertexSet, NodeNameIndex allCachedNames, String vertexName, String selectedDelimiter, boolean selectedMatchFullName, boolean selectedMatchCase, boolean selectedMatchEntireName)
     {
         if (!selectedDelimiter.isEmpty() && !selectedMatchFullName)
         {
-            String[] splitDelimiterNames = vertexName.split(selectedDelimiter);
-            // search only for first part of delimited name, cache the lower cache name
+            // search only for first part of delimited name, all matching nodes
+            String splitDelimiterName = vertexName.split(selectedDelimiter)[0];
             if (!selectedMatchCase)
-            {
-                String splitDelimiterNameLowerCase = splitDelimiterNames[0].toLowerCase();
-                if (!selectedMatchEntireName)
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                        if ( tuple2.first.contains(splitDelimiterNameLowerCase) )
-                            vertexSet.add(tuple2.second);
-                }
-                else
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                        if ( tuple2.first.equals(splitDelimiterNameLowerCase) )
-                            vertexSet.add(tuple2.second);
-                }
-            }
-            // search only for first part of delimited name
+                splitDelimiterName = splitDelimiterName.toLowerCase();
+
+            if (!selectedMatchEntireName)
+                allCachedNames.addNamesContaining(splitDelimiterName, vertexSet, false);
             else
-            {
-                if (!selectedMatchEntireName)
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                        if ( tuple2.first.contains(splitDelimiterNames[0]) )
-                            vertexSet.add(tuple2.second);
-                }
-                else
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                        if ( tuple2.first.equals(splitDelimiterNames[0]) )
-                            vertexSet.add(tuple2.second);
-                }
-            }
+                allCachedNames.addEqualNames(splitDelimiterName, vertexSet, false);
         }
         else
         {
@@ -506,53 +446,14 @@ public final class ImportClassSetsParser extends CoreParser implements ImportCla
             {
                 String vertexNameLowerCase = vertexName.toLowerCase();
                 if (!selectedMatchEntireName)
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                    {
-                        if ( tuple2.first.contains(vertexNameLowerCase) )
-                        {
-                            vertexSet.add(tuple2.second);
-                            break;
-                        }
-                    }
-                }
+                    allCachedNames.addNamesContaining(vertexNameLowerCase, vertexSet, true);
                 else
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                    {
-                        if ( tuple2.first.equals(vertexNameLowerCase) )
-                        {
-                            vertexSet.add(tuple2.second);
-                            break;
-                        }
-                    }
-                }
+                    allCachedNames.addEqualNames(vertexNameLowerCase, vertexSet, true);
             }
-            // only one perfect match to be found
+            // only one perfect match to be found, case sensitive matches are always of the entire name
             else
             {
-                if (!selectedMatchCase)
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                    {
-                        if ( tuple2.first.contains(vertexName) )
-                        {
-                            vertexSet.add(tuple2.second);
-                            break;
-                        }
-                    }
-                }
-                else
-                {
-                    for (Tuple2<String, Vertex> tuple2 : allCachedNames)
-                    {
-                        if ( tuple2.first.equals(vertexName) )
-                        {
-                            vertexSet.add(tuple2.second);
-                            break;
-                        }
-                    }
-                }
+                allCachedNames.addEqualNames(vertexName, vertexSet, true);
             }
         }
 
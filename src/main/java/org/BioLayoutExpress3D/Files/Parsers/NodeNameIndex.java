@@ -0,0 +1,260 @@
+package org.BioLayoutExpress3D.Files.Parsers;
+
+import java.util.*;
+import org.BioLayoutExpress3D.Network.*;
+
+/**
+*
+* The NodeNameIndex class is a search index over the node names of a graph, built once per import so that every imported identifier
+* is looked up in sub-linear time instead of being compared against all node names.
+* Exact matches use a hash map of the names, substring matches a suffix array of all the names separated by a character that never appears in a query.
+* The names can be stored case-folded (with String.toLowerCase()) so that case-insensitive queries are plain lookups.
+* All lookups return the names in index order, so the first match is deterministic.
+*
+* @version 3.0.0.0
+*
+*/
+
+final class NodeNameIndex // package access
+{
+
+    /**
+    *  Separator of the names in the suffix array text.
+    */
+    private static final char NAME_SEPARATOR = '\u0000';
+
+    private final String[] names;
+    private final Vertex[] vertices;
+    private final HashMap<String, int[]> exactNames;
+
+    // suffix array, built on the first substring query
+    private char[] text = null;
+    private int[] suffixArray = null;
+    private int[] nameOfPosition = null;
+
+    /**
+    *  The constructor of the NodeNameIndex class.
+    */
+    public NodeNameIndex(HashMap<String, Vertex> verticesMap, NetworkContainer nc, boolean caseFolded)
+    {
+        int numberOfNames = verticesMap.size();
+        names = new String[numberOfNames];
+        vertices = new Vertex[numberOfNames];
+        HashMap<String, ArrayList<Integer>> namesIndices = new HashMap<String, ArrayList<Integer>>(2 * numberOfNames);
+        int index = 0;
+        for ( String vertexMapName : verticesMap.keySet() )
+        {
+            String name = nc.getNodeName(vertexMapName);
+            names[index] = (caseFolded) ? name.toLowerCase() : name;
+            vertices[index] = verticesMap.get(vertexMapName);
+
+            ArrayList<Integer> nameIndices = namesIndices.get(names[index]);
+            if (nameIndices == null)
+            {
+                nameIndices = new ArrayList<Integer>(1);
+                namesIndices.put(names[index], nameIndices);
+            }
+            nameIndices.add(index++);
+        }
+
+        exactNames = new HashMap<String, int[]>(2 * namesIndices.size());
+        for ( Map.Entry<String, ArrayList<Integer>> entry : namesIndices.entrySet() )
+        {
+            int[] nameIndices = new int[entry.getValue().size()];
+            for (int i = 0; i < nameIndices.length; i++)
+                nameIndices[i] = entry.getValue().get(i);
+            exactNames.put(entry.getKey(), nameIndices);
+        }
+    }
+
+    /**
+    *  Adds the vertices of all names equal to the query to the given set, or only the first one.
+    */
+    public void addEqualNames(String query, Set<Vertex> vertexSet, boolean onlyFirstMatch)
+    {
+        int[] nameIndices = exactNames.get(query);
+        if (nameIndices == null)
+            return;
+
+        for (int nameIndex : nameIndices)
+        {
+            vertexSet.add(vertices[nameIndex]);
+            if (onlyFirstMatch)
+                return;
+        }
+    }
+
+    /**
+    *  Adds the vertices of all names containing the query to the given set, or only the first one.
+    */
+    public void addNamesContaining(String query, Set<Vertex> vertexSet, boolean onlyFirstMatch)
+    {
+        if ( query.isEmpty() || (query.indexOf(NAME_SEPARATOR) != -1) )
+        {
+            // trivial or impossible for the suffix array, compare directly
+            for (int nameIndex = 0; nameIndex < names.length; nameIndex++)
+            {
+                if ( names[nameIndex].contains(query) )
+                {
+                    vertexSet.add(vertices[nameIndex]);
+                    if (onlyFirstMatch)
+                        return;
+                }
+            }
+
+            return;
+        }
+
+        if (suffixArray == null)
+            buildSuffixArray();
+
+        // all suffixes starting with the query form one range of the suffix array
+        int low = lowerBound(query, false);
+        int high = lowerBound(query, true);
+        if (low >= high)
+            return;
+
+        int[] nameIndices = new int[high - low];
+        for (int i = low; i < high; i++)
+            nameIndices[i - low] = nameOfPosition[suffixArray[i]];
+        Arrays.sort(nameIndices);
+
+        for (int i = 0; i < nameIndices.length; i++)
+        {
+            if ( (i > 0) && (nameIndices[i] == nameIndices[i - 1]) )
+                continue;
+
+            vertexSet.add(vertices[nameIndices[i]]);
+            if (onlyFirstMatch)
+                return;
+        }
+    }
+
+    /**
+    *  Returns the first suffix array index whose suffix is not smaller than the query
+    *  (or, for afterAllPrefixedSuffixes, not starting with & not smaller than the query).
+    */
+    private int lowerBound(String query, boolean afterAllPrefixedSuffixes)
+    {
+        int low = 0;
+        int high = suffixArray.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            int comparison = compareSuffixToQuery(suffixArray[middle], query);
+            if ( (comparison < 0) || ( afterAllPrefixedSuffixes && (comparison == 0) ) )
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+    *  Compares the suffix starting at the given text position to the query, returning 0 if the query is a prefix of the suffix.
+    */
+    private int compareSuffixToQuery(int position, String query)
+    {
+        int length = query.length();
+        for (int i = 0; i < length; i++)
+        {
+            if (position + i == text.length)
+                return -1;
+
+            char suffixCharacter = text[position + i];
+            char queryCharacter = query.charAt(i);
+            if (suffixCharacter != queryCharacter)
+                return (suffixCharacter < queryCharacter) ? -1 : 1;
+        }
+
+        return 0;
+    }
+
+    /**
+    *  Builds the suffix array of all names with the O(L log L) prefix doubling algorithm, using counting sorts of the ranks.
+    */
+    private void buildSuffixArray()
+    {
+        int length = 0;
+        for (String name : names)
+            length += name.length() + 1;
+
+        text = new char[length];
+        nameOfPosition = new int[length];
+        int position = 0;
+        for (int nameIndex = 0; nameIndex < names.length; nameIndex++)
+        {
+            names[nameIndex].getChars(0, names[nameIndex].length(), text, position);
+            for (int i = 0; i <= names[nameIndex].length(); i++)
+                nameOfPosition[position + i] = nameIndex;
+            position += names[nameIndex].length();
+            text[position++] = NAME_SEPARATOR;
+        }
+
+        int[] suffixes = new int[length];
+        int[] ranks = new int[length];
+        int[] secondKeyOrder = new int[length];
+        int[] newRanks = new int[length];
+        int[] counts = new int[ (length > Character.MAX_VALUE + 1) ? length : Character.MAX_VALUE + 1 ];
+
+        // sort by the first character
+        for (int i = 0; i < length; i++)
+            counts[text[i]]++;
+        for (int c = 1; c <= Character.MAX_VALUE; c++)
+            counts[c] += counts[c - 1];
+        for (int i = length - 1; i >= 0; i--)
+            suffixes[--counts[text[i]]] = i;
+        int numberOfRanks = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if ( (i > 0) && (text[suffixes[i]] != text[suffixes[i - 1]]) )
+                numberOfRanks++;
+            ranks[suffixes[i]] = numberOfRanks;
+        }
+        numberOfRanks++;
+
+        for (int k = 1; numberOfRanks < length; k <<= 1)
+        {
+            // order by the second key (rank of i + k), the suffixes without one first
+            int p = 0;
+            for (int i = length - k; i < length; i++)
+                secondKeyOrder[p++] = i;
+            for (int i = 0; i < length; i++)
+                if (suffixes[i] >= k)
+                    secondKeyOrder[p++] = suffixes[i] - k;
+
+            // stable counting sort by the first key (rank of i)
+            Arrays.fill(counts, 0, numberOfRanks, 0);
+            for (int i = 0; i < length; i++)
+                counts[ranks[i]]++;
+            for (int r = 1; r < numberOfRanks; r++)
+                counts[r] += counts[r - 1];
+            for (int i = length - 1; i >= 0; i--)
+                suffixes[--counts[ranks[secondKeyOrder[i]]]] = secondKeyOrder[i];
+
+            // new ranks of the (rank of i, rank of i + k) pairs
+            numberOfRanks = 0;
+            newRanks[suffixes[0]] = 0;
+            for (int i = 1; i < length; i++)
+            {
+                int current = suffixes[i];
+                int previous = suffixes[i - 1];
+                int currentSecondRank = (current + k < length) ? ranks[current + k] : -1;
+                int previousSecondRank = (previous + k < length) ? ranks[previous + k] : -1;
+                if ( (ranks[current] != ranks[previous]) || (currentSecondRank != previousSecondRank) )
+                    numberOfRanks++;
+                newRanks[current] = numberOfRanks;
+            }
+            numberOfRanks++;
+
+            int[] temp = ranks;
+            ranks = newRanks;
+            newRanks = temp;
+        }
+
+        suffixArray = suffixes;
+    }
+
+
+}
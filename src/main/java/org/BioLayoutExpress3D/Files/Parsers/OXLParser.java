@@ -148,6 +148,7 @@ public class OXLParser extends CoreParser
 
     	                // create BioLayout vertex
     	                verticesMap.put( conceptId, new Vertex(conceptId, nc) );
+    	                nc.verticesModified();
                     }
                     // annotation belonging to a concept, can be empty
                     // <annotation>some short text</annotation>
@@ -59,13 +59,13 @@ public class ExpressionDataComputing extends OpenCLContext
     private float[] dataExpressionArray = null;
 
     private ExpressionData expressionData = null;
-    private LayoutProgressBarDialog layoutProgressBarDialog = null;
+    private LayoutProgressBar layoutProgressBarDialog = null;
     private NumberFormat nf1 = null;
     private NumberFormat nf2 = null;
     private NumberFormat nf3 = null;
     private String[] rowIDsArray = null;
     private float threshold = 0.0f;
-    private ObjectOutputStream outOstream = null;
+    private CorrelationFileWriter correlationFileWriter = null;
     private PrintWriter outPrintWriter = null;
 
     private int totalRows = 0;
@@ -133,7 +133,7 @@ public class ExpressionDataComputing extends OpenCLContext
     /**
     *  Initializes all expression data computing variables.
     */
-    public void initializeExpressionDataComputingVariables(ExpressionData expressionData, LayoutProgressBarDialog layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2, NumberFormat nf3, int totalRows, int totalColumns, String[] rowIDsArray, FloatBuffer dataSumX_cacheBuffer, FloatBuffer dataSumX_sumX2_cacheBuffer, FloatBuffer dataSumColumns_X2_cacheBuffer, FloatBuffer dataExpressionBuffer, float threshold, ObjectOutputStream outOstream, PrintWriter outPrintWriter, double errorThreshold)
+    public void initializeExpressionDataComputingVariables(ExpressionData expressionData, LayoutProgressBar layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2, NumberFormat nf3, int totalRows, int totalColumns, String[] rowIDsArray, FloatBuffer dataSumX_cacheBuffer, FloatBuffer dataSumX_sumX2_cacheBuffer, FloatBuffer dataSumColumns_X2_cacheBuffer, FloatBuffer dataExpressionBuffer, float threshold, CorrelationFileWriter correlationFileWriter, PrintWriter outPrintWriter, double errorThreshold)
     {
         this.expressionData = expressionData;
         this.layoutProgressBarDialog = layoutProgressBarDialog;
@@ -152,7 +152,7 @@ public class ExpressionDataComputing extends OpenCLContext
         this.dataExpressionBuffer = dataExpressionBuffer;
         this.dataExpressionArray = dataExpressionBuffer.array();
         this.threshold = threshold;
-        this.outOstream = outOstream;
+        this.correlationFileWriter = correlationFileWriter;
         this.outPrintWriter = outPrintWriter;
         this.errorThreshold = errorThreshold;
 
@@ -759,7 +759,7 @@ public class ExpressionDataComputing extends OpenCLContext
             if (firstLoopFirstInit)
             {
                 firstLoopFirstInit = false;
-                outOstream.writeInt(i);
+                correlationFileWriter.beginRow(i);
             }
 
             for (int j = (secondLoopFirstInit) ? lastIndexYPreviousWriting : (i + 1); j < totalRows; j++)
@@ -776,8 +776,7 @@ public class ExpressionDataComputing extends OpenCLContext
                     correlation = dataResultsGPU.get(index - 1); // since the index is already incremented by (++index > N)
                     if (correlation >= threshold)
                     {
-                        outOstream.writeInt(j);
-                        outOstream.writeFloat(correlation);
+                        correlationFileWriter.writeCorrelation(j, correlation);
                     }
                 }
             }
@@ -786,7 +785,7 @@ public class ExpressionDataComputing extends OpenCLContext
                 break;
 
             firstLoopFirstInit = true;
-            outOstream.writeInt(i);
+            correlationFileWriter.endRow(i);
         }
     }
 
@@ -820,7 +819,7 @@ public class ExpressionDataComputing extends OpenCLContext
         dataSumX_sumX2_cacheArray = null;
         dataSumColumns_X2_cacheArray = null;
         dataExpressionArray = null;
-        outOstream = null;
+        correlationFileWriter = null;
         outPrintWriter = null;
         nf1 = null;
         nf2 = null;
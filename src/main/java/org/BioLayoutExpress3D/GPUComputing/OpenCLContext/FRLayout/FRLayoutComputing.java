@@ -63,7 +63,7 @@ public class FRLayoutComputing extends OpenCLContext
     private IntBuffer cachedVertexNormalizedWeightIndicesToSkipBuffer = null;
 
     private FRLayout frLayout = null;
-    private LayoutProgressBarDialog layoutProgressBarDialog = null;
+    private LayoutProgressBar layoutProgressBarDialog = null;
     private NumberFormat nf1 = null;
     private NumberFormat nf2 = null;
     private boolean is2DOr3DFRLayout = false;
@@ -131,7 +131,7 @@ public class FRLayoutComputing extends OpenCLContext
     /**
     *  Initializes all FR layout 2D computing variables.
     */
-    public void initializeFRLayoutComputing2DVariables(FRLayout frLayout, LayoutProgressBarDialog layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2,
+    public void initializeFRLayoutComputing2DVariables(FRLayout frLayout, LayoutProgressBar layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2,
                                                        IntBuffer vertexIndicesMatrixBuffer, FloatBuffer cachedVertexPointCoordsMatrixBuffer, IntBuffer cachedVertexConnectionMatrixBuffer, IntBuffer cachedVertexConnectionRowSkipSizeValuesMatrixBuffer,
                                                        ShortBuffer cachedVertexNormalizedWeightMatrixBuffer, FloatBuffer displacementMatrixBuffer, IntBuffer displacementValuesBuffer,
                                                        IntBuffer cachedVertexNormalizedWeightIndicesToSkipBuffer, int numberOfVertices, int iterations, double errorThreshold, boolean useEdgeWeights)
@@ -174,7 +174,7 @@ public class FRLayoutComputing extends OpenCLContext
     /**
     *  Initializes all FR layout 3D computing variables.
     */
-    public void initializeFRLayoutComputing3DVariables(FRLayout frLayout, LayoutProgressBarDialog layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2,
+    public void initializeFRLayoutComputing3DVariables(FRLayout frLayout, LayoutProgressBar layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2,
                                                        IntBuffer vertexIndicesMatrixBuffer, FloatBuffer cachedVertexPointCoordsMatrixBuffer, IntBuffer cachedVertexConnectionMatrixBuffer, IntBuffer cachedVertexConnectionRowSkipSizeValuesMatrixBuffer,
                                                        IntBuffer cachedPseudoVertexMatrixBuffer, ShortBuffer cachedVertexNormalizedWeightMatrixBuffer, IntBuffer displacementValuesBuffer,
                                                        IntBuffer cachedVertexNormalizedWeightIndicesToSkipBuffer, int numberOfVertices, int iterations, double errorThreshold, boolean useEdgeWeights)
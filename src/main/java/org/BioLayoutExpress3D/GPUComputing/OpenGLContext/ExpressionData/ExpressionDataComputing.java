@@ -58,7 +58,7 @@ public class ExpressionDataComputing extends OpenGLContext
     private FloatBuffer dataExpressionBuffer = null;
 
     private ExpressionData expressionData = null;
-    private LayoutProgressBarDialog layoutProgressBarDialog = null;
+    private LayoutProgressBar layoutProgressBarDialog = null;
     private NumberFormat nf1 = null;
     private NumberFormat nf2 = null;
     private NumberFormat nf3 = null;
@@ -68,7 +68,7 @@ public class ExpressionDataComputing extends OpenGLContext
     private float[] dataSumColumns_X2_cacheArray = null;
     private float[] dataExpressionArray = null;
     private float threshold = 0.0f;
-    private ObjectOutputStream outOstream = null;
+    private CorrelationFileWriter correlationFileWriter = null;
     private PrintWriter outPrintWriter = null;
 
     private int totalRows = 0;
@@ -227,7 +227,7 @@ public class ExpressionDataComputing extends OpenGLContext
     /**
     *  Initializes all expression data computing variables.
     */
-    public void initializeExpressionDataComputingVariables(ExpressionData expressionData, LayoutProgressBarDialog layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2, NumberFormat nf3, String[] rowIDsArray, FloatBuffer sumX_cacheBuffer, FloatBuffer sumX_sumX2_cacheBuffer, FloatBuffer sumColumns_X2_cacheBuffer, FloatBuffer expressionBuffer, float threshold, ObjectOutputStream outOstream, PrintWriter outPrintWriter, double errorThreshold)
+    public void initializeExpressionDataComputingVariables(ExpressionData expressionData, LayoutProgressBar layoutProgressBarDialog, NumberFormat nf1, NumberFormat nf2, NumberFormat nf3, String[] rowIDsArray, FloatBuffer sumX_cacheBuffer, FloatBuffer sumX_sumX2_cacheBuffer, FloatBuffer sumColumns_X2_cacheBuffer, FloatBuffer expressionBuffer, float threshold, CorrelationFileWriter correlationFileWriter, PrintWriter outPrintWriter, double errorThreshold)
     {
         this.expressionData = expressionData;
         this.layoutProgressBarDialog = layoutProgressBarDialog;
@@ -240,7 +240,7 @@ public class ExpressionDataComputing extends OpenGLContext
         this.dataSumColumns_X2_cacheArray = sumColumns_X2_cacheBuffer.array();
         this.dataExpressionArray = expressionBuffer.array();
         this.threshold = threshold;
-        this.outOstream = outOstream;
+        this.correlationFileWriter = correlationFileWriter;
         this.outPrintWriter = outPrintWriter;
         this.errorThreshold = errorThreshold;
     }
@@ -782,7 +782,7 @@ public class ExpressionDataComputing extends OpenGLContext
             if (firstLoopFirstInit)
             {
                 firstLoopFirstInit = false;
-                outOstream.writeInt(i);
+                correlationFileWriter.beginRow(i);
             }
 
             for (int j = (secondLoopFirstInit) ? lastIndexYPreviousWriting : (i + 1); j < totalRows; j++)
@@ -799,8 +799,7 @@ public class ExpressionDataComputing extends OpenGLContext
                     correlation = dataResultsGPUBuffer.get(index - 1); // since the index is already incremented by (++index > N)
                     if (correlation >= threshold)
                     {
-                        outOstream.writeInt(j);
-                        outOstream.writeFloat(correlation);
+                        correlationFileWriter.writeCorrelation(j, correlation);
                     }
                 }
             }
@@ -809,7 +808,7 @@ public class ExpressionDataComputing extends OpenGLContext
                 break;
 
             firstLoopFirstInit = true;
-            outOstream.writeInt(i);
+            correlationFileWriter.endRow(i);
         }
     }
 
@@ -839,7 +838,7 @@ public class ExpressionDataComputing extends OpenGLContext
         dataSumX_sumX2_cacheArray = null;
         dataSumColumns_X2_cacheArray = null;
         dataExpressionArray = null;
-        outOstream = null;
+        correlationFileWriter = null;
         outPrintWriter = null;
         nf1 = null;
         nf2 = null;
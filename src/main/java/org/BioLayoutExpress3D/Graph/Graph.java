@@ -1134,6 +1134,7 @@ public class Graph extends GLCanvas implements GraphInterface
 
         GraphNode firstGraphNode = null;
         GraphNode secondGraphNode = null;
+        ArrayList<GraphEdge> graphEdgesList = new ArrayList<GraphEdge>( nc.getEdges().size() );
         for ( Edge edge : nc.getEdges() )
         {
             if ( !graphNodes.containsKey( edge.getFirstVertex().getVertexID() ) )
@@ -1156,16 +1157,13 @@ public class Graph extends GLCanvas implements GraphInterface
                 secondGraphNode = graphNodes.get( edge.getSecondVertex().getVertexID() );
             }
 
-            GraphEdge graphEdge = new GraphEdge( firstGraphNode, secondGraphNode, edge, edge.getScaledWeight() );
-            graphEdges.add(graphEdge);
-
-            firstGraphNode.addEdge(graphEdge);
-            secondGraphNode.addEdge(graphEdge);
-
-            firstGraphNode.addNodeParent(secondGraphNode);
-            secondGraphNode.addNodeChild(firstGraphNode);
+            graphEdgesList.add( new GraphEdge( firstGraphNode, secondGraphNode, edge, edge.getScaledWeight() ) );
         }
 
+        // the nodes' edges, parents & children are slices of the shared topology instead of per node sets
+        GraphTopology.build(graphNodes.values(), graphEdgesList);
+        graphEdges.addAll(graphEdgesList);
+
         visibleNodes.addAll( graphNodes.values() );
         visibleEdges.addAll(graphEdges);
 
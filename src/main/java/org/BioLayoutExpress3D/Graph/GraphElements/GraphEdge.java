@@ -15,10 +15,16 @@ import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 
 public final class GraphEdge
 {
+    /**
+    *  Weighted edge colors shared by all edges, indexed by their red & blue components.
+    */
+    private static final Color[] WEIGHTED_EDGE_COLORS = new Color[256 * 256];
+
     private Color edgeColor = null;
     private GraphNode graphNodeFirst = null;
     private GraphNode graphNodeSecond = null;
     private Edge edge = null;
+    private int graphTopologyIndex = -1;
 
     public GraphEdge(GraphNode graphNodeFirst, GraphNode graphNodeSecond, Edge edge, float weight)
     {
@@ -29,15 +35,38 @@ public final class GraphEdge
         if (WEIGHTED_EDGES)
         {
             int red = (int)(255.0f * weight);
-            int green = 0;
             int blue = (int)( 255.0f *(1.0f - weight) );
 
-            edgeColor = new Color(red, green, blue);
+            edgeColor = getWeightedEdgeColor(red, blue);
         }
         else
             edgeColor = DEFAULT_EDGE_COLOR.get();
     }
 
+    private static Color getWeightedEdgeColor(int red, int blue)
+    {
+        if ( (red < 0) || (red > 255) || (blue < 0) || (blue > 255) )
+            return new Color(red, 0, blue);
+
+        // benign race, concurrent callers at worst create equal colors
+        int colorIndex = (red << 8) | blue;
+        Color color = WEIGHTED_EDGE_COLORS[colorIndex];
+        if (color == null)
+            WEIGHTED_EDGE_COLORS[colorIndex] = color = new Color(red, 0, blue);
+
+        return color;
+    }
+
+    void setGraphTopologyIndex(int graphTopologyIndex) // package access
+    {
+        this.graphTopologyIndex = graphTopologyIndex;
+    }
+
+    int getGraphTopologyIndex() // package access
+    {
+        return graphTopologyIndex;
+    }
+
     public void setEdgeName(String edgeName)
     {
         edge.setEdgeName(edgeName);
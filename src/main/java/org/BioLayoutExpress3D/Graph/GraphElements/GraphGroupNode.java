@@ -56,7 +56,7 @@ public final class GraphGroupNode extends GraphNode implements Comparable<GraphN
                 {
                     newGraphEdge = new GraphEdge(this, secondNode, new Edge(getVertex(), secondNode.getVertex(), 0), 0);
                     // visibleNodes.remove(graphEdge);
-                    nodeEdges.add(newGraphEdge);
+                    getOwnNodeEdges().add(newGraphEdge);
 
                     if (DEBUG_BUILD) println("Creating Edge 1" + newGraphEdge.getNodeFirst().getNodeName() + " " + newGraphEdge.getNodeSecond().getNodeName());
 
@@ -73,14 +73,14 @@ public final class GraphGroupNode extends GraphNode implements Comparable<GraphN
 
                     if (DEBUG_BUILD) println("Creating Edge 2" + newGraphEdge.getNodeFirst().getNodeName() + " " + newGraphEdge.getNodeSecond().getNodeName());
 
-                    nodeEdges.add(newGraphEdge);
+                    getOwnNodeEdges().add(newGraphEdge);
                     firstNode.getNodeEdges().add(newGraphEdge);
                     addNodeParent( graphEdge.getNodeSecond() );
                 }
             }
         }
 
-        return nodeEdges;
+        return getOwnNodeEdges();
     }
 
     @Override
@@ -154,7 +154,7 @@ public final class GraphGroupNode extends GraphNode implements Comparable<GraphN
     {
         for ( GraphNode graphNode : getNodeNeighbours() )
         {
-            graphNode.getNodeEdges().removeAll(nodeEdges);
+            graphNode.getNodeEdges().removeAll( getOwnNodeEdges() );
             graphNode.getNodeNeighbours().remove(this);
             graphNode.getNodeParents().remove(this);
             graphNode.getNodeChildren().remove(this);
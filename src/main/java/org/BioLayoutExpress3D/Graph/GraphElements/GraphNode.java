@@ -23,50 +23,152 @@ public class GraphNode implements Comparable<GraphNode>
     private org.BioLayoutExpress3D.DataStructures.Stack<Point3D> undoPointStack = null;
     private org.BioLayoutExpress3D.DataStructures.Stack<Point3D> redoPointStack = null;
 
+    // adjacency shared with all nodes of the graph, copied to the sets below only when modified (always so for nodes outside a topology, eg group nodes)
+    private GraphTopology graphTopology = null;
+    private int graphTopologyIndex = -1;
+
     private HashSet<GraphNode> nodeChildren = null;
     private HashSet<GraphNode> nodeParents = null;
-    protected HashSet<GraphEdge> nodeEdges = null;
+    private HashSet<GraphEdge> nodeEdges = null;
+
+    // views of the shared adjacency, created once per topology
+    private Set<GraphNode> nodeChildrenView = null;
+    private Set<GraphNode> nodeParentsView = null;
+    private Set<GraphEdge> nodeEdgesView = null;
 
     public GraphNode(Vertex vertex)
     {
         this.vertex = vertex;
         this.originalPoint = new Point3D( vertex.getVertexPoint() );
+    }
+
+    void setGraphTopology(GraphTopology graphTopology, int graphTopologyIndex) // package access
+    {
+        this.graphTopology = graphTopology;
+        this.graphTopologyIndex = graphTopologyIndex;
+
+        nodeChildren = null;
+        nodeParents = null;
+        nodeEdges = null;
+        nodeChildrenView = null;
+        nodeParentsView = null;
+        nodeEdgesView = null;
+    }
+
+    GraphTopology getGraphTopology() // package access
+    {
+        return graphTopology;
+    }
+
+    int getGraphTopologyIndex() // package access
+    {
+        return graphTopologyIndex;
+    }
+
+    private HashSet<GraphNode> getOwnNodeChildren()
+    {
+        if (nodeChildren == null)
+            nodeChildren = (graphTopology != null) ? new HashSet<GraphNode>( graphTopology.getChildrenView(graphTopologyIndex) ) : new HashSet<GraphNode>(0);
+
+        return nodeChildren;
+    }
+
+    private HashSet<GraphNode> getOwnNodeParents()
+    {
+        if (nodeParents == null)
+            nodeParents = (graphTopology != null) ? new HashSet<GraphNode>( graphTopology.getParentsView(graphTopologyIndex) ) : new HashSet<GraphNode>(0);
+
+        return nodeParents;
+    }
+
+    protected HashSet<GraphEdge> getOwnNodeEdges()
+    {
+        if (nodeEdges == null)
+            nodeEdges = (graphTopology != null) ? new HashSet<GraphEdge>( graphTopology.getEdgesView(graphTopologyIndex) ) : new HashSet<GraphEdge>(0);
 
-        nodeEdges = new HashSet<GraphEdge>(0);    // so as to minimize memory usage as default load capacity is 16
-        nodeParents = new HashSet<GraphNode>(0);  // so as to minimize memory usage as default load capacity is 16
-        nodeChildren = new HashSet<GraphNode>(0); // so as to minimize memory usage as default load capacity is 16
+        return nodeEdges;
     }
 
     public void addNodeParent(GraphNode graphNode)
     {
-        nodeParents.add(graphNode);
+        getOwnNodeParents().add(graphNode);
     }
 
     public void addNodeChild(GraphNode graphNode)
     {
-        nodeChildren.add(graphNode);
+        getOwnNodeChildren().add(graphNode);
     }
 
     public void addEdge(GraphEdge graphEdge)
     {
-        nodeEdges.add(graphEdge);
+        getOwnNodeEdges().add(graphEdge);
     }
 
-    public HashSet<GraphNode> getNodeChildren()
+    public Set<GraphNode> getNodeChildren()
     {
-        return nodeChildren;
+        if ( (nodeChildren != null) || (graphTopology == null) )
+            return getOwnNodeChildren();
+
+        if (nodeChildrenView == null)
+        {
+            nodeChildrenView = new CopyOnWriteSet<GraphNode>( graphTopology.getChildrenView(graphTopologyIndex) )
+            {
+
+                @Override
+                protected HashSet<GraphNode> getCopy()
+                {
+                    return nodeChildren;
+                }
+
+                @Override
+                protected HashSet<GraphNode> copy()
+                {
+                    return getOwnNodeChildren();
+                }
+
+
+            };
+        }
+
+        return nodeChildrenView;
     }
 
-    public HashSet<GraphNode> getNodeParents()
+    public Set<GraphNode> getNodeParents()
     {
-        return nodeParents;
+        if ( (nodeParents != null) || (graphTopology == null) )
+            return getOwnNodeParents();
+
+        if (nodeParentsView == null)
+        {
+            nodeParentsView = new CopyOnWriteSet<GraphNode>( graphTopology.getParentsView(graphTopologyIndex) )
+            {
+
+                @Override
+                protected HashSet<GraphNode> getCopy()
+                {
+                    return nodeParents;
+                }
+
+                @Override
+                protected HashSet<GraphNode> copy()
+                {
+                    return getOwnNodeParents();
+                }
+
+
+            };
+        }
+
+        return nodeParentsView;
     }
 
     public HashSet<GraphNode> getNodeNeighbours()
     {
-        HashSet<GraphNode> neighbours = new HashSet<GraphNode>( nodeChildren.size() + nodeParents.size() );
-        neighbours.addAll(nodeChildren);
-        neighbours.addAll(nodeParents);
+        Set<GraphNode> children = getNodeChildren();
+        Set<GraphNode> parents = getNodeParents();
+        HashSet<GraphNode> neighbours = new HashSet<GraphNode>( children.size() + parents.size() );
+        neighbours.addAll(children);
+        neighbours.addAll(parents);
 
         return neighbours;
     }
@@ -286,9 +388,33 @@ public class GraphNode implements Comparable<GraphNode>
         return vertex.isShowVertexName();
     }
 
-    public HashSet<GraphEdge> getNodeEdges()
+    public Set<GraphEdge> getNodeEdges()
     {
-        return nodeEdges;
+        if ( (nodeEdges != null) || (graphTopology == null) )
+            return getOwnNodeEdges();
+
+        if (nodeEdgesView == null)
+        {
+            nodeEdgesView = new CopyOnWriteSet<GraphEdge>( graphTopology.getEdgesView(graphTopologyIndex) )
+            {
+
+                @Override
+                protected HashSet<GraphEdge> getCopy()
+                {
+                    return nodeEdges;
+                }
+
+                @Override
+                protected HashSet<GraphEdge> copy()
+                {
+                    return getOwnNodeEdges();
+                }
+
+
+            };
+        }
+
+        return nodeEdgesView;
     }
 
     public HashSet<GraphNode> getNeighborsIntersection()
@@ -329,6 +455,101 @@ public class GraphNode implements Comparable<GraphNode>
         return vertex.ismEPNTransition();
     }
 
+    /**
+    *  Set view of the shared adjacency of this node, reading the node's own copy once it exists & creating it on the first modification.
+    */
+    private abstract static class CopyOnWriteSet<T> extends AbstractSet<T>
+    {
+
+        private final Set<T> sharedSet;
+
+        private CopyOnWriteSet(Set<T> sharedSet)
+        {
+            this.sharedSet = sharedSet;
+        }
+
+        protected abstract HashSet<T> getCopy();
+
+        protected abstract HashSet<T> copy();
+
+        private Set<T> current()
+        {
+            HashSet<T> copy = getCopy();
+            return (copy != null) ? copy : sharedSet;
+        }
+
+        @Override
+        public int size()
+        {
+            return current().size();
+        }
+
+        @Override
+        public boolean contains(Object object)
+        {
+            return current().contains(object);
+        }
+
+        @Override
+        public boolean add(T element)
+        {
+            return copy().add(element);
+        }
+
+        @Override
+        public boolean remove(Object object)
+        {
+            return copy().remove(object);
+        }
+
+        @Override
+        public void clear()
+        {
+            copy().clear();
+        }
+
+        @Override
+        public Iterator<T> iterator()
+        {
+            HashSet<T> copy = getCopy();
+            if (copy != null)
+                return copy.iterator();
+
+            final Iterator<T> sharedIterator = sharedSet.iterator();
+            return new Iterator<T>()
+            {
+
+                private T lastElement = null;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return sharedIterator.hasNext();
+                }
+
+                @Override
+                public T next()
+                {
+                    return lastElement = sharedIterator.next();
+                }
+
+                @Override
+                public void remove()
+                {
+                    if (lastElement == null)
+                        throw new IllegalStateException();
+
+                    copy().remove(lastElement);
+                    lastElement = null;
+                }
+
+
+            };
+        }
+
+
+    }
+
     /**
     *  Overriden compareTo() method for GraphNode.
     *  Note, it uses a comparison particularly tailored for saving Graphml files, omitting the first letter (the 'n')
@@ -0,0 +1,282 @@
+package org.BioLayoutExpress3D.Graph.GraphElements;
+
+import java.util.*;
+
+/**
+*
+* GraphTopology is the compact, int-indexed adjacency of all graph nodes & graph edges, built once per graph rebuild.
+* Every node & edge gets a dense index, and the incident edges, parents & children of each node are slices of shared int arrays
+* (compressed sparse row layout) instead of three hash sets per node. The slices are sorted & without duplicates,
+* so membership tests are binary searches.
+* The graph nodes read their adjacency through read-only views of the slices and only copy them to their own sets when modified,
+* as when collapsing & expanding groups.
+* Only the graph side uses it so far: the per Vertex edge maps of the network containers and the visible & selected node & edge hash sets of the Graph
+* are still the collections they were, since they are mutated as such by the parsers, filters & selection code.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class GraphTopology
+{
+
+    private final GraphNode[] graphNodes;
+    private final GraphEdge[] graphEdges;
+
+    private final int[] edgesOffsets;
+    private final int[] edges;
+    private final int[] parentsOffsets;
+    private final int[] parents;
+    private final int[] childrenOffsets;
+    private final int[] children;
+
+    /**
+    *  Builds the topology of the given graph nodes & graph edges & attaches it to the graph nodes, which keep the only references to it.
+    *  All the graph edges must connect graph nodes of the given collection.
+    */
+    public static void build(Collection<GraphNode> allGraphNodes, Collection<GraphEdge> allGraphEdges)
+    {
+        new GraphTopology(allGraphNodes, allGraphEdges);
+    }
+
+    /**
+    *  The private constructor of the GraphTopology class, use build().
+    */
+    private GraphTopology(Collection<GraphNode> allGraphNodes, Collection<GraphEdge> allGraphEdges)
+    {
+        graphNodes = allGraphNodes.toArray( new GraphNode[allGraphNodes.size()] );
+        graphEdges = allGraphEdges.toArray( new GraphEdge[allGraphEdges.size()] );
+
+        int numberOfNodes = graphNodes.length;
+        int numberOfEdges = graphEdges.length;
+        for (int i = 0; i < numberOfNodes; i++)
+            graphNodes[i].setGraphTopology(this, i);
+
+        // the edge node columns are only needed while building the slices
+        int[] firstNodeIndices = new int[numberOfEdges];
+        int[] secondNodeIndices = new int[numberOfEdges];
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            graphEdges[i].setGraphTopologyIndex(i);
+            firstNodeIndices[i] = graphEdges[i].getNodeFirst().getGraphTopologyIndex();
+            secondNodeIndices[i] = graphEdges[i].getNodeSecond().getGraphTopologyIndex();
+        }
+
+        // incident edges, in ascending edge index order, a self-edge only once
+        edgesOffsets = new int[numberOfNodes + 1];
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            edgesOffsets[firstNodeIndices[i] + 1]++;
+            if (secondNodeIndices[i] != firstNodeIndices[i])
+                edgesOffsets[secondNodeIndices[i] + 1]++;
+        }
+        prefixSum(edgesOffsets);
+        edges = new int[ edgesOffsets[numberOfNodes] ];
+        int[] fill = Arrays.copyOf(edgesOffsets, numberOfNodes);
+        for (int i = 0; i < numberOfEdges; i++)
+        {
+            edges[ fill[ firstNodeIndices[i] ]++ ] = i;
+            if (secondNodeIndices[i] != firstNodeIndices[i])
+                edges[ fill[ secondNodeIndices[i] ]++ ] = i;
+        }
+
+        // the second node of an edge is a parent of the first node & the first node a child of the second node
+        parentsOffsets = new int[numberOfNodes + 1];
+        parents = buildNeighbours(firstNodeIndices, secondNodeIndices, numberOfNodes, parentsOffsets);
+        childrenOffsets = new int[numberOfNodes + 1];
+        children = buildNeighbours(secondNodeIndices, firstNodeIndices, numberOfNodes, childrenOffsets);
+    }
+
+    /**
+    *  Builds the sorted, duplicate free neighbour slices of all nodes from the edge columns, filling in the offsets.
+    */
+    private static int[] buildNeighbours(int[] fromNodeIndices, int[] toNodeIndices, int numberOfNodes, int[] offsets)
+    {
+        int[] counts = new int[numberOfNodes + 1];
+        for (int fromNodeIndex : fromNodeIndices)
+            counts[fromNodeIndex + 1]++;
+        prefixSum(counts);
+
+        int[] neighbours = new int[ counts[numberOfNodes] ];
+        int[] fill = Arrays.copyOf(counts, numberOfNodes);
+        for (int i = 0; i < fromNodeIndices.length; i++)
+            neighbours[ fill[ fromNodeIndices[i] ]++ ] = toNodeIndices[i];
+
+        // sort & compact each slice in place
+        int size = 0;
+        for (int i = 0; i < numberOfNodes; i++)
+        {
+            int start = counts[i];
+            int end = counts[i + 1];
+            Arrays.sort(neighbours, start, end);
+
+            offsets[i] = size;
+            for (int j = start; j < end; j++)
+                if ( (j == start) || (neighbours[j] != neighbours[j - 1]) )
+                    neighbours[size++] = neighbours[j];
+        }
+        offsets[numberOfNodes] = size;
+
+        return (size == neighbours.length) ? neighbours : Arrays.copyOf(neighbours, size);
+    }
+
+    private static void prefixSum(int[] array)
+    {
+        for (int i = 1; i < array.length; i++)
+            array[i] += array[i - 1];
+    }
+
+    /**
+    *  Gets the index of the given graph node, or -1 if it is not part of this topology (eg a group node).
+    */
+    private int getGraphNodeIndex(GraphNode graphNode)
+    {
+        return (graphNode.getGraphTopology() == this) ? graphNode.getGraphTopologyIndex() : -1;
+    }
+
+    /**
+    *  Gets a read-only view of the incident edges of the given node.
+    */
+    Set<GraphEdge> getEdgesView(int nodeIndex)
+    {
+        return new EdgeSliceSet(edges, edgesOffsets[nodeIndex], edgesOffsets[nodeIndex + 1]);
+    }
+
+    /**
+    *  Gets a read-only view of the parents of the given node.
+    */
+    Set<GraphNode> getParentsView(int nodeIndex)
+    {
+        return new NodeSliceSet(parents, parentsOffsets[nodeIndex], parentsOffsets[nodeIndex + 1]);
+    }
+
+    /**
+    *  Gets a read-only view of the children of the given node.
+    */
+    Set<GraphNode> getChildrenView(int nodeIndex)
+    {
+        return new NodeSliceSet(children, childrenOffsets[nodeIndex], childrenOffsets[nodeIndex + 1]);
+    }
+
+    /**
+    *  Read-only set view of a sorted slice of element indices.
+    */
+    private abstract static class SliceSet<T> extends AbstractSet<T>
+    {
+
+        private final int[] indices;
+        private final int start;
+        private final int end;
+
+        private SliceSet(int[] indices, int start, int end)
+        {
+            this.indices = indices;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected abstract T element(int index);
+
+        protected abstract int indexOf(Object object);
+
+        @Override
+        public int size()
+        {
+            return end - start;
+        }
+
+        @Override
+        public boolean contains(Object object)
+        {
+            int index = indexOf(object);
+            return (index >= 0) && (Arrays.binarySearch(indices, start, end, index) >= 0);
+        }
+
+        @Override
+        public Iterator<T> iterator()
+        {
+            return new Iterator<T>()
+            {
+
+                private int position = start;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return position < end;
+                }
+
+                @Override
+                public T next()
+                {
+                    if (position >= end)
+                        throw new NoSuchElementException();
+
+                    return element( indices[position++] );
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+
+            };
+        }
+
+
+    }
+
+    private final class NodeSliceSet extends SliceSet<GraphNode>
+    {
+
+        private NodeSliceSet(int[] indices, int start, int end)
+        {
+            super(indices, start, end);
+        }
+
+        @Override
+        protected GraphNode element(int index)
+        {
+            return graphNodes[index];
+        }
+
+        @Override
+        protected int indexOf(Object object)
+        {
+            return (object instanceof GraphNode) ? getGraphNodeIndex( (GraphNode)object ) : -1;
+        }
+
+
+    }
+
+    private final class EdgeSliceSet extends SliceSet<GraphEdge>
+    {
+
+        private EdgeSliceSet(int[] indices, int start, int end)
+        {
+            super(indices, start, end);
+        }
+
+        @Override
+        protected GraphEdge element(int index)
+        {
+            return graphEdges[index];
+        }
+
+        @Override
+        protected int indexOf(Object object)
+        {
+            if ( !(object instanceof GraphEdge) )
+                return -1;
+
+            int index = ( (GraphEdge)object ).getGraphTopologyIndex();
+            return ( (index >= 0) && (index < graphEdges.length) && (graphEdges[index] == object) ) ? index : -1;
+        }
+
+
+    }
+
+
+}
@@ -68,6 +68,7 @@ final class GraphUndoDelete // package access
 
                 nc.getVerticesMap().put(vertex.getVertexName(), vertex);
             }
+            nc.verticesModified();
 
             for ( Edge edge : nodeSelectedEdgesStack.pop() )
             {
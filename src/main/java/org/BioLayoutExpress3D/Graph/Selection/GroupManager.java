@@ -301,6 +301,11 @@ public final class GroupManager
         return groupIDs.size();
     }
 
+    public Collection<GraphGroupNode> getAllGroups()
+    {
+        return groupIDs.values();
+    }
+
     private void createUnGroupSelectedAction()
     {
         unGroupSelectedAction = new AbstractAction("UnCollapse Selected Groups")
@@ -671,6 +671,7 @@ public final class SelectionManager
             }
         }
 
+        layoutFrame.getNetworkRootContainer().verticesModified();
         graphUndoDelete.pushSelected(undoVertices, undoEdges);
 
         clearAllSelection();
@@ -951,7 +952,7 @@ public final class SelectionManager
     private HashSet<GraphNode> getChildren(HashSet<GraphNode> nodes)
     {
         HashSet<GraphNode> neighbours = new HashSet<GraphNode>();
-        HashSet<GraphEdge> nodeEdges = null;
+        Set<GraphEdge> nodeEdges = null;
         for (GraphNode graphNode : nodes)
         {
             nodeEdges = graphNode.getNodeEdges();
@@ -969,7 +970,7 @@ public final class SelectionManager
     private HashSet<GraphNode> getParents(HashSet<GraphNode> nodes)
     {
         HashSet<GraphNode> neighbours = new HashSet<GraphNode>();
-        HashSet<GraphEdge> nodeEdges = null;
+        Set<GraphEdge> nodeEdges = null;
         for (GraphNode graphNode : nodes)
         {
             nodeEdges = graphNode.getNodeEdges();
@@ -1106,7 +1107,7 @@ public final class SelectionManager
 
     public void findTerms(JFrame jFrame, String searchTerm, boolean matchCase, boolean matchEntireTerm, boolean clearSelection)
     {
-        HashSet<GraphNode> foundGraphNodes = findTermsInCollection(graph.getGraphNodes(), searchTerm, matchCase, matchEntireTerm);
+        HashSet<GraphNode> foundGraphNodes = findTermsInGraph(searchTerm, matchCase, matchEntireTerm);
         groupManager.processNodes(foundGraphNodes);
 
         if (foundGraphNodes.size() > 0)
@@ -1129,35 +1130,39 @@ public final class SelectionManager
         }
     }
 
-    private HashSet<GraphNode> findTermsInCollection(Collection<GraphNode> graphNodes, String searchTerm, boolean matchCase, boolean matchEntireName)
+    /**
+    *  Finds the graph nodes matching the search term through the node name search index of the network.
+    *  Group nodes are not part of the network, so the (few) group nodes of the graph are compared directly.
+    */
+    private HashSet<GraphNode> findTermsInGraph(String searchTerm, boolean matchCase, boolean matchEntireName)
     {
-        String[] needles = searchTerm.split("\\s+");
+        NetworkRootContainer nc = layoutFrame.getNetworkRootContainer();
+        HashMap<Integer, GraphNode> graphNodesMap = graph.getGraphNodesMap();
         HashSet<GraphNode> foundGraphNodes = new HashSet<GraphNode>();
-        for (GraphNode graphNode : graphNodes)
+
+        BitSet foundVertexIDs = nc.getNodeNameSearchIndex().findTerms(searchTerm, matchCase, matchEntireName);
+        GraphNode graphNode = null;
+        for (int vertexID = foundVertexIDs.nextSetBit(0); vertexID >= 0; vertexID = foundVertexIDs.nextSetBit(vertexID + 1))
         {
-            for (String needle : needles)
-            {
-                String name = layoutFrame.getNetworkRootContainer().getNodeName(graphNode.getNodeName());
+            graphNode = graphNodesMap.get(vertexID);
+            if (graphNode != null)
+                foundGraphNodes.add(graphNode);
+        }
 
-                if (!matchCase)
-                {
-                    name = name.toLowerCase();
-                    needle = needle.toLowerCase();
-                }
+        String[] needles = searchTerm.split("\\s+");
+        for ( GraphGroupNode graphGroupNode : groupManager.getAllGroups() )
+        {
+            // only the groups currently collapsed on the graph
+            if (graphNodesMap.get( graphGroupNode.getNodeID() ) != graphGroupNode)
+                continue;
 
-                if (matchEntireName)
-                {
-                    if (needle.equals(name))
-                    {
-                        foundGraphNodes.add(graphNode);
-                    }
-                }
-                else
+            String name = nc.getNodeName( graphGroupNode.getNodeName() );
+            for (String needle : needles)
+            {
+                if ( NodeNameSearchIndex.nameMatches(name, needle, matchCase, matchEntireName) )
                 {
-                    if (name.contains(needle))
-                    {
-                        foundGraphNodes.add(graphNode);
-                    }
+                    foundGraphNodes.add(graphGroupNode);
+                    break;
                 }
             }
         }
@@ -1194,10 +1199,10 @@ public final class SelectionManager
     public void findMultipleClasses(JFrame jFrame, HashSet<VertexClass> vertexClasses)
     {
         HashSet<GraphNode> foundGraphNodes = new HashSet<GraphNode>();
+        // VertexClass uses identity equality, so one set lookup per node replaces the comparison with every class
         for ( GraphNode graphNode : graph.getGraphNodes() )
-            for (VertexClass vertexClass : vertexClasses)
-                if ( !(graphNode instanceof GraphGroupNode) && graphNode.getVertexClass().equals(vertexClass) )
-                    foundGraphNodes.add(graphNode);
+            if ( !(graphNode instanceof GraphGroupNode) && vertexClasses.contains( graphNode.getVertexClass() ) )
+                foundGraphNodes.add(graphNode);
 
         if ( !foundGraphNodes.isEmpty() )
         {
@@ -0,0 +1,472 @@
+package org.BioLayoutExpress3D.Graph.Statistics;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
+import org.BioLayoutExpress3D.StaticLibraries.Random.XORShiftRandomStream;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+
+/**
+*
+* The GraphDistanceStatistics class computes the shortest path statistics of a GraphSnapshot (unweighted & undirected):
+* the diameter, the per node eccentricity & the average shortest path length. Unreachable pairs are ignored,
+* so for a disconnected graph the diameter is the largest diameter of its connected components.
+*
+* The exact statistics run a breadth-first search from every node, 64 sources at a time: every node keeps one bit per source
+* in a long for the sources that have already reached it & for the current frontier, so one pass over the edges advances all 64 searches by one level.
+* The batches of 64 sources are processed in parallel by the LayoutComputeService.
+*
+* The approximate statistics are meant for graphs too large for all-pairs searches. The diameter is bounded with the iFUB algorithm
+* (double sweep from the highest degree node, then the eccentricities of the fringe levels of the path midpoint, again 64 at a time),
+* which stops as soon as the bounds meet or the given budget of searches is spent, & the average shortest path length is estimated from a random sample of sources.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class GraphDistanceStatistics
+{
+
+    /**
+    *  Number of sources searched at once, one per bit of a long.
+    */
+    private static final int SOURCES_PER_BATCH = 64;
+
+    /**
+    *  Default number of searches of the approximate statistics.
+    */
+    public static final int DEFAULT_NUMBER_OF_APPROXIMATE_SEARCHES = 4096;
+
+    /**
+    *  Seed of the source sample of the approximate average shortest path length, fixed so that the results are reproducible.
+    */
+    private static final long APPROXIMATE_SAMPLE_SEED = 0x5DEECE66DL;
+
+    private final GraphSnapshot graphSnapshot;
+    private final int numberOfNodes;
+    private final int[] adjacencyBegin;
+    private final int[] adjacency;
+
+    private int diameter = 0;
+    private int diameterUpperBound = 0;
+    private double averageShortestPathLength = 0.0;
+    private int[] eccentricities = null;
+    private boolean isExact = false;
+
+    // per worker scratch arrays of the bit-parallel searches, reused between calls
+    private long[][] seenPerWorker = null;
+    private long[][] frontierPerWorker = null;
+    private long[][] nextPerWorker = null;
+
+    private volatile boolean cancelled = false;
+
+    /**
+    *  The constructor of the GraphDistanceStatistics class.
+    */
+    public GraphDistanceStatistics(GraphSnapshot graphSnapshot)
+    {
+        this.graphSnapshot = graphSnapshot;
+        numberOfNodes = graphSnapshot.getNumberOfNodes();
+        adjacencyBegin = graphSnapshot.getAdjacencyBegin();
+        adjacency = graphSnapshot.getAdjacency();
+    }
+
+    /**
+    *  Computes the exact diameter, eccentricities & average shortest path length with a search from every node.
+    *  Returns false if cancelled.
+    */
+    public boolean calculateExactStatistics()
+    {
+        int[] sources = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++)
+            sources[i] = i;
+
+        int[] allEccentricities = new int[numberOfNodes];
+        long[] sums = multiSourceBreadthFirstSearch(sources, numberOfNodes, allEccentricities);
+        if (cancelled)
+            return false;
+
+        diameter = 0;
+        for (int eccentricity : allEccentricities)
+            if (diameter < eccentricity)
+                diameter = eccentricity;
+
+        diameterUpperBound = diameter;
+        averageShortestPathLength = (sums[1] > 0) ? (double)sums[0] / sums[1] : 0.0;
+        eccentricities = allEccentricities;
+        isExact = true;
+
+        return true;
+    }
+
+    /**
+    *  Computes a lower & an upper bound of the diameter with the iFUB algorithm & estimates the average shortest path length,
+    *  with at most about maximumNumberOfSearches breadth-first searches. No eccentricities are computed.
+    *  Returns false if cancelled.
+    */
+    public boolean calculateApproximateStatistics(int maximumNumberOfSearches)
+    {
+        eccentricities = null;
+        diameter = 0;
+        diameterUpperBound = 0;
+
+        // connected components, largest first
+        int[] componentOf = new int[numberOfNodes];
+        int[] queue = new int[numberOfNodes];
+        int[] distances = new int[numberOfNodes];
+        Arrays.fill(componentOf, -1);
+        ArrayList<int[]> components = new ArrayList<int[]>(); // { start node (of highest degree), size }
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            if (componentOf[v] != -1)
+                continue;
+
+            int componentIndex = components.size();
+            int head = 0;
+            int tail = 0;
+            int startNode = v;
+            componentOf[v] = componentIndex;
+            queue[tail++] = v;
+            while (head < tail)
+            {
+                int u = queue[head++];
+                if ( graphSnapshot.getDegree(u) > graphSnapshot.getDegree(startNode) )
+                    startNode = u;
+
+                for (int i = adjacencyBegin[u]; i < adjacencyBegin[u + 1]; i++)
+                {
+                    if (componentOf[adjacency[i]] == -1)
+                    {
+                        componentOf[adjacency[i]] = componentIndex;
+                        queue[tail++] = adjacency[i];
+                    }
+                }
+            }
+            components.add( new int[] { startNode, tail } );
+        }
+        Collections.sort(components, new Comparator<int[]>()
+        {
+
+            @Override
+            public int compare(int[] component1, int[] component2)
+            {
+                return (component1[1] > component2[1]) ? -1 : ( (component1[1] < component2[1]) ? 1 : 0 );
+            }
+
+
+        } );
+
+        int remainingSearches = maximumNumberOfSearches;
+        for (int[] component : components)
+        {
+            if (cancelled)
+                return false;
+
+            // a component of k nodes has a diameter of at most k - 1
+            if (component[1] - 1 <= diameter)
+                break;
+
+            // double sweep: the farthest node a from the start node, then the farthest node b from a gives the lower bound ecc(a)
+            int a = breadthFirstSearch(component[0], distances, queue);
+            int b = breadthFirstSearch(a, distances, queue);
+            int lowerBound = distances[b];
+
+            // the midpoint u of the a-b path, walking back from b
+            int u = b;
+            while (distances[u] > lowerBound / 2)
+            {
+                for (int i = adjacencyBegin[u]; i < adjacencyBegin[u + 1]; i++)
+                {
+                    if (distances[adjacency[i]] == distances[u] - 1)
+                    {
+                        u = adjacency[i];
+                        break;
+                    }
+                }
+            }
+
+            int last = breadthFirstSearch(u, distances, queue);
+            int eccentricityOfU = distances[last];
+            int componentSize = component[1];
+            remainingSearches -= 3;
+            if (lowerBound < eccentricityOfU)
+                lowerBound = eccentricityOfU;
+
+            // iFUB: the nodes of the fringe level i of u bound the diameter of the rest by 2 * (i - 1)
+            int upperBound = 2 * eccentricityOfU;
+            int[] fringe = new int[componentSize];
+            int[] fringeEccentricities = new int[componentSize];
+            int level = eccentricityOfU;
+            while ( (upperBound > lowerBound) && (level > 0) && (remainingSearches > 0) )
+            {
+                int fringeSize = 0;
+                for (int i = 0; i < componentSize; i++)
+                    if (distances[queue[i]] == level)
+                        fringe[fringeSize++] = queue[i];
+
+                if (fringeSize > remainingSearches)
+                    break;
+
+                multiSourceBreadthFirstSearch(fringe, fringeSize, fringeEccentricities);
+                if (cancelled)
+                    return false;
+
+                remainingSearches -= fringeSize;
+                for (int i = 0; i < fringeSize; i++)
+                    if (lowerBound < fringeEccentricities[i])
+                        lowerBound = fringeEccentricities[i];
+
+                if ( lowerBound > 2 * (level - 1) )
+                    upperBound = lowerBound;
+                else
+                    upperBound = 2 * (level - 1);
+
+                level--;
+            }
+
+            if (diameter < lowerBound)
+                diameter = lowerBound;
+            if (diameterUpperBound < upperBound)
+                diameterUpperBound = upperBound;
+        }
+
+        if (diameterUpperBound < diameter)
+            diameterUpperBound = diameter;
+
+        // average shortest path length from a random sample of sources (a partial Fisher-Yates shuffle)
+        int numberOfSamples = (remainingSearches > 0) ? remainingSearches : SOURCES_PER_BATCH;
+        if (numberOfSamples > numberOfNodes)
+            numberOfSamples = numberOfNodes;
+
+        int[] samples = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++)
+            samples[i] = i;
+
+        XORShiftRandomStream random = new XORShiftRandomStream(APPROXIMATE_SAMPLE_SEED);
+        for (int i = 0; i < numberOfSamples; i++)
+        {
+            int j = i + random.nextInt(numberOfNodes - i);
+            int temp = samples[i];
+            samples[i] = samples[j];
+            samples[j] = temp;
+        }
+
+        long[] sums = multiSourceBreadthFirstSearch(samples, numberOfSamples, new int[numberOfSamples]);
+        if (cancelled)
+            return false;
+
+        averageShortestPathLength = (sums[1] > 0) ? (double)sums[0] / sums[1] : 0.0;
+        isExact = (diameter == diameterUpperBound) && (numberOfSamples == numberOfNodes);
+
+        return true;
+    }
+
+    /**
+    *  Plain breadth-first search from the given source: fills in the distances of its component (& -1 elsewhere)
+    *  & the component in visiting order at the start of the queue. Returns the last (farthest) node visited.
+    */
+    private int breadthFirstSearch(int source, int[] distances, int[] queue)
+    {
+        Arrays.fill(distances, -1);
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail)
+        {
+            int u = queue[head++];
+            for (int i = adjacencyBegin[u]; i < adjacencyBegin[u + 1]; i++)
+            {
+                if (distances[adjacency[i]] == -1)
+                {
+                    distances[adjacency[i]] = distances[u] + 1;
+                    queue[tail++] = adjacency[i];
+                }
+            }
+        }
+
+        return queue[tail - 1];
+    }
+
+    /**
+    *  Runs a breadth-first search from each of the first numberOfSources sources in batches of 64, in parallel.
+    *  Stores the eccentricity of sources[i] in eccentricitiesOut[i] & returns { sum of all distances, number of reachable pairs }.
+    */
+    private long[] multiSourceBreadthFirstSearch(final int[] sources, final int numberOfSources, final int[] eccentricitiesOut)
+    {
+        final int numberOfBatches = (numberOfSources + SOURCES_PER_BATCH - 1) / SOURCES_PER_BATCH;
+        final LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
+        int numberOfWorkers = (USE_MULTICORE_PROCESS) ? layoutComputeService.getNumberOfWorkers() : 1;
+        if (numberOfWorkers > numberOfBatches)
+            numberOfWorkers = (numberOfBatches > 0) ? numberOfBatches : 1;
+
+        if ( (seenPerWorker == null) || (seenPerWorker.length < numberOfWorkers) )
+        {
+            seenPerWorker = new long[numberOfWorkers][];
+            frontierPerWorker = new long[numberOfWorkers][];
+            nextPerWorker = new long[numberOfWorkers][];
+        }
+
+        final long[] distanceSums = new long[numberOfWorkers];
+        final long[] reachablePairs = new long[numberOfWorkers];
+        final AtomicInteger nextBatch = new AtomicInteger(0);
+        LayoutComputeService.RangeKernel rangeKernel = new LayoutComputeService.RangeKernel()
+        {
+
+            @Override
+            public void process(int startIndex, int endIndex)
+            {
+                for (int worker = startIndex; worker < endIndex; worker++)
+                {
+                    if (seenPerWorker[worker] == null)
+                    {
+                        seenPerWorker[worker] = new long[numberOfNodes];
+                        frontierPerWorker[worker] = new long[numberOfNodes];
+                        nextPerWorker[worker] = new long[numberOfNodes];
+                    }
+
+                    int batch = 0;
+                    while ( !cancelled && ( batch = nextBatch.getAndIncrement() ) < numberOfBatches )
+                    {
+                        int from = batch * SOURCES_PER_BATCH;
+                        int to = (from + SOURCES_PER_BATCH < numberOfSources) ? from + SOURCES_PER_BATCH : numberOfSources;
+                        processBatch(sources, from, to, eccentricitiesOut, seenPerWorker[worker], frontierPerWorker[worker], nextPerWorker[worker],
+                                     distanceSums, reachablePairs, worker);
+                    }
+                }
+            }
+
+
+        };
+
+        if (numberOfWorkers > 1)
+            layoutComputeService.execute(rangeKernel, numberOfWorkers, 1, null);
+        else
+            rangeKernel.process(0, 1);
+
+        long[] sums = new long[2];
+        for (int worker = 0; worker < numberOfWorkers; worker++)
+        {
+            sums[0] += distanceSums[worker];
+            sums[1] += reachablePairs[worker];
+        }
+
+        return sums;
+    }
+
+    /**
+    *  Bit-parallel breadth-first search from sources[from ... to - 1], bit k standing for sources[from + k].
+    */
+    private void processBatch(int[] sources, int from, int to, int[] eccentricitiesOut, long[] seen, long[] frontier, long[] next,
+                              long[] distanceSums, long[] reachablePairs, int worker)
+    {
+        Arrays.fill(seen, 0L);
+        Arrays.fill(frontier, 0L);
+        Arrays.fill(next, 0L);
+        for (int k = from; k < to; k++)
+        {
+            seen[sources[k]] |= (1L << (k - from) );
+            frontier[sources[k]] |= (1L << (k - from) );
+        }
+
+        int[] batchEccentricities = new int[SOURCES_PER_BATCH];
+        long distanceSum = 0;
+        long numberOfPairs = 0;
+        int level = 0;
+        boolean isActive = true;
+        while (isActive)
+        {
+            level++;
+
+            // push the frontiers of all sources one level further
+            for (int v = 0; v < numberOfNodes; v++)
+            {
+                long bits = frontier[v];
+                if (bits != 0L)
+                    for (int i = adjacencyBegin[v]; i < adjacencyBegin[v + 1]; i++)
+                        next[adjacency[i]] |= bits;
+            }
+
+            // keep the sources that reach each node for the first time
+            long reached = 0L;
+            isActive = false;
+            for (int v = 0; v < numberOfNodes; v++)
+            {
+                long bits = next[v] & ~seen[v];
+                next[v] = 0L;
+                frontier[v] = bits;
+                if (bits != 0L)
+                {
+                    seen[v] |= bits;
+                    reached |= bits;
+                    int count = Long.bitCount(bits);
+                    numberOfPairs += count;
+                    distanceSum += (long)level * count;
+                    isActive = true;
+                }
+            }
+
+            while (reached != 0L)
+            {
+                batchEccentricities[Long.numberOfTrailingZeros(reached)] = level;
+                reached &= (reached - 1);
+            }
+        }
+
+        for (int k = from; k < to; k++)
+            eccentricitiesOut[k] = batchEccentricities[k - from];
+
+        distanceSums[worker] += distanceSum;
+        reachablePairs[worker] += numberOfPairs;
+    }
+
+    /**
+    *  Cancels the running calculation (from any thread).
+    */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+    *  Gets the diameter, or its lower bound for the approximate statistics.
+    */
+    public int getDiameter()
+    {
+        return diameter;
+    }
+
+    /**
+    *  Gets the upper bound of the diameter, equal to the diameter when exact.
+    */
+    public int getDiameterUpperBound()
+    {
+        return diameterUpperBound;
+    }
+
+    /**
+    *  Gets the average shortest path length over all pairs of connected nodes (estimated for the approximate statistics).
+    */
+    public double getAverageShortestPathLength()
+    {
+        return averageShortestPathLength;
+    }
+
+    /**
+    *  Gets the eccentricities of all nodes in GraphSnapshot order, or null if only the approximate statistics were calculated.
+    */
+    public int[] getEccentricities()
+    {
+        return eccentricities;
+    }
+
+    /**
+    *  Returns true if the statistics are exact.
+    */
+    public boolean isExact()
+    {
+        return isExact;
+    }
+
+
+}
@@ -0,0 +1,529 @@
+package org.BioLayoutExpress3D.Graph.Statistics;
+
+import java.awt.*;
+import java.util.*;
+import org.BioLayoutExpress3D.CoreUI.*;
+import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
+import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
+
+/**
+*
+* The GraphNetworkStatistics class computes the topological quality statistics of a GraphSnapshot (unweighted & undirected):
+* the local & global clustering coefficients, the k-core decomposition, the degree assortativity & the connected components size distribution.
+*
+* Triangles are counted per node by merging the sorted neighbour lists of the node & each of its neighbours, so every node only writes its own count
+* & the nodes are processed in parallel by the LayoutComputeService. The k-cores use the linear bucket algorithm of Batagelj & Zaversnik.
+* The per node results can be stored as class sets through the LayoutClassSetsManager for colouring the graph.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class GraphNetworkStatistics
+{
+
+    /**
+    *  Nodes processed per claimed chunk of the parallel loops.
+    */
+    private static final int NODES_PER_CHUNK = 256;
+
+    /**
+    *  Number of equal width bins of the clustering coefficient class set.
+    */
+    private static final int NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES = 10;
+
+    /**
+    *  Names of the class sets created by createClassSets().
+    */
+    public static final String CLUSTERING_COEFFICIENT_CLASS_SET_NAME = "Clustering Coefficient";
+    public static final String K_CORE_CLASS_SET_NAME = "K-Core";
+    public static final String CONNECTED_COMPONENTS_CLASS_SET_NAME = "Connected Components";
+
+    private final GraphSnapshot graphSnapshot;
+    private final int numberOfNodes;
+    private final int[] adjacencyBegin;
+    private final int[] adjacency;
+
+    private long[] triangles = null;
+    private double[] clusteringCoefficients = null;
+    private double averageClusteringCoefficient = 0.0;
+    private double globalClusteringCoefficient = 0.0;
+    private int[] coreNumbers = null;
+    private int maximumCoreNumber = 0;
+    private double degreeAssortativity = 0.0;
+    private int[] components = null;
+    private int[] componentSizes = null;
+
+    /**
+    *  The constructor of the GraphNetworkStatistics class.
+    */
+    public GraphNetworkStatistics(GraphSnapshot graphSnapshot)
+    {
+        this.graphSnapshot = graphSnapshot;
+        numberOfNodes = graphSnapshot.getNumberOfNodes();
+        adjacencyBegin = graphSnapshot.getAdjacencyBegin();
+        adjacency = graphSnapshot.getAdjacency();
+    }
+
+    /**
+    *  Computes all the statistics. Returns false if cancelled through the given (optional) LayoutProgressBarDialog.
+    */
+    public boolean calculateStatistics(LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        if ( !calculateClusteringCoefficients(layoutProgressBarDialog) )
+            return false;
+        if ( !calculateDegreeAssortativity(layoutProgressBarDialog) )
+            return false;
+
+        calculateCoreNumbers();
+        calculateConnectedComponents();
+
+        return true;
+    }
+
+    /**
+    *  Executes the given kernel over all nodes, in parallel if N-Core parallelism is available.
+    */
+    private boolean executeOverAllNodes(LayoutComputeService.RangeKernel rangeKernel, LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        if (USE_MULTICORE_PROCESS)
+            return LayoutComputeService.getInstance().execute(rangeKernel, numberOfNodes, NODES_PER_CHUNK, layoutProgressBarDialog);
+
+        rangeKernel.process(0, numberOfNodes);
+        return true;
+    }
+
+    /**
+    *  Counts the triangles of every node & computes the local, average & global (transitivity) clustering coefficients.
+    */
+    private boolean calculateClusteringCoefficients(LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        final long[] allTriangles = new long[numberOfNodes];
+        boolean isCompleted = executeOverAllNodes(new LayoutComputeService.RangeKernel()
+        {
+
+            @Override
+            public void process(int startIndex, int endIndex)
+            {
+                for (int v = startIndex; v < endIndex; v++)
+                {
+                    int vBegin = adjacencyBegin[v];
+                    int vEnd = adjacencyBegin[v + 1];
+                    long count = 0;
+                    for (int i = vBegin; i < vEnd; i++)
+                    {
+                        // only the neighbours w > u are counted, so every triangle through v is counted once
+                        int u = adjacency[i];
+                        int j = i + 1;
+                        int k = adjacencyBegin[u];
+                        int uEnd = adjacencyBegin[u + 1];
+                        while ( (j < vEnd) && (k < uEnd) )
+                        {
+                            if (adjacency[j] < adjacency[k])
+                                j++;
+                            else if (adjacency[j] > adjacency[k])
+                                k++;
+                            else
+                            {
+                                count++;
+                                j++;
+                                k++;
+                            }
+                        }
+                    }
+                    allTriangles[v] = count;
+                }
+            }
+
+
+        }, layoutProgressBarDialog);
+
+        if (!isCompleted)
+            return false;
+
+        triangles = allTriangles;
+        clusteringCoefficients = new double[numberOfNodes];
+        double sumOfClusteringCoefficients = 0.0;
+        double sumOfTriangles = 0.0;
+        double sumOfTriples = 0.0;
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            long degree = graphSnapshot.getDegree(v);
+            if (degree < 2)
+                continue;
+
+            double triples = degree * (degree - 1) / 2.0;
+            clusteringCoefficients[v] = triangles[v] / triples;
+            sumOfClusteringCoefficients += clusteringCoefficients[v];
+            sumOfTriangles += triangles[v];
+            sumOfTriples += triples;
+        }
+        averageClusteringCoefficient = (numberOfNodes > 0) ? sumOfClusteringCoefficients / numberOfNodes : 0.0;
+        globalClusteringCoefficient = (sumOfTriples > 0.0) ? sumOfTriangles / sumOfTriples : 0.0;
+
+        return true;
+    }
+
+    /**
+    *  Computes Newman's degree assortativity coefficient (the Pearson correlation of the degrees at both ends of the edges).
+    */
+    private boolean calculateDegreeAssortativity(LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        // one partial sum per chunk, added up in chunk order so the result does not depend on the scheduling
+        final int numberOfChunks = (numberOfNodes + NODES_PER_CHUNK - 1) / NODES_PER_CHUNK;
+        final double[] partialSums = new double[3 * numberOfChunks];
+        boolean isCompleted = executeOverAllNodes(new LayoutComputeService.RangeKernel()
+        {
+
+            @Override
+            public void process(int startIndex, int endIndex)
+            {
+                double sumOfProducts = 0.0;
+                double sumOfDegrees = 0.0;
+                double sumOfSquaredDegrees = 0.0;
+                for (int v = startIndex; v < endIndex; v++)
+                {
+                    double j = adjacencyBegin[v + 1] - adjacencyBegin[v];
+                    for (int i = adjacencyBegin[v]; i < adjacencyBegin[v + 1]; i++)
+                    {
+                        double k = adjacencyBegin[adjacency[i] + 1] - adjacencyBegin[adjacency[i]];
+                        sumOfProducts += j * k;
+                        sumOfDegrees += j;
+                        sumOfSquaredDegrees += j * j;
+                    }
+                }
+
+                // a serial fall back processes all nodes at once, keep its sums in the first chunk
+                int chunk = startIndex / NODES_PER_CHUNK;
+                partialSums[3 * chunk] += sumOfProducts;
+                partialSums[3 * chunk + 1] += sumOfDegrees;
+                partialSums[3 * chunk + 2] += sumOfSquaredDegrees;
+            }
+
+
+        }, layoutProgressBarDialog);
+
+        if (!isCompleted)
+            return false;
+
+        double sumOfProducts = 0.0;
+        double sumOfDegrees = 0.0;
+        double sumOfSquaredDegrees = 0.0;
+        for (int chunk = 0; chunk < numberOfChunks; chunk++)
+        {
+            sumOfProducts += partialSums[3 * chunk];
+            sumOfDegrees += partialSums[3 * chunk + 1];
+            sumOfSquaredDegrees += partialSums[3 * chunk + 2];
+        }
+
+        // every edge is counted from both of its ends
+        double numberOfEdgeEnds = adjacency.length;
+        degreeAssortativity = 0.0;
+        if (numberOfEdgeEnds > 0.0)
+        {
+            double meanDegree = sumOfDegrees / numberOfEdgeEnds;
+            double variance = sumOfSquaredDegrees / numberOfEdgeEnds - meanDegree * meanDegree;
+            if (variance > 0.0)
+                degreeAssortativity = (sumOfProducts / numberOfEdgeEnds - meanDegree * meanDegree) / variance;
+        }
+
+        return true;
+    }
+
+    /**
+    *  Computes the core number of every node with the O(n + m) bucket algorithm of Batagelj & Zaversnik.
+    */
+    private void calculateCoreNumbers()
+    {
+        int maximumDegree = 0;
+        int[] degrees = new int[numberOfNodes];
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            degrees[v] = graphSnapshot.getDegree(v);
+            if (maximumDegree < degrees[v])
+                maximumDegree = degrees[v];
+        }
+
+        // bucket sort the nodes by degree
+        int[] binBegin = new int[maximumDegree + 1];
+        for (int v = 0; v < numberOfNodes; v++)
+            binBegin[degrees[v]]++;
+
+        int start = 0;
+        for (int degree = 0; degree <= maximumDegree; degree++)
+        {
+            int count = binBegin[degree];
+            binBegin[degree] = start;
+            start += count;
+        }
+
+        int[] order = new int[numberOfNodes];
+        int[] position = new int[numberOfNodes];
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            position[v] = binBegin[degrees[v]]++;
+            order[position[v]] = v;
+        }
+        for (int degree = maximumDegree; degree > 0; degree--)
+            binBegin[degree] = binBegin[degree - 1];
+        binBegin[0] = 0;
+
+        // peel the nodes in increasing degree order, moving each neighbour of higher degree one bucket down
+        maximumCoreNumber = 0;
+        for (int i = 0; i < numberOfNodes; i++)
+        {
+            int v = order[i];
+            if (maximumCoreNumber < degrees[v])
+                maximumCoreNumber = degrees[v];
+
+            for (int j = adjacencyBegin[v]; j < adjacencyBegin[v + 1]; j++)
+            {
+                int u = adjacency[j];
+                if (degrees[u] > degrees[v])
+                {
+                    int degreeOfU = degrees[u];
+                    int positionOfU = position[u];
+                    int positionOfW = binBegin[degreeOfU];
+                    int w = order[positionOfW];
+                    if (u != w)
+                    {
+                        position[u] = positionOfW;
+                        order[positionOfU] = w;
+                        position[w] = positionOfU;
+                        order[positionOfW] = u;
+                    }
+                    binBegin[degreeOfU]++;
+                    degrees[u]--;
+                }
+            }
+        }
+
+        coreNumbers = degrees;
+    }
+
+    /**
+    *  Labels the connected components, numbered by decreasing size.
+    */
+    private void calculateConnectedComponents()
+    {
+        int[] labels = new int[numberOfNodes];
+        Arrays.fill(labels, -1);
+        int[] queue = new int[numberOfNodes];
+        ArrayList<Integer> sizes = new ArrayList<Integer>();
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            if (labels[v] != -1)
+                continue;
+
+            int label = sizes.size();
+            int head = 0;
+            int tail = 0;
+            labels[v] = label;
+            queue[tail++] = v;
+            while (head < tail)
+            {
+                int u = queue[head++];
+                for (int i = adjacencyBegin[u]; i < adjacencyBegin[u + 1]; i++)
+                {
+                    if (labels[adjacency[i]] == -1)
+                    {
+                        labels[adjacency[i]] = label;
+                        queue[tail++] = adjacency[i];
+                    }
+                }
+            }
+            sizes.add(tail);
+        }
+
+        // renumber the components by decreasing size (ties by first node)
+        final int[] unsortedSizes = new int[sizes.size()];
+        Integer[] sortedLabels = new Integer[sizes.size()];
+        for (int label = 0; label < unsortedSizes.length; label++)
+        {
+            unsortedSizes[label] = sizes.get(label);
+            sortedLabels[label] = label;
+        }
+        Arrays.sort(sortedLabels, new Comparator<Integer>()
+        {
+
+            @Override
+            public int compare(Integer label1, Integer label2)
+            {
+                int size1 = unsortedSizes[label1];
+                int size2 = unsortedSizes[label2];
+                return (size1 > size2) ? -1 : ( (size1 < size2) ? 1 : label1.compareTo(label2) );
+            }
+
+
+        } );
+
+        int[] newLabels = new int[unsortedSizes.length];
+        componentSizes = new int[unsortedSizes.length];
+        for (int i = 0; i < sortedLabels.length; i++)
+        {
+            newLabels[sortedLabels[i]] = i;
+            componentSizes[i] = unsortedSizes[sortedLabels[i]];
+        }
+        for (int v = 0; v < numberOfNodes; v++)
+            labels[v] = newLabels[labels[v]];
+
+        components = labels;
+    }
+
+    /**
+    *  Stores the clustering coefficients (in equal width bins), the k-cores & the connected components as class sets, then switches to the given one.
+    *  Singleton components share one class.
+    */
+    public void createClassSets(LayoutClassSetsManager layoutClassSetsManager, String switchToClassSetName)
+    {
+        // clustering coefficient bins
+        LayoutClasses layoutClasses = getClearedClassSet(layoutClassSetsManager, CLUSTERING_COEFFICIENT_CLASS_SET_NAME);
+        for (int bin = 0; bin < NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES; bin++)
+            layoutClasses.createClass( bin + 1, createGradientColor(bin, NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES),
+                                       "CC " + ( (double)bin / NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES ) + " - " + ( (double)(bin + 1) / NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES ) );
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            int bin = (int)(clusteringCoefficients[v] * NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES);
+            layoutClasses.setClass( graphSnapshot.getGraphNode(v).getVertex(), ( (bin < NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES) ? bin : NUMBER_OF_CLUSTERING_COEFFICIENT_CLASSES - 1 ) + 1 );
+        }
+
+        // k-cores
+        layoutClasses = getClearedClassSet(layoutClassSetsManager, K_CORE_CLASS_SET_NAME);
+        boolean[] hasCore = new boolean[maximumCoreNumber + 1];
+        for (int v = 0; v < numberOfNodes; v++)
+            hasCore[coreNumbers[v]] = true;
+        for (int core = 0; core <= maximumCoreNumber; core++)
+            if (hasCore[core])
+                layoutClasses.createClass( core + 1, createGradientColor(core, maximumCoreNumber + 1), "K-Core " + core );
+        for (int v = 0; v < numberOfNodes; v++)
+            layoutClasses.setClass( graphSnapshot.getGraphNode(v).getVertex(), coreNumbers[v] + 1 );
+
+        // connected components
+        layoutClasses = getClearedClassSet(layoutClassSetsManager, CONNECTED_COMPONENTS_CLASS_SET_NAME);
+        int numberOfComponentClasses = 0;
+        while ( (numberOfComponentClasses < componentSizes.length) && (componentSizes[numberOfComponentClasses] > 1) )
+            numberOfComponentClasses++;
+        for (int component = 0; component < numberOfComponentClasses; component++)
+            layoutClasses.createClass( component + 1, "Component " + (component + 1) + " (" + componentSizes[component] + " nodes)" );
+        if (numberOfComponentClasses < componentSizes.length)
+            layoutClasses.createClass(numberOfComponentClasses + 1, "Singletons");
+        for (int v = 0; v < numberOfNodes; v++)
+            layoutClasses.setClass( graphSnapshot.getGraphNode(v).getVertex(),
+                                    ( (components[v] < numberOfComponentClasses) ? components[v] : numberOfComponentClasses ) + 1 );
+
+        layoutClassSetsManager.switchClassSet(switchToClassSetName);
+    }
+
+    /**
+    *  Gets the class set of the given name, creating it if needed, without any classes.
+    */
+    private LayoutClasses getClearedClassSet(LayoutClassSetsManager layoutClassSetsManager, String classSetName)
+    {
+        if ( !layoutClassSetsManager.classSetExists(classSetName) )
+            layoutClassSetsManager.createNewClassSet(classSetName);
+
+        LayoutClasses layoutClasses = layoutClassSetsManager.getClassSet(classSetName);
+        layoutClasses.clearClasses();
+
+        return layoutClasses;
+    }
+
+    /**
+    *  Creates a blue to red color for the given step of the given number of steps.
+    */
+    private static Color createGradientColor(int step, int numberOfSteps)
+    {
+        float fraction = (numberOfSteps > 1) ? step / (float)(numberOfSteps - 1) : 1.0f;
+        return Color.getHSBColor(0.66f * (1.0f - fraction), 0.85f, 0.95f);
+    }
+
+    /**
+    *  Gets the number of triangles through every node in GraphSnapshot order.
+    */
+    public long[] getTriangles()
+    {
+        return triangles;
+    }
+
+    /**
+    *  Gets the local clustering coefficient of every node in GraphSnapshot order (0 for nodes with less than 2 neighbours).
+    */
+    public double[] getClusteringCoefficients()
+    {
+        return clusteringCoefficients;
+    }
+
+    /**
+    *  Gets the average local clustering coefficient.
+    */
+    public double getAverageClusteringCoefficient()
+    {
+        return averageClusteringCoefficient;
+    }
+
+    /**
+    *  Gets the global clustering coefficient (transitivity): 3 * triangles / connected triples.
+    */
+    public double getGlobalClusteringCoefficient()
+    {
+        return globalClusteringCoefficient;
+    }
+
+    /**
+    *  Gets the core number of every node in GraphSnapshot order.
+    */
+    public int[] getCoreNumbers()
+    {
+        return coreNumbers;
+    }
+
+    /**
+    *  Gets the largest core number (the degeneracy of the graph).
+    */
+    public int getMaximumCoreNumber()
+    {
+        return maximumCoreNumber;
+    }
+
+    /**
+    *  Gets the degree assortativity coefficient, between -1 & 1.
+    */
+    public double getDegreeAssortativity()
+    {
+        return degreeAssortativity;
+    }
+
+    /**
+    *  Gets the connected component of every node in GraphSnapshot order, components numbered by decreasing size.
+    */
+    public int[] getComponents()
+    {
+        return components;
+    }
+
+    /**
+    *  Gets the sizes of the connected components in decreasing order.
+    */
+    public int[] getComponentSizes()
+    {
+        return componentSizes;
+    }
+
+    /**
+    *  Gets the connected components size distribution: the number of components of every size, by increasing size.
+    */
+    public NavigableMap<Integer, Integer> getComponentSizeDistribution()
+    {
+        TreeMap<Integer, Integer> componentSizeDistribution = new TreeMap<Integer, Integer>();
+        for (int componentSize : componentSizes)
+        {
+            Integer count = componentSizeDistribution.get(componentSize);
+            componentSizeDistribution.put(componentSize, (count == null) ? 1 : count + 1);
+        }
+
+        return componentSizeDistribution;
+    }
+
+
+}
@@ -0,0 +1,136 @@
+package org.BioLayoutExpress3D.Graph.Statistics;
+
+import java.util.*;
+import org.BioLayoutExpress3D.Graph.GraphElements.*;
+
+/**
+*
+* The GraphSnapshot class is an immutable, undirected CSR (compressed sparse row) copy of a set of graph nodes & the edges between them,
+* used by the graph statistics so they can traverse the graph on primitive arrays instead of the GraphNode neighbour HashSets.
+* The nodes are numbered 0 ... numberOfNodes - 1 in the iteration order of the given collection.
+* The neighbours of node v are adjacency[adjacencyBegin[v] ... adjacencyBegin[v + 1] - 1], sorted in ascending order,
+* without self loops & without duplicates (parallel or antiparallel edges are merged).
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class GraphSnapshot
+{
+
+    private final GraphNode[] nodes;
+    private final int[] adjacencyBegin;
+    private final int[] adjacency;
+
+    /**
+    *  The constructor of the GraphSnapshot class. Edges with an end node outside the given nodes are ignored.
+    */
+    public GraphSnapshot(Collection<GraphNode> graphNodes, Collection<GraphEdge> graphEdges)
+    {
+        int numberOfNodes = graphNodes.size();
+        nodes = new GraphNode[numberOfNodes];
+        HashMap<GraphNode, Integer> nodeIndices = new HashMap<GraphNode, Integer>(2 * numberOfNodes);
+        int index = 0;
+        for (GraphNode graphNode : graphNodes)
+        {
+            nodes[index] = graphNode;
+            nodeIndices.put(graphNode, index++);
+        }
+
+        // collect the edges & count the degrees
+        int[] edgeEnds = new int[2 * graphEdges.size()];
+        int[] degrees = new int[numberOfNodes + 1];
+        int numberOfEdges = 0;
+        Integer first = null;
+        Integer second = null;
+        for (GraphEdge graphEdge : graphEdges)
+        {
+            first = nodeIndices.get( graphEdge.getNodeFirst() );
+            second = nodeIndices.get( graphEdge.getNodeSecond() );
+            if ( (first == null) || (second == null) || first.equals(second) )
+                continue;
+
+            edgeEnds[2 * numberOfEdges] = first;
+            edgeEnds[2 * numberOfEdges + 1] = second;
+            degrees[first + 1]++;
+            degrees[second + 1]++;
+            numberOfEdges++;
+        }
+
+        // fill both directions of every edge
+        for (int v = 0; v < numberOfNodes; v++)
+            degrees[v + 1] += degrees[v];
+
+        int[] next = Arrays.copyOf(degrees, numberOfNodes);
+        int[] allNeighbours = new int[2 * numberOfEdges];
+        for (int e = 0; e < numberOfEdges; e++)
+        {
+            allNeighbours[next[edgeEnds[2 * e]]++] = edgeEnds[2 * e + 1];
+            allNeighbours[next[edgeEnds[2 * e + 1]]++] = edgeEnds[2 * e];
+        }
+
+        // sort every neighbour list & compact it without duplicates
+        adjacencyBegin = new int[numberOfNodes + 1];
+        int size = 0;
+        for (int v = 0; v < numberOfNodes; v++)
+        {
+            Arrays.sort(allNeighbours, degrees[v], degrees[v + 1]);
+            adjacencyBegin[v] = size;
+            for (int i = degrees[v]; i < degrees[v + 1]; i++)
+                if ( (i == degrees[v]) || (allNeighbours[i] != allNeighbours[i - 1]) )
+                    allNeighbours[size++] = allNeighbours[i];
+        }
+        adjacencyBegin[numberOfNodes] = size;
+        adjacency = (size == allNeighbours.length) ? allNeighbours : Arrays.copyOf(allNeighbours, size);
+    }
+
+    /**
+    *  Gets the number of nodes.
+    */
+    public int getNumberOfNodes()
+    {
+        return nodes.length;
+    }
+
+    /**
+    *  Gets the number of (undirected, merged) edges.
+    */
+    public int getNumberOfEdges()
+    {
+        return adjacency.length / 2;
+    }
+
+    /**
+    *  Gets the degree of the given node.
+    */
+    public int getDegree(int node)
+    {
+        return adjacencyBegin[node + 1] - adjacencyBegin[node];
+    }
+
+    /**
+    *  Gets the GraphNode of the given node index.
+    */
+    public GraphNode getGraphNode(int node)
+    {
+        return nodes[node];
+    }
+
+    /**
+    *  Gets the CSR offsets array (of length numberOfNodes + 1). Not to be modified.
+    */
+    public int[] getAdjacencyBegin()
+    {
+        return adjacencyBegin;
+    }
+
+    /**
+    *  Gets the CSR neighbours array. Not to be modified.
+    */
+    public int[] getAdjacency()
+    {
+        return adjacency;
+    }
+
+
+}
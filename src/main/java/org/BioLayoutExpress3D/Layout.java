@@ -6,6 +6,7 @@ import java.util.*;
 import javax.swing.*;
 import java.text.SimpleDateFormat;
 import java.util.logging.Logger;
+import org.BioLayoutExpress3D.Batch.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.DebugConsole.*;
 import org.BioLayoutExpress3D.StaticLibraries.*;
@@ -296,6 +297,7 @@ public final class Layout
         System.err.println(" -useDefaultPreferences              : use the defaults for all saved preferences");
         System.err.println(" -usePreference <preference> <value> : set a specific preference to some value");
         System.err.println(" -help                               : prints out this help page");
+        System.err.println(" -batch [options] files              : headless batch mode, -batch -help for its options");
 
         System.exit(0);
     }
@@ -397,6 +399,13 @@ public final class Layout
     */
     public static void main(String[] args)
     {
+        // headless batch mode, before any GUI or global environment initialization
+        if ( (args.length > 0) && "-batch".equals(args[0]) )
+        {
+            BatchRunner.main( Arrays.copyOfRange(args, 1, args.length) );
+            return;
+        }
+
         if (DEBUG_BUILD)
             if (args.length > 0)
                 System.out.println("Command-line command detected:\n");
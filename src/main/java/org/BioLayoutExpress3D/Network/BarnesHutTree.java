@@ -0,0 +1,403 @@
+package org.BioLayoutExpress3D.Network;
+
+import java.util.*;
+
+/**
+*
+*  The Barnes-Hut space partitioning tree used by the FRLayout Barnes-Hut repulsion mode.
+*  It is a quadtree in 2D and an octree in 3D. All cells are stored in flat primitive arrays indexed by cell number,
+*  so rebuilding the tree on every layout iteration does not create any objects once the arrays have grown to size.
+*  Children of a cell are always allocated after their parent, so a reverse sweep over the cells is a valid bottom-up order.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class BarnesHutTree
+{
+    private static final int MAXIMUM_TREE_DEPTH = 24;
+    private static final int INITIAL_NUMBER_OF_CELLS = 1024;
+
+    private final int dimensions;
+    private final int numberOfChildren;
+
+    private int numberOfCells = 0;
+    private int[] cellFirstChild = null; // -1 for leaf cells
+    private int[] cellFirstBody = null; // -1 for empty leaf cells, otherwise the head of the leaf body linked list
+    private int[] cellDepth = null;
+    private float[] cellCenter = null; // geometric center, dimensions values per cell
+    private float[] cellHalfSize = null;
+    private float[] cellMass = null;
+    private float[] cellNonPseudoMass = null;
+    private float[] cellMassCenter = null; // center of mass, dimensions values per cell
+    private int[] nextBody = null; // leaf body linked list, indexed by vertexID
+
+    /**
+    *  The constructor of the BarnesHutTree class. Use 2 dimensions for a quadtree and 3 dimensions for an octree.
+    */
+    public BarnesHutTree(int dimensions)
+    {
+        this.dimensions = dimensions;
+        this.numberOfChildren = 1 << dimensions;
+
+        allocateCells(INITIAL_NUMBER_OF_CELLS);
+    }
+
+    /**
+    *  Allocates (or grows) all the cell arrays.
+    */
+    private void allocateCells(int capacity)
+    {
+        if (cellFirstChild == null)
+        {
+            cellFirstChild = new int[capacity];
+            cellFirstBody = new int[capacity];
+            cellDepth = new int[capacity];
+            cellCenter = new float[capacity * dimensions];
+            cellHalfSize = new float[capacity];
+            cellMass = new float[capacity];
+            cellNonPseudoMass = new float[capacity];
+            cellMassCenter = new float[capacity * dimensions];
+        }
+        else
+        {
+            cellFirstChild = Arrays.copyOf(cellFirstChild, capacity);
+            cellFirstBody = Arrays.copyOf(cellFirstBody, capacity);
+            cellDepth = Arrays.copyOf(cellDepth, capacity);
+            cellCenter = Arrays.copyOf(cellCenter, capacity * dimensions);
+            cellHalfSize = Arrays.copyOf(cellHalfSize, capacity);
+            cellMass = Arrays.copyOf(cellMass, capacity);
+            cellNonPseudoMass = Arrays.copyOf(cellNonPseudoMass, capacity);
+            cellMassCenter = Arrays.copyOf(cellMassCenter, capacity * dimensions);
+        }
+    }
+
+    /**
+    *  Builds the tree for the given vertices.
+    *  The coordinates array is indexed by vertexID * dimensions, as in the FRLayout cached point coordinates matrix.
+    *  The pseudoVertexBits packed bitset may be null when no pseudo vertices are present.
+    */
+    public void build(float[] coords, int[] vertexIDs, int numberOfVertices, int[] pseudoVertexBits)
+    {
+        int maxNumberOfBodies = coords.length / dimensions;
+        if ( (nextBody == null) || (nextBody.length < maxNumberOfBodies) )
+            nextBody = new int[maxNumberOfBodies];
+
+        float[] min = new float[dimensions];
+        float[] max = new float[dimensions];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+        for (int i = 0; i < numberOfVertices; i++)
+        {
+            int vertexIDIndex = vertexIDs[i] * dimensions;
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                float value = coords[vertexIDIndex + axis];
+                if (value < min[axis]) min[axis] = value;
+                if (value > max[axis]) max[axis] = value;
+            }
+        }
+
+        float halfSize = 0.0f;
+        for (int axis = 0; axis < dimensions; axis++)
+            if ( (max[axis] - min[axis]) > halfSize )
+                halfSize = max[axis] - min[axis];
+        halfSize = 0.5f * halfSize + 1.0f;
+
+        // the root cell
+        numberOfCells = 1;
+        cellFirstChild[0] = -1;
+        cellFirstBody[0] = -1;
+        cellDepth[0] = 0;
+        cellHalfSize[0] = halfSize;
+        for (int axis = 0; axis < dimensions; axis++)
+            cellCenter[axis] = 0.5f * (min[axis] + max[axis]);
+
+        for (int i = 0; i < numberOfVertices; i++)
+            insertBody(coords, vertexIDs[i]);
+
+        calculateMasses(coords, pseudoVertexBits);
+    }
+
+    /**
+    *  Inserts a body in the tree, subdividing leaf cells as needed.
+    */
+    private void insertBody(float[] coords, int body)
+    {
+        int cell = 0;
+        while (true)
+        {
+            if (cellFirstChild[cell] >= 0)
+            {
+                cell = cellFirstChild[cell] + childIndex(cell, coords, body);
+            }
+            else if (cellFirstBody[cell] < 0)
+            {
+                cellFirstBody[cell] = body;
+                nextBody[body] = -1;
+                return;
+            }
+            else if (cellDepth[cell] >= MAXIMUM_TREE_DEPTH)
+            {
+                // coincident points: keep them all in the same leaf
+                nextBody[body] = cellFirstBody[cell];
+                cellFirstBody[cell] = body;
+                return;
+            }
+            else
+            {
+                int existingBody = cellFirstBody[cell];
+                cellFirstBody[cell] = -1;
+                subdivide(cell);
+                while (existingBody >= 0)
+                {
+                    int next = nextBody[existingBody];
+                    int child = cellFirstChild[cell] + childIndex(cell, coords, existingBody);
+                    nextBody[existingBody] = cellFirstBody[child];
+                    cellFirstBody[child] = existingBody;
+                    existingBody = next;
+                }
+            }
+        }
+    }
+
+    /**
+    *  Creates the children of the given leaf cell.
+    */
+    private void subdivide(int cell)
+    {
+        if (numberOfCells + numberOfChildren > cellFirstChild.length)
+            allocateCells(cellFirstChild.length << 1);
+
+        int firstChild = numberOfCells;
+        float childHalfSize = 0.5f * cellHalfSize[cell];
+        for (int child = 0; child < numberOfChildren; child++)
+        {
+            int childCell = firstChild + child;
+            cellFirstChild[childCell] = -1;
+            cellFirstBody[childCell] = -1;
+            cellDepth[childCell] = cellDepth[cell] + 1;
+            cellHalfSize[childCell] = childHalfSize;
+            for (int axis = 0; axis < dimensions; axis++)
+                cellCenter[childCell * dimensions + axis] = cellCenter[cell * dimensions + axis] + ( ( ( (child >> axis) & 1 ) != 0 ) ? childHalfSize : -childHalfSize );
+        }
+
+        cellFirstChild[cell] = firstChild;
+        numberOfCells += numberOfChildren;
+    }
+
+    /**
+    *  Returns the child index (0 to numberOfChildren - 1) of the given cell that contains the given body.
+    */
+    private int childIndex(int cell, float[] coords, int body)
+    {
+        int index = 0;
+        for (int axis = 0; axis < dimensions; axis++)
+            if (coords[body * dimensions + axis] >= cellCenter[cell * dimensions + axis])
+                index |= (1 << axis);
+
+        return index;
+    }
+
+    /**
+    *  Calculates the masses and centers of mass of all cells in a single bottom-up sweep.
+    */
+    private void calculateMasses(float[] coords, int[] pseudoVertexBits)
+    {
+        int cell = numberOfCells;
+        while (--cell >= 0)
+        {
+            float mass = 0.0f;
+            float nonPseudoMass = 0.0f;
+            int cellIndex = cell * dimensions;
+            for (int axis = 0; axis < dimensions; axis++)
+                cellMassCenter[cellIndex + axis] = 0.0f;
+
+            if (cellFirstChild[cell] < 0)
+            {
+                for (int body = cellFirstBody[cell]; body >= 0; body = nextBody[body])
+                {
+                    mass += 1.0f;
+                    if ( !isPseudoVertex(body, pseudoVertexBits) )
+                        nonPseudoMass += 1.0f;
+                    for (int axis = 0; axis < dimensions; axis++)
+                        cellMassCenter[cellIndex + axis] += coords[body * dimensions + axis];
+                }
+            }
+            else
+            {
+                int firstChild = cellFirstChild[cell];
+                for (int child = firstChild; child < firstChild + numberOfChildren; child++)
+                {
+                    float childMass = cellMass[child];
+                    if (childMass == 0.0f)
+                        continue;
+
+                    mass += childMass;
+                    nonPseudoMass += cellNonPseudoMass[child];
+                    for (int axis = 0; axis < dimensions; axis++)
+                        cellMassCenter[cellIndex + axis] += childMass * cellMassCenter[child * dimensions + axis];
+                }
+            }
+
+            if (mass > 0.0f)
+                for (int axis = 0; axis < dimensions; axis++)
+                    cellMassCenter[cellIndex + axis] /= mass;
+
+            cellMass[cell] = mass;
+            cellNonPseudoMass[cell] = nonPseudoMass;
+        }
+    }
+
+    /**
+    *  Checks the packed pseudo vertex bitset.
+    */
+    private static boolean isPseudoVertex(int vertexID, int[] pseudoVertexBits)
+    {
+        return (pseudoVertexBits != null) && ( ( ( pseudoVertexBits[vertexID >> FRLayout.BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID & FRLayout.BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
+    }
+
+    /**
+    *  Creates a traversal stack big enough for this tree. One stack is needed per calculating thread.
+    */
+    public int[] createTraversalStack()
+    {
+        return new int[MAXIMUM_TREE_DEPTH * (numberOfChildren - 1) + numberOfChildren + 1];
+    }
+
+    /**
+    *  Calculates the approximate repulsive force exerted on the given vertex by all other vertices in the tree.
+    *  Cells are approximated by their center of mass when (cellSize / distance) < theta.
+    *  Following the FRLayout kernels, a pair is first rejected by the per-axis box test (both the X & Y axis distances beyond the cut-off distance),
+    *  then there is no repulsion beyond the Euclidean cut-off distance. Zero axis distances count as 1.0 & repulsion between two pseudo vertices is ignored.
+    *  The exact 2D kernel looks its forces up by the integer parts of the axis distances, so it still differs from this one by that rounding only.
+    *  The result is stored in the force array (dimensions values).
+    */
+    public void calculateRepulsiveForce(int vertexID, float[] coords, float theta, float kSquareValue, float cutOffDistance,
+                                        int[] pseudoVertexBits, int[] traversalStack, float[] force)
+    {
+        int vertexIDIndex = vertexID * dimensions;
+        boolean isPseudo = isPseudoVertex(vertexID, pseudoVertexBits);
+        float thetaSquared = theta * theta;
+        float cutOffSquared = cutOffDistance * cutOffDistance;
+        float forceX = 0.0f, forceY = 0.0f, forceZ = 0.0f;
+        float x = coords[vertexIDIndex];
+        float y = coords[vertexIDIndex + 1];
+        float z = (dimensions == 3) ? coords[vertexIDIndex + 2] : 0.0f;
+
+        int stackSize = 0;
+        traversalStack[stackSize++] = 0;
+        while (stackSize > 0)
+        {
+            int cell = traversalStack[--stackSize];
+            float mass = (isPseudo) ? cellNonPseudoMass[cell] : cellMass[cell];
+            if (mass == 0.0f)
+                continue;
+
+            // prune whole cells lying beyond the cut-off distance
+            int cellIndex = cell * dimensions;
+            float halfSize = cellHalfSize[cell];
+            float boxDistanceSquared = 0.0f;
+            float axisDistance = ( (x > cellCenter[cellIndex]) ? x - cellCenter[cellIndex] : cellCenter[cellIndex] - x ) - halfSize;
+            if (axisDistance > 0.0f) boxDistanceSquared += axisDistance * axisDistance;
+            axisDistance = ( (y > cellCenter[cellIndex + 1]) ? y - cellCenter[cellIndex + 1] : cellCenter[cellIndex + 1] - y ) - halfSize;
+            if (axisDistance > 0.0f) boxDistanceSquared += axisDistance * axisDistance;
+            if (dimensions == 3)
+            {
+                axisDistance = ( (z > cellCenter[cellIndex + 2]) ? z - cellCenter[cellIndex + 2] : cellCenter[cellIndex + 2] - z ) - halfSize;
+                if (axisDistance > 0.0f) boxDistanceSquared += axisDistance * axisDistance;
+            }
+            if (boxDistanceSquared > cutOffSquared)
+                continue;
+
+            if (cellFirstChild[cell] < 0)
+            {
+                for (int body = cellFirstBody[cell]; body >= 0; body = nextBody[body])
+                {
+                    if ( (body == vertexID) || ( isPseudo && isPseudoVertex(body, pseudoVertexBits) ) )
+                        continue;
+
+                    int bodyIndex = body * dimensions;
+                    float distX = x - coords[bodyIndex];
+                    float distY = y - coords[bodyIndex + 1];
+                    float distZ = (dimensions == 3) ? z - coords[bodyIndex + 2] : 0.0f;
+                    if (distX == 0.0f)
+                        distX = 1.0f;
+                    if (distY == 0.0f)
+                        distY = 1.0f;
+                    if ( (dimensions == 3) && (distZ == 0.0f) )
+                        distZ = 1.0f;
+
+                    if ( isBeyondCutOffBox(distX, distY, cutOffDistance) )
+                        continue;
+
+                    float squaredDistance = distX * distX + distY * distY + distZ * distZ;
+                    if (squaredDistance <= cutOffSquared)
+                    {
+                        float kDist = kSquareValue / squaredDistance;
+                        forceX += distX * kDist;
+                        forceY += distY * kDist;
+                        forceZ += distZ * kDist;
+                    }
+                }
+            }
+            else
+            {
+                float distX = x - cellMassCenter[cellIndex];
+                float distY = y - cellMassCenter[cellIndex + 1];
+                float distZ = (dimensions == 3) ? z - cellMassCenter[cellIndex + 2] : 0.0f;
+                float squaredDistance = distX * distX + distY * distY + distZ * distZ;
+                float cellSize = 2.0f * halfSize;
+
+                if ( (cellSize * cellSize) < (thetaSquared * squaredDistance) )
+                {
+                    // well separated cell, approximate it by its center of mass
+                    if ( !isBeyondCutOffBox(distX, distY, cutOffDistance) && (squaredDistance <= cutOffSquared) )
+                    {
+                        float kDist = mass * kSquareValue / squaredDistance;
+                        forceX += distX * kDist;
+                        forceY += distY * kDist;
+                        forceZ += distZ * kDist;
+                    }
+                }
+                else
+                {
+                    int firstChild = cellFirstChild[cell];
+                    for (int child = firstChild; child < firstChild + numberOfChildren; child++)
+                        traversalStack[stackSize++] = child;
+                }
+            }
+        }
+
+        force[0] = forceX;
+        force[1] = forceY;
+        if (dimensions == 3)
+            force[2] = forceZ;
+    }
+
+    /**
+    *  The per-axis box test of the exact FRLayout kernels, only the X & Y axis distances are tested in both 2D & 3D.
+    */
+    private static boolean isBeyondCutOffBox(float distX, float distY, float cutOffDistance)
+    {
+        return ( ( (distX < 0.0f) ? -distX : distX ) > cutOffDistance ) && ( ( (distY < 0.0f) ? -distY : distY ) > cutOffDistance );
+    }
+
+    /**
+    *  Gets the dimensions of the tree.
+    */
+    public int getDimensions()
+    {
+        return dimensions;
+    }
+
+    /**
+    *  Gets the number of cells of the last built tree.
+    */
+    public int getNumberOfCells()
+    {
+        return numberOfCells;
+    }
+
+
+}
@@ -8,10 +8,8 @@ import java.util.concurrent.atomic.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
 import org.BioLayoutExpress3D.CPUParallelism.*;
-import org.BioLayoutExpress3D.CPUParallelism.Executors.*;
 import org.BioLayoutExpress3D.GPUComputing.OpenCLContext.FRLayout.*;
 import static java.lang.Math.*;
-import static org.BioLayoutExpress3D.StaticLibraries.ArraysAutoBoxUtils.*;
 import static org.BioLayoutExpress3D.StaticLibraries.FixedPointMath.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
@@ -60,29 +58,39 @@ public final class FRLayout
     private int[] cachedPseudoVertexMatrixArray = null;
     private FloatBuffer cachedVertexPointCoordsMatrixBuffer = null;
     private float[] cachedVertexPointCoordsMatrixArray = null;
+    private int[] cachedVertexConnectionRowOffsetsArray = null; // CSR row offsets indexed by vertexID, each row holding the lower vertexID neighbours in ascending order
+    private int[] cachedVertexConnectionNeighboursArray = null;
+    private short[] cachedVertexConnectionWeightsArray = null;
+
+    // packed triangular matrix buffers only needed by the OpenCL GPU Computing kernels
     private IntBuffer cachedVertexConnectionMatrixBuffer = null;
-    private int[] cachedVertexConnectionMatrixArray = null;
     private IntBuffer cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = null;
-    private int[] cachedVertexConnectionRowSkipSizeValuesMatrixArray = null;
     private ShortBuffer cachedVertexNormalizedWeightMatrixBuffer = null;
-    private short[] cachedVertexNormalizedWeightMatrixArray = null;
     private IntBuffer cachedVertexNormalizedWeightIndicesToSkipBuffer = null;
-    private int[] cachedVertexNormalizedWeightIndicesToSkipArray = null;
 
     private Vertex[] vertexArray = null;
     private int numberOfVertices = 0;
     private LayoutFrame layoutFrame = null;
-    private LayoutProgressBarDialog layoutProgressBarDialog = null;
+    private LayoutProgressBar layoutProgressBarDialog = null;
     private NumberFormat nf1 = null;
     private NumberFormat nf2 = null;
 
     // variables needed for N-CP & OpenCL GPU Computing
-    private static final int MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION = 1000;
+    static final int MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION = 1000;
     private static final int MINIMUM_NUMBER_OF_VERTICES_FOR_OPENCL_GPU_COMPUTING_PARALLELIZATION = 1000;
-    private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
+    private static final int NUMBER_OF_NCP_ROW_CHUNKS_PER_WORKER = 8;
+    private static final float MAXIMUM_BARNES_HUT_THETA = 1.0f;
     private volatile AtomicIntegerArray displacementValuesAtomic = null;
 
+    // variables needed for the Barnes-Hut repulsion mode
+    private BarnesHutTree barnesHutTree = null;
+
+    // variables needed for the incremental layout, the movable vertexIDs & the CSR connections touching them (row vertexID & connection index)
+    private boolean[] isMovableVertexArray = null;
+    private int[] movableVertexIndicesArray = null;
+    private int[] movableConnectionRowsArray = null;
+    private int[] movableConnectionIndicesArray = null;
+
     /**
     *  The constructor of the FRLayout class. Initializes all the variables needed for the FRLayout algorithm.
     */
@@ -129,17 +137,7 @@ public final class FRLayout
         vertices.toArray(vertexArray);
         Arrays.sort(vertexArray);
 
-        long totalCalculationsNeeded = org.BioLayoutExpress3D.StaticLibraries.Math.totalTriangularMatrixCalculationsNeeded( (long)numberOfVertices );
         vertexIndicesMatrixBuffer = IntBuffer.allocate(numberOfVertices);
-        cachedVertexConnectionMatrixBuffer = IntBuffer.allocate( (int)(totalCalculationsNeeded >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) + 1 ); // Elaine's optimum idea of defining the bitshift array!
-        cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = IntBuffer.allocate(numberOfVertices - 1);
-        int tempRowSkipSizeValue = (int)totalCalculationsNeeded;
-        int from = numberOfVertices;
-        while (--from >= 1)
-        {
-            tempRowSkipSizeValue -= from;
-            cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.put(from - 1, tempRowSkipSizeValue);
-        }
 
         if (!RENDERER_MODE_3D)
         {
@@ -182,65 +180,119 @@ public final class FRLayout
             }
         }
 
-        int dimensionalityIndex = 0;
-        int weightRowIndex = 0;
-        ArrayList<Short> cachedVertexNormalizedWeightArrayList = (useEdgeWeights) ? new ArrayList<Short>() : null;
-        cachedVertexNormalizedWeightIndicesToSkipBuffer = ( useEdgeWeights && ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) ) ) ? IntBuffer.allocate(numberOfVertices) : null;
-        from = numberOfVertices;
-        int to = 0;
-        while (--from >= 0)
-        // for (int from = 0; from < numberOfVertices; from++)
+        initVertexConnectionsCSR();
+        if ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() )
+            initOpenCLVertexConnectionCachedDataStructures(true);
+
+        vertexIndicesMatrixArray = vertexIndicesMatrixBuffer.array();
+        displacementValuesArray = displacementValuesBuffer.array();
+        if (RENDERER_MODE_3D)
+            cachedPseudoVertexMatrixArray = cachedPseudoVertexMatrixBuffer.array();
+        cachedVertexPointCoordsMatrixArray = cachedVertexPointCoordsMatrixBuffer.array();
+    }
+
+    /**
+    *  Initializes the vertex connections in Compressed Sparse Row (CSR) form in O(n + m).
+    *  Each row only keeps the neighbours with a lower vertexID, in ascending order,
+    *  so as to match the traversal order of the triangular force loops.
+    */
+    private void initVertexConnectionsCSR()
+    {
+        int numberOfVertexIDs = (numberOfVertices > 0) ? vertexArray[0].getVertexID() + 1 : 0; // vertexArray is sorted in descending vertexID order
+        cachedVertexConnectionRowOffsetsArray = new int[numberOfVertexIDs + 1];
+
+        int vertexID = 0;
+        for (Vertex vertex : vertexArray)
         {
-            weightRowIndex = 0;
-            to = numberOfVertices;
-            while (--to >= from + 1)
-            // for (int to = from + 1; to < numberOfVertices; to++)
+            vertexID = vertex.getVertexID();
+            for ( Vertex otherVertex : vertex.getEdgeConnectionsMap().keySet() )
+                if ( otherVertex.getVertexID() < vertexID )
+                    cachedVertexConnectionRowOffsetsArray[vertexID + 1]++;
+        }
+        for (int i = 0; i < numberOfVertexIDs; i++)
+            cachedVertexConnectionRowOffsetsArray[i + 1] += cachedVertexConnectionRowOffsetsArray[i];
+
+        int numberOfConnections = cachedVertexConnectionRowOffsetsArray[numberOfVertexIDs];
+        cachedVertexConnectionNeighboursArray = new int[numberOfConnections];
+        cachedVertexConnectionWeightsArray = (useEdgeWeights) ? new short[numberOfConnections] : null;
+
+        // visiting the vertices in ascending vertexID order & appending each one to the rows of its higher vertexID neighbours keeps all rows sorted
+        int[] rowPositions = Arrays.copyOf(cachedVertexConnectionRowOffsetsArray, numberOfVertexIDs);
+        int rowPosition = 0;
+        int index = numberOfVertices;
+        while (--index >= 0)
+        {
+            vertexID = vertexArray[index].getVertexID();
+            for ( Map.Entry<Vertex, Edge> entry : vertexArray[index].getEdgeConnectionsMap().entrySet() )
             {
-                if ( vertexArray[from].getEdgeConnectionsMap().containsKey(vertexArray[to]) )
+                if ( entry.getKey().getVertexID() > vertexID )
                 {
-                    dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.get(vertexArray[from].getVertexID() - 1) + vertexArray[to].getVertexID();
-                    cachedVertexConnectionMatrixBuffer.put( dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE, cachedVertexConnectionMatrixBuffer.get(dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) | 1 << (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) );
+                    rowPosition = rowPositions[entry.getKey().getVertexID()]++;
+                    cachedVertexConnectionNeighboursArray[rowPosition] = vertexID;
                     if (useEdgeWeights)
-                    {
-                        cachedVertexNormalizedWeightArrayList.add( convertFromFloatToFixedPointShortNumber(vertexArray[from].getEdgeConnectionsMap().get(vertexArray[to]).getNormalisedWeight(), FIXED_POINT_DECIMAL_PART_LENGTH) );
-                        if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-                            cachedVertexNormalizedWeightIndicesToSkipBuffer.put(from, ++weightRowIndex);
-                    }
+                        cachedVertexConnectionWeightsArray[rowPosition] = convertFromFloatToFixedPointShortNumber(entry.getValue().getNormalisedWeight(), FIXED_POINT_DECIMAL_PART_LENGTH);
+                }
+            }
+        }
+    }
+
+    /**
+    *  Initializes the packed triangular matrix buffers of the OpenCL GPU Computing kernels from the CSR vertex connections in O(n + m).
+    *  The weights are stored in the (from, to) traversal order of the current vertexArray.
+    */
+    private void initOpenCLVertexConnectionCachedDataStructures(boolean initConnectionMatrix)
+    {
+        if (initConnectionMatrix)
+        {
+            long totalCalculationsNeeded = org.BioLayoutExpress3D.StaticLibraries.Math.totalTriangularMatrixCalculationsNeeded( (long)numberOfVertices );
+            cachedVertexConnectionMatrixBuffer = IntBuffer.allocate( (int)(totalCalculationsNeeded >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) + 1 ); // Elaine's optimum idea of defining the bitshift array!
+            cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = IntBuffer.allocate( (numberOfVertices > 1) ? numberOfVertices - 1 : 1 );
+            int tempRowSkipSizeValue = (int)totalCalculationsNeeded;
+            int from = numberOfVertices;
+            while (--from >= 1)
+            {
+                tempRowSkipSizeValue -= from;
+                cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.put(from - 1, tempRowSkipSizeValue);
+            }
+
+            int dimensionalityIndex = 0;
+            int vertexID = 0;
+            int numberOfVertexIDs = cachedVertexConnectionRowOffsetsArray.length - 1;
+            for (vertexID = 1; vertexID < numberOfVertexIDs; vertexID++)
+            {
+                for (int i = cachedVertexConnectionRowOffsetsArray[vertexID]; i < cachedVertexConnectionRowOffsetsArray[vertexID + 1]; i++)
+                {
+                    dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.get(vertexID - 1) + cachedVertexConnectionNeighboursArray[i];
+                    cachedVertexConnectionMatrixBuffer.put( dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE, cachedVertexConnectionMatrixBuffer.get(dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) | 1 << (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) );
                 }
             }
         }
 
         if (useEdgeWeights)
         {
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate( cachedVertexNormalizedWeightArrayList.size() );
-            cachedVertexNormalizedWeightMatrixBuffer.put( toPrimitiveListShort(cachedVertexNormalizedWeightArrayList) );
+            int numberOfWeights = 0;
+            for (Vertex vertex : vertexArray)
+                numberOfWeights += cachedVertexConnectionRowOffsetsArray[vertex.getVertexID() + 1] - cachedVertexConnectionRowOffsetsArray[vertex.getVertexID()];
+
+            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate( (numberOfWeights > 0) ? numberOfWeights : 1 );
+            cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate( (numberOfVertices > 0) ? numberOfVertices : 1 );
+            int vertexID = 0;
+            int from = numberOfVertices;
+            while (--from >= 0)
+            {
+                vertexID = vertexArray[from].getVertexID();
+                cachedVertexNormalizedWeightIndicesToSkipBuffer.put(from, cachedVertexConnectionRowOffsetsArray[vertexID + 1] - cachedVertexConnectionRowOffsetsArray[vertexID]);
+                cachedVertexNormalizedWeightMatrixBuffer.put(cachedVertexConnectionWeightsArray, cachedVertexConnectionRowOffsetsArray[vertexID], cachedVertexConnectionRowOffsetsArray[vertexID + 1] - cachedVertexConnectionRowOffsetsArray[vertexID]);
+            }
         }
         else
         {
             // make sure the OpenCL GPU code & the native code does not crash the JVM with a C side null pointer exception!
             cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate(1);
             cachedVertexNormalizedWeightMatrixBuffer.put(new short[1]);
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-            {
-                cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate(1);
-                cachedVertexNormalizedWeightIndicesToSkipBuffer.put(new int[1]);
-            }
+            cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate(1);
+            cachedVertexNormalizedWeightIndicesToSkipBuffer.put(new int[1]);
         }
-
-        vertexIndicesMatrixArray = vertexIndicesMatrixBuffer.array();
-        displacementValuesArray = displacementValuesBuffer.array();
-        if (RENDERER_MODE_3D)
-            cachedPseudoVertexMatrixArray = cachedPseudoVertexMatrixBuffer.array();
-        cachedVertexPointCoordsMatrixArray = cachedVertexPointCoordsMatrixBuffer.array();
-        cachedVertexConnectionMatrixArray = cachedVertexConnectionMatrixBuffer.array();
-        cachedVertexConnectionRowSkipSizeValuesMatrixArray = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.array();
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-                cachedVertexNormalizedWeightIndicesToSkipArray = cachedVertexNormalizedWeightIndicesToSkipBuffer.array();
-        }
-        cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
     }
 
     /**
@@ -293,6 +345,44 @@ public final class FRLayout
         displacementMatrixArray = displacementMatrixBuffer.array();
     }
 
+    /**
+    *  Creates an FRLayout for the given graph component with its own iteration state.
+    *  The cached coordinates, displacements & vertex connections are shared with this FRLayout, as the components are disjoint
+    *  in their vertexIDs, so several graph components can be laid out concurrently.
+    */
+    public FRLayout createComponentFRLayout(Collection<Vertex> vertices)
+    {
+        FRLayout componentFRLayout = new FRLayout(canvasXSize, canvasYSize, canvasZSize);
+        componentFRLayout.layoutFrame = layoutFrame;
+        componentFRLayout.displacementMatrixDimensionality = displacementMatrixDimensionality;
+        componentFRLayout.numberOfIterations = numberOfIterations;
+        componentFRLayout.temperature = temperature;
+        componentFRLayout.kValueModifier = kValueModifier;
+        componentFRLayout.kValue = kValue;
+        componentFRLayout.kSquareValue = kSquareValue;
+        componentFRLayout.kDoubled = kDoubled;
+        componentFRLayout.useEdgeWeights = useEdgeWeights;
+
+        componentFRLayout.displacementValuesBuffer = displacementValuesBuffer;
+        componentFRLayout.displacementValuesArray = displacementValuesArray;
+        componentFRLayout.displacementValuesAtomic = displacementValuesAtomic;
+        componentFRLayout.displacementMatrixBuffer = displacementMatrixBuffer;
+        componentFRLayout.displacementMatrixArray = displacementMatrixArray;
+        componentFRLayout.cachedPseudoVertexMatrixBuffer = cachedPseudoVertexMatrixBuffer;
+        componentFRLayout.cachedPseudoVertexMatrixArray = cachedPseudoVertexMatrixArray;
+        componentFRLayout.cachedVertexPointCoordsMatrixBuffer = cachedVertexPointCoordsMatrixBuffer;
+        componentFRLayout.cachedVertexPointCoordsMatrixArray = cachedVertexPointCoordsMatrixArray;
+        componentFRLayout.cachedVertexConnectionRowOffsetsArray = cachedVertexConnectionRowOffsetsArray;
+        componentFRLayout.cachedVertexConnectionNeighboursArray = cachedVertexConnectionNeighboursArray;
+        componentFRLayout.cachedVertexConnectionWeightsArray = cachedVertexConnectionWeightsArray;
+        componentFRLayout.cachedVertexConnectionMatrixBuffer = cachedVertexConnectionMatrixBuffer;
+        componentFRLayout.cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer;
+
+        componentFRLayout.createVerticesMatrices(vertices);
+
+        return componentFRLayout;
+    }
+
     /**
     *  Creates the vertex indices matrix.
     */
@@ -307,63 +397,24 @@ public final class FRLayout
         for (Vertex vertex : vertexArray)
             vertexIndicesMatrixBuffer.put( vertex.getVertexID() );
 
-        int dimensionalityIndex = 0;
-        int weightRowIndex = 0;
-        ArrayList<Short> cachedVertexNormalizedWeightArrayList = (useEdgeWeights) ? new ArrayList<Short>() : null;
-        cachedVertexNormalizedWeightIndicesToSkipBuffer = ( useEdgeWeights && ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) ) ) ? IntBuffer.allocate(numberOfVertices) : null;
-        int from = numberOfVertices;
-        int to = 0;
-        while (--from >= 0)
-        // for (int from = 0; from < numberOfVertices; from++)
-        {
-            weightRowIndex = 0;
-            to = numberOfVertices;
-            while (--to >= from + 1)
-            // for (int to = from + 1; to < numberOfVertices; to++)
-            {
-                dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.get(vertexArray[from].getVertexID() - 1) + vertexArray[to].getVertexID();
-                if ( useEdgeWeights && ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
-                {
-                    cachedVertexNormalizedWeightArrayList.add( convertFromFloatToFixedPointShortNumber(vertexArray[from].getEdgeConnectionsMap().get(vertexArray[to]).getNormalisedWeight(), FIXED_POINT_DECIMAL_PART_LENGTH) );
-                    if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-                        cachedVertexNormalizedWeightIndicesToSkipBuffer.put(from, ++weightRowIndex);
-                }
-            }
-        }
-
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate( cachedVertexNormalizedWeightArrayList.size() );
-            cachedVertexNormalizedWeightMatrixBuffer.put( toPrimitiveListShort(cachedVertexNormalizedWeightArrayList) );
-        }
-        else
-        {
-            // make sure the OpenCL GPU code & the native code does not crash the JVM with a C side null pointer exception!
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate(1);
-            cachedVertexNormalizedWeightMatrixBuffer.put(new short[1]);
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-            {
-                cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate(1);
-                cachedVertexNormalizedWeightIndicesToSkipBuffer.put(new int[1]);
-            }
-        }
-
         vertexIndicesMatrixArray = vertexIndicesMatrixBuffer.array();
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) )
-                cachedVertexNormalizedWeightIndicesToSkipArray = cachedVertexNormalizedWeightIndicesToSkipBuffer.array();
-        }
+        if ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() )
+            initOpenCLVertexConnectionCachedDataStructures(false);
     }
 
     /**
     *  Performs all iterations of the FRLayout algorithm in 2D.
     */
-    public void allIterationsCalcBiDirForce2D(int iterations, int componentID, LayoutProgressBarDialog layoutProgressBarDialog)
+    public void allIterationsCalcBiDirForce2D(int iterations, int componentID, LayoutProgressBar layoutProgressBarDialog)
     {
         this.layoutProgressBarDialog = layoutProgressBarDialog;
 
+        if ( useBarnesHutRepulsion() )
+        {
+            allIterationsCalcBarnesHutForce(iterations, true);
+            return;
+        }
+
         boolean performOpenCLGPUFRLayoutCalculationGetErrorOccured = false;
         if ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() && (numberOfVertices > MINIMUM_NUMBER_OF_VERTICES_FOR_OPENCL_GPU_COMPUTING_PARALLELIZATION) )
             performOpenCLGPUFRLayoutCalculationGetErrorOccured = performOpenCLGPUFRLayoutCalcBiDirForce2D(iterations);
@@ -402,17 +453,18 @@ public final class FRLayout
             int to = 0;
             while (--iterations >= 0)
             {
-                // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+                // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+                int[] cachedVertexConnectionIndex = new int[1];
                 from = numberOfVertices;
                 to = 0;
                 while (--from >= 0)
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
 
                 vertexID = numberOfVertices;
@@ -438,44 +490,87 @@ public final class FRLayout
                         "   (no utilization of OpenCL GPU Computing)");
             }
 
-            boolean isPowerOfTwo = org.BioLayoutExpress3D.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
+            boolean completed = true;
             while (--iterations >= 0)
             {
-                LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                                 new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                                 new LoggerThreadFactory("FRLayout2D"),
-                                                                                 new ThreadPoolExecutor.CallerRunsPolicy() );
-
-                cyclicBarrierTimer.clear();
-                for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                    executor.execute( frLayout2DProcessKernel(threadId, isPowerOfTwo) );
+                completed = calcBiDirForceNCP(true);
+                setForceToVertex(true);
+                temperatureHandling();
+                updateGUI();
 
-                try
+                if ( !completed || layoutProgressBarDialog.userHasCancelled() )
                 {
-                    threadBarrier.await(); // wait for all threads to be ready
-                    threadBarrier.await(); // wait for all threads to finish
-                    executor.shutdown();
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in allIterationsCalcBiDirForce2DJava()!:\n" + ex.getMessage());
+                    return;
                 }
-                catch (InterruptedException ex)
+            }
+        }
+    }
+
+    /**
+    *  Calculates one N-CP iteration of the FRLayout algorithm through the persistent LayoutComputeService.
+    *  Rows are claimed in chunks in ascending from order, so the longest rows of the triangular loop are processed first
+    *  & the workers finishing early keep on claiming the remaining chunks.
+    *  Returns false if the user cancelled during the iteration.
+    */
+    private boolean calcBiDirForceNCP(final boolean is2DOr3DFRLayout)
+    {
+        LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
+        int chunkSize = numberOfVertices / (NUMBER_OF_NCP_ROW_CHUNKS_PER_WORKER * layoutComputeService.getNumberOfWorkers()) + 1;
+        long startTime = System.nanoTime();
+        boolean completed = layoutComputeService.execute(new LayoutComputeService.RangeKernel()
+            {
+
+                @Override
+                public void process(int startIndex, int endIndex)
                 {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in allIterationsCalcBiDirForce2DJava()!:\n" + ex.getMessage());
+                    calcBiDirForceRows(startIndex, endIndex, is2DOr3DFRLayout);
                 }
 
-                if (DEBUG_BUILD) println("\nTotal allIterationsCalcBiDirForce2DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
 
-                setForceToVertex(true);
-                temperatureHandling();
-                updateGUI();
+            }, numberOfVertices, chunkSize, layoutProgressBarDialog);
 
-                if (layoutProgressBarDialog.userHasCancelled())
+        if (DEBUG_BUILD) println("\nTotal calcBiDirForceNCP N-CP run time: " + ( (System.nanoTime() - startTime) / 1e6 ) + " ms.\n");
+
+        return completed;
+    }
+
+    /**
+    *  Calculates the bi-directional forces of the [startFrom, endFrom) rows of the triangular loop.
+    */
+    private void calcBiDirForceRows(int startFrom, int endFrom, boolean is2DOr3DFRLayout)
+    {
+        // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+        int[] cachedVertexConnectionIndex = new int[1];
+        boolean useAtomicSynchronization = USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get();
+        int to = 0;
+        for (int from = startFrom; from < endFrom; from++)
+        {
+            to = numberOfVertices;
+            cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
+            if (is2DOr3DFRLayout)
+            {
+                if (useAtomicSynchronization)
                 {
-                    return;
+                    while (--to >= from + 1)
+                        calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
+                }
+                else
+                {
+                    while (--to >= from + 1)
+                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
+                }
+            }
+            else
+            {
+                if (useAtomicSynchronization)
+                {
+                    while (--to >= from + 1)
+                        calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
+                }
+                else
+                {
+                    while (--to >= from + 1)
+                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
             }
         }
@@ -486,20 +581,28 @@ public final class FRLayout
     */
     public void iterateCalcBiDirForce2D()
     {
+        if ( useBarnesHutRepulsion() )
+        {
+            calcBarnesHutForce(true);
+            temperatureHandling();
+            return;
+        }
+
         int vertexID = 0;
         if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
-            // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-            int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+            // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+            int[] cachedVertexConnectionIndex = new int[1];
             int from = numberOfVertices;
             int to = 0;
             while (--from >= 0)
             // for (int from = 0; from < numberOfVertices; from++)
             {
                 to = numberOfVertices;
+                cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                 while (--to >= from + 1)
                 // for (int to = from + 1; to < numberOfVertices; to++)
-                    calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                    calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
             }
 
             vertexID = numberOfVertices;
@@ -508,50 +611,13 @@ public final class FRLayout
         }
         else
         {
-            boolean isPowerOfTwo = org.BioLayoutExpress3D.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                             new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                             new LoggerThreadFactory("FRLayout2D"),
-                                                                             new ThreadPoolExecutor.CallerRunsPolicy() );
-
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                executor.execute( frLayout2DProcessKernel(threadId, isPowerOfTwo) );
-
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in iterateCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in iterateCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-            }
-
-            if (DEBUG_BUILD) println("\nTotal iterateCalcBiDirForce2DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
-
+            calcBiDirForceNCP(true);
             setForceToVertex(true);
         }
 
         temperatureHandling();
     }
 
-    /**
-    *   Return a light-weight thread using the Adapter technique for the 2D layout FRLayout algorithm so as to avoid any load latencies.
-    *   The coding style simulates an OpenCL/CUDA kernel.
-    */
-    private Runnable frLayout2DProcessKernel(final int threadId, final boolean isPowerOfTwo)
-    {
-        return frLayout2DProcessKernel(threadId, isPowerOfTwo, false, threadBarrier);
-    }
-
     /**
     *   Return a light-weight thread using the Adapter technique for the 2D layout FRLayout algorithm so as to avoid any load latencies.
     *   The coding style simulates an OpenCL/CUDA kernel.
@@ -570,8 +636,8 @@ public final class FRLayout
                     threadBarrier.await();
                     try
                     {
-                        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+                        // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+                        int[] cachedVertexConnectionIndex = new int[1];
                         int from = numberOfVertices;
                         int to = 0;
                         if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
@@ -585,14 +651,10 @@ public final class FRLayout
                                     if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                     }
                                 }
                             }
@@ -605,14 +667,10 @@ public final class FRLayout
                                     if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                     }
                                 }
                             }
@@ -628,17 +686,11 @@ public final class FRLayout
                                     if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
                                         {
-                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                         }
                                     }
                                 }
@@ -652,17 +704,11 @@ public final class FRLayout
                                     if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
                                         {
-                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                         }
                                     }
                                 }
@@ -690,16 +736,37 @@ public final class FRLayout
         };
     }
 
+    /**
+    *  Advances the CSR row cursor of vertexID1 up to the given vertexID2 & returns its connection index, or -1 if not connected.
+    *  The to loops visit vertexID2 in ascending order, so each row is walked only once per from iteration.
+    */
+    private int nextVertexConnectionIndex(int vertexID1, int vertexID2, int[] cachedVertexConnectionIndex)
+    {
+        int connectionIndex = cachedVertexConnectionIndex[0];
+        int connectionEndIndex = cachedVertexConnectionRowOffsetsArray[vertexID1 + 1];
+        while ( (connectionIndex < connectionEndIndex) && (cachedVertexConnectionNeighboursArray[connectionIndex] < vertexID2) )
+            connectionIndex++;
+        cachedVertexConnectionIndex[0] = connectionIndex;
+
+        if ( (connectionIndex < connectionEndIndex) && (cachedVertexConnectionNeighboursArray[connectionIndex] == vertexID2) )
+        {
+            cachedVertexConnectionIndex[0] = connectionIndex + 1;
+            return connectionIndex;
+        }
+
+        return -1;
+    }
+
     /**
     *  Calculates the 2D bi-directional force of the FRLayout algorithm.
     */
-    private void calcBiDirForce2D(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirForce2D(int vertexID1, int vertexID2, int[] cachedVertexConnectionIndex)
     {
         int vertexID1Index0 = vertexID1 << 1;
         int vertexID2Index0 = vertexID2 << 1;
         int vertexID1Index1 = vertexID1Index0 + 1;
         int vertexID2Index1 = vertexID2Index0 + 1;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
+        int connectionIndex = nextVertexConnectionIndex(vertexID1, vertexID2, cachedVertexConnectionIndex);
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -720,11 +787,11 @@ public final class FRLayout
             distanceCache = displacementMatrixDimensionality;
         int dispCalcX = 0, dispCalcY = 0;
 
-        if ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
+        if (connectionIndex >= 0)
         {
             if (useEdgeWeights)
             {
-                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
+                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH);
                 dispCalcX = (int)( ( ( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 4]) * weight ) + displacementMatrixArray[distanceCache + 4] ) * signX );
                 dispCalcY = (int)( ( ( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 5]) * weight ) + displacementMatrixArray[distanceCache + 5] ) * signY );
             }
@@ -760,13 +827,13 @@ public final class FRLayout
     *  Calculates the 2D bi-directional force of the FRLayout algorithm.
     *  Atomic version.
     */
-    private void calcBiDirForce2DAtomic(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirForce2DAtomic(int vertexID1, int vertexID2, int[] cachedVertexConnectionIndex)
     {
         int vertexID1Index0 = vertexID1 << 1;
         int vertexID2Index0 = vertexID2 << 1;
         int vertexID1Index1 = vertexID1Index0 + 1;
         int vertexID2Index1 = vertexID2Index0 + 1;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
+        int connectionIndex = nextVertexConnectionIndex(vertexID1, vertexID2, cachedVertexConnectionIndex);
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -787,11 +854,11 @@ public final class FRLayout
             distanceCache = displacementMatrixDimensionality;
         int dispCalcX = 0, dispCalcY = 0;
 
-        if ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
+        if (connectionIndex >= 0)
         {
             if (useEdgeWeights)
             {
-                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
+                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH);
                 dispCalcX = (int)( ( ( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 4]) * weight ) + displacementMatrixArray[distanceCache + 4] ) * signX );
                 dispCalcY = (int)( ( ( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 5]) * weight ) + displacementMatrixArray[distanceCache + 5] ) * signY );
             }
@@ -909,10 +976,16 @@ public final class FRLayout
     /**
     *  Performs all iterations of the FRLayout algorithm in 3D.
     */
-    public void allIterationsCalcBiDirForce3D(int iterations, int componentID, LayoutProgressBarDialog layoutProgressBarDialog)
+    public void allIterationsCalcBiDirForce3D(int iterations, int componentID, LayoutProgressBar layoutProgressBarDialog)
     {
         this.layoutProgressBarDialog = layoutProgressBarDialog;
 
+        if ( useBarnesHutRepulsion() )
+        {
+            allIterationsCalcBarnesHutForce(iterations, false);
+            return;
+        }
+
         boolean performOpenCLGPUFRLayoutCalculationGetErrorOccured = false;
         if ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() && (numberOfVertices > MINIMUM_NUMBER_OF_VERTICES_FOR_OPENCL_GPU_COMPUTING_PARALLELIZATION) )
             performOpenCLGPUFRLayoutCalculationGetErrorOccured = performOpenCLGPUFRLayoutCalcBiDirForce3D(iterations);
@@ -951,17 +1024,18 @@ public final class FRLayout
             int to = 0;
             while (--iterations >= 0)
             {
-                // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+                // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+                int[] cachedVertexConnectionIndex = new int[1];
                 from = numberOfVertices;
                 to = 0;
                 while (--from >= 0)
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
 
                 vertexID = numberOfVertices;
@@ -986,42 +1060,15 @@ public final class FRLayout
                         componentID : "" ) + "   (no utilization of OpenCL GPU Computing)");
             }
 
-            boolean isPowerOfTwo = org.BioLayoutExpress3D.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
+            boolean completed = true;
             while (--iterations >= 0)
             {
-                LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                                 new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                                 new LoggerThreadFactory("FRLayout3D"),
-                                                                                 new ThreadPoolExecutor.CallerRunsPolicy() );
-
-                cyclicBarrierTimer.clear();
-                for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                    executor.execute( frLayout3DProcessKernel(threadId, isPowerOfTwo) );
-
-                try
-                {
-                    threadBarrier.await(); // wait for all threads to be ready
-                    threadBarrier.await(); // wait for all threads to finish
-                    executor.shutdown();
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in allIterationsCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in allIterationsCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-                }
-
-                if (DEBUG_BUILD) println("\nTotal allIterationsCalcBiDirForce3DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
-
+                completed = calcBiDirForceNCP(false);
                 setForceToVertex(false);
                 temperatureHandling();
                 updateGUI();
 
-                if (layoutProgressBarDialog.userHasCancelled())
+                if ( !completed || layoutProgressBarDialog.userHasCancelled() )
                 {
                     return;
                 }
@@ -1034,20 +1081,28 @@ public final class FRLayout
     */
     public void iterateCalcBiDirForce3D()
     {
+        if ( useBarnesHutRepulsion() )
+        {
+            calcBarnesHutForce(false);
+            temperatureHandling();
+            return;
+        }
+
         int vertexID = 0;
         if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
-            // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-            int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+            // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+            int[] cachedVertexConnectionIndex = new int[1];
             int from = numberOfVertices;
             int to = 0;
             while (--from >= 0)
             // for (int from = 0; from < numberOfVertices; from++)
             {
                 to = numberOfVertices;
+                cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                 while (--to >= from + 1)
                 // for (int to = from + 1; to < numberOfVertices; to++)
-                    calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                    calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
             }
 
             vertexID = numberOfVertices;
@@ -1056,50 +1111,13 @@ public final class FRLayout
         }
         else
         {
-            boolean isPowerOfTwo = org.BioLayoutExpress3D.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                             new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                             new LoggerThreadFactory("FRLayout3D"),
-                                                                             new ThreadPoolExecutor.CallerRunsPolicy() );
-
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                executor.execute( frLayout3DProcessKernel(threadId, isPowerOfTwo) );
-
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in iterateCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in iterateCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-            }
-
-            if (DEBUG_BUILD) println("\nTotal iterateCalcBiDirForce3DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
-
+            calcBiDirForceNCP(false);
             setForceToVertex(false);
         }
 
         temperatureHandling();
     }
 
-    /**
-    *   Return a light-weight thread using the Adapter technique for the 3D FRLayout algorithm so as to avoid any load latencies.
-    *   The coding style simulates an OpenCL/CUDA kernel.
-    */
-    private Runnable frLayout3DProcessKernel(final int threadId, final boolean isPowerOfTwo)
-    {
-        return frLayout3DProcessKernel(threadId, isPowerOfTwo, false, threadBarrier);
-    }
-
     /**
     *   Return a light-weight thread using the Adapter technique for the 3D FRLayout algorithm so as to avoid any load latencies.
     *   The coding style simulates an OpenCL/CUDA kernel.
@@ -1118,8 +1136,8 @@ public final class FRLayout
                     threadBarrier.await();
                     try
                     {
-                        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+                        // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+                        int[] cachedVertexConnectionIndex = new int[1];
                         int from = numberOfVertices;
                         int to = 0;
                         if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
@@ -1133,14 +1151,10 @@ public final class FRLayout
                                     if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                     }
                                 }
                             }
@@ -1153,14 +1167,10 @@ public final class FRLayout
                                     if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                     }
                                 }
                             }
@@ -1176,17 +1186,11 @@ public final class FRLayout
                                     if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
                                         {
-                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                         }
                                     }
                                 }
@@ -1200,17 +1204,11 @@ public final class FRLayout
                                     if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
                                     {
                                         to = numberOfVertices;
+                                        cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                                         while (--to >= from + 1)
                                         // for (int to = from + 1; to < numberOfVertices; to++)
                                         {
-                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
+                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                                         }
                                     }
                                 }
@@ -1241,7 +1239,7 @@ public final class FRLayout
     /**
     *  Calculates the 3D bi-directional force of the FRLayout algorithm.
     */
-    private void calcBiDirForce3D(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirForce3D(int vertexID1, int vertexID2, int[] cachedVertexConnectionIndex)
     {
         int vertexID1Index0 = 3 * vertexID1;
         int vertexID2Index0 = 3 * vertexID2;
@@ -1249,7 +1247,7 @@ public final class FRLayout
         int vertexID2Index1 = vertexID2Index0 + 1;
         int vertexID1Index2 = vertexID1Index0 + 2;
         int vertexID2Index2 = vertexID2Index0 + 2;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
+        int connectionIndex = nextVertexConnectionIndex(vertexID1, vertexID2, cachedVertexConnectionIndex);
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -1262,7 +1260,7 @@ public final class FRLayout
         if (distZ == 0.0f)
             distZ = 1.0f;
 
-        boolean connected = ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
+        boolean connected = (connectionIndex >= 0);
         if ( !connected && ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
             return;
 
@@ -1295,7 +1293,7 @@ public final class FRLayout
 
             if (useEdgeWeights)
             {
-                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
+                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH);
                 dispCalcX = (int)( (distX / distance) * kDistWeight );
                 dispCalcY = (int)( (distY / distance) * kDistWeight );
                 dispCalcZ = (int)( (distZ / distance) * kDistWeight );
@@ -1321,7 +1319,7 @@ public final class FRLayout
     *  Calculates the 3D bi-directional force of the FRLayout algorithm.
     *  Atomic version.
     */
-    private void calcBiDirForce3DAtomic(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirForce3DAtomic(int vertexID1, int vertexID2, int[] cachedVertexConnectionIndex)
     {
         int vertexID1Index0 = 3 * vertexID1;
         int vertexID2Index0 = 3 * vertexID2;
@@ -1329,7 +1327,7 @@ public final class FRLayout
         int vertexID2Index1 = vertexID2Index0 + 1;
         int vertexID1Index2 = vertexID1Index0 + 2;
         int vertexID2Index2 = vertexID2Index0 + 2;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
+        int connectionIndex = nextVertexConnectionIndex(vertexID1, vertexID2, cachedVertexConnectionIndex);
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -1342,7 +1340,7 @@ public final class FRLayout
         if (distZ == 0.0f)
             distZ = 1.0f;
 
-        boolean connected = ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
+        boolean connected = (connectionIndex >= 0);
         if ( !connected && ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
             return;
 
@@ -1375,7 +1373,7 @@ public final class FRLayout
 
             if (useEdgeWeights)
             {
-                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
+                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH);
                 dispCalcX = (int)( (distX / distance) * kDistWeight );
                 dispCalcY = (int)( (distY / distance) * kDistWeight );
                 dispCalcZ = (int)( (distZ / distance) * kDistWeight );
@@ -1516,6 +1514,298 @@ public final class FRLayout
         displacementValuesAtomic.set(vertexIDIndex, 0);
     }
 
+    /**
+    *  Checks whether the Barnes-Hut repulsion mode is selected instead of the exact kernels.
+    */
+    private boolean useBarnesHutRepulsion()
+    {
+        return FR_LAYOUT_REPULSION_MODE.get().equals(FRLayoutRepulsionMode.BARNES_HUT);
+    }
+
+    /**
+    *  Gets the Barnes-Hut opening criterion from the preferences, clamped to the [0.0, MAXIMUM_BARNES_HUT_THETA] range.
+    *  A negative or NaN value falls back to 0.0, which opens all cells as in the exact kernels.
+    */
+    private static float getBarnesHutTheta()
+    {
+        float theta = FR_LAYOUT_BARNES_HUT_THETA.get();
+        if ( !(theta > 0.0f) )
+            return 0.0f;
+
+        return (theta > MAXIMUM_BARNES_HUT_THETA) ? MAXIMUM_BARNES_HUT_THETA : theta;
+    }
+
+    /**
+    *  Performs all iterations of the FRLayout algorithm with the Barnes-Hut repulsion mode.
+    */
+    private void allIterationsCalcBarnesHutForce(int iterations, boolean is2DOr3DFRLayout)
+    {
+        while (--iterations >= 0)
+        {
+            calcBarnesHutForce(is2DOr3DFRLayout);
+            temperatureHandling();
+            updateGUI();
+
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+    *  Calculates one iteration of the FRLayout algorithm with the Barnes-Hut repulsion mode.
+    *  Repulsion is approximated through a quadtree/octree rebuilt every iteration in O(n log n),
+    *  whilst attraction still comes from the CSR vertex connections in O(m).
+    */
+    private void calcBarnesHutForce(boolean is2DOr3DFRLayout)
+    {
+        int dimensions = (is2DOr3DFRLayout) ? 2 : 3;
+        if ( (barnesHutTree == null) || (barnesHutTree.getDimensions() != dimensions) )
+            barnesHutTree = new BarnesHutTree(dimensions);
+        barnesHutTree.build(cachedVertexPointCoordsMatrixArray, vertexIndicesMatrixArray, numberOfVertices, (is2DOr3DFRLayout) ? null : cachedPseudoVertexMatrixArray);
+
+        if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        {
+            calcBarnesHutRepulsiveForce(0, numberOfVertices, dimensions);
+        }
+        else
+        {
+            final int finalDimensions = dimensions;
+            LayoutComputeService layoutComputeService = LayoutComputeService.getInstance();
+            long startTime = System.nanoTime();
+            layoutComputeService.execute(new LayoutComputeService.RangeKernel()
+                {
+
+                    @Override
+                    public void process(int startIndex, int endIndex)
+                    {
+                        calcBarnesHutRepulsiveForce(startIndex, endIndex, finalDimensions);
+                    }
+
+
+                }, numberOfVertices, numberOfVertices / (NUMBER_OF_NCP_ROW_CHUNKS_PER_WORKER * layoutComputeService.getNumberOfWorkers()) + 1, layoutProgressBarDialog);
+
+            if (DEBUG_BUILD) println("\nTotal calcBarnesHutForce N-CP run time: " + ( (System.nanoTime() - startTime) / 1e6 ) + " ms.\n");
+        }
+
+        calcBarnesHutAttractiveForce(dimensions);
+
+        int vertexID = numberOfVertices;
+        if (is2DOr3DFRLayout)
+        {
+            while (--vertexID >= 0)
+                set2DForceToVertex(vertexIndicesMatrixArray[vertexID]);
+        }
+        else
+        {
+            while (--vertexID >= 0)
+                set3DForceToVertex(vertexIndicesMatrixArray[vertexID]);
+        }
+    }
+
+    /**
+    *  Calculates the Barnes-Hut repulsive forces for the vertices in the given vertexIndicesMatrixArray range.
+    */
+    private void calcBarnesHutRepulsiveForce(int startIndex, int endIndex, int dimensions)
+    {
+        float theta = getBarnesHutTheta();
+        int[] pseudoVertexBits = (dimensions == 3) ? cachedPseudoVertexMatrixArray : null;
+        int[] traversalStack = barnesHutTree.createTraversalStack();
+        float[] force = new float[dimensions];
+        int vertexID = 0;
+        int vertexIDIndex = 0;
+        for (int index = startIndex; index < endIndex; index++)
+        {
+            vertexID = vertexIndicesMatrixArray[index];
+            barnesHutTree.calculateRepulsiveForce(vertexID, cachedVertexPointCoordsMatrixArray, theta, kSquareValue, kDoubled, pseudoVertexBits, traversalStack, force);
+
+            vertexIDIndex = vertexID * dimensions;
+            displacementValuesArray[vertexIDIndex    ] += (int)force[0];
+            displacementValuesArray[vertexIDIndex + 1] += (int)force[1];
+            if (dimensions == 3)
+                displacementValuesArray[vertexIDIndex + 2] += (int)force[2];
+        }
+    }
+
+    /**
+    *  Calculates the attractive forces along all edges of the current vertices for the Barnes-Hut repulsion mode.
+    */
+    private void calcBarnesHutAttractiveForce(int dimensions)
+    {
+        int index = numberOfVertices;
+        while (--index >= 0)
+        {
+            int vertexID1 = vertexIndicesMatrixArray[index];
+            int vertexID1Index0 = vertexID1 * dimensions;
+            for (int connectionIndex = cachedVertexConnectionRowOffsetsArray[vertexID1]; connectionIndex < cachedVertexConnectionRowOffsetsArray[vertexID1 + 1]; connectionIndex++)
+            {
+                int vertexID2Index0 = cachedVertexConnectionNeighboursArray[connectionIndex] * dimensions;
+
+                float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0    ] - cachedVertexPointCoordsMatrixArray[vertexID2Index0    ];
+                float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index0 + 1] - cachedVertexPointCoordsMatrixArray[vertexID2Index0 + 1];
+                float distZ = (dimensions == 3) ? cachedVertexPointCoordsMatrixArray[vertexID1Index0 + 2] - cachedVertexPointCoordsMatrixArray[vertexID2Index0 + 2] : 0.0f;
+
+                if (distX == 0.0f)
+                    distX = 1.0f;
+                if (distY == 0.0f)
+                    distY = 1.0f;
+                if ( (dimensions == 3) && (distZ == 0.0f) )
+                    distZ = 1.0f;
+
+                // (dist / distance) * (squaredDistance / kValue) simplifies to dist * distance / kValue
+                float weight = (useEdgeWeights) ? convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH) : 1.0f;
+                float kDistWeight = weight * (float)sqrt(distX * distX + distY * distY + distZ * distZ) / kValue;
+                int dispCalcX = (int)(distX * kDistWeight);
+                int dispCalcY = (int)(distY * kDistWeight);
+
+                displacementValuesArray[vertexID1Index0    ] -= dispCalcX;
+                displacementValuesArray[vertexID1Index0 + 1] -= dispCalcY;
+
+                displacementValuesArray[vertexID2Index0    ] += dispCalcX;
+                displacementValuesArray[vertexID2Index0 + 1] += dispCalcY;
+
+                if (dimensions == 3)
+                {
+                    int dispCalcZ = (int)(distZ * kDistWeight);
+                    displacementValuesArray[vertexID1Index0 + 2] -= dispCalcZ;
+                    displacementValuesArray[vertexID2Index0 + 2] += dispCalcZ;
+                }
+            }
+        }
+    }
+
+    /**
+    *  Sets the vertices that the incremental layout iterations may move, all other vertices keep their coordinates & only exert forces.
+    *  Gathers the CSR connections touching the movable vertices in O(n + m), so it has to be called after setKvalue().
+    */
+    public void setMovableVertices(Collection<Vertex> movableVertices)
+    {
+        int numberOfVertexIDs = cachedVertexConnectionRowOffsetsArray.length - 1;
+        isMovableVertexArray = new boolean[numberOfVertexIDs];
+        movableVertexIndicesArray = new int[movableVertices.size()];
+        int index = 0;
+        for (Vertex vertex : movableVertices)
+        {
+            isMovableVertexArray[vertex.getVertexID()] = true;
+            movableVertexIndicesArray[index++] = vertex.getVertexID();
+        }
+
+        int numberOfMovableConnections = 0;
+        for (int vertexID = 0; vertexID < numberOfVertexIDs; vertexID++)
+            for (int connectionIndex = cachedVertexConnectionRowOffsetsArray[vertexID]; connectionIndex < cachedVertexConnectionRowOffsetsArray[vertexID + 1]; connectionIndex++)
+                if ( isMovableVertexArray[vertexID] || isMovableVertexArray[cachedVertexConnectionNeighboursArray[connectionIndex]] )
+                    numberOfMovableConnections++;
+
+        movableConnectionRowsArray = new int[numberOfMovableConnections];
+        movableConnectionIndicesArray = new int[numberOfMovableConnections];
+        index = 0;
+        for (int vertexID = 0; vertexID < numberOfVertexIDs; vertexID++)
+        {
+            for (int connectionIndex = cachedVertexConnectionRowOffsetsArray[vertexID]; connectionIndex < cachedVertexConnectionRowOffsetsArray[vertexID + 1]; connectionIndex++)
+            {
+                if ( isMovableVertexArray[vertexID] || isMovableVertexArray[cachedVertexConnectionNeighboursArray[connectionIndex]] )
+                {
+                    movableConnectionRowsArray[index] = vertexID;
+                    movableConnectionIndicesArray[index++] = connectionIndex;
+                }
+            }
+        }
+    }
+
+    /**
+    *  Calculates one incremental iteration of the FRLayout algorithm, only moving the vertices given to setMovableVertices().
+    *  Repulsion on the movable vertices comes from the quadtree/octree of all vertices, using the Barnes-Hut opening angle in the Barnes-Hut repulsion mode
+    *  & a zero opening angle otherwise, which keeps the exact repulsion whilst pruning the vertices beyond the cut-off distance.
+    *  Attraction only comes from the connections touching the movable vertices, so one iteration costs O(n log n) for the tree build plus O(k log n) for the k movable vertices.
+    */
+    public void iterateIncrementalCalcBiDirForce(boolean is2DOr3DFRLayout)
+    {
+        int dimensions = (is2DOr3DFRLayout) ? 2 : 3;
+        int[] pseudoVertexBits = (is2DOr3DFRLayout) ? null : cachedPseudoVertexMatrixArray;
+        if ( (barnesHutTree == null) || (barnesHutTree.getDimensions() != dimensions) )
+            barnesHutTree = new BarnesHutTree(dimensions);
+        barnesHutTree.build(cachedVertexPointCoordsMatrixArray, vertexIndicesMatrixArray, numberOfVertices, pseudoVertexBits);
+
+        float theta = ( useBarnesHutRepulsion() ) ? getBarnesHutTheta() : 0.0f;
+        int[] traversalStack = barnesHutTree.createTraversalStack();
+        float[] force = new float[dimensions];
+        int vertexIDIndex = 0;
+        for (int vertexID : movableVertexIndicesArray)
+        {
+            barnesHutTree.calculateRepulsiveForce(vertexID, cachedVertexPointCoordsMatrixArray, theta, kSquareValue, kDoubled, pseudoVertexBits, traversalStack, force);
+
+            vertexIDIndex = vertexID * dimensions;
+            displacementValuesArray[vertexIDIndex    ] += (int)force[0];
+            displacementValuesArray[vertexIDIndex + 1] += (int)force[1];
+            if (dimensions == 3)
+                displacementValuesArray[vertexIDIndex + 2] += (int)force[2];
+        }
+
+        calcIncrementalAttractiveForce(dimensions);
+
+        if (is2DOr3DFRLayout)
+        {
+            for (int vertexID : movableVertexIndicesArray)
+                set2DForceToVertex(vertexID);
+        }
+        else
+        {
+            for (int vertexID : movableVertexIndicesArray)
+                set3DForceToVertex(vertexID);
+        }
+
+        temperatureHandling();
+    }
+
+    /**
+    *  Calculates the attractive forces along the connections touching the movable vertices, only displacing their movable ends.
+    */
+    private void calcIncrementalAttractiveForce(int dimensions)
+    {
+        for (int index = 0; index < movableConnectionIndicesArray.length; index++)
+        {
+            int connectionIndex = movableConnectionIndicesArray[index];
+            int vertexID1 = movableConnectionRowsArray[index];
+            int vertexID2 = cachedVertexConnectionNeighboursArray[connectionIndex];
+            int vertexID1Index0 = vertexID1 * dimensions;
+            int vertexID2Index0 = vertexID2 * dimensions;
+
+            float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0    ] - cachedVertexPointCoordsMatrixArray[vertexID2Index0    ];
+            float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index0 + 1] - cachedVertexPointCoordsMatrixArray[vertexID2Index0 + 1];
+            float distZ = (dimensions == 3) ? cachedVertexPointCoordsMatrixArray[vertexID1Index0 + 2] - cachedVertexPointCoordsMatrixArray[vertexID2Index0 + 2] : 0.0f;
+
+            if (distX == 0.0f)
+                distX = 1.0f;
+            if (distY == 0.0f)
+                distY = 1.0f;
+            if ( (dimensions == 3) && (distZ == 0.0f) )
+                distZ = 1.0f;
+
+            float weight = (useEdgeWeights) ? convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexConnectionWeightsArray[connectionIndex], FIXED_POINT_DECIMAL_PART_LENGTH) : 1.0f;
+            float kDistWeight = weight * (float)sqrt(distX * distX + distY * distY + distZ * distZ) / kValue;
+            int dispCalcX = (int)(distX * kDistWeight);
+            int dispCalcY = (int)(distY * kDistWeight);
+            int dispCalcZ = (int)(distZ * kDistWeight);
+
+            if (isMovableVertexArray[vertexID1])
+            {
+                displacementValuesArray[vertexID1Index0    ] -= dispCalcX;
+                displacementValuesArray[vertexID1Index0 + 1] -= dispCalcY;
+                if (dimensions == 3)
+                    displacementValuesArray[vertexID1Index0 + 2] -= dispCalcZ;
+            }
+
+            if (isMovableVertexArray[vertexID2])
+            {
+                displacementValuesArray[vertexID2Index0    ] += dispCalcX;
+                displacementValuesArray[vertexID2Index0 + 1] += dispCalcY;
+                if (dimensions == 3)
+                    displacementValuesArray[vertexID2Index0 + 2] += dispCalcZ;
+            }
+        }
+    }
+
     /**
     *  Temperature Handling.
     */
@@ -1540,8 +1830,8 @@ public final class FRLayout
     {
         int from = numberOfVertices;
         int to = 0;
-        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
+        // done this way so as to emulate copy by reference (pointer) for value of the CSR row cursor
+        int[] cachedVertexConnectionIndex = new int[1];
         if (is2DOr3DFRLayout)
         {
             if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
@@ -1550,9 +1840,10 @@ public final class FRLayout
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
             }
             else
@@ -1561,9 +1852,10 @@ public final class FRLayout
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
             }
         }
@@ -1575,9 +1867,10 @@ public final class FRLayout
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
             }
             else
@@ -1586,9 +1879,10 @@ public final class FRLayout
                 // for (int from = 0; from < numberOfVertices; from++)
                 {
                     to = numberOfVertices;
+                    cachedVertexConnectionIndex[0] = cachedVertexConnectionRowOffsetsArray[vertexIndicesMatrixArray[from]];
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexConnectionIndex);
                 }
             }
         }
@@ -1686,20 +1980,31 @@ public final class FRLayout
         cachedVertexPointCoordsMatrixBuffer.clear();
         cachedVertexPointCoordsMatrixBuffer = null;
         cachedVertexPointCoordsMatrixArray = null;
-        cachedVertexConnectionMatrixBuffer.clear();
-        cachedVertexConnectionMatrixBuffer = null;
-        cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.clear();
-        cachedVertexConnectionRowSkipSizeValuesMatrixArray = null;
-        cachedVertexConnectionMatrixArray = null;
-        cachedVertexNormalizedWeightMatrixBuffer.clear();
-        cachedVertexNormalizedWeightMatrixBuffer = null;
-        cachedVertexNormalizedWeightMatrixArray = null;
+        cachedVertexConnectionRowOffsetsArray = null;
+        cachedVertexConnectionNeighboursArray = null;
+        cachedVertexConnectionWeightsArray = null;
+        if (cachedVertexConnectionMatrixBuffer != null)
+        {
+            cachedVertexConnectionMatrixBuffer.clear();
+            cachedVertexConnectionMatrixBuffer = null;
+            cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.clear();
+            cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = null;
+        }
+        if (cachedVertexNormalizedWeightMatrixBuffer != null)
+        {
+            cachedVertexNormalizedWeightMatrixBuffer.clear();
+            cachedVertexNormalizedWeightMatrixBuffer = null;
+        }
         if (cachedVertexNormalizedWeightIndicesToSkipBuffer != null)
         {
             cachedVertexNormalizedWeightIndicesToSkipBuffer.clear();
             cachedVertexNormalizedWeightIndicesToSkipBuffer = null;
-            cachedVertexNormalizedWeightIndicesToSkipArray = null;
         }
+        barnesHutTree = null;
+        isMovableVertexArray = null;
+        movableVertexIndicesArray = null;
+        movableConnectionRowsArray = null;
+        movableConnectionIndicesArray = null;
 
         System.gc();
     }
@@ -91,6 +91,7 @@ public class GraphmlNetworkContainer
             vertex1.setVertexColor(node1mEPNShapeGroupsTuple4.fourth);
 
             nc.verticesMap.put(first, vertex1);
+            nc.verticesModified();
             allNodesmEPNShapeGroupTuplesMap.put(vertex1, node1mEPNShapeGroupsTuple4);
         }
 
@@ -116,6 +117,7 @@ public class GraphmlNetworkContainer
             vertex2.setVertexColor(node2mEPNShapeGroupsTuple4.fourth);
 
             nc.verticesMap.put(second, vertex2);
+            nc.verticesModified();
             allNodesmEPNShapeGroupTuplesMap.put(vertex2, node2mEPNShapeGroupsTuple4);
         }
 
@@ -57,6 +57,7 @@ public final class NetworkComponentContainer extends NetworkContainer
     public void addNetworkConnection(Vertex vertex)
     {
         verticesMap.put(vertex.getVertexName(), vertex);
+        verticesModified();
     }
 
     @Override
@@ -67,7 +68,7 @@ public final class NetworkComponentContainer extends NetworkContainer
         float initialTemperature = frLayout.getTemperature();
         int numberOfIterations = 0;
 
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
         String progressBarParallelismTitle = (USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ? "(Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS + "-Core Parallelism)" : "";
 
         if (isRelayout)
@@ -113,6 +114,43 @@ public final class NetworkComponentContainer extends NetworkContainer
         calcBoundaries();
     }
 
+    /**
+    *  Lays out the component with its own FRLayout state, so that several components can be laid out concurrently.
+    *  The number of iterations is chosen as in optimize(). Progress is reported per component by the caller,
+    *  so the component layout only polls the given progress bar for a user cancel.
+    */
+    public void optimizeConcurrently(LayoutProgressBar layoutProgressBarDialog)
+    {
+        initBoundaries();
+
+        if (!isOptimized)
+        {
+            FRLayout componentFRLayout = frLayout.createComponentFRLayout( getVertices() );
+            int numberOfIterations = componentFRLayout.getNumberOfIterations();
+            if (isRelayout)
+            {
+                numberOfIterations = BURST_LAYOUT_ITERATIONS.get();
+                if (componentFRLayout.getTemperature() == 100.0f)
+                    componentFRLayout.setTemperature(4.0f);
+            }
+
+            LayoutProgressBar cancelOnlyProgressBar = new CancelOnlyLayoutProgressBar(layoutProgressBarDialog);
+            if (!RENDERER_MODE_3D)
+                componentFRLayout.allIterationsCalcBiDirForce2D(numberOfIterations, 0, cancelOnlyProgressBar);
+            else
+                componentFRLayout.allIterationsCalcBiDirForce3D(numberOfIterations, 0, cancelOnlyProgressBar);
+
+            // applying the new vertex points at the end of the layout algoprithm process
+            componentFRLayout.setPointsToVertices();
+        }
+        else
+        {
+            isOptimized = false;
+        }
+
+        calcBoundaries();
+    }
+
     public void assignComponentDisplacement(float ratio, double width, double height)
     {
         for ( Vertex vertex : getVertices() )
@@ -137,8 +175,68 @@ public final class NetworkComponentContainer extends NetworkContainer
     public void removeComponents()
     {
         verticesMap.clear();
+        verticesModified();
         edges.clear();
     }
 
 
+    /**
+    *  The progress bar of a concurrently laid out component: all progress reporting is dropped, whilst the user cancel is forwarded from the given progress bar.
+    */
+    private static final class CancelOnlyLayoutProgressBar implements LayoutProgressBar
+    {
+
+        private final LayoutProgressBar layoutProgressBarDialog;
+
+        private CancelOnlyLayoutProgressBar(LayoutProgressBar layoutProgressBarDialog)
+        {
+            this.layoutProgressBarDialog = layoutProgressBarDialog;
+        }
+
+        @Override
+        public void prepareProgressBar(int max, String title, boolean isCancellable) {}
+
+        @Override
+        public void prepareProgressBar(int max, String title) {}
+
+        @Override
+        public void startProgressBar() {}
+
+        @Override
+        public void endProgressBar() {}
+
+        @Override
+        public void stopProgressBar() {}
+
+        @Override
+        public void incrementProgress(int value) {}
+
+        @Override
+        public void incrementProgress() {}
+
+        @Override
+        public void setText(String text) {}
+
+        @Override
+        public void appendText(String text) {}
+
+        @Override
+        public void setIndeterminate(Boolean value) {}
+
+        @Override
+        public String getText()
+        {
+            return "";
+        }
+
+        @Override
+        public boolean userHasCancelled()
+        {
+            return layoutProgressBarDialog.userHasCancelled();
+        }
+
+
+    }
+
+
 }
\ No newline at end of file
@@ -36,6 +36,11 @@ public abstract class NetworkContainer
     // Variable used for the graphml network container
     private GraphmlNetworkContainer gnc = null;
 
+    // node name search index, built on the first search of a loaded network & rebuilt when the vertices modification count has moved on since
+    private NodeNameSearchIndex nodeNameSearchIndex = null;
+    private int verticesModificationCount = 0;
+    private int nodeNameSearchIndexModificationCount = 0;
+
     // static initializer so as to initialize the FRLayout before the NetworkContainer constructor
     static
     {
@@ -51,6 +56,14 @@ public abstract class NetworkContainer
         edges = new ArrayList<Edge>();
     }
 
+    /**
+    *  Gets the layout progress bar, or the no-op headless one when there is no layout frame (headless batch mode).
+    */
+    protected LayoutProgressBar getLayoutProgressBar()
+    {
+        return (layoutFrame != null) ? layoutFrame.getLayoutProgressBar() : HeadlessLayoutProgressBar.getHeadlessLayoutProgressBarSingleton();
+    }
+
     public void setOptimized(boolean isOptimized)
     {
         this.isOptimized = isOptimized;
@@ -72,6 +85,7 @@ public abstract class NetworkContainer
         {
             vertex1 = new Vertex(first, this);
             verticesMap.put(first, vertex1);
+            verticesModificationCount++;
         }
 
         if ( verticesMap.containsKey(second) )
@@ -82,6 +96,7 @@ public abstract class NetworkContainer
         {
             vertex2 = new Vertex(second, this);
             verticesMap.put(second, vertex2);
+            verticesModificationCount++;
         }
 
         if ( !vertex1.getEdgeConnectionsMap().containsKey(vertex2) )
@@ -110,6 +125,7 @@ public abstract class NetworkContainer
         {
             vertex1 = new Vertex(first, this);
             verticesMap.put(first, vertex1);
+            verticesModificationCount++;
         }
 
         if ( verticesMap.containsKey(second) )
@@ -120,6 +136,7 @@ public abstract class NetworkContainer
         {
             vertex2 = new Vertex(second, this);
             verticesMap.put(second, vertex2);
+            verticesModificationCount++;
         }
 
         if ( !vertex1.getEdgeConnectionsMap().containsKey(vertex2) )
@@ -170,6 +187,32 @@ public abstract class NetworkContainer
             gnc.setNodeName(node, newNodeName);
         else
             node.setNodeName(newNodeName);
+
+        if (nodeNameSearchIndex != null)
+            nodeNameSearchIndex.updateNodeName( node.getVertex() );
+    }
+
+    /**
+    *  Marks the vertices of the network as changed (added, removed or renumbered).
+    *  Has to be called by all code that modifies the vertices map directly, so that the node name search index is rebuilt.
+    */
+    public void verticesModified()
+    {
+        verticesModificationCount++;
+    }
+
+    /**
+    *  Gets the node name search index, (re)building it if the vertices of the network have changed since it was built.
+    */
+    public NodeNameSearchIndex getNodeNameSearchIndex()
+    {
+        if ( (nodeNameSearchIndex == null) || (nodeNameSearchIndexModificationCount != verticesModificationCount) )
+        {
+            nodeNameSearchIndex = new NodeNameSearchIndex(this);
+            nodeNameSearchIndexModificationCount = verticesModificationCount;
+        }
+
+        return nodeNameSearchIndex;
     }
 
     public void optimize(GraphLayoutAlgorithm gla)
@@ -184,7 +227,7 @@ public abstract class NetworkContainer
         float initialTemperature = frLayout.getTemperature();
         int numberOfIterations = 0;
 
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
         // for now both N-CP & OpenCL methods use N-CP for Burst Iterations,as Burst Iterations for the OpenCL version are not implemented
         String progressBarParallelismTitle = ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || ( OPENCL_GPU_COMPUTING_ENABLED && USE_OPENCL_GPU_COMPUTING_LAYOUT_CALCULATION.get() ) ) ? " (Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS + "-Core Parallelism)" : "";
 
@@ -213,6 +256,11 @@ public abstract class NetworkContainer
                 {
                     frLayout.iterateCalcBiDirForce2D();
                     updateGUI(layoutProgressBarDialog);
+
+                    if (layoutProgressBarDialog.userHasCancelled())
+                    {
+                        break;
+                    }
                 }
             }
             else
@@ -222,6 +270,11 @@ public abstract class NetworkContainer
                 {
                     frLayout.iterateCalcBiDirForce3D();
                     updateGUI(layoutProgressBarDialog);
+
+                    if (layoutProgressBarDialog.userHasCancelled())
+                    {
+                        break;
+                    }
                 }
             }
 
@@ -229,7 +282,7 @@ public abstract class NetworkContainer
             frLayout.setPointsToVertices();
             frLayout.setTemperature(initialTemperature);
             frLayout.clean();
-            layoutFrame.getGraph().rebuildGraph();
+            if (layoutFrame != null) layoutFrame.getGraph().rebuildGraph();
         }
         else
         {
@@ -240,9 +293,47 @@ public abstract class NetworkContainer
         if (isRelayout) layoutProgressBarDialog.stopProgressBar();
     }
 
-    private void updateGUI(LayoutProgressBarDialog layoutProgressBarDialog)
+    /**
+    *  Runs the burst layout iterations warm-started from the current vertex positions, only moving the given vertices.
+    *  All other vertices keep their coordinates, the frLayout data structures have to be initialized with setKvalue() beforehand.
+    */
+    protected void optimizeIncrementally(Collection<Vertex> movableVertices)
+    {
+        if (DEBUG_BUILD) println("Optimizing incrementally " + movableVertices.size() + " of " + getNumberOfVertices() + " vertices");
+
+        float initialTemperature = frLayout.getTemperature();
+        int numberOfIterations = BURST_LAYOUT_ITERATIONS.get();
+        frLayout.setTemperature((frLayout.getTemperature() * numberOfIterations) / frLayout.getNumberOfIterations());
+        frLayout.setMovableVertices(movableVertices);
+
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
+        layoutProgressBarDialog.prepareProgressBar(numberOfIterations, "Now Processing Incremental Layout Iterations...");
+        layoutProgressBarDialog.startProgressBar();
+
+        while (--numberOfIterations >= 0)
+        {
+            frLayout.iterateIncrementalCalcBiDirForce(!RENDERER_MODE_3D);
+            updateGUI(layoutProgressBarDialog);
+
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                break;
+            }
+        }
+
+        // applying the new vertex points at the end of the layout algoprithm process
+        frLayout.setPointsToVertices();
+        frLayout.setTemperature(initialTemperature);
+        frLayout.clean();
+        if (layoutFrame != null) layoutFrame.getGraph().rebuildGraph();
+
+        layoutProgressBarDialog.endProgressBar();
+        layoutProgressBarDialog.stopProgressBar();
+    }
+
+    private void updateGUI(LayoutProgressBar layoutProgressBarDialog)
     {
-        if ( SHOW_LAYOUT_ITERATIONS.get() )
+        if ( SHOW_LAYOUT_ITERATIONS.get() && (layoutFrame != null) )
         {
             // applying the new vertex points here so as to be renderered below with the rebuildGraph() method call
             frLayout.setPointsToVertices();
@@ -270,6 +361,7 @@ public abstract class NetworkContainer
     public void clear()
     {
         verticesMap.clear();
+        verticesModificationCount++;
         edges.clear();
 
         layoutClassSetsManager.clearClassSets();
@@ -279,8 +371,10 @@ public abstract class NetworkContainer
         if (gnc != null)
             gnc.clear();
         gnc = null;
+        nodeNameSearchIndex = null;
 
-        layoutFrame.getGraph().getSelectionManager().clearGraphUndoDelete();
+        if (layoutFrame != null)
+            layoutFrame.getGraph().getSelectionManager().clearGraphUndoDelete();
 
         System.gc();
     }
@@ -7,6 +7,7 @@ import ogdf.basic.GraphAttributes;
 import ogdf.energybased.FMMMLayout;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
+import org.BioLayoutExpress3D.CPUParallelism.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
 import static org.BioLayoutExpress3D.DebugConsole.ConsoleOutput.*;
 import org.BioLayoutExpress3D.Utils.Point3D;
@@ -20,6 +21,9 @@ import org.BioLayoutExpress3D.Utils.Point3D;
 
 public final class NetworkRootContainer extends NetworkContainer
 {
+    // above this fraction of moving vertices the incremental layout falls back to the whole graph relayout
+    private static final float INCREMENTAL_LAYOUT_MAXIMUM_MOVABLE_FRACTION = 0.5f;
+
     private ArrayList<NetworkComponentContainer> componentCollection = null;
     public List<NetworkComponentContainer> getComponentCollection()
     {
@@ -69,7 +73,7 @@ public final class NetworkRootContainer extends NetworkContainer
         NetworkComponentContainer ncc = null;
         Vertex vertex = null;
 
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
         layoutProgressBarDialog.prepareProgressBar(initialSize, "Finding Components");
         layoutProgressBarDialog.startProgressBar();
 
@@ -113,7 +117,7 @@ public final class NetworkRootContainer extends NetworkContainer
     {
         HashSet<Vertex> singletons = new HashSet<Vertex>();
 
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
         layoutProgressBarDialog.prepareProgressBar(verticesMap.size(), "Finding Singletons");
         layoutProgressBarDialog.startProgressBar();
 
@@ -139,6 +143,7 @@ public final class NetworkRootContainer extends NetworkContainer
             singletonEdges.addAll( vertex.getEdgeConnectionsMap().values() );
             singletonEdges.add( vertex.getSelfEdge() );
         }
+        verticesModified();
 
         edges.removeAll(singletonEdges);
     }
@@ -148,6 +153,8 @@ public final class NetworkRootContainer extends NetworkContainer
         int count = 0;
         for ( Vertex vertex : getVertices() )
             vertex.setVertexID(count++);
+
+        verticesModified();
     }
 
     private void addToNcc(HashSet<Vertex> vertexDone, NetworkComponentContainer ncc, Vertex vertex, HashSet<Vertex> toDoVertices)
@@ -178,7 +185,7 @@ public final class NetworkRootContainer extends NetworkContainer
     @Override
     public void optimize(GraphLayoutAlgorithm gla)
     {
-        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
 
         switch (gla)
         {
@@ -219,11 +226,14 @@ public final class NetworkRootContainer extends NetworkContainer
                     case FRUCHTERMAN_REINGOLD:
                         fmmm.repulsiveForcesCalculation(FMMMLayout.RepulsiveForcesMethod.rfcGridApproximation);
                         break;
-                    /*case NMM:
+                    case NEW_MULTIPOLE_METHOD:
                         fmmm.repulsiveForcesCalculation(FMMMLayout.RepulsiveForcesMethod.rfcNMM);
-                        break;*/
+                        break;
                 }
 
+                fmmm.nmPrecision(FMMM_NM_PRECISION.get());
+                fmmm.nmParticlesInLeaves(FMMM_NM_PARTICLES_IN_LEAVES.get());
+
                 switch (FMMM_STOP_CRITERION.get())
                 {
                     case FORCE_THRESHOLD_AND_FIXED_ITERATIONS:
@@ -283,14 +293,21 @@ public final class NetworkRootContainer extends NetworkContainer
                 }
                 else
                 {
-                    int componentNumber = 0;
-                    for (NetworkComponentContainer ncc : componentCollection)
+                    if ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() && (componentCollection.size() > 1) )
+                    {
+                        optimizeComponentsConcurrently();
+                    }
+                    else
                     {
-                        if (layoutProgressBarDialog.userHasCancelled())
+                        int componentNumber = 0;
+                        for (NetworkComponentContainer ncc : componentCollection)
                         {
-                            break;
+                            if (layoutProgressBarDialog.userHasCancelled())
+                            {
+                                break;
+                            }
+                            ncc.optimize(++componentNumber);
                         }
-                        ncc.optimize(++componentNumber);
                     }
 
                     if (layoutProgressBarDialog.userHasCancelled())
@@ -325,6 +342,55 @@ public final class NetworkRootContainer extends NetworkContainer
         rescaleToFitCanvas();
     }
 
+    /**
+    *  Lays out the graph components largest-first. Components big enough for N-CP are laid out one at a time using all cores,
+    *  whilst the remaining ones are laid out concurrently through the LayoutComputeService, each with its own FRLayout state.
+    */
+    private void optimizeComponentsConcurrently()
+    {
+        final LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
+        final ArrayList<NetworkComponentContainer> sortedComponentCollection = new ArrayList<NetworkComponentContainer>(componentCollection);
+        Collections.sort(sortedComponentCollection, new NCComponentSizeSorter());
+
+        int componentNumber = 0;
+        while ( (componentNumber < sortedComponentCollection.size()) &&
+                (sortedComponentCollection.get(componentNumber).getNumberOfVertices() >= FRLayout.MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        {
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                return;
+            }
+            sortedComponentCollection.get(componentNumber).optimize(++componentNumber);
+        }
+
+        final int firstConcurrentComponent = componentNumber;
+        int numberOfConcurrentComponents = sortedComponentCollection.size() - firstConcurrentComponent;
+        if (numberOfConcurrentComponents == 0)
+            return;
+
+        layoutProgressBarDialog.prepareProgressBar(numberOfConcurrentComponents, "Now Processing Layout Iterations (Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS +
+                "-Core Parallelism) for " + numberOfConcurrentComponents + " Graph Components", true);
+        layoutProgressBarDialog.startProgressBar();
+
+        LayoutComputeService.getInstance().execute(new LayoutComputeService.RangeKernel()
+            {
+
+                @Override
+                public void process(int startIndex, int endIndex)
+                {
+                    for (int i = startIndex; i < endIndex; i++)
+                    {
+                        sortedComponentCollection.get(firstConcurrentComponent + i).optimizeConcurrently(layoutProgressBarDialog);
+                        layoutProgressBarDialog.incrementProgress();
+                    }
+                }
+
+
+            }, numberOfConcurrentComponents, 1, layoutProgressBarDialog);
+
+        layoutProgressBarDialog.endProgressBar();
+    }
+
     private void rescale(float scale, Point3D offset,
             boolean positions, boolean nodeSizes, boolean arrowHeadSizes)
     {
@@ -429,7 +495,7 @@ public final class NetworkRootContainer extends NetworkContainer
         }
         else
         {
-            LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+            LayoutProgressBar layoutProgressBarDialog = getLayoutProgressBar();
             layoutProgressBarDialog.prepareProgressBar(componentCollection.size(), "Now Processing Burst Layout Iterations...");
             layoutProgressBarDialog.startProgressBar();
 
@@ -458,6 +524,63 @@ public final class NetworkRootContainer extends NetworkContainer
         isRelayout = false;
     }
 
+    /**
+    *  Relayouts the network incrementally after an edit changed the connections of the given vertices.
+    *  Only the changed vertices & their neighbourhood up to INCREMENTAL_LAYOUT_NEIGHBOURHOOD_HOPS hops move, warm-started from their current positions
+    *  at the burst layout temperature, whilst all other vertices stay frozen. Falls back to the whole graph relayout when the neighbourhood covers most of the network.
+    */
+    public void relayoutIncrementally(Collection<Vertex> changedVertices)
+    {
+        HashSet<Vertex> movableVertices = getNeighbourhoodVertices( changedVertices, INCREMENTAL_LAYOUT_NEIGHBOURHOOD_HOPS.get() );
+        if ( movableVertices.isEmpty() )
+            return;
+
+        if (movableVertices.size() > INCREMENTAL_LAYOUT_MAXIMUM_MOVABLE_FRACTION * getNumberOfVertices())
+        {
+            // burst layout iterations work on the whole graph only, temporarily disabling tiling
+            boolean originalTilingValue = TILED_LAYOUT.get();
+            TILED_LAYOUT.set(false);
+            relayout(GraphLayoutAlgorithm.FRUCHTERMAN_REINGOLD);
+            TILED_LAYOUT.set(originalTilingValue);
+
+            return;
+        }
+
+        if (WEIGHTED_EDGES)
+        {
+            normaliseWeights();
+        }
+
+        setKvalue();
+        optimizeIncrementally(movableVertices);
+    }
+
+    /**
+    *  Gets the given vertices of the network & all network vertices up to the given number of hops away from them, with a breadth-first search.
+    */
+    private HashSet<Vertex> getNeighbourhoodVertices(Collection<Vertex> vertices, int numberOfHops)
+    {
+        HashSet<Vertex> neighbourhoodVertices = new HashSet<Vertex>();
+        ArrayList<Vertex> currentHopVertices = new ArrayList<Vertex>();
+        for (Vertex vertex : vertices)
+            if ( ( verticesMap.get( vertex.getVertexName() ) == vertex ) && neighbourhoodVertices.add(vertex) )
+                currentHopVertices.add(vertex);
+
+        ArrayList<Vertex> nextHopVertices = null;
+        while ( (--numberOfHops >= 0) && !currentHopVertices.isEmpty() )
+        {
+            nextHopVertices = new ArrayList<Vertex>();
+            for (Vertex vertex : currentHopVertices)
+                for ( Vertex neighbour : vertex.getEdgeConnectionsMap().keySet() )
+                    if ( ( verticesMap.get( neighbour.getVertexName() ) == neighbour ) && neighbourhoodVertices.add(neighbour) )
+                        nextHopVertices.add(neighbour);
+
+            currentHopVertices = nextHopVertices;
+        }
+
+        return neighbourhoodVertices;
+    }
+
     public void setKvalue()
     {
         frLayout.setKvalue( layoutFrame, getVertices() );
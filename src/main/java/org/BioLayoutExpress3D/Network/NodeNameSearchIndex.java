@@ -0,0 +1,403 @@
+package org.BioLayoutExpress3D.Network;
+
+import java.util.*;
+
+/**
+*
+* The NodeNameSearchIndex class is a search index over the (display) node names of a network, built once per loaded network
+* & kept up to date on node renames through NetworkContainer.setNodeName(), so that node searches don't compare every needle against every node name.
+* The names are indexed lower case (with String.toLowerCase(), as the searches fold them):
+* an exact-match hash of the whole names, and a trigram inverted index whose posting lists are sorted arrays of node slots.
+* A substring query intersects the posting lists of its trigrams & only verifies the remaining candidates,
+* with the same comparisons as a linear search, so the results are identical.
+* Needles shorter than a trigram, and case-sensitive needles with non-ASCII characters (whose lower case may depend on their context), are searched linearly.
+* The results are returned as primitive sets of vertex IDs.
+*
+* @version 3.0.0.0
+*
+*/
+
+public final class NodeNameSearchIndex
+{
+
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final int NO_POSTING_LIST = -1;
+
+    private final NetworkContainer nc;
+    private final Vertex[] vertices;
+    private final String[] names;
+    private final String[] lowerCaseNames;
+    private final IdentityHashMap<Vertex, Integer> slotOfVertex;
+
+    // exact names, lower case, to their sorted node slots
+    private final HashMap<String, int[]> exactNames;
+
+    // open addressing hash table of the trigrams to their posting list index
+    private long[] trigramKeys = null;
+    private int[] trigramPostingLists = null;
+    private int numberOfTrigrams = 0;
+
+    // posting lists of sorted node slots
+    private int[][] postingLists = null;
+    private int[] postingListSizes = null;
+
+    /**
+    *  The constructor of the NodeNameSearchIndex class, indexes all vertices of the given network container.
+    */
+    public NodeNameSearchIndex(NetworkContainer nc)
+    {
+        this.nc = nc;
+
+        Collection<Vertex> allVertices = nc.getVertices();
+        int numberOfNodes = allVertices.size();
+        vertices = allVertices.toArray( new Vertex[numberOfNodes] );
+        names = new String[numberOfNodes];
+        lowerCaseNames = new String[numberOfNodes];
+        slotOfVertex = new IdentityHashMap<Vertex, Integer>(numberOfNodes);
+        exactNames = new HashMap<String, int[]>(2 * numberOfNodes);
+
+        int capacity = 1024;
+        while (capacity < 4 * numberOfNodes)
+            capacity <<= 1;
+        trigramKeys = new long[capacity];
+        trigramPostingLists = new int[capacity];
+        Arrays.fill(trigramPostingLists, NO_POSTING_LIST);
+        postingLists = new int[capacity / 2][];
+        postingListSizes = new int[capacity / 2];
+
+        HashMap<String, ArrayList<Integer>> namesSlots = new HashMap<String, ArrayList<Integer>>(2 * numberOfNodes);
+        for (int slot = 0; slot < numberOfNodes; slot++)
+        {
+            slotOfVertex.put(vertices[slot], slot);
+            names[slot] = nc.getNodeName( vertices[slot].getVertexName() );
+            lowerCaseNames[slot] = names[slot].toLowerCase();
+
+            ArrayList<Integer> nameSlots = namesSlots.get(lowerCaseNames[slot]);
+            if (nameSlots == null)
+            {
+                nameSlots = new ArrayList<Integer>(1);
+                namesSlots.put(lowerCaseNames[slot], nameSlots);
+            }
+            nameSlots.add(slot);
+
+            // the slots are added in ascending order, so appending keeps the posting lists sorted
+            String lowerCaseName = lowerCaseNames[slot];
+            for (int i = 0; i + TRIGRAM_LENGTH <= lowerCaseName.length(); i++)
+            {
+                int postingList = getOrCreatePostingList( trigram(lowerCaseName, i) );
+                int size = postingListSizes[postingList];
+                if ( (size == 0) || (postingLists[postingList][size - 1] != slot) )
+                    appendToPostingList(postingList, slot);
+            }
+        }
+
+        for ( Map.Entry<String, ArrayList<Integer>> entry : namesSlots.entrySet() )
+        {
+            int[] nameSlots = new int[entry.getValue().size()];
+            for (int i = 0; i < nameSlots.length; i++)
+                nameSlots[i] = entry.getValue().get(i);
+            exactNames.put(entry.getKey(), nameSlots);
+        }
+    }
+
+    /**
+    *  Gets the number of indexed nodes.
+    */
+    public int getNumberOfNodes()
+    {
+        return vertices.length;
+    }
+
+    /**
+    *  Re-indexes the name of the given vertex after a rename. Vertices not in the index are ignored.
+    */
+    public void updateNodeName(Vertex vertex)
+    {
+        Integer slotObject = slotOfVertex.get(vertex);
+        if (slotObject == null)
+            return;
+
+        int slot = slotObject;
+        String newName = nc.getNodeName( vertex.getVertexName() );
+        if ( newName.equals(names[slot]) )
+            return;
+
+        String oldLowerCaseName = lowerCaseNames[slot];
+        String newLowerCaseName = newName.toLowerCase();
+        names[slot] = newName;
+        lowerCaseNames[slot] = newLowerCaseName;
+        if ( oldLowerCaseName.equals(newLowerCaseName) )
+            return;
+
+        removeExactName(oldLowerCaseName, slot);
+        addExactName(newLowerCaseName, slot);
+
+        for (int i = 0; i + TRIGRAM_LENGTH <= oldLowerCaseName.length(); i++)
+        {
+            int postingList = findPostingList( trigram(oldLowerCaseName, i) );
+            if (postingList != NO_POSTING_LIST)
+                removeFromPostingList(postingList, slot);
+        }
+
+        for (int i = 0; i + TRIGRAM_LENGTH <= newLowerCaseName.length(); i++)
+            insertIntoPostingList(getOrCreatePostingList( trigram(newLowerCaseName, i) ), slot);
+    }
+
+    /**
+    *  Finds the vertex IDs of all nodes matching any of the whitespace separated needles of the search term.
+    *  A node name matches a needle if it contains it, or equals it if matchEntireName, ignoring the case unless matchCase.
+    */
+    public BitSet findTerms(String searchTerm, boolean matchCase, boolean matchEntireName)
+    {
+        BitSet foundSlots = new BitSet(vertices.length);
+        for ( String needle : searchTerm.split("\\s+") )
+        {
+            if (matchEntireName)
+                addEqualNames(needle, matchCase, foundSlots);
+            else
+                addNamesContaining(needle, matchCase, foundSlots);
+        }
+
+        BitSet foundVertexIDs = new BitSet();
+        for (int slot = foundSlots.nextSetBit(0); slot >= 0; slot = foundSlots.nextSetBit(slot + 1))
+            foundVertexIDs.set( vertices[slot].getVertexID() );
+
+        return foundVertexIDs;
+    }
+
+    /**
+    *  Checks if a node name matches a needle, with the comparisons of the index searches.
+    */
+    public static boolean nameMatches(String name, String needle, boolean matchCase, boolean matchEntireName)
+    {
+        if (!matchCase)
+        {
+            name = name.toLowerCase();
+            needle = needle.toLowerCase();
+        }
+
+        return (matchEntireName) ? needle.equals(name) : name.contains(needle);
+    }
+
+    private void addEqualNames(String needle, boolean matchCase, BitSet foundSlots)
+    {
+        // equal names are equal in lower case too
+        int[] nameSlots = exactNames.get( needle.toLowerCase() );
+        if (nameSlots == null)
+            return;
+
+        for (int slot : nameSlots)
+            if ( !matchCase || names[slot].equals(needle) )
+                foundSlots.set(slot);
+    }
+
+    private void addNamesContaining(String needle, boolean matchCase, BitSet foundSlots)
+    {
+        String lowerCaseNeedle = needle.toLowerCase();
+        if ( (lowerCaseNeedle.length() < TRIGRAM_LENGTH) || ( matchCase && !isASCII(needle) ) )
+        {
+            for (int slot = 0; slot < vertices.length; slot++)
+                if ( (matchCase) ? names[slot].contains(needle) : lowerCaseNames[slot].contains(lowerCaseNeedle) )
+                    foundSlots.set(slot);
+
+            return;
+        }
+
+        // a name containing the needle contains all its trigrams, starting from the shortest posting list
+        int numberOfNeedleTrigrams = lowerCaseNeedle.length() - TRIGRAM_LENGTH + 1;
+        int[] needlePostingLists = new int[numberOfNeedleTrigrams];
+        for (int i = 0; i < numberOfNeedleTrigrams; i++)
+        {
+            needlePostingLists[i] = findPostingList( trigram(lowerCaseNeedle, i) );
+            if ( (needlePostingLists[i] == NO_POSTING_LIST) || (postingListSizes[needlePostingLists[i]] == 0) )
+                return;
+        }
+
+        int shortest = 0;
+        for (int i = 1; i < numberOfNeedleTrigrams; i++)
+            if (postingListSizes[needlePostingLists[i]] < postingListSizes[needlePostingLists[shortest]])
+                shortest = i;
+
+        int[] shortestPostingList = postingLists[needlePostingLists[shortest]];
+        int shortestSize = postingListSizes[needlePostingLists[shortest]];
+        for (int j = 0; j < shortestSize; j++)
+        {
+            int slot = shortestPostingList[j];
+            boolean inAllPostingLists = true;
+            for (int i = 0; i < numberOfNeedleTrigrams; i++)
+            {
+                if (i == shortest)
+                    continue;
+
+                int postingList = needlePostingLists[i];
+                if (Arrays.binarySearch(postingLists[postingList], 0, postingListSizes[postingList], slot) < 0)
+                {
+                    inAllPostingLists = false;
+                    break;
+                }
+            }
+
+            if ( inAllPostingLists && ( (matchCase) ? names[slot].contains(needle) : lowerCaseNames[slot].contains(lowerCaseNeedle) ) )
+                foundSlots.set(slot);
+        }
+    }
+
+    private static boolean isASCII(String string)
+    {
+        for (int i = 0; i < string.length(); i++)
+            if (string.charAt(i) > 0x7F)
+                return false;
+
+        return true;
+    }
+
+    private static long trigram(String string, int index)
+    {
+        return ( (long)string.charAt(index) << 32 ) | ( (long)string.charAt(index + 1) << 16 ) | (long)string.charAt(index + 2);
+    }
+
+    private int trigramHash(long trigram)
+    {
+        long hash = trigram * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & (trigramKeys.length - 1);
+    }
+
+    private int findPostingList(long trigram)
+    {
+        int mask = trigramKeys.length - 1;
+        for (int i = trigramHash(trigram); trigramPostingLists[i] != NO_POSTING_LIST; i = (i + 1) & mask)
+            if (trigramKeys[i] == trigram)
+                return trigramPostingLists[i];
+
+        return NO_POSTING_LIST;
+    }
+
+    private int getOrCreatePostingList(long trigram)
+    {
+        int postingList = findPostingList(trigram);
+        if (postingList != NO_POSTING_LIST)
+            return postingList;
+
+        if ( 2 * (numberOfTrigrams + 1) > trigramKeys.length )
+            growTrigramTable();
+
+        postingList = numberOfTrigrams++;
+        if ( postingList == postingLists.length )
+        {
+            postingLists = Arrays.copyOf(postingLists, 2 * postingLists.length);
+            postingListSizes = Arrays.copyOf(postingListSizes, 2 * postingListSizes.length);
+        }
+        postingLists[postingList] = new int[2];
+
+        int mask = trigramKeys.length - 1;
+        int i = trigramHash(trigram);
+        while (trigramPostingLists[i] != NO_POSTING_LIST)
+            i = (i + 1) & mask;
+        trigramKeys[i] = trigram;
+        trigramPostingLists[i] = postingList;
+
+        return postingList;
+    }
+
+    private void growTrigramTable()
+    {
+        long[] oldTrigramKeys = trigramKeys;
+        int[] oldTrigramPostingLists = trigramPostingLists;
+        trigramKeys = new long[2 * oldTrigramKeys.length];
+        trigramPostingLists = new int[2 * oldTrigramPostingLists.length];
+        Arrays.fill(trigramPostingLists, NO_POSTING_LIST);
+
+        int mask = trigramKeys.length - 1;
+        for (int j = 0; j < oldTrigramKeys.length; j++)
+        {
+            if (oldTrigramPostingLists[j] == NO_POSTING_LIST)
+                continue;
+
+            int i = trigramHash(oldTrigramKeys[j]);
+            while (trigramPostingLists[i] != NO_POSTING_LIST)
+                i = (i + 1) & mask;
+            trigramKeys[i] = oldTrigramKeys[j];
+            trigramPostingLists[i] = oldTrigramPostingLists[j];
+        }
+    }
+
+    private void appendToPostingList(int postingList, int slot)
+    {
+        int size = postingListSizes[postingList];
+        if ( size == postingLists[postingList].length )
+            postingLists[postingList] = Arrays.copyOf(postingLists[postingList], 2 * size);
+        postingLists[postingList][size] = slot;
+        postingListSizes[postingList]++;
+    }
+
+    private void insertIntoPostingList(int postingList, int slot)
+    {
+        int size = postingListSizes[postingList];
+        int position = Arrays.binarySearch(postingLists[postingList], 0, size, slot);
+        if (position >= 0)
+            return;
+
+        position = -(position + 1);
+        if ( size == postingLists[postingList].length )
+            postingLists[postingList] = Arrays.copyOf(postingLists[postingList], 2 * size);
+        System.arraycopy(postingLists[postingList], position, postingLists[postingList], position + 1, size - position);
+        postingLists[postingList][position] = slot;
+        postingListSizes[postingList]++;
+    }
+
+    private void removeFromPostingList(int postingList, int slot)
+    {
+        int size = postingListSizes[postingList];
+        int position = Arrays.binarySearch(postingLists[postingList], 0, size, slot);
+        if (position < 0)
+            return;
+
+        System.arraycopy(postingLists[postingList], position + 1, postingLists[postingList], position, size - position - 1);
+        postingListSizes[postingList]--;
+    }
+
+    private void addExactName(String lowerCaseName, int slot)
+    {
+        int[] nameSlots = exactNames.get(lowerCaseName);
+        if (nameSlots == null)
+        {
+            exactNames.put( lowerCaseName, new int[]{ slot } );
+            return;
+        }
+
+        int position = Arrays.binarySearch(nameSlots, slot);
+        if (position >= 0)
+            return;
+
+        position = -(position + 1);
+        int[] newNameSlots = new int[nameSlots.length + 1];
+        System.arraycopy(nameSlots, 0, newNameSlots, 0, position);
+        newNameSlots[position] = slot;
+        System.arraycopy(nameSlots, position, newNameSlots, position + 1, nameSlots.length - position);
+        exactNames.put(lowerCaseName, newNameSlots);
+    }
+
+    private void removeExactName(String lowerCaseName, int slot)
+    {
+        int[] nameSlots = exactNames.get(lowerCaseName);
+        if (nameSlots == null)
+            return;
+
+        int position = Arrays.binarySearch(nameSlots, slot);
+        if (position < 0)
+            return;
+
+        if (nameSlots.length == 1)
+        {
+            exactNames.remove(lowerCaseName);
+            return;
+        }
+
+        int[] newNameSlots = new int[nameSlots.length - 1];
+        System.arraycopy(nameSlots, 0, newNameSlots, 0, position);
+        System.arraycopy(nameSlots, position + 1, newNameSlots, position, newNameSlots.length - position);
+        exactNames.put(lowerCaseName, newNameSlots);
+    }
+
+
+}
@@ -70,6 +70,18 @@ public final class Vertex implements Comparable<Vertex>
         }
     }
 
+    public void removeConnection(Vertex vertex)
+    {
+        if (!this.equals(vertex))
+        {
+            edgeConnections.remove(vertex);
+        }
+        else
+        {
+            selfEdge = null;
+        }
+    }
+
     public String getVertexName()
     {
         return vertexName;
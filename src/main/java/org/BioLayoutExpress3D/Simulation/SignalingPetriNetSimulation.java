@@ -2,15 +2,14 @@ package org.BioLayoutExpress3D.Simulation;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import javax.swing.*;
 import org.BioLayoutExpress3D.CoreUI.*;
 import org.BioLayoutExpress3D.CoreUI.Dialogs.*;
 import org.BioLayoutExpress3D.CPUParallelism.*;
-import org.BioLayoutExpress3D.CPUParallelism.Executors.*;
-import org.BioLayoutExpress3D.DataStructures.*;
 import org.BioLayoutExpress3D.Network.*;
 import org.BioLayoutExpress3D.StaticLibraries.*;
+import org.BioLayoutExpress3D.StaticLibraries.Random.XORShiftRandomStream;
 import static org.BioLayoutExpress3D.StaticLibraries.ArraysAutoBoxUtils.*;
 import static org.BioLayoutExpress3D.Environment.AnimationEnvironment.*;
 import static org.BioLayoutExpress3D.Environment.GlobalEnvironment.*;
@@ -59,15 +58,22 @@ public class SignalingPetriNetSimulation
     private int numberOfVertices = 0;
     private SPNDistributionTypes SPNDistributionType = SPNDistributionTypes.UNIFORM;
     private SPNTransitionTypes SPNTransitionType = SPNTransitionTypes.CONSUMPTIVE;
-    private java.util.Random random = null;
-
-    private int[] transitionIDs = null;
-    private int[][] parentsIDs = null;
-    private int[][] childrenIDs = null;
-    private float[][] childrenWeights = null;
-    private int[][] totalInhibitorsIDs = null;
-    private int[][] partialInhibitorsIDs = null;
-    private int[][] allArraysLengths = null;
+    private long seed = 0;
+
+    // The transitions are numbered 0 ... numberOfTransitions - 1 & their families are stored as flat CSR arrays:
+    // the parents of transition t are parentsIDs[parentsBegin[t] ... parentsBegin[t + 1] - 1], and so on.
+    // The weights of children slot c are childrenWeights[c * totalTimeBlocks ... (c + 1) * totalTimeBlocks - 1].
+    private int numberOfTransitions = 0;
+    private int totalTimeBlocks = 0;
+    private int[] parentsBegin = null;
+    private int[] parentsIDs = null;
+    private int[] childrenBegin = null;
+    private int[] childrenIDs = null;
+    private float[] childrenWeights = null;
+    private int[] totalInhibitorsBegin = null;
+    private int[] totalInhibitorsIDs = null;
+    private int[] partialInhibitorsBegin = null;
+    private int[] partialInhibitorsIDs = null;
 
     private long timeTaken = 0;
 
@@ -141,125 +147,54 @@ public class SignalingPetriNetSimulation
         }
     }
 
-    private class SpnResultRuns
-    {
-        private int numTimeBlocks;
-        private int numPlaces;
-        private int numRuns;
-        private ErrorType errorType;
-        private SpnResult[] runs;
+    private SpnResult consolidatedResult = null;
 
-        public SpnResultRuns(int numTimeBlocks, int numPlaces, int numRuns, ErrorType errorType)
-        {
-            this.numTimeBlocks = numTimeBlocks;
-            this.numPlaces = numPlaces;
-            this.numRuns = numRuns;
-            this.errorType = errorType;
+    // variables needed for N-CP
+    private static final int MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION = 2;
+    // fixed number of runs per run block, independent of the number of workers so that the statistics merge order is too
+    private static final int NUMBER_OF_SPN_RUNS_PER_BLOCK = 8;
 
-            if (errorType != ErrorType.NONE)
-            {
-                runs = new SpnResult[numRuns];
-                for (int i = 0; i < numRuns; i++)
-                {
-                    runs[i] = new SpnResult(numPlaces, numTimeBlocks, errorType);
-                }
-            }
-            else
-            {
-                runs = new SpnResult[1];
-                runs[0] = new SpnResult(numPlaces, numTimeBlocks, errorType);
-            }
+    // the run blocks finished out of order wait here until all blocks before them are merged, then their statistics are recycled
+    private RunStatistics totalRunStatistics = null;
+    private int nextRunBlockToMerge = 0;
+    private HashMap<Integer, RunStatistics> finishedRunBlocksMap = null;
+    private ArrayDeque<RunStatistics> freeRunStatistics = null;
 
-            if (DEBUG_BUILD)
-            {
-                int bytesAllocated = 0;
-                for (SpnResult run : runs)
-                {
-                    bytesAllocated += run.bytesAllocated;
-                }
+    /**
+    *  The SPNWorker class holds everything one worker thread needs to simulate its runs on its own.
+    *  The token places, the transition order & the RNG are never shared between threads, so no synchronization is needed.
+    */
+    private final class SPNWorker
+    {
+        private final float[] places = new float[numberOfVertices];
+        private final int[] transitionOrder = new int[numberOfTransitions];
+        private final XORShiftRandomStream random = new XORShiftRandomStream(seed);
+    }
 
-                println("Allocated " + (bytesAllocated >> 10) + "kb for " + numRuns + " runs");
-            }
-        }
+    /**
+    *  The RunStatistics class holds the number of runs, the running mean & the sum of squared differences from the mean (only for errors) per place & time block.
+    *  Every finished run is folded in with Welford's algorithm instead of being stored, so the memory needed does not depend on the number of runs.
+    */
+    private final class RunStatistics
+    {
+        private long numberOfRuns = 0;
+        private final double[] mean = new double[numberOfVertices * totalTimeBlocks];
+        private final double[] sumOfSquares;
 
-        public void clear()
+        public RunStatistics(ErrorType errorType)
         {
-            for (SpnResult run : runs)
-            {
-                run.clear();
-            }
+            sumOfSquares = (errorType != ErrorType.NONE) ? new double[numberOfVertices * totalTimeBlocks] : null;
         }
 
-        //FIXME: parallelise this
-        public SpnResult consolidateRuns()
+        private void clear()
         {
-            if (errorType == ErrorType.NONE)
-            {
-                return runs[0];
-            }
-
-            SpnResult out = new SpnResult(numPlaces, numTimeBlocks, errorType);
-
-            layoutProgressBarDialog.prepareProgressBar(numPlaces, "Calculating error...");
-            layoutProgressBarDialog.startProgressBar();
-
-            for (int placeIndex = 0; placeIndex < numPlaces; placeIndex++)
-            {
-                for (int timeBlock = 0; timeBlock < numTimeBlocks; timeBlock++)
-                {
-                    float sum = 0.0f;
-                    for (SpnResult run : runs)
-                    {
-                        float x = run.getValue(placeIndex, timeBlock);
-                        sum += x;
-                    }
-                    float mean = sum / runs.length;
-
-                    float variance = 0.0f;
-                    for (SpnResult run : runs)
-                    {
-                        float xMinusMenu = run.getValue(placeIndex, timeBlock) - mean;
-                        variance += (xMinusMenu * xMinusMenu);
-                    }
-                    variance = variance / runs.length;
-
-                    float stddev = (float)java.lang.Math.sqrt(variance);
-
-                    out.setValue(placeIndex, timeBlock, mean);
-                    if (errorType == ErrorType.STDDEV)
-                    {
-                        out.setError(placeIndex, timeBlock, stddev);
-                    }
-                    else
-                    {
-                        float stderr = stddev / (float)java.lang.Math.sqrt(runs.length);
-                        out.setError(placeIndex, timeBlock, stderr);
-                    }
-                }
-
-                layoutProgressBarDialog.incrementProgress();
-            }
-
-            layoutProgressBarDialog.endProgressBar();
-
-            return out;
+            numberOfRuns = 0;
+            Arrays.fill(mean, 0.0);
+            if (sumOfSquares != null)
+                Arrays.fill(sumOfSquares, 0.0);
         }
     }
 
-    // Array so computation can be spread across threads
-    private SpnResultRuns[] intermediateResults = null;
-    private SpnResult consolidatedResult = null;
-
-    // variables needed for N-CP
-    private static final int MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION = 2;
-    private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
-
-    /**
-    *  Variable used for loading the native library only once (no use of re-loading the library).
-    */
-    private static boolean hasOnceLoadedNativeLibrary = false;
-
     /**
     *  The constructor of the SignalingPetriNetSimulation class.
     */
@@ -268,28 +203,39 @@ public class SignalingPetriNetSimulation
         this.nc = nc;
         this.layoutFrame = layoutFrame;
 
-        random = new java.util.Random();
         layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
     }
 
     /**
-    *  Executes the SPN simulation.
+    *  Executes the SPN simulation with a new seed.
     */
     public void executeSPNSimulation(int totalTimeBlocks, int totalRuns, ErrorType errorType)
     {
+        executeSPNSimulation( totalTimeBlocks, totalRuns, errorType, System.nanoTime() );
+    }
+
+    /**
+    *  Executes the SPN simulation with the given seed.
+    *  Every run draws from its own stream of the seed & the runs are merged in fixed run blocks in run order,
+    *  so the same seed reproduces the same results on any number of cores.
+    */
+    public void executeSPNSimulation(int totalTimeBlocks, int totalRuns, ErrorType errorType, long seed)
+    {
+        this.seed = seed;
+
         long prevTime = System.nanoTime();
         performSPNSimulation(totalTimeBlocks, totalRuns, errorType);
-        clean(totalRuns);
+        clean();
         timeTaken = System.nanoTime() - prevTime;
     }
 
     /**
     *  Initializes all the relevant SPN data structures.
     */
-    private void initAllCachedDataStructures(int totalTimeBlocks, int totalRuns,
-            int numThreads, ErrorType errorType)
+    private void initAllCachedDataStructures(int totalTimeBlocks, int totalRuns, ErrorType errorType)
     {
         numberOfVertices = nc.getNumberOfVertices();
+        this.totalTimeBlocks = totalTimeBlocks;
         String SPNDistributionTypeString = USE_SPN_DISTRIBUTION_TYPE.get();
         if ( SPNDistributionTypeString.equals( SPNDistributionTypes.UNIFORM.toString() ) )
             SPNDistributionType = SPNDistributionTypes.UNIFORM;
@@ -303,124 +249,110 @@ public class SignalingPetriNetSimulation
         else if ( SPNTransitionTypeString.equals( SPNTransitionTypes.ORIGINAL.toString() ) )
             SPNTransitionType = SPNTransitionTypes.ORIGINAL;
 
-        // Note:
-        // We need to initialize the four arrays below with a dimention of 0 or above instead of plain []
-        // Otherwise the C/JNI native version of the SPN simulation will crash the JVM trying to lock these 2D arrays!
-        parentsIDs = new int[numberOfVertices][0];
-        childrenIDs = new int[numberOfVertices][0];
-        childrenWeights = new float[numberOfVertices][0];
-        totalInhibitorsIDs = new int[numberOfVertices][0];
-        partialInhibitorsIDs = new int[numberOfVertices][0];
-
-        intermediateResults = new SpnResultRuns[numThreads];
-        for (int threadId = 0; threadId < intermediateResults.length; threadId++)
+        if (DEBUG_BUILD)
         {
-            int runsForThread = totalRuns / numThreads;
-
-            if (threadId == 0)
-            {
-                // Give the first thread the left over runs
-                runsForThread += totalRuns % numThreads;
-            }
-
-            println("Creating intermediateResults[" + threadId + "]");
-            intermediateResults[threadId] = new SpnResultRuns(totalTimeBlocks,
-                    numberOfVertices, runsForThread, errorType);
+            int numberOfAccumulators = (errorType != ErrorType.NONE) ? 2 : 1;
+            println("Allocating " + ( ( (long)numberOfVertices * totalTimeBlocks * numberOfAccumulators * 8) >> 10 ) +
+                    "kb of run statistics per SPN worker");
         }
 
-        ArrayList<Integer> arraylistTransitionIDs = new ArrayList<Integer>();
-        Tuple5<int[], int[], float[], int[], int[]> familyTuple5 = null;
+        ArrayList<Vertex> transitions = new ArrayList<Vertex>();
         for ( Vertex vertex: nc.getVertices() )
-        {
-            if( vertex.ismEPNTransition() )
-            {
-                arraylistTransitionIDs.add( vertex.getVertexID() );
-                familyTuple5 = getSPNSimulationDetailsForTransition(vertex, vertex.getEdgeConnectionsMap(), totalTimeBlocks);
-                parentsIDs[vertex.getVertexID()] = familyTuple5.first;
-                childrenIDs[vertex.getVertexID()] = familyTuple5.second;
-                childrenWeights[vertex.getVertexID()] = familyTuple5.third;
-                totalInhibitorsIDs[vertex.getVertexID()] = familyTuple5.fourth;
-                partialInhibitorsIDs[vertex.getVertexID()] = familyTuple5.fifth;
-            }
-        }
+            if ( vertex.ismEPNTransition() )
+                transitions.add(vertex);
+
+        numberOfTransitions = transitions.size();
+        parentsBegin = new int[numberOfTransitions + 1];
+        childrenBegin = new int[numberOfTransitions + 1];
+        totalInhibitorsBegin = new int[numberOfTransitions + 1];
+        partialInhibitorsBegin = new int[numberOfTransitions + 1];
 
-        transitionIDs = toPrimitiveListInteger(arraylistTransitionIDs);
+        ArrayList<Integer> parentsIDsList = new ArrayList<Integer>();
+        ArrayList<Integer> childrenIDsList = new ArrayList<Integer>();
+        ArrayList<Float> childrenWeightsList = new ArrayList<Float>();
+        ArrayList<Integer> totalInhibitorsList = new ArrayList<Integer>();
+        ArrayList<Integer> partialInhibitorsList = new ArrayList<Integer>();
+        for (int transition = 0; transition < numberOfTransitions; transition++)
+        {
+            Vertex vertex = transitions.get(transition);
+            addSPNSimulationDetailsForTransition(vertex, vertex.getEdgeConnectionsMap(), totalTimeBlocks,
+                    parentsIDsList, childrenIDsList, childrenWeightsList, totalInhibitorsList, partialInhibitorsList);
+            parentsBegin[transition + 1] = parentsIDsList.size();
+            childrenBegin[transition + 1] = childrenIDsList.size();
+            totalInhibitorsBegin[transition + 1] = totalInhibitorsList.size();
+            partialInhibitorsBegin[transition + 1] = partialInhibitorsList.size();
+        }
+
+        parentsIDs = toPrimitiveListInteger(parentsIDsList);
+        childrenIDs = toPrimitiveListInteger(childrenIDsList);
+        childrenWeights = toPrimitiveListFloat(childrenWeightsList);
+        totalInhibitorsIDs = toPrimitiveListInteger(totalInhibitorsList);
+        partialInhibitorsIDs = toPrimitiveListInteger(partialInhibitorsList);
     }
 
     /**
     *  Main method of the SPN simulation execution code. Uses an N-Core parallelism algorithm in case of multiple core availability.
     */
-    private void performSPNSimulation(int totalTimeBlocks, int totalRuns, ErrorType errorType)
+    private void performSPNSimulation(int totalTimeBlocks, final int totalRuns, final ErrorType errorType)
     {
-        int numThreads = 1;
+        LayoutComputeService layoutComputeService = null;
+        int numberOfWorkers = 1;
 
         if ((USE_MULTICORE_PROCESS && USE_SPN_N_CORE_PARALLELISM.get()) && (totalRuns >= MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION))
         {
-            numThreads = NUMBER_OF_AVAILABLE_PROCESSORS;
+            layoutComputeService = LayoutComputeService.getInstance();
+            numberOfWorkers = layoutComputeService.getNumberOfWorkers();
+            if (numberOfWorkers > totalRuns)
+                numberOfWorkers = totalRuns;
         }
 
         layoutProgressBarDialog.prepareProgressBar(totalRuns, "Allocating resources...");
         layoutProgressBarDialog.startProgressBar();
-        initAllCachedDataStructures(totalTimeBlocks, totalRuns, numThreads, errorType);
+        initAllCachedDataStructures(totalTimeBlocks, totalRuns, errorType);
 
         layoutProgressBarDialog.setText("Now Processing SPN Simulation For " + totalTimeBlocks +
                 " Time Blocks & " + totalRuns + " Runs...");
 
-        if ( numThreads > 1 )
+        totalRunStatistics = new RunStatistics(errorType);
+        nextRunBlockToMerge = 0;
+        finishedRunBlocksMap = new HashMap<Integer, RunStatistics>();
+        freeRunStatistics = new ArrayDeque<RunStatistics>();
+
+        final AtomicInteger nextRunBlock = new AtomicInteger(0);
+        long prevTime = System.nanoTime();
+        if (numberOfWorkers > 1)
         {
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(numThreads,
-                    numThreads, 0L, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(numThreads),
-                    new LoggerThreadFactory("SignalingPetriNetSimulation"),
-                    new ThreadPoolExecutor.CallerRunsPolicy());
-
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < numThreads; threadId++)
+            // one index per worker, each worker then claims run blocks one at a time until none are left
+            layoutComputeService.execute(new LayoutComputeService.RangeKernel()
             {
-                executor.execute( SPNSimulationProcessKernel(threadId, totalRuns, intermediateResults[threadId]) );
-            }
 
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD)
-                {
-                    println("Problem with a broken barrier with the main SignalingPetriNetSimulation " +
-                            "simulation thread in performSPNSimulation()!:\n" + ex.getMessage());
-                }
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD)
+                @Override
+                public void process(int startIndex, int endIndex)
                 {
-                    println("Problem with pausing the main SignalingPetriNetSimulation simulation " +
-                            "thread in performSPNSimulation()!:\n" + ex.getMessage());
+                    for (int workerIndex = startIndex; workerIndex < endIndex; workerIndex++)
+                        allIterationsSPNSimulation(nextRunBlock, totalRuns, errorType);
                 }
-            }
+
+
+            }, numberOfWorkers, 1, null);
 
             if (DEBUG_BUILD)
             {
                 println("\nTotal SignalingPetriNetSimulation N-CP run time: " +
-                        (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
+                        ( (System.nanoTime() - prevTime) / 1e6 ) + " ms.\n");
             }
-
-            aggregateResultsFromAllProcesses(intermediateResults, errorType);
         }
         else
         {
-            allIterationsSPNSimulation(totalRuns, transitionIDs, intermediateResults[0]);
+            allIterationsSPNSimulation(nextRunBlock, totalRuns, errorType);
         }
 
         layoutProgressBarDialog.endProgressBar();
 
-        consolidatedResult = intermediateResults[0].consolidateRuns();
+        consolidatedResult = createResultFromRunStatistics(totalRunStatistics, errorType);
+        totalRunStatistics = null;
+        finishedRunBlocksMap = null;
+        freeRunStatistics = null;
 
         layoutProgressBarDialog.stopProgressBar();
 
@@ -435,160 +367,182 @@ public class SignalingPetriNetSimulation
     }
 
     /**
-    *  Performs all iterations of the SPN simulation.
+    *  Performs all iterations of the SPN simulation for the run blocks claimed by the calling thread.
+    *  The run blocks are claimed dynamically, so a worker that is done early keeps on taking run blocks from the slower ones.
     */
-    private void allIterationsSPNSimulation(int totalRuns, int[] transitionIDs, SpnResultRuns result)
+    private void allIterationsSPNSimulation(AtomicInteger nextRunBlock, int totalRuns, ErrorType errorType)
     {
-        float[] places = new float[numberOfVertices];
-        int placesIndex = 0;
-        int run = result.numRuns;
-        while (--run >= 0)
+        SPNWorker worker = new SPNWorker();
+        int numberOfRunBlocks = (totalRuns + NUMBER_OF_SPN_RUNS_PER_BLOCK - 1) / NUMBER_OF_SPN_RUNS_PER_BLOCK;
+        int runBlock = 0;
+        int endRun = 0;
+        RunStatistics runStatistics = null;
+        while ( ( runBlock = nextRunBlock.getAndIncrement() ) < numberOfRunBlocks )
         {
-            placesIndex = result.numPlaces;
-            while (--placesIndex >= 0)
+            runStatistics = obtainRunStatistics(errorType);
+            endRun = java.lang.Math.min( (runBlock + 1) * NUMBER_OF_SPN_RUNS_PER_BLOCK, totalRuns );
+            for (int run = runBlock * NUMBER_OF_SPN_RUNS_PER_BLOCK; run < endRun; run++)
             {
-                places[placesIndex] = 0.0f;
-
-                if (result.errorType != ErrorType.NONE)
-                {
-                    result.runs[run].setValue(placesIndex, 0, 0.0f);
-                }
-                else
-                {
-                    result.runs[0].setValue(placesIndex, 0, 0.0f);
-                }
+                runSPNSimulation(run, worker, runStatistics);
+                updateGUI();
             }
 
-            for (int timeBlock = 1; timeBlock < result.numTimeBlocks; timeBlock++) // start from 1
-            {
-                shuffleTransitions(transitionIDs);
-                activateAllTransitions(transitionIDs, places, timeBlock);
+            mergeRunBlockInRunOrder(runBlock, runStatistics);
+        }
+    }
 
-                placesIndex = numberOfVertices;
-                while (--placesIndex >= 0)
-                {
-                    if (result.errorType != ErrorType.NONE)
-                    {
-                        result.runs[run].setValue(placesIndex, timeBlock, places[placesIndex]);
-                    }
-                    else
-                    {
-                        float runningTotal = result.runs[0].getValue(placesIndex, timeBlock);
-                        float value = places[placesIndex] / totalRuns;
-                        result.runs[0].setValue(placesIndex, timeBlock, runningTotal + value);
-                    }
-                }
+    /**
+    *  Gets cleared run statistics, recycled from an already merged run block if there is one.
+    */
+    private synchronized RunStatistics obtainRunStatistics(ErrorType errorType)
+    {
+        RunStatistics runStatistics = freeRunStatistics.poll();
+        if (runStatistics == null)
+            return new RunStatistics(errorType);
+
+        runStatistics.clear();
+
+        return runStatistics;
+    }
+
+    /**
+    *  Merges the statistics of a finished run block into the total ones with Chan's parallel algorithm, always in run block order,
+    *  so the floating point results do not depend on the scheduling of the run blocks. Blocks finished early wait for the ones before them.
+    */
+    private synchronized void mergeRunBlockInRunOrder(int runBlock, RunStatistics runStatistics)
+    {
+        finishedRunBlocksMap.put(runBlock, runStatistics);
+
+        RunStatistics nextRunStatistics = null;
+        while ( ( nextRunStatistics = finishedRunBlocksMap.remove(nextRunBlockToMerge) ) != null )
+        {
+            double numberOfRunsA = totalRunStatistics.numberOfRuns;
+            double numberOfRunsB = nextRunStatistics.numberOfRuns;
+            double numberOfRuns = numberOfRunsA + numberOfRunsB;
+            double delta = 0.0;
+            int index = totalRunStatistics.mean.length;
+            while (--index >= 0)
+            {
+                delta = nextRunStatistics.mean[index] - totalRunStatistics.mean[index];
+                totalRunStatistics.mean[index] += delta * numberOfRunsB / numberOfRuns;
+                if (totalRunStatistics.sumOfSquares != null)
+                    totalRunStatistics.sumOfSquares[index] += nextRunStatistics.sumOfSquares[index] + delta * delta * numberOfRunsA * numberOfRunsB / numberOfRuns;
             }
+            totalRunStatistics.numberOfRuns += nextRunStatistics.numberOfRuns;
 
-            updateGUI();
+            freeRunStatistics.add(nextRunStatistics);
+            nextRunBlockToMerge++;
         }
     }
 
     /**
-    *   Return a light-weight runnable using the Adapter technique for the SPN simulation so as to avoid any load latencies.
-    *   The coding style simulates an OpenCL/CUDA kernel.
+    *  Performs one run of the SPN simulation with the RNG stream of that run & folds it into the given run statistics.
+    *  The run does not depend on any state left over from the previous run of the worker, so it gives the same results whichever worker processes it.
     */
-    private Runnable SPNSimulationProcessKernel(final int threadId, final int totalRuns, final SpnResultRuns processResult)
+    private void runSPNSimulation(int run, SPNWorker worker, RunStatistics runStatistics)
     {
-        return new Runnable()
+        float[] places = worker.places;
+        int[] transitionOrder = worker.transitionOrder;
+        double[] mean = runStatistics.mean;
+        double[] sumOfSquares = runStatistics.sumOfSquares;
+        double numberOfRuns = ++runStatistics.numberOfRuns;
+
+        worker.random.setStream(seed, run);
+        Arrays.fill(places, 0.0f);
+        for (int i = 0; i < numberOfTransitions; i++)
+            transitionOrder[i] = i;
+
+        int placesIndex = 0;
+        int index = 0;
+        double delta = 0.0;
+        for (int timeBlock = 1; timeBlock < totalTimeBlocks; timeBlock++) // start from 1, time block 0 is all zero
         {
+            shuffleTransitions(transitionOrder, worker.random);
+            activateAllTransitions(transitionOrder, places, timeBlock, worker.random);
 
-            @Override
-            public void run()
+            // Welford's update of the running mean (& sum of squares) with this run
+            placesIndex = numberOfVertices;
+            if (sumOfSquares != null)
             {
-                try
-                {
-                    threadBarrier.await();
-                    try
-                    {
-                        int[] transitionIDsForThread = new int[transitionIDs.length];
-                        System.arraycopy(transitionIDs, 0, transitionIDsForThread, 0, transitionIDs.length); // fastest way, native method!
-
-                        allIterationsSPNSimulation(totalRuns, transitionIDsForThread, processResult);
-                    }
-                    finally
-                    {
-                        threadBarrier.await();
-                    }
-                }
-                catch (BrokenBarrierException ex)
+                while (--placesIndex >= 0)
                 {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in SPNSimulationProcessKernel()!:\n" + ex.getMessage());
+                    index = placesIndex * totalTimeBlocks + timeBlock;
+                    delta = places[placesIndex] - mean[index];
+                    mean[index] += delta / numberOfRuns;
+                    sumOfSquares[index] += delta * (places[placesIndex] - mean[index]);
                 }
-                catch (InterruptedException ex)
+            }
+            else
+            {
+                while (--placesIndex >= 0)
                 {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the N-Core thread with threadId " + threadId + " in SPNSimulationProcessKernel()!:\n" + ex.getMessage());
+                    index = placesIndex * totalTimeBlocks + timeBlock;
+                    mean[index] += (places[placesIndex] - mean[index]) / numberOfRuns;
                 }
             }
-        };
+        }
     }
 
     /**
-    *  Aggregates results from all processes to the first dimension (threadId) of the results array.
+    *  Computes the mean & (optional) error of every place & time block from the total run statistics.
     */
-    private void aggregateResultsFromAllProcesses(SpnResultRuns[] results, ErrorType errorType)
+    private SpnResult createResultFromRunStatistics(RunStatistics total, ErrorType errorType)
     {
-        for (int threadId = 1; threadId < results.length; threadId++)
+        SpnResult result = new SpnResult(numberOfVertices, totalTimeBlocks, errorType);
+        if (total.numberOfRuns == 0)
+            return result;
+
+        double stddev = 0.0;
+        double sqrtNumberOfRuns = java.lang.Math.sqrt(total.numberOfRuns);
+        int index = 0;
+        for (int placeIndex = 0; placeIndex < numberOfVertices; placeIndex++)
         {
-            if (errorType != ErrorType.NONE)
-            {
-                // Just concatenate the results, they'll be combined later
-                results[0].runs = Utils.mergeArrays(results[0].runs, results[threadId].runs);
-            }
-            else
+            for (int timeBlock = 0; timeBlock < totalTimeBlocks; timeBlock++)
             {
-                int placeIndex = results[0].numPlaces;
-                while (--placeIndex >= 0)
+                index = placeIndex * totalTimeBlocks + timeBlock;
+                result.setValue(placeIndex, timeBlock, (float)total.mean[index]);
+                if (errorType != ErrorType.NONE)
                 {
-                    int timeBlock = results[0].numTimeBlocks;
-                    while (--timeBlock >= 0)
-                    {
-                        float value = results[0].runs[0].getValue(placeIndex, timeBlock);
-                        results[0].runs[0].setValue(placeIndex, timeBlock,
-                                value + results[threadId].runs[0].getValue(placeIndex, timeBlock));
-                    }
+                    stddev = java.lang.Math.sqrt(total.sumOfSquares[index] / total.numberOfRuns);
+                    result.setError( placeIndex, timeBlock, (float)( (errorType == ErrorType.STDDEV) ? stddev : stddev / sqrtNumberOfRuns ) );
                 }
             }
         }
+
+        return result;
     }
 
     /**
     *  Shuffles the transitions.
     */
-    private void shuffleTransitions(int[] transitionIDs)
+    private void shuffleTransitions(int[] transitionOrder, XORShiftRandomStream random)
     {
         int index = 0;
         int temp = 0;
-        for (int i = transitionIDs.length; i > 1; i--)
+        for (int i = transitionOrder.length; i > 1; i--)
         {
             index = random.nextInt(i);
-            temp = transitionIDs[i - 1];
-            transitionIDs[i - 1] = transitionIDs[index];
-            transitionIDs[index] = temp;
+            temp = transitionOrder[i - 1];
+            transitionOrder[i - 1] = transitionOrder[index];
+            transitionOrder[index] = temp;
         }
     }
 
     /**
     *  Activates all transitions.
-    *
-    *  Note:
-    *  The 'synchronized' keyword is being used because some machines/platforms/JVMs (Dell based ones?) slow down really badly without it.
-    *  It does though hinder the unlimited scalability potential of the N-Core parallelization (4 cores onwards do not scale more).
-    *  The C/JNI version does not have this problem & overhead on any platforms, so it is unlimitedly scalable with the N-Core parallelization.
+    *  Only touches the places, transition order & RNG of the calling worker, so it runs unsynchronized on any number of cores.
     */
-    private synchronized void activateAllTransitions(int[] transitionIDs, float[] places, int timeBlock)
+    private void activateAllTransitions(int[] transitionOrder, float[] places, int timeBlock, XORShiftRandomStream random)
     {
-        int i = transitionIDs.length;
+        int i = transitionOrder.length;
         while (--i >= 0)
-            activationRuleSet(transitionIDs[i], places, timeBlock);
+            activationRuleSet(transitionOrder[i], places, timeBlock, random);
     }
 
     /**
     *  Activation of one transition according to a given rule set.
     */
-    private void activationRuleSet(int transitionID, float[] places, int timeBlock)
+    private void activationRuleSet(int transition, float[] places, int timeBlock, XORShiftRandomStream random)
     {
         int i = 0;
         int index = 0;
@@ -599,11 +553,8 @@ public class SignalingPetriNetSimulation
         float tokenMoving = -1.0f;
         double randomValue = 0.0;
 
-        int[] parentIDs = parentsIDs[transitionID];
-        int[] childIDs = childrenIDs[transitionID];
-        float[] childWeights = childrenWeights[transitionID];
-        int[] totalInhibitorIDs = totalInhibitorsIDs[transitionID];
-        int[] partialInhibitorIDs = partialInhibitorsIDs[transitionID];
+        int parentsStart = parentsBegin[transition];
+        int parentsEnd = parentsBegin[transition + 1];
 
         /* Differences from the SPN algorithm:
             1. Added support for multiple parents instead of only one in original SPN (which only supported a tree like structure) (case 2 in code below).
@@ -615,7 +566,7 @@ public class SignalingPetriNetSimulation
         */
 
         // 1) check for parents, no parents token to 1.0
-        if (parentIDs.length == 0)
+        if (parentsStart == parentsEnd)
         {
             tokenMoving = 1.0f;
         }
@@ -623,28 +574,27 @@ public class SignalingPetriNetSimulation
         {
 
             // 2) check total inhibitor
-            // totalInhibitorIDs is the 4th int array
-            i = totalInhibitorIDs.length;
-            while (--i >= 0)
+            int totalInhibitorsStart = totalInhibitorsBegin[transition];
+            i = totalInhibitorsBegin[transition + 1];
+            while (--i >= totalInhibitorsStart)
                 if (!hasTotalInhibitorParents)
-                    hasTotalInhibitorParents = (places[totalInhibitorIDs[i]] > 0.0f);
+                    hasTotalInhibitorParents = (places[totalInhibitorsIDs[i]] > 0.0f);
 
             // 3) check partial inhibitor, only if no total inhibitor is present
-            // partialInhibitorIDs is the 5th int array
             if (!hasTotalInhibitorParents)
             {
-                i = partialInhibitorIDs.length;
-                while (--i >= 0)
-                    if ( (hasPartialInhibitorParents = (places[partialInhibitorIDs[i]] > 0.0f) ) )
-                        partialInihibitorTokens += places[partialInhibitorIDs[i]];
+                int partialInhibitorsStart = partialInhibitorsBegin[transition];
+                i = partialInhibitorsBegin[transition + 1];
+                while (--i >= partialInhibitorsStart)
+                    if ( (hasPartialInhibitorParents = (places[partialInhibitorsIDs[i]] > 0.0f) ) )
+                        partialInihibitorTokens += places[partialInhibitorsIDs[i]];
             }
 
             // 4) find the minimum token of all parents
-            // parentsIDs is the 1st int array
-            i = parentIDs.length;
-            while (--i >= 0)
+            i = parentsEnd;
+            while (--i >= parentsStart)
             {
-                tokenInPlace = places[parentIDs[i]];
+                tokenInPlace = places[parentsIDs[i]];
                 if ( (tokenMoving > tokenInPlace) || (tokenMoving < 0.0f) )
                 {
                     tokenMoving = tokenInPlace;
@@ -652,7 +602,7 @@ public class SignalingPetriNetSimulation
                 }
             }
 
-            randomValue = computeProbability();
+            randomValue = computeProbability(random);
             if (randomValue == 0.0) // if randomValue is zero, then tokenMoving will be zero, thus no need to calculate anything else
                 return;
             else // randomly calculate a token between 0 - minimum token
@@ -660,15 +610,14 @@ public class SignalingPetriNetSimulation
         }
 
         // 5) take the correct number of token to parents
-        // parentsIDs is the 1st int array
-        i = parentIDs.length;
-        while (--i >= 0)
+        i = parentsEnd;
+        while (--i >= parentsStart)
         {
-            if ( SPNTransitionType.equals(SPNTransitionTypes.CONSUMPTIVE) )
-                places[parentIDs[i]] -= ( (index == i) ? tokenMoving : (int)( randomValue * (places[parentIDs[i]] + 1.0f) ) );
-            else // if ( SPNTransitionType.equals(SPNTransitionTypes.ORIGINAL) )
+            if (SPNTransitionType == SPNTransitionTypes.CONSUMPTIVE)
+                places[parentsIDs[i]] -= ( (index == i) ? tokenMoving : (int)( randomValue * (places[parentsIDs[i]] + 1.0f) ) );
+            else // if (SPNTransitionType == SPNTransitionTypes.ORIGINAL)
                 // old way of parents substraction, same min token substracted from everywhere
-                places[parentIDs[i]] -= tokenMoving;
+                places[parentsIDs[i]] -= tokenMoving;
         }
 
         // skip adding to children if it's an total inhibitor
@@ -686,29 +635,22 @@ public class SignalingPetriNetSimulation
         }
 
         // 6) put the correct number of token in child
-        // childrenIDs & childrenWeigths are the 2nd & the 3rd int & float arrays
-        i = childIDs.length;
-        if (i > 0)
-        {
-            int sizeOfChildWeightsBlock = childWeights.length / childIDs.length;
-
-            while (--i >= 0)
-            {
-                places[childIDs[i]] += (tokenMoving * childWeights[(i * sizeOfChildWeightsBlock) + timeBlock]);
-            }
-        }
+        int childrenStart = childrenBegin[transition];
+        i = childrenBegin[transition + 1];
+        while (--i >= childrenStart)
+            places[childrenIDs[i]] += ( tokenMoving * childrenWeights[(i * totalTimeBlocks) + timeBlock] );
     }
 
     /**
     *  Computes the SPN simulation probability.
     */
-    private double computeProbability()
+    private double computeProbability(XORShiftRandomStream random)
     {
-        if ( SPNDistributionType.equals(SPNDistributionTypes.UNIFORM) )
-            return java.lang.Math.random();
-        else if ( SPNDistributionType.equals(SPNDistributionTypes.STANDARD_NORMAL) )
+        if (SPNDistributionType == SPNDistributionTypes.UNIFORM)
+            return random.nextDouble();
+        else if (SPNDistributionType == SPNDistributionTypes.STANDARD_NORMAL)
         {
-            double randomValue = org.BioLayoutExpress3D.StaticLibraries.Random.nextGaussian();
+            double randomValue = random.nextGaussian();
             randomValue += STANDARD_NORMAL_DISTRIBUTION_HALF_RANGE;
             randomValue /= STANDARD_NORMAL_DISTRIBUTION_RANGE;
             if (randomValue < 0.0)
@@ -718,7 +660,7 @@ public class SignalingPetriNetSimulation
 
             return randomValue;
         }
-        else // if ( SPNDistributionType.equals(SPNDistributionTypes.DETERMINISTIC_PROCESS) )
+        else // if (SPNDistributionType == SPNDistributionTypes.DETERMINISTIC_PROCESS)
             return DETERMINISTIC_PROCESS_CONSTANT_PROBABILITY;
     }
 
@@ -731,15 +673,12 @@ public class SignalingPetriNetSimulation
     }
 
     /**
-    *  Gets all SPN simulation details for the given transition.
+    *  Adds all SPN simulation details for the given transition to the given lists.
     */
-    private Tuple5<int[], int[], float[], int[], int[]> getSPNSimulationDetailsForTransition(Vertex transition, HashMap<Vertex, Edge> connectionsMap, int totalTimeBlocks)
+    private void addSPNSimulationDetailsForTransition(Vertex transition, HashMap<Vertex, Edge> connectionsMap, int totalTimeBlocks,
+            ArrayList<Integer> parentsIDsList, ArrayList<Integer> childrenIDsList, ArrayList<Float> childrenWeightsList,
+            ArrayList<Integer> totalInhibitorsList, ArrayList<Integer> partialInhibitorsList)
     {
-        ArrayList<Integer> parentsIDsList = new ArrayList<Integer>();
-        ArrayList<Integer> childrenIDsList = new ArrayList<Integer>();
-        ArrayList<Float> childrenWeightsList = new ArrayList<Float>();
-        ArrayList<Integer> totalInhibitorsList = new ArrayList<Integer>();
-        ArrayList<Integer> partialInhibitorsList = new ArrayList<Integer>();
         Edge edge = null;
         float[] childrenWeightsArray = null;
 
@@ -774,9 +713,6 @@ public class SignalingPetriNetSimulation
                     childrenWeightsList.add(childrenWeightsArray[i]);
             }
         }
-
-        return Tuples.tuple( toPrimitiveListInteger(parentsIDsList), toPrimitiveListInteger(childrenIDsList), toPrimitiveListFloat(childrenWeightsList),
-                             toPrimitiveListInteger(totalInhibitorsList), toPrimitiveListInteger(partialInhibitorsList) );
     }
 
     /**
@@ -852,23 +788,19 @@ public class SignalingPetriNetSimulation
     /**
     *  Cleans (deletes) all data structures.
     */
-    private void clean(int totalRuns)
+    private void clean()
     {
-        transitionIDs = null;
+        parentsBegin = null;
         parentsIDs = null;
+        childrenBegin = null;
         childrenIDs = null;
         childrenWeights = null;
+        totalInhibitorsBegin = null;
         totalInhibitorsIDs = null;
+        partialInhibitorsBegin = null;
         partialInhibitorsIDs = null;
-        allArraysLengths = null;
 
         timeTaken = 0;
-        if ( ( USE_MULTICORE_PROCESS && USE_SPN_N_CORE_PARALLELISM.get() ) && (totalRuns >= MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION) )
-        {
-            int z = NUMBER_OF_AVAILABLE_PROCESSORS;
-            while (--z >= 1) // does not need to add to the first threadId as all results are aggregated to the first one
-                intermediateResults[z].clear();
-        }
 
         System.gc();
     }
@@ -996,6 +928,14 @@ public class SignalingPetriNetSimulation
         return timeTaken;
     }
 
+    /**
+    *  Gets the seed of the last SPN simulation, so it can be reproduced.
+    */
+    public long getSeed()
+    {
+        return seed;
+    }
+
     /**
     *  Gets all the SPN simulation results.
     */
@@ -294,6 +294,165 @@ public final class Random
         }
 
 
+    }
+
+    /**
+    *  The XORShiftRandomStream static inner class.
+    *  A seedable, unsynchronized XORShiftRandom RNG meant to be owned by a single thread at a time.
+    *  Any number of statistically independent streams can be split from one seed by their stream index
+    *  (the pair is scrambled with the SplitMix64 finalizer), so parallel Monte Carlo code can hand every run its own stream
+    *  and reproduce the same results from the same seed, regardless of the number of threads or the order the runs are processed in.
+    */
+    public static final class XORShiftRandomStream
+    {
+
+        /**
+        *  Golden ratio increment of the SplitMix64 generator.
+        */
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        /**
+        *  State of the XORShiftRandom RNG, never zero.
+        */
+        private long state = 0L;
+
+        /**
+        *  Values needed for nextGaussian() method.
+        */
+        private double nextNextGaussian = 0.0;
+        private boolean haveNextNextGaussian = false;
+
+        /**
+        *  The first constructor of the XORShiftRandomStream class.
+        */
+        public XORShiftRandomStream(long seed)
+        {
+            setStream(seed, 0L);
+        }
+
+        /**
+        *  The second constructor of the XORShiftRandomStream class.
+        */
+        public XORShiftRandomStream(long seed, long streamIndex)
+        {
+            setStream(seed, streamIndex);
+        }
+
+        /**
+        *  Re-seeds this RNG to the start of the given stream of the given seed, so a thread can reuse it from run to run without any allocation.
+        */
+        public void setStream(long seed, long streamIndex)
+        {
+            long x = mix64( seed + (streamIndex + 1) * GOLDEN_GAMMA );
+            state = (x != 0L) ? x : GOLDEN_GAMMA;
+            haveNextNextGaussian = false;
+        }
+
+        /**
+        *  Returns a new RNG for the given stream index of the given seed.
+        */
+        public static XORShiftRandomStream split(long seed, long streamIndex)
+        {
+            return new XORShiftRandomStream(seed, streamIndex);
+        }
+
+        /**
+        *  The SplitMix64 finalizer (variant 13 of D. Stafford's mixers).
+        */
+        private static long mix64(long x)
+        {
+            x = (x ^ (x >>> 30) ) * 0xBF58476D1CE4E5B9L;
+            x = (x ^ (x >>> 27) ) * 0x94D049BB133111EBL;
+            return x ^ (x >>> 31);
+        }
+
+        /**
+        *  Core method of the XORShiftRandomStream RNG.
+        */
+        private long next()
+        {
+            long x = state;
+            x ^= (x << 21);
+            x ^= (x >>> 35);
+            x ^= (x << 4);
+            state = x;
+            return x;
+        }
+
+        /**
+        *  nextInt() method of the XORShiftRandomStream RNG.
+        */
+        public int nextInt()
+        {
+            return (int)(next() >>> 32);
+        }
+
+        /**
+        *  Returns an integer between 0 (inclusive) and bound (exclusive).
+        */
+        public int nextInt(int bound)
+        {
+            return (int)( ( (next() >>> 33) * bound ) >>> 31 );
+        }
+
+        /**
+        *  nextLong() method of the XORShiftRandomStream RNG.
+        */
+        public long nextLong()
+        {
+            return next();
+        }
+
+        /**
+        *  nextFloat() method of the XORShiftRandomStream RNG.
+        */
+        public float nextFloat()
+        {
+            return (next() >>> 40) / ( (float)(1 << 24) );
+        }
+
+        /**
+        *  nextDouble() method of the XORShiftRandomStream RNG.
+        */
+        public double nextDouble()
+        {
+            return (next() >>> 11) / (double)(1L << 53);
+        }
+
+        /**
+        *  Returns the next pseudorandom, Gaussian ("normally") distributed double value with mean 0.0 and standard deviation 1.0,
+        *  using the same polar method as the XORShiftRandom class.
+        */
+        public double nextGaussian()
+        {
+            if (haveNextNextGaussian)
+            {
+                haveNextNextGaussian = false;
+                return nextNextGaussian;
+            }
+            else
+            {
+                double v1 = 0.0;
+                double v2 = 0.0;
+                double s = 0.0;
+                do
+                {
+                    v1 = 2.0 * nextDouble() - 1.0; // between -1.0 and 1.0
+                    v2 = 2.0 * nextDouble() - 1.0; // between -1.0 and 1.0
+                    s = (v1 * v1) + (v2 * v2);
+                }
+                while ( (s >= 1.0) || (s == 0.0) );
+
+                double multiplier = sqrt(-2.0 * log(s) / s);
+
+                nextNextGaussian = v2 * multiplier;
+                haveNextNextGaussian = true;
+
+                return (v1 * multiplier);
+            }
+        }
+
+
     }
 
 